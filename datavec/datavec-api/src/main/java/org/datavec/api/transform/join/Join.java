@@ -222,13 +222,12 @@ public class Join implements Serializable {
             //Complication here: the **key values** should still exist (we have to extract them from second value)
             int nLeft = leftSchema.numColumns();
             List<String> leftNames = leftSchema.getColumnNames();
-            int keysSoFar = 0;
             for (int i = 0; i < nLeft; i++) {
                 String name = leftNames.get(i);
                 if (ArrayUtils.contains(joinColumnsLeft, name)) {
                     //This would normally be where the left key came from...
-                    //So let's get the key value from the *right* example
-                    String rightKeyName = joinColumnsRight[keysSoFar];
+                    //So let's get the key value from the *right* example (matching key column)
+                    String rightKeyName = joinColumnsRight[ArrayUtils.indexOf(joinColumnsLeft, name)];
                     int idxOfRightKey = rightSchema.getIndexOfColumn(rightKeyName);
                     out.add(rightExample.get(idxOfRightKey));
                 } else {
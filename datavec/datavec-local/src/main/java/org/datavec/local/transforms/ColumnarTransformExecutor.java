@@ -0,0 +1,206 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.datavec.local.transforms;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.FieldVector;
+import org.datavec.api.transform.DataAction;
+import org.datavec.api.transform.TransformProcess;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.transform.schema.SequenceSchema;
+import org.datavec.api.writable.Writable;
+import org.datavec.arrow.ArrowConverter;
+import org.datavec.arrow.recordreader.ArrowWritableRecordBatch;
+import org.datavec.local.transforms.columnar.ColumnKernels;
+import org.datavec.local.transforms.columnar.ColumnarBatch;
+import org.datavec.local.transforms.transform.LocalTransformFunction;
+import org.datavec.local.transforms.transform.filter.LocalFilterFunction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Columnar alternative to {@link LocalTransformExecutor} for non-sequence TransformProcesses consisting of
+ * transforms and filters only.<br>
+ * Input records are split into batches that are processed in parallel. Each batch is loaded by column into primitive
+ * arrays (see {@link ColumnarBatch}), and supported steps are executed as column kernels
+ * (see {@link ColumnKernels}), avoiding per-value writable objects. Steps without a column kernel are executed
+ * row-wise on the batch, exactly as LocalTransformExecutor would.<br>
+ * TransformProcesses with other steps (reductions, sequence conversions, etc.) are delegated to LocalTransformExecutor.
+ */
+@Slf4j
+public class ColumnarTransformExecutor {
+
+    public static final int DEFAULT_BATCH_SIZE = 65536;
+
+    private static BufferAllocator bufferAllocator;
+
+    private ColumnarTransformExecutor() {}
+
+    /**
+     * Execute the specified TransformProcess with the given input data, using batches of {@link #DEFAULT_BATCH_SIZE}
+     * records
+     *
+     * @param inputWritables   Input data to process
+     * @param transformProcess TransformProcess to execute
+     * @return Processed data
+     */
+    public static List<List<Writable>> execute(List<List<Writable>> inputWritables, TransformProcess transformProcess) {
+        return execute(inputWritables, transformProcess, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Execute the specified TransformProcess with the given input data
+     *
+     * @param inputWritables   Input data to process
+     * @param transformProcess TransformProcess to execute
+     * @param batchSize        Number of records per columnar batch
+     * @return Processed data
+     */
+    public static List<List<Writable>> execute(List<List<Writable>> inputWritables, TransformProcess transformProcess,
+                    int batchSize) {
+        if (!canExecute(transformProcess))
+            return LocalTransformExecutor.execute(inputWritables, transformProcess);
+
+        Schema initialSchema = transformProcess.getInitialSchema();
+        List<Schema> schemas = stepSchemas(transformProcess);
+        List<List<Writable>> filtered = inputWritables.parallelStream()
+                        .filter(input -> input.size() == initialSchema.numColumns()).collect(toList());
+        if (filtered.size() != inputWritables.size()) {
+            log.warn("Filtered out " + (inputWritables.size() - filtered.size()) + " values");
+        }
+
+        List<ColumnarBatch> batches = IntStream.range(0, numBatches(filtered.size(), batchSize)).parallel()
+                        .mapToObj(b -> {
+                            int from = b * batchSize;
+                            int to = Math.min(filtered.size(), from + batchSize);
+                            ColumnarBatch batch = ColumnarBatch.fromRows(filtered, from, to, initialSchema);
+                            return execute(batch, transformProcess, schemas);
+                        }).collect(toList());
+
+        List<List<Writable>> ret = new ArrayList<>(filtered.size());
+        for (ColumnarBatch batch : batches)
+            ret.addAll(batch.toRows());
+        return ret;
+    }
+
+    /**
+     * Execute the specified TransformProcess with the given Arrow input data. Fixed width numeric vectors are read
+     * directly, and numeric columns of the output are written directly to Arrow vectors
+     *
+     * @param input            Input data to process
+     * @param transformProcess TransformProcess to execute
+     * @return Processed data
+     */
+    public static ArrowWritableRecordBatch execute(ArrowWritableRecordBatch input, TransformProcess transformProcess) {
+        Schema finalSchema = transformProcess.getFinalSchema();
+        if (!canExecute(transformProcess)) {
+            List<List<Writable>> out = LocalTransformExecutor.execute(input, transformProcess);
+            return new ArrowWritableRecordBatch(ArrowConverter.toArrowColumns(bufferAllocator(), finalSchema, out),
+                            finalSchema);
+        }
+
+        ColumnarBatch batch = execute(ColumnarBatch.fromArrow(input, 0, input.size()), transformProcess,
+                        stepSchemas(transformProcess));
+        List<FieldVector> vectors = batch.toArrow(bufferAllocator(), finalSchema);
+        return new ArrowWritableRecordBatch(vectors, finalSchema, 0, batch.getNumRows());
+    }
+
+    /**
+     * Returns true if all steps of the TransformProcess are transforms or filters, and the output is not sequence data
+     */
+    public static boolean canExecute(TransformProcess transformProcess) {
+        if (transformProcess.getInitialSchema() instanceof SequenceSchema
+                        || transformProcess.getFinalSchema() instanceof SequenceSchema)
+            return false;
+        for (DataAction d : transformProcess.getActionList()) {
+            if (d.getTransform() == null && d.getFilter() == null)
+                return false;
+        }
+        return true;
+    }
+
+    private static ColumnarBatch execute(ColumnarBatch batch, TransformProcess transformProcess, List<Schema> schemas) {
+        List<DataAction> actions = transformProcess.getActionList();
+        for (int i = 0; i < actions.size(); i++) {
+            DataAction d = actions.get(i);
+            Schema schema = schemas.get(i);
+            Schema outputSchema = schemas.get(i + 1);
+            if (applyKernel(d, schema, batch))
+                continue;
+
+            List<List<Writable>> rows;
+            if (d.getTransform() != null) {
+                LocalTransformFunction function = new LocalTransformFunction(d.getTransform());
+                rows = batch.toRows().stream().map(function::apply)
+                                .filter(r -> !LocalTransformExecutor.isTryCatch() || !r.isEmpty()).collect(toList());
+            } else {
+                LocalFilterFunction function = new LocalFilterFunction(d.getFilter());
+                rows = batch.toRows().stream().filter(function::apply).collect(toList());
+            }
+            batch = ColumnarBatch.fromRows(rows, 0, rows.size(), outputSchema);
+        }
+        return batch;
+    }
+
+    /**
+     * Returns the schema before each step, followed by the final schema
+     */
+    private static List<Schema> stepSchemas(TransformProcess transformProcess) {
+        List<Schema> ret = new ArrayList<>();
+        Schema schema = transformProcess.getInitialSchema();
+        ret.add(schema);
+        for (DataAction d : transformProcess.getActionList()) {
+            if (d.getTransform() != null)
+                schema = d.getTransform().transform(schema);
+            ret.add(schema);
+        }
+        return ret;
+    }
+
+    private static boolean applyKernel(DataAction d, Schema schema, ColumnarBatch batch) {
+        try {
+            return d.getTransform() != null ? ColumnKernels.transform(d.getTransform(), schema, batch)
+                            : ColumnKernels.filter(d.getFilter(), schema, batch);
+        } catch (RuntimeException e) {
+            //In try/catch mode, invalid records are dropped: let row-wise execution handle them
+            if (LocalTransformExecutor.isTryCatch())
+                return false;
+            throw e;
+        }
+    }
+
+    private static synchronized BufferAllocator bufferAllocator() {
+        //Created lazily: only needed for Arrow input
+        if (bufferAllocator == null)
+            bufferAllocator = new RootAllocator(Long.MAX_VALUE);
+        return bufferAllocator;
+    }
+
+    private static int numBatches(int numRecords, int batchSize) {
+        return (numRecords + batchSize - 1) / batchSize;
+    }
+}
@@ -44,6 +44,7 @@ import org.datavec.arrow.ArrowConverter;
 import org.datavec.local.transforms.functions.EmptyRecordFunction;
 import org.datavec.local.transforms.join.ExecuteJoinFromCoGroupFlatMapFunction;
 import org.datavec.local.transforms.join.ExtractKeysFunction;
+import org.datavec.local.transforms.join.HashJoinExecutor;
 import org.datavec.local.transforms.misc.ColumnAsKeyPairFunction;
 import org.datavec.local.transforms.rank.UnzipForCalculateSortedRankFunction;
 import org.datavec.local.transforms.reduce.MapToPairForReducerFunction;
@@ -599,5 +600,20 @@ public class LocalTransformExecutor {
 
     }
 
+    /**
+     * Execute a join on the specified data, using a parallel hash join that spills to disk when the smaller side
+     * does not fit in the executor's memory budget. See {@link HashJoinExecutor}
+     *
+     * @param join     Join to execute
+     * @param left     Left data for join
+     * @param right    Right data for join
+     * @param executor Hash join executor to use
+     * @return Joined data
+     */
+    public static List<List<Writable>> executeJoin(Join join, List<List<Writable>> left,
+                                                   List<List<Writable>> right, HashJoinExecutor executor) {
+        return executor.execute(join, left, right);
+    }
+
 
 }
@@ -0,0 +1,352 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.datavec.local.transforms.columnar;
+
+import org.datavec.api.transform.MathOp;
+import org.datavec.api.transform.Transform;
+import org.datavec.api.transform.condition.Condition;
+import org.datavec.api.transform.condition.ConditionOp;
+import org.datavec.api.transform.condition.column.DoubleColumnCondition;
+import org.datavec.api.transform.condition.column.IntegerColumnCondition;
+import org.datavec.api.transform.condition.column.LongColumnCondition;
+import org.datavec.api.transform.filter.ConditionFilter;
+import org.datavec.api.transform.filter.Filter;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.transform.transform.categorical.CategoricalToIntegerTransform;
+import org.datavec.api.transform.transform.column.RemoveAllColumnsExceptForTransform;
+import org.datavec.api.transform.transform.column.RemoveColumnsTransform;
+import org.datavec.api.transform.transform.column.RenameColumnsTransform;
+import org.datavec.api.transform.transform.column.ReorderColumnsTransform;
+import org.datavec.api.transform.transform.doubletransform.DoubleMathOpTransform;
+import org.datavec.api.transform.transform.doubletransform.MinMaxNormalizer;
+import org.datavec.api.transform.transform.doubletransform.StandardizeNormalizer;
+import org.datavec.api.transform.transform.doubletransform.SubtractMeanNormalizer;
+import org.datavec.api.transform.transform.integer.IntegerMathOpTransform;
+import org.datavec.api.transform.transform.longtransform.LongMathOpTransform;
+import org.datavec.api.writable.Writable;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column-at-a-time implementations of common {@link Transform}s and {@link Filter}s, operating on
+ * {@link ColumnarBatch} primitive columns.<br>
+ * Supported transforms: DoubleMathOpTransform, IntegerMathOpTransform, LongMathOpTransform, MinMaxNormalizer,
+ * StandardizeNormalizer, SubtractMeanNormalizer, CategoricalToIntegerTransform, RemoveColumnsTransform,
+ * RemoveAllColumnsExceptForTransform, ReorderColumnsTransform, RenameColumnsTransform.<br>
+ * Supported filters: ConditionFilter with DoubleColumnCondition, IntegerColumnCondition or LongColumnCondition.<br>
+ * Results are identical to the row-wise {@code map}/{@code removeExample} implementations. If an operation is not
+ * supported, or the column it operates on is not stored as a primitive array, the batch is left unchanged and
+ * false is returned, so the caller can fall back to row-wise execution.
+ */
+public class ColumnKernels {
+
+    private ColumnKernels() {}
+
+    /**
+     * Executes the transform on the batch, if supported
+     *
+     * @param transform   Transform to execute
+     * @param inputSchema Schema of the batch before the transform
+     * @param batch       Batch to transform in place
+     * @return True if the transform was executed, false if not supported
+     */
+    public static boolean transform(Transform transform, Schema inputSchema, ColumnarBatch batch) {
+        if (transform instanceof DoubleMathOpTransform) {
+            DoubleMathOpTransform t = (DoubleMathOpTransform) transform;
+            Object col = batch.getColumn(inputSchema.getIndexOfColumn(t.columnName()));
+            if (!(col instanceof double[]))
+                return false;
+            mathOp((double[]) col, batch.getNumRows(), t.getMathOp(), t.getScalar());
+            return true;
+        } else if (transform instanceof IntegerMathOpTransform) {
+            IntegerMathOpTransform t = (IntegerMathOpTransform) transform;
+            Object col = batch.getColumn(inputSchema.getIndexOfColumn(t.columnName()));
+            if (!(col instanceof int[]))
+                return false;
+            //Integer division by zero throws: work on a copy, so a failure leaves the batch unchanged
+            int[] x = ((int[]) col).clone();
+            mathOp(x, batch.getNumRows(), t.getMathOp(), t.getScalar());
+            batch.setColumn(inputSchema.getIndexOfColumn(t.columnName()), x);
+            return true;
+        } else if (transform instanceof LongMathOpTransform) {
+            LongMathOpTransform t = (LongMathOpTransform) transform;
+            Object col = batch.getColumn(inputSchema.getIndexOfColumn(t.columnName()));
+            if (!(col instanceof long[]))
+                return false;
+            //Integer division by zero throws: work on a copy, so a failure leaves the batch unchanged
+            long[] x = ((long[]) col).clone();
+            mathOp(x, batch.getNumRows(), t.getMathOp(), t.getScalar());
+            batch.setColumn(inputSchema.getIndexOfColumn(t.columnName()), x);
+            return true;
+        } else if (transform instanceof MinMaxNormalizer || transform instanceof StandardizeNormalizer
+                        || transform instanceof SubtractMeanNormalizer) {
+            int idx = inputSchema.getIndexOfColumn(transform.columnName());
+            double[] x = toDouble(batch.getColumn(idx), batch.getNumRows());
+            if (x == null)
+                return false;
+            normalize(transform, x);
+            batch.setColumn(idx, x);
+            return true;
+        } else if (transform instanceof CategoricalToIntegerTransform) {
+            CategoricalToIntegerTransform t = (CategoricalToIntegerTransform) transform;
+            int idx = inputSchema.getIndexOfColumn(t.getColumnName());
+            if (!(batch.getColumn(idx) instanceof Writable[]))
+                return false;
+            batch.setColumn(idx, categoricalToInteger(t, (Writable[]) batch.getColumn(idx), batch.getNumRows()));
+            return true;
+        } else if (transform instanceof RemoveColumnsTransform || transform instanceof RemoveAllColumnsExceptForTransform
+                        || transform instanceof ReorderColumnsTransform) {
+            //Column names are unchanged: select input columns by output schema names
+            List<String> outputNames = transform.transform(inputSchema).getColumnNames();
+            int[] idxs = new int[outputNames.size()];
+            for (int i = 0; i < idxs.length; i++)
+                idxs[i] = inputSchema.getIndexOfColumn(outputNames.get(i));
+            batch.project(idxs);
+            return true;
+        } else if (transform instanceof RenameColumnsTransform) {
+            //Only the schema changes
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Executes the filter on the batch, if supported
+     *
+     * @param filter      Filter to execute
+     * @param inputSchema Schema of the batch
+     * @param batch       Batch to filter in place
+     * @return True if the filter was executed, false if not supported
+     */
+    public static boolean filter(Filter filter, Schema inputSchema, ColumnarBatch batch) {
+        if (!(filter instanceof ConditionFilter))
+            return false;
+        Condition condition = ((ConditionFilter) filter).getCondition();
+        int n = batch.getNumRows();
+        boolean[] keep = new boolean[n];
+
+        if (condition instanceof DoubleColumnCondition) {
+            DoubleColumnCondition c = (DoubleColumnCondition) condition;
+            double[] x = toDouble(batch.getColumn(inputSchema.getIndexOfColumn(c.getColumnName())), n);
+            if (x == null)
+                return false;
+            ConditionOp op = c.getOp();
+            double value = c.getValue() == null ? Double.NaN : c.getValue();
+            for (int i = 0; i < n; i++)
+                keep[i] = !op.apply(x[i], value, c.getSet());
+        } else if (condition instanceof IntegerColumnCondition) {
+            IntegerColumnCondition c = (IntegerColumnCondition) condition;
+            Object col = batch.getColumn(inputSchema.getIndexOfColumn(c.getColumnName()));
+            if (!(col instanceof int[]))
+                return false;
+            int[] x = (int[]) col;
+            ConditionOp op = c.getOp();
+            int value = c.getValue() == null ? 0 : c.getValue();
+            for (int i = 0; i < n; i++)
+                keep[i] = !op.apply(x[i], value, c.getSet());
+        } else if (condition instanceof LongColumnCondition) {
+            LongColumnCondition c = (LongColumnCondition) condition;
+            Object col = batch.getColumn(inputSchema.getIndexOfColumn(c.getColumnName()));
+            long[] x;
+            if (col instanceof long[]) {
+                x = (long[]) col;
+            } else if (col instanceof int[]) {
+                int[] in = (int[]) col;
+                x = new long[n];
+                for (int i = 0; i < n; i++)
+                    x[i] = in[i];
+            } else {
+                return false;
+            }
+            ConditionOp op = c.getOp();
+            long value = c.getValue() == null ? 0 : c.getValue();
+            for (int i = 0; i < n; i++)
+                keep[i] = !op.apply(x[i], value, c.getSet());
+        } else {
+            return false;
+        }
+
+        batch.filter(keep);
+        return true;
+    }
+
+    private static void mathOp(double[] x, int n, MathOp op, double s) {
+        switch (op) {
+            case Add:
+                for (int i = 0; i < n; i++) x[i] += s;
+                break;
+            case Subtract:
+                for (int i = 0; i < n; i++) x[i] -= s;
+                break;
+            case Multiply:
+                for (int i = 0; i < n; i++) x[i] *= s;
+                break;
+            case Divide:
+                for (int i = 0; i < n; i++) x[i] /= s;
+                break;
+            case Modulus:
+                for (int i = 0; i < n; i++) x[i] %= s;
+                break;
+            case ReverseSubtract:
+                for (int i = 0; i < n; i++) x[i] = s - x[i];
+                break;
+            case ReverseDivide:
+                for (int i = 0; i < n; i++) x[i] = s / x[i];
+                break;
+            case ScalarMin:
+                for (int i = 0; i < n; i++) x[i] = Math.min(x[i], s);
+                break;
+            case ScalarMax:
+                for (int i = 0; i < n; i++) x[i] = Math.max(x[i], s);
+                break;
+            default:
+                throw new IllegalStateException("Unknown or not implemented math op: " + op);
+        }
+    }
+
+    private static void mathOp(int[] x, int n, MathOp op, int s) {
+        switch (op) {
+            case Add:
+                for (int i = 0; i < n; i++) x[i] += s;
+                break;
+            case Subtract:
+                for (int i = 0; i < n; i++) x[i] -= s;
+                break;
+            case Multiply:
+                for (int i = 0; i < n; i++) x[i] *= s;
+                break;
+            case Divide:
+                for (int i = 0; i < n; i++) x[i] /= s;
+                break;
+            case Modulus:
+                for (int i = 0; i < n; i++) x[i] %= s;
+                break;
+            case ReverseSubtract:
+                for (int i = 0; i < n; i++) x[i] = s - x[i];
+                break;
+            case ReverseDivide:
+                for (int i = 0; i < n; i++) x[i] = s / x[i];
+                break;
+            case ScalarMin:
+                for (int i = 0; i < n; i++) x[i] = Math.min(x[i], s);
+                break;
+            case ScalarMax:
+                for (int i = 0; i < n; i++) x[i] = Math.max(x[i], s);
+                break;
+            default:
+                throw new IllegalStateException("Unknown or not implemented math op: " + op);
+        }
+    }
+
+    private static void mathOp(long[] x, int n, MathOp op, long s) {
+        switch (op) {
+            case Add:
+                for (int i = 0; i < n; i++) x[i] += s;
+                break;
+            case Subtract:
+                for (int i = 0; i < n; i++) x[i] -= s;
+                break;
+            case Multiply:
+                for (int i = 0; i < n; i++) x[i] *= s;
+                break;
+            case Divide:
+                for (int i = 0; i < n; i++) x[i] /= s;
+                break;
+            case Modulus:
+                for (int i = 0; i < n; i++) x[i] %= s;
+                break;
+            case ReverseSubtract:
+                for (int i = 0; i < n; i++) x[i] = s - x[i];
+                break;
+            case ReverseDivide:
+                for (int i = 0; i < n; i++) x[i] = s / x[i];
+                break;
+            case ScalarMin:
+                for (int i = 0; i < n; i++) x[i] = Math.min(x[i], s);
+                break;
+            case ScalarMax:
+                for (int i = 0; i < n; i++) x[i] = Math.max(x[i], s);
+                break;
+            default:
+                throw new IllegalStateException("Unknown or not implemented math op: " + op);
+        }
+    }
+
+    private static void normalize(Transform transform, double[] x) {
+        if (transform instanceof MinMaxNormalizer) {
+            MinMaxNormalizer t = (MinMaxNormalizer) transform;
+            double ratio = t.getRatio(), min = t.getMin(), newMin = t.getNewMin();
+            for (int i = 0; i < x.length; i++)
+                x[i] = Double.isNaN(x[i]) ? 0 : ratio * (x[i] - min) + newMin;
+        } else if (transform instanceof StandardizeNormalizer) {
+            StandardizeNormalizer t = (StandardizeNormalizer) transform;
+            double mean = t.getMean(), stdev = t.getStdev();
+            for (int i = 0; i < x.length; i++)
+                x[i] = (x[i] - mean) / stdev;
+        } else {
+            double mean = ((SubtractMeanNormalizer) transform).getMean();
+            for (int i = 0; i < x.length; i++)
+                x[i] -= mean;
+        }
+    }
+
+    private static int[] categoricalToInteger(CategoricalToIntegerTransform t, Writable[] in, int n) {
+        Map<String, Integer> statesMap = t.getStatesMap();
+        int[] out = new int[n];
+        for (int i = 0; i < n; i++) {
+            String str = in[i].toString();
+            Integer classIdx = statesMap.get(str);
+            if (classIdx == null) {
+                throw new IllegalStateException("Cannot convert categorical value to integer value: input value (\"" + str
+                                + "\") is not in the list of known categories (state names/categories: "
+                                + t.getStateNames() + ")");
+            }
+            out[i] = classIdx;
+        }
+        return out;
+    }
+
+    /**
+     * Returns a new double array holding values of a numeric primitive column, or null for non-primitive columns
+     */
+    private static double[] toDouble(Object col, int n) {
+        double[] out = new double[n];
+        if (col instanceof double[]) {
+            System.arraycopy(col, 0, out, 0, n);
+        } else if (col instanceof float[]) {
+            float[] in = (float[]) col;
+            for (int i = 0; i < n; i++)
+                out[i] = in[i];
+        } else if (col instanceof int[]) {
+            int[] in = (int[]) col;
+            for (int i = 0; i < n; i++)
+                out[i] = in[i];
+        } else if (col instanceof long[]) {
+            long[] in = (long[]) col;
+            for (int i = 0; i < n; i++)
+                out[i] = in[i];
+        } else {
+            return null;
+        }
+        return out;
+    }
+}
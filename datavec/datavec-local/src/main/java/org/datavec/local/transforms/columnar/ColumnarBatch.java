@@ -0,0 +1,273 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.datavec.local.transforms.columnar;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.*;
+import org.datavec.api.transform.ColumnType;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.writable.*;
+import org.datavec.arrow.ArrowConverter;
+import org.datavec.arrow.recordreader.ArrowWritableRecordBatch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Batch of records stored by column.<br>
+ * Each column is either a primitive array ({@code double[]}, {@code float[]}, {@code int[]}, {@code long[]}) when
+ * all of its values are of the matching writable type (DoubleWritable, FloatWritable, IntWritable, LongWritable), or
+ * a {@code Writable[]} otherwise. Kernels in {@link ColumnKernels} operate on the primitive columns.
+ */
+@Getter
+public class ColumnarBatch {
+
+    private Object[] columns;
+    private int numRows;
+
+    public ColumnarBatch(@NonNull Object[] columns, int numRows) {
+        this.columns = columns;
+        this.numRows = numRows;
+    }
+
+    /**
+     * Loads records [from, to) of the given list
+     */
+    public static ColumnarBatch fromRows(@NonNull List<List<Writable>> rows, int from, int to, @NonNull Schema schema) {
+        int n = to - from;
+        Object[] columns = new Object[schema.numColumns()];
+        for (int c = 0; c < columns.length; c++) {
+            Class<? extends Writable> primitive = primitiveWritableType(schema.getType(c));
+            boolean allPrimitive = primitive != null;
+            for (int i = from; i < to && allPrimitive; i++)
+                allPrimitive = rows.get(i).get(c).getClass() == primitive;
+
+            if (!allPrimitive) {
+                Writable[] col = new Writable[n];
+                for (int i = 0; i < n; i++)
+                    col[i] = rows.get(from + i).get(c);
+                columns[c] = col;
+            } else if (primitive == DoubleWritable.class) {
+                double[] col = new double[n];
+                for (int i = 0; i < n; i++)
+                    col[i] = ((DoubleWritable) rows.get(from + i).get(c)).get();
+                columns[c] = col;
+            } else if (primitive == FloatWritable.class) {
+                float[] col = new float[n];
+                for (int i = 0; i < n; i++)
+                    col[i] = ((FloatWritable) rows.get(from + i).get(c)).get();
+                columns[c] = col;
+            } else if (primitive == IntWritable.class) {
+                int[] col = new int[n];
+                for (int i = 0; i < n; i++)
+                    col[i] = ((IntWritable) rows.get(from + i).get(c)).get();
+                columns[c] = col;
+            } else {
+                long[] col = new long[n];
+                for (int i = 0; i < n; i++)
+                    col[i] = ((LongWritable) rows.get(from + i).get(c)).get();
+                columns[c] = col;
+            }
+        }
+        return new ColumnarBatch(columns, n);
+    }
+
+    /**
+     * Loads records [from, to) of the given Arrow batch, reading fixed width vectors directly
+     */
+    public static ColumnarBatch fromArrow(@NonNull ArrowWritableRecordBatch batch, int from, int to) {
+        Schema schema = batch.getSchema();
+        int offset = batch.getOffset() + from;
+        int n = to - from;
+        Object[] columns = new Object[schema.numColumns()];
+        for (int c = 0; c < columns.length; c++) {
+            FieldVector v = batch.getList().get(c);
+            ColumnType type = schema.getType(c);
+            boolean noNulls = v.getNullCount() == 0;
+            if (noNulls && type == ColumnType.Double && v instanceof Float8Vector) {
+                double[] col = new double[n];
+                for (int i = 0; i < n; i++)
+                    col[i] = ((Float8Vector) v).get(offset + i);
+                columns[c] = col;
+            } else if (noNulls && type == ColumnType.Float && v instanceof Float4Vector) {
+                float[] col = new float[n];
+                for (int i = 0; i < n; i++)
+                    col[i] = ((Float4Vector) v).get(offset + i);
+                columns[c] = col;
+            } else if (noNulls && type == ColumnType.Integer && v instanceof IntVector) {
+                int[] col = new int[n];
+                for (int i = 0; i < n; i++)
+                    col[i] = ((IntVector) v).get(offset + i);
+                columns[c] = col;
+            } else if (noNulls && type == ColumnType.Long && v instanceof BigIntVector) {
+                long[] col = new long[n];
+                for (int i = 0; i < n; i++)
+                    col[i] = ((BigIntVector) v).get(offset + i);
+                columns[c] = col;
+            } else {
+                Writable[] col = new Writable[n];
+                for (int i = 0; i < n; i++)
+                    col[i] = v.isNull(offset + i) ? NullWritable.INSTANCE : ArrowConverter.fromEntry(offset + i, v, type);
+                columns[c] = col;
+            }
+        }
+        return new ColumnarBatch(columns, n);
+    }
+
+    public int numColumns() {
+        return columns.length;
+    }
+
+    public Object getColumn(int column) {
+        return columns[column];
+    }
+
+    public void setColumn(int column, @NonNull Object values) {
+        columns[column] = values;
+    }
+
+    /**
+     * Keeps only given columns, in the given order
+     */
+    public void project(int[] columnIdxs) {
+        Object[] projected = new Object[columnIdxs.length];
+        for (int i = 0; i < columnIdxs.length; i++)
+            projected[i] = columns[columnIdxs[i]];
+        columns = projected;
+    }
+
+    /**
+     * Keeps only rows where {@code keep[row]} is true
+     */
+    public void filter(boolean[] keep) {
+        int kept = 0;
+        for (int i = 0; i < numRows; i++) {
+            if (keep[i])
+                kept++;
+        }
+        if (kept == numRows)
+            return;
+
+        for (int c = 0; c < columns.length; c++) {
+            Object col = columns[c];
+            Object out;
+            if (col instanceof double[]) {
+                double[] in = (double[]) col, o = new double[kept];
+                for (int i = 0, j = 0; i < numRows; i++) if (keep[i]) o[j++] = in[i];
+                out = o;
+            } else if (col instanceof float[]) {
+                float[] in = (float[]) col, o = new float[kept];
+                for (int i = 0, j = 0; i < numRows; i++) if (keep[i]) o[j++] = in[i];
+                out = o;
+            } else if (col instanceof int[]) {
+                int[] in = (int[]) col, o = new int[kept];
+                for (int i = 0, j = 0; i < numRows; i++) if (keep[i]) o[j++] = in[i];
+                out = o;
+            } else if (col instanceof long[]) {
+                long[] in = (long[]) col, o = new long[kept];
+                for (int i = 0, j = 0; i < numRows; i++) if (keep[i]) o[j++] = in[i];
+                out = o;
+            } else {
+                Writable[] in = (Writable[]) col, o = new Writable[kept];
+                for (int i = 0, j = 0; i < numRows; i++) if (keep[i]) o[j++] = in[i];
+                out = o;
+            }
+            columns[c] = out;
+        }
+        numRows = kept;
+    }
+
+    /**
+     * Returns the value at the given position as writable
+     */
+    public Writable get(int row, int column) {
+        Object col = columns[column];
+        if (col instanceof double[])
+            return new DoubleWritable(((double[]) col)[row]);
+        if (col instanceof float[])
+            return new FloatWritable(((float[]) col)[row]);
+        if (col instanceof int[])
+            return new IntWritable(((int[]) col)[row]);
+        if (col instanceof long[])
+            return new LongWritable(((long[]) col)[row]);
+        return ((Writable[]) col)[row];
+    }
+
+    /**
+     * Converts this batch back to records
+     */
+    public List<List<Writable>> toRows() {
+        List<List<Writable>> ret = new ArrayList<>(numRows);
+        for (int i = 0; i < numRows; i++) {
+            List<Writable> record = new ArrayList<>(columns.length);
+            for (int c = 0; c < columns.length; c++)
+                record.add(get(i, c));
+            ret.add(record);
+        }
+        return ret;
+    }
+
+    /**
+     * Converts this batch to Arrow vectors. Primitive columns are copied directly
+     */
+    public List<FieldVector> toArrow(@NonNull BufferAllocator allocator, @NonNull Schema schema) {
+        List<FieldVector> ret = new ArrayList<>(columns.length);
+        for (int c = 0; c < columns.length; c++) {
+            String name = schema.getName(c);
+            Object col = columns[c];
+            if (col instanceof double[]) {
+                ret.add(ArrowConverter.vectorFor(allocator, name, (double[]) col));
+            } else if (col instanceof float[]) {
+                ret.add(ArrowConverter.vectorFor(allocator, name, (float[]) col));
+            } else if (col instanceof int[]) {
+                ret.add(ArrowConverter.vectorFor(allocator, name, (int[]) col));
+            } else if (col instanceof long[]) {
+                ret.add(ArrowConverter.vectorFor(allocator, name, (long[]) col));
+            } else {
+                Writable[] values = (Writable[]) col;
+                List<List<Writable>> single = new ArrayList<>(numRows);
+                for (int i = 0; i < numRows; i++)
+                    single.add(Collections.singletonList(values[i]));
+                Schema columnSchema = schema.newSchema(Collections.singletonList(schema.getMetaData(c)));
+                ret.addAll(ArrowConverter.toArrowColumns(allocator, columnSchema, single));
+            }
+        }
+        return ret;
+    }
+
+    private static Class<? extends Writable> primitiveWritableType(ColumnType type) {
+        switch (type) {
+            case Double:
+                return DoubleWritable.class;
+            case Float:
+                return FloatWritable.class;
+            case Integer:
+                return IntWritable.class;
+            case Long:
+                return LongWritable.class;
+            default:
+                return null;
+        }
+    }
+}
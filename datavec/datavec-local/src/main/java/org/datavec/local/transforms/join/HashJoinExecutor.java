@@ -0,0 +1,411 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.datavec.local.transforms.join;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.datavec.api.transform.join.Join;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.WritableFactory;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Parallel hash join, as an alternative to the cogroup based {@link org.datavec.local.transforms.LocalTransformExecutor#executeJoin(Join, List, List)}.<br>
+ * <br>
+ * The hash table is built on the smaller side; the larger side is probed in chunks of {@link Builder#chunkSize(int)}
+ * records, on {@link Builder#numThreads(int)} threads. Output is the same (as a multiset: order of records differs)
+ * for all {@link Join.JoinType}s.<br>
+ * <br>
+ * If the estimated size of the hash table exceeds {@link Builder#memoryBudgetBytes(long)}, both sides are
+ * partitioned by key hash into files in {@link Builder#spillDirectory(File)}, and joined one partition at a time
+ * (grace hash join). Only one partition of the build side is held in memory at once; files are deleted afterwards.
+ */
+@Slf4j
+public class HashJoinExecutor {
+
+    /**
+     * Rough ratio of in-memory (object) size to serialized size of a record, used for hash table size estimation
+     */
+    private static final int OBJECT_OVERHEAD_FACTOR = 4;
+    private static final int SIZE_ESTIMATION_SAMPLES = 100;
+
+    private final int numThreads;
+    private final int chunkSize;
+    private final long memoryBudgetBytes;
+    private final int numPartitions;
+    private final File spillDirectory;
+
+    protected HashJoinExecutor(Builder builder) {
+        this.numThreads = builder.numThreads;
+        this.chunkSize = builder.chunkSize;
+        this.memoryBudgetBytes = builder.memoryBudgetBytes;
+        this.numPartitions = builder.numPartitions;
+        this.spillDirectory = builder.spillDirectory;
+    }
+
+    /**
+     * Execute the join on the given data
+     *
+     * @param join  Join to execute
+     * @param left  Left data for join
+     * @param right Right data for join
+     * @return Joined data
+     */
+    public List<List<Writable>> execute(Join join, List<List<Writable>> left, List<List<Writable>> right) {
+        int[] leftKeys = keyIndexes(join.getLeftSchema(), join.getJoinColumnsLeft());
+        int[] rightKeys = keyIndexes(join.getRightSchema(), join.getJoinColumnsRight());
+
+        //Same as LocalTransformExecutor.executeJoin: records consisting only of key columns are skipped
+        List<List<Writable>> leftRecords = filter(left, leftKeys.length);
+        List<List<Writable>> rightRecords = filter(right, rightKeys.length);
+
+        boolean buildIsLeft = leftRecords.size() <= rightRecords.size();
+        Side build = buildIsLeft ? new Side(leftRecords, leftKeys) : new Side(rightRecords, rightKeys);
+        Side probe = buildIsLeft ? new Side(rightRecords, rightKeys) : new Side(leftRecords, leftKeys);
+        JoinContext ctx = new JoinContext(join, buildIsLeft);
+
+        ExecutorService executor = numThreads > 1 ? Executors.newFixedThreadPool(numThreads, r -> {
+            Thread t = new Thread(r, "HashJoinExecutor");
+            t.setDaemon(true);
+            return t;
+        }) : null;
+        try {
+            long estimatedBytes = estimateSizeBytes(build.records);
+            int partitions = numPartitions > 0 ? numPartitions : (int) Math.min(4096, 2 * estimatedBytes / memoryBudgetBytes + 1);
+            if (estimatedBytes <= memoryBudgetBytes && numPartitions <= 0) {
+                List<List<Writable>> out = new ArrayList<>();
+                joinPartition(ctx, build.records, build.keys, probe.records.iterator(), probe.keys, executor, out);
+                return out;
+            }
+
+            log.info("Hash join: spilling to {} partitions (estimated build side size: {} bytes, memory budget: {} bytes)",
+                            partitions, estimatedBytes, memoryBudgetBytes);
+            return spillAndJoin(ctx, build, probe, partitions, executor);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error spilling join partitions to disk", e);
+        } finally {
+            if (executor != null)
+                executor.shutdownNow();
+        }
+    }
+
+    private List<List<Writable>> spillAndJoin(JoinContext ctx, Side build, Side probe, int partitions,
+                    ExecutorService executor) throws IOException {
+        File dir = Files.createTempDirectory(spillDirectory.toPath(), "datavec-hashjoin").toFile();
+        try {
+            int[] buildCounts = writePartitions(build, partitions, new File(dir, "build"));
+            int[] probeCounts = writePartitions(probe, partitions, new File(dir, "probe"));
+
+            List<List<Writable>> out = new ArrayList<>();
+            for (int p = 0; p < partitions; p++) {
+                List<List<Writable>> buildPartition = new ArrayList<>(buildCounts[p]);
+                try (DataInputStream in = openPartition(new File(dir, "build"), p)) {
+                    for (int i = 0; i < buildCounts[p]; i++)
+                        buildPartition.add(readRecord(in));
+                }
+                try (DataInputStream in = openPartition(new File(dir, "probe"), p)) {
+                    joinPartition(ctx, buildPartition, build.keys, new PartitionIterator(in, probeCounts[p]),
+                                    probe.keys, executor, out);
+                }
+            }
+            return out;
+        } finally {
+            FileUtils.deleteQuietly(dir);
+        }
+    }
+
+    /**
+     * Builds the hash table for one partition, then probes it with chunks of probe records in parallel
+     */
+    private void joinPartition(JoinContext ctx, List<List<Writable>> buildRecords, int[] buildKeys,
+                    Iterator<List<Writable>> probeRecords, int[] probeKeys, ExecutorService executor,
+                    List<List<Writable>> out) {
+        Map<List<Writable>, List<List<Writable>>> table = new HashMap<>();
+        for (List<Writable> r : buildRecords)
+            table.computeIfAbsent(extractKey(r, buildKeys), k -> new ArrayList<>(1)).add(r);
+
+        Set<List<Writable>> matchedKeys = ctx.preserveBuild ? ConcurrentHashMap.newKeySet() : null;
+
+        //Bounded number of chunks in flight, so the probe side is streamed rather than materialized
+        Deque<Future<List<List<Writable>>>> inFlight = new ArrayDeque<>();
+        while (probeRecords.hasNext()) {
+            List<List<Writable>> chunk = new ArrayList<>(chunkSize);
+            while (chunk.size() < chunkSize && probeRecords.hasNext())
+                chunk.add(probeRecords.next());
+
+            if (executor == null) {
+                out.addAll(probeChunk(ctx, table, chunk, probeKeys, matchedKeys));
+            } else {
+                inFlight.add(executor.submit(() -> probeChunk(ctx, table, chunk, probeKeys, matchedKeys)));
+                if (inFlight.size() >= 2 * numThreads)
+                    out.addAll(get(inFlight.poll()));
+            }
+        }
+        while (!inFlight.isEmpty())
+            out.addAll(get(inFlight.poll()));
+
+        if (ctx.preserveBuild) {
+            for (Map.Entry<List<Writable>, List<List<Writable>>> e : table.entrySet()) {
+                if (matchedKeys.contains(e.getKey()))
+                    continue;
+                for (List<Writable> r : e.getValue())
+                    out.add(ctx.joinExamples(r, null));
+            }
+        }
+    }
+
+    private static List<List<Writable>> probeChunk(JoinContext ctx, Map<List<Writable>, List<List<Writable>>> table,
+                    List<List<Writable>> chunk, int[] probeKeys, Set<List<Writable>> matchedKeys) {
+        List<List<Writable>> out = new ArrayList<>(chunk.size());
+        for (List<Writable> r : chunk) {
+            List<Writable> key = extractKey(r, probeKeys);
+            List<List<Writable>> matches = table.get(key);
+            if (matches == null) {
+                if (ctx.preserveProbe)
+                    out.add(ctx.joinExamples(null, r));
+                continue;
+            }
+            if (matchedKeys != null)
+                matchedKeys.add(key);
+            for (List<Writable> m : matches)
+                out.add(ctx.joinExamples(m, r));
+        }
+        return out;
+    }
+
+    private static List<List<Writable>> get(Future<List<List<Writable>>> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while executing join", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error executing join", e.getCause());
+        }
+    }
+
+    private int[] writePartitions(Side side, int partitions, File prefix) throws IOException {
+        DataOutputStream[] streams = new DataOutputStream[partitions];
+        int[] counts = new int[partitions];
+        try {
+            for (int p = 0; p < partitions; p++)
+                streams[p] = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(partitionFile(prefix, p))));
+            for (List<Writable> r : side.records) {
+                int p = Math.floorMod(extractKey(r, side.keys).hashCode(), partitions);
+                writeRecord(r, streams[p]);
+                counts[p]++;
+            }
+        } finally {
+            for (DataOutputStream s : streams) {
+                if (s != null)
+                    s.close();
+            }
+        }
+        return counts;
+    }
+
+    private static DataInputStream openPartition(File prefix, int partition) throws IOException {
+        return new DataInputStream(new BufferedInputStream(new FileInputStream(partitionFile(prefix, partition))));
+    }
+
+    private static File partitionFile(File prefix, int partition) {
+        return new File(prefix.getPath() + "_" + partition + ".bin");
+    }
+
+    private static void writeRecord(List<Writable> record, DataOutput out) throws IOException {
+        out.writeInt(record.size());
+        for (Writable w : record)
+            WritableFactory.getInstance().writeWithType(w, out);
+    }
+
+    private static List<Writable> readRecord(DataInput in) throws IOException {
+        int size = in.readInt();
+        List<Writable> record = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            record.add(WritableFactory.getInstance().readWithType(in));
+        return record;
+    }
+
+    private static long estimateSizeBytes(List<List<Writable>> records) throws IOException {
+        if (records.isEmpty())
+            return 0;
+        int n = Math.min(records.size(), SIZE_ESTIMATION_SAMPLES);
+        int step = records.size() / n;
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(baos);
+        for (int i = 0; i < n; i++)
+            writeRecord(records.get(i * step), dos);
+        dos.flush();
+        return (long) ((double) baos.size() / n * OBJECT_OVERHEAD_FACTOR * records.size());
+    }
+
+    private static List<Writable> extractKey(List<Writable> record, int[] keyIndexes) {
+        if (keyIndexes.length == 1)
+            return Collections.singletonList(record.get(keyIndexes[0]));
+        List<Writable> key = new ArrayList<>(keyIndexes.length);
+        for (int i : keyIndexes)
+            key.add(record.get(i));
+        return key;
+    }
+
+    private static int[] keyIndexes(Schema schema, String[] columns) {
+        int[] ret = new int[columns.length];
+        for (int i = 0; i < columns.length; i++)
+            ret[i] = schema.getIndexOfColumn(columns[i]);
+        return ret;
+    }
+
+    private static List<List<Writable>> filter(List<List<Writable>> records, int numKeys) {
+        List<List<Writable>> ret = new ArrayList<>(records.size());
+        for (List<Writable> r : records) {
+            if (r.size() != numKeys)
+                ret.add(r);
+        }
+        return ret;
+    }
+
+    private static class Side {
+        private final List<List<Writable>> records;
+        private final int[] keys;
+
+        private Side(List<List<Writable>> records, int[] keys) {
+            this.records = records;
+            this.keys = keys;
+        }
+    }
+
+    private static class JoinContext {
+        private final Join join;
+        private final boolean buildIsLeft;
+        private final boolean preserveBuild;
+        private final boolean preserveProbe;
+
+        private JoinContext(Join join, boolean buildIsLeft) {
+            this.join = join;
+            this.buildIsLeft = buildIsLeft;
+            Join.JoinType type = join.getJoinType();
+            boolean preserveLeft = type == Join.JoinType.LeftOuter || type == Join.JoinType.FullOuter;
+            boolean preserveRight = type == Join.JoinType.RightOuter || type == Join.JoinType.FullOuter;
+            this.preserveBuild = buildIsLeft ? preserveLeft : preserveRight;
+            this.preserveProbe = buildIsLeft ? preserveRight : preserveLeft;
+        }
+
+        private List<Writable> joinExamples(List<Writable> buildRecord, List<Writable> probeRecord) {
+            return buildIsLeft ? join.joinExamples(buildRecord, probeRecord) : join.joinExamples(probeRecord, buildRecord);
+        }
+    }
+
+    private static class PartitionIterator implements Iterator<List<Writable>> {
+        private final DataInputStream in;
+        private int remaining;
+
+        private PartitionIterator(DataInputStream in, int count) {
+            this.in = in;
+            this.remaining = count;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public List<Writable> next() {
+            if (remaining <= 0)
+                throw new NoSuchElementException();
+            remaining--;
+            try {
+                return readRecord(in);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error reading spilled join partition", e);
+            }
+        }
+    }
+
+    public static class Builder {
+        private int numThreads = Runtime.getRuntime().availableProcessors();
+        private int chunkSize = 10000;
+        private long memoryBudgetBytes = Runtime.getRuntime().maxMemory() / 4;
+        private int numPartitions = 0;
+        private File spillDirectory = new File(System.getProperty("java.io.tmpdir"));
+
+        public Builder() {}
+
+        /**
+         * Number of threads used to probe the hash table. Default: number of available processors
+         */
+        public Builder numThreads(int numThreads) {
+            this.numThreads = numThreads;
+            return this;
+        }
+
+        /**
+         * Number of probe side records per parallel task. Default: 10000
+         */
+        public Builder chunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+            return this;
+        }
+
+        /**
+         * Maximum estimated size of the in-memory hash table. If the build (smaller) side is larger, both sides are
+         * partitioned and spilled to disk. Default: 1/4 of max heap
+         */
+        public Builder memoryBudgetBytes(long memoryBudgetBytes) {
+            this.memoryBudgetBytes = memoryBudgetBytes;
+            return this;
+        }
+
+        /**
+         * Number of partitions to spill to. If set (> 0), partitioning is always used. Default: 0, partition only
+         * when the memory budget is exceeded, with the number of partitions derived from the estimated size
+         */
+        public Builder numPartitions(int numPartitions) {
+            this.numPartitions = numPartitions;
+            return this;
+        }
+
+        /**
+         * Directory for spilled partitions. Default: java.io.tmpdir
+         */
+        public Builder spillDirectory(File spillDirectory) {
+            this.spillDirectory = spillDirectory;
+            return this;
+        }
+
+        public HashJoinExecutor build() {
+            if (numThreads < 1)
+                throw new IllegalStateException("Number of threads must be >= 1, got " + numThreads);
+            if (chunkSize < 1)
+                throw new IllegalStateException("Chunk size must be >= 1, got " + chunkSize);
+            if (memoryBudgetBytes < 1)
+                throw new IllegalStateException("Memory budget must be > 0, got " + memoryBudgetBytes);
+            if (spillDirectory == null)
+                throw new IllegalStateException("Spill directory must be set");
+            return new HashJoinExecutor(this);
+        }
+    }
+}
@@ -21,6 +21,7 @@
 package org.deeplearning4j.core.storage;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 
 public interface StatsStorage extends StatsStorageRouter {
@@ -180,6 +181,49 @@ public interface StatsStorage extends StatsStorageRouter {
      */
     List<Persistable> getUpdates(String sessionID, String typeID, String workerID, long[] timestamps);
 
+    /**
+     * Get a subsample of the updates for the given session, type and worker IDs that occur after (not including) the
+     * given timestamp: roughly evenly spaced over time, and always including the most recent update. Intended for
+     * charting, where only a limited number of points can be shown.<br>
+     * Implementations should return approximately maxPoints updates (at most 2*maxPoints), sorted by time.
+     * Default implementation subsamples {@link #getAllUpdateTimes(String, String, String)}; implementations with
+     * a time index may override it, to avoid cost proportional to the total number of updates.
+     *
+     * @param sessionID Session ID to get updates for
+     * @param typeID    Type ID to get updates for
+     * @param workerID  Worker ID to get updates for
+     * @param timestamp Only updates after this timestamp are returned
+     * @param maxPoints Approximate maximum number of updates to return
+     * @return          Subsample of updates
+     */
+    default List<Persistable> getUpdatesDownsampled(String sessionID, String typeID, String workerID, long timestamp,
+                    int maxPoints) {
+        if (maxPoints <= 0)
+            throw new IllegalArgumentException("Max points must be > 0, got " + maxPoints);
+
+        long[] allTimes = getAllUpdateTimes(sessionID, typeID, workerID);
+        int start = 0;
+        while (start < allTimes.length && allTimes[start] <= timestamp)
+            start++;
+
+        int n = allTimes.length - start;
+        if (n <= maxPoints)
+            return getAllUpdatesAfter(sessionID, typeID, workerID, timestamp);
+
+        int subsamplingFrequency = n / maxPoints;
+        long[] timesToQuery = new long[n / subsamplingFrequency + 2];
+        int count = 0;
+        int i = start;
+        for (; i < allTimes.length; i += subsamplingFrequency) {
+            timesToQuery[count++] = allTimes[i];
+        }
+        if ((i - subsamplingFrequency) != allTimes.length - 1) {
+            //Also add final point
+            timesToQuery[count++] = allTimes[allTimes.length - 1];
+        }
+        return getUpdates(sessionID, typeID, workerID, Arrays.copyOf(timesToQuery, count));
+    }
+
     /**
      * Get the session metadata, if any has been registered via {@link #putStorageMetaData(StorageMetaData)}
      *
@@ -46,6 +46,12 @@ public abstract class BaseFileIterator<T, P> implements Iterator<T> {
     @Setter
     protected P preProcessor;
 
+    @Getter
+    protected ShuffleBufferConfig shuffleBufferConfig;
+    private FileShuffleBuffer<T> shuffleBuffer;
+    private int epoch;
+    private int[] sortedFiles;
+
 
     protected BaseFileIterator(@NonNull File rootDir, int batchSize, String... validExtensions) {
         this(new File[]{rootDir}, true, new Random(), batchSize, validExtensions);
@@ -75,8 +81,94 @@ public abstract class BaseFileIterator<T, P> implements Iterator<T> {
         }
     }
 
+    /**
+     * Enables shuffle buffer mode. By default, only order of files is randomized, and examples of each file are
+     * returned together. In shuffle buffer mode examples of several files are interleaved through a bounded buffer
+     * of examples, giving per-example randomization without loading the whole dataset:<br>
+     * - Each epoch, files are ordered by a permutation derived from the configured seed and the epoch number, and
+     *   (optionally) only the configured shard of that permutation is used<br>
+     * - Up to {@link ShuffleBufferConfig#getOpenFiles()} files are open at the same time, loaded in background<br>
+     * - Minibatches of exactly batchSize examples (except for the last one) are drawn from random buffer positions<br>
+     * Output is deterministic for given configuration, epoch and set of file paths, whatever order the file system
+     * lists them in.
+     *
+     * @param config shuffle buffer configuration. Null disables shuffle buffer mode
+     */
+    public void setShuffleBuffer(ShuffleBufferConfig config) {
+        if (config != null) {
+            if (batchSize <= 0)
+                throw new IllegalStateException("Shuffle buffer mode requires positive batch size, got " + batchSize);
+            if (config.getBufferSize() < 1 || config.getOpenFiles() < 1 || config.getLoaderThreads() < 1)
+                throw new IllegalArgumentException("Buffer size, number of open files and loader threads must be "
+                                + "positive, got " + config);
+            if (config.getNumShards() < 1 || config.getShardIndex() < 0 || config.getShardIndex() >= config.getNumShards())
+                throw new IllegalArgumentException("Invalid shard " + config.getShardIndex() + " of "
+                                + config.getNumShards() + " shards");
+        }
+
+        closeShuffleBuffer();
+        this.shuffleBufferConfig = config;
+        this.epoch = 0;
+    }
+
+    /**
+     * Files used by the current epoch in shuffle buffer mode: permutation of all files seeded by seed and epoch,
+     * restricted to the configured shard. Files are permuted in path order rather than in the order they were listed,
+     * so that all workers get the same permutation whatever their file system returns
+     */
+    protected List<File> epochFiles(Random rng) {
+        int[] sorted = sortedFiles();
+        int[] perm = new int[list.size()];
+        for (int i = 0; i < perm.length; i++) {
+            perm[i] = i;
+        }
+        MathUtils.shuffleArray(perm, rng);
+
+        int numShards = shuffleBufferConfig.getNumShards();
+        List<File> files = new ArrayList<>(perm.length / numShards + 1);
+        for (int i = shuffleBufferConfig.getShardIndex(); i < perm.length; i += numShards) {
+            files.add(new File(list.get(sorted[perm[i]])));
+        }
+        return files;
+    }
+
+    private int[] sortedFiles() {
+        if (sortedFiles == null) {
+            Integer[] idx = new Integer[list.size()];
+            for (int i = 0; i < idx.length; i++) {
+                idx[i] = i;
+            }
+            Arrays.sort(idx, Comparator.comparing(list::get));
+            sortedFiles = new int[idx.length];
+            for (int i = 0; i < idx.length; i++) {
+                sortedFiles[i] = idx[i];
+            }
+        }
+        return sortedFiles;
+    }
+
+    private FileShuffleBuffer<T> shuffleBuffer() {
+        if (shuffleBuffer == null) {
+            ShuffleBufferConfig c = shuffleBufferConfig;
+            Random epochRng = new Random(c.getSeed() + epoch * 0x9E3779B97F4A7C15L);
+            shuffleBuffer = new FileShuffleBuffer<>(epochFiles(epochRng), this::load, this::split, epochRng,
+                            c.getBufferSize(), c.getOpenFiles(), c.getLoaderThreads());
+        }
+        return shuffleBuffer;
+    }
+
+    private void closeShuffleBuffer() {
+        if (shuffleBuffer != null) {
+            shuffleBuffer.close();
+            shuffleBuffer = null;
+        }
+    }
+
     @Override
     public boolean hasNext() {
+        if (shuffleBufferConfig != null)
+            return shuffleBuffer().hasNext();
+
         return partialStored != null || position < list.size();
     }
 
@@ -86,6 +178,12 @@ public abstract class BaseFileIterator<T, P> implements Iterator<T> {
             throw new NoSuchElementException("No next element");
         }
 
+        if (shuffleBufferConfig != null) {
+            T ret = merge(shuffleBuffer().next(batchSize));
+            applyPreprocessor(ret);
+            return ret;
+        }
+
         T next;
         if (partialStored != null) {
             next = partialStored;
@@ -170,6 +268,11 @@ public abstract class BaseFileIterator<T, P> implements Iterator<T> {
 
 
     public void reset() {
+        if (shuffleBufferConfig != null) {
+            closeShuffleBuffer();
+            epoch++;
+        }
+
         position = 0;
         if (rng != null) {
             MathUtils.shuffleArray(order, rng);
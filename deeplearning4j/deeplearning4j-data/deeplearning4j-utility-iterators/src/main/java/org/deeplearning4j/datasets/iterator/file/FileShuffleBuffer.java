@@ -0,0 +1,162 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.datasets.iterator.file;
+
+import lombok.NonNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Single epoch of the shuffle buffer mode of {@link BaseFileIterator}.<br>
+ * Up to {@code openFiles} files are open at the same time, each one split into single examples. Examples are pulled
+ * from randomly selected open files into a buffer of {@code bufferSize} examples, and output examples are drawn from
+ * random positions of that buffer. Files are loaded in background, in file order, so the output only depends on
+ * the file order and the RNG.<br>
+ * Memory use is bounded by the buffer size plus open and loading files, regardless of the dataset size.
+ */
+class FileShuffleBuffer<T> implements Closeable {
+    private final List<File> files;
+    private final Function<File, T> loader;
+    private final Function<T, List<T>> splitter;
+    private final Random rng;
+    private final int bufferSize;
+    private final int openFiles;
+    private final ExecutorService executor;
+
+    private final Deque<Future<T>> loading = new ArrayDeque<>();
+    private final List<Deque<T>> open = new ArrayList<>();
+    private final List<T> buffer = new ArrayList<>();
+    private int nextFile;
+
+    FileShuffleBuffer(@NonNull List<File> files, @NonNull Function<File, T> loader,
+                    @NonNull Function<T, List<T>> splitter, @NonNull Random rng, int bufferSize, int openFiles,
+                    int loaderThreads) {
+        this.files = files;
+        this.loader = loader;
+        this.splitter = splitter;
+        this.rng = rng;
+        this.bufferSize = bufferSize;
+        this.openFiles = openFiles;
+        this.executor = Executors.newFixedThreadPool(loaderThreads, r -> {
+            Thread t = new Thread(r, "FileShuffleBuffer loader");
+            t.setDaemon(true);
+            return t;
+        });
+
+        scheduleLoads();
+    }
+
+    private void scheduleLoads() {
+        while (loading.size() < openFiles && nextFile < files.size()) {
+            File f = files.get(nextFile++);
+            loading.add(executor.submit(() -> loader.apply(f)));
+        }
+    }
+
+    private void openFiles() {
+        while (open.size() < openFiles && !loading.isEmpty()) {
+            T loaded;
+            try {
+                loaded = loading.poll().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Error loading file", e.getCause());
+            }
+
+            List<T> examples = splitter.apply(loaded);
+            if (!examples.isEmpty())
+                open.add(new ArrayDeque<>(examples));
+            scheduleLoads();
+        }
+    }
+
+    /**
+     * @return next example of a randomly selected open file, or null if all files were consumed
+     */
+    private T pull() {
+        openFiles();
+        if (open.isEmpty())
+            return null;
+
+        int idx = rng.nextInt(open.size());
+        Deque<T> examples = open.get(idx);
+        T ret = examples.poll();
+        if (examples.isEmpty()) {
+            open.set(idx, open.get(open.size() - 1));
+            open.remove(open.size() - 1);
+        }
+        return ret;
+    }
+
+    private void fill() {
+        while (buffer.size() < bufferSize) {
+            T example = pull();
+            if (example == null)
+                break;
+            buffer.add(example);
+        }
+    }
+
+    boolean hasNext() {
+        fill();
+        return !buffer.isEmpty();
+    }
+
+    /**
+     * @return up to num examples, randomly drawn from the buffer
+     */
+    List<T> next(int num) {
+        List<T> ret = new ArrayList<>(num);
+        while (ret.size() < num) {
+            fill();
+            if (buffer.isEmpty())
+                break;
+
+            int idx = rng.nextInt(buffer.size());
+            int last = buffer.size() - 1;
+            ret.add(buffer.get(idx));
+            buffer.set(idx, buffer.get(last));
+            buffer.remove(last);
+        }
+        return ret;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        loading.clear();
+        open.clear();
+        buffer.clear();
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.datasets.iterator.file;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Configuration of the shuffle buffer mode of {@link FileDataSetIterator} / {@link FileMultiDataSetIterator},
+ * see {@link BaseFileIterator#setShuffleBuffer(ShuffleBufferConfig)}
+ */
+@Data
+@Builder
+public class ShuffleBufferConfig {
+    /**
+     * Number of examples held in the shuffle buffer. Larger buffer gives better randomization at the cost of memory
+     */
+    @Builder.Default
+    private int bufferSize = 10000;
+    /**
+     * Number of files examples are interleaved from at the same time
+     */
+    @Builder.Default
+    private int openFiles = 8;
+    /**
+     * Number of threads loading files in background
+     */
+    @Builder.Default
+    private int loaderThreads = 2;
+    /**
+     * Seed for file order and example selection. Order of each epoch depends on this seed and the epoch number only
+     */
+    @Builder.Default
+    private long seed = 12345;
+    /**
+     * Number of shards files are split into each epoch, for example one per worker in distributed training
+     */
+    @Builder.Default
+    private int numShards = 1;
+    /**
+     * Shard returned by this iterator, in range [0, numShards). All shards have to use the same seed
+     */
+    @Builder.Default
+    private int shardIndex = 0;
+}
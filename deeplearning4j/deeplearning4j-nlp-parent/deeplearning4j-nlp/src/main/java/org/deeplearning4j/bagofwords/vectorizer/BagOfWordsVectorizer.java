@@ -100,6 +100,12 @@ public class BagOfWordsVectorizer extends BaseTextVectorizer {
         return input;
     }
 
+    @Override
+    protected double sparseWeight(String word, long wordCount, long documentLength) {
+        // mirrors dense transform() output
+        return vocabCache.wordFrequency(word);
+    }
+
     /**
      * @param input the text to vectorize
      * @param label the label of the text
@@ -34,9 +34,12 @@ import org.deeplearning4j.text.invertedindex.InvertedIndex;
 import org.deeplearning4j.text.tokenization.tokenizerfactory.TokenizerFactory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 
 public abstract class BaseTextVectorizer implements TextVectorizer {
+    @Getter
     @Setter
     protected transient TokenizerFactory tokenizerFactory;
     protected transient LabelAwareIterator iterator;
@@ -77,6 +80,81 @@ public abstract class BaseTextVectorizer implements TextVectorizer {
         buildVocab();
     }
 
+    /**
+     * Transforms the text into a single-row sparse matrix, sparse counterpart of {@link #transform(String)}
+     *
+     * @param text text to transform
+     * @return {@link CsrMatrix} with 1 row and vocabulary-size columns
+     */
+    public CsrMatrix transformSparse(String text) {
+        return transformSparse(tokenizerFactory.create(text).getTokens());
+    }
+
+    /**
+     * Transforms the tokens into a single-row sparse matrix, sparse counterpart of {@link #transform(List)}
+     *
+     * @param tokens document tokens
+     * @return {@link CsrMatrix} with 1 row and vocabulary-size columns
+     */
+    public CsrMatrix transformSparse(List<String> tokens) {
+        CsrMatrix.Builder builder = new CsrMatrix.Builder(vocabCache.numWords());
+        appendSparse(tokens, builder);
+        return builder.build();
+    }
+
+    /**
+     * Transforms each of the documents into a row of a sparse matrix
+     *
+     * @param documents documents text
+     * @return {@link CsrMatrix} with documents.size() rows and vocabulary-size columns
+     */
+    public CsrMatrix transformSparseDocuments(List<String> documents) {
+        CsrMatrix.Builder builder = new CsrMatrix.Builder(vocabCache.numWords());
+        for (String document : documents)
+            appendSparse(tokenizerFactory.create(document).getTokens(), builder);
+        return builder.build();
+    }
+
+    /**
+     * Appends document as a new row to the sparse matrix builder. Tokens missing in the vocabulary are skipped
+     */
+    public void appendSparse(List<String> tokens, CsrMatrix.Builder builder) {
+        int[] indices = new int[tokens.size()];
+        int known = 0;
+        for (String token : tokens) {
+            int idx = vocabCache.indexOf(token);
+            if (idx >= 0)
+                indices[known++] = idx;
+        }
+        Arrays.sort(indices, 0, known);
+
+        // collapse duplicates, keeping number of occurrences for each word
+        int[] columns = new int[known];
+        float[] values = new float[known];
+        int unique = 0;
+        for (int i = 0; i < known; ) {
+            int j = i;
+            while (j < known && indices[j] == indices[i])
+                j++;
+
+            columns[unique] = indices[i];
+            values[unique] = (float) sparseWeight(vocabCache.wordAtIndex(indices[i]), j - i, tokens.size());
+            unique++;
+            i = j;
+        }
+
+        builder.addRow(columns, values, unique);
+    }
+
+    /**
+     * Returns weight of the word in the document, as stored in sparse output
+     *
+     * @param word word
+     * @param wordCount number of word occurrences in the document
+     * @param documentLength number of tokens in the document
+     */
+    protected abstract double sparseWeight(String word, long wordCount, long documentLength);
+
     /**
      * Returns the number of words encountered so far
      *
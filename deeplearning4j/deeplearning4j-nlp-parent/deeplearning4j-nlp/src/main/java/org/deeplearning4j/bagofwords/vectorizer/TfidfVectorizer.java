@@ -147,6 +147,11 @@ public class TfidfVectorizer extends BaseTextVectorizer {
         return MathUtils.tfidf(tfForWord(wordCount, documentLength), idfForWord(word));
     }
 
+    @Override
+    protected double sparseWeight(String word, long wordCount, long documentLength) {
+        return tfidfWord(word, wordCount, documentLength);
+    }
+
     private double tfForWord(long wordCount, long documentLength) {
         return (double) wordCount / (double) documentLength;
     }
@@ -0,0 +1,283 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.iterator;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import org.deeplearning4j.bagofwords.vectorizer.BaseTextVectorizer;
+import org.deeplearning4j.bagofwords.vectorizer.CsrMatrix;
+import org.deeplearning4j.iterator.provider.LabelAwareConverter;
+import org.deeplearning4j.text.documentiterator.LabelAwareIterator;
+import org.nd4j.common.primitives.Pair;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.*;
+
+/**
+ * DataSetIterator over labelled documents, vectorized by {@link BaseTextVectorizer} (TF-IDF or bag-of-words)
+ * into sparse CSR rows.<br>
+ * <br>
+ * Two ways of consuming it:<br>
+ * - {@link #nextSparse(int)}: batched CSR features and one-hot labels, for consumers able to work with sparse input<br>
+ * - {@link #next(int)}: regular DataSet. If embedding weights were provided, features are computed as embedding-bag
+ *   style {@code csr x weights (+ bias)} product with shape [minibatch, weights.columns()], and the dense
+ *   [minibatch, vocabSize] matrix is never built. Otherwise features are densified.<br>
+ * <br>
+ * The embedding product happens outside of the network, so no gradient ever reaches these weights: use it only with
+ * frozen embeddings (pretrained, or taken from an already trained network), never with parameters of the network
+ * being fitted on this iterator. To train the first layer, use densified features instead.
+ */
+public class SparseTextDataSetIterator implements DataSetIterator {
+
+    /**
+     * Batch of CSR features with one-hot labels
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class CsrBatch {
+        private final CsrMatrix features;
+        private final INDArray labels;
+    }
+
+    private final BaseTextVectorizer vectorizer;
+    private final LabeledSentenceProvider sentenceProvider;
+    private final int minibatchSize;
+    private final INDArray embeddingWeights;
+    private final INDArray embeddingBias;
+    private final Map<String, Integer> labelClassMap = new HashMap<>();
+    private final List<String> labels;
+    private DataSetPreProcessor dataSetPreProcessor;
+
+    protected SparseTextDataSetIterator(Builder builder) {
+        this.vectorizer = builder.vectorizer;
+        this.sentenceProvider = builder.sentenceProvider;
+        this.minibatchSize = builder.minibatchSize;
+        this.embeddingWeights = builder.embeddingWeights;
+        this.embeddingBias = builder.embeddingBias;
+        this.dataSetPreProcessor = builder.dataSetPreProcessor;
+
+        //Sort the labels to ensure the same label assignment order (say train vs. test)
+        List<String> sortedLabels = new ArrayList<>(sentenceProvider.allLabels());
+        Collections.sort(sortedLabels);
+        for (int i = 0; i < sortedLabels.size(); i++)
+            labelClassMap.put(sortedLabels.get(i), i);
+        this.labels = Collections.unmodifiableList(sortedLabels);
+    }
+
+    /**
+     * Returns next batch with CSR features
+     */
+    public CsrBatch nextSparse() {
+        return nextSparse(minibatchSize);
+    }
+
+    /**
+     * Returns next batch of up to num documents with CSR features
+     */
+    public CsrBatch nextSparse(int num) {
+        if (!hasNext())
+            throw new NoSuchElementException("No next element");
+
+        CsrMatrix.Builder builder = new CsrMatrix.Builder(vectorizer.getVocabCache().numWords());
+        List<Integer> classes = new ArrayList<>(num);
+        while (builder.numRows() < num && sentenceProvider.hasNext()) {
+            Pair<String, String> p = sentenceProvider.nextSentence();
+            Integer labelIdx = labelClassMap.get(p.getSecond());
+            if (labelIdx == null) {
+                throw new IllegalStateException("Got label \"" + p.getSecond()
+                                + "\" that is not present in list of LabeledSentenceProvider labels");
+            }
+
+            vectorizer.appendSparse(vectorizer.getTokenizerFactory().create(p.getFirst()).getTokens(), builder);
+            classes.add(labelIdx);
+        }
+
+        INDArray labelsArray = Nd4j.create(classes.size(), labels.size());
+        for (int i = 0; i < classes.size(); i++)
+            labelsArray.putScalar(i, classes.get(i), 1.0);
+
+        return new CsrBatch(builder.build(), labelsArray);
+    }
+
+    @Override
+    public DataSet next(int num) {
+        CsrBatch batch = nextSparse(num);
+
+        INDArray features;
+        //Embedding weights are constants here: the network only sees the product, not the weights
+        if (embeddingWeights == null)
+            features = batch.getFeatures().toDense();
+        else if (embeddingBias == null)
+            features = batch.getFeatures().mmul(embeddingWeights);
+        else
+            features = batch.getFeatures().mmul(embeddingWeights, embeddingBias);
+
+        DataSet ds = new DataSet(features, batch.getLabels());
+        if (dataSetPreProcessor != null)
+            dataSetPreProcessor.preProcess(ds);
+        return ds;
+    }
+
+    @Override
+    public DataSet next() {
+        return next(minibatchSize);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return sentenceProvider.hasNext();
+    }
+
+    @Override
+    public int inputColumns() {
+        return embeddingWeights == null ? vectorizer.getVocabCache().numWords() : (int) embeddingWeights.columns();
+    }
+
+    @Override
+    public int totalOutcomes() {
+        return labels.size();
+    }
+
+    @Override
+    public boolean resetSupported() {
+        return true;
+    }
+
+    @Override
+    public boolean asyncSupported() {
+        return true;
+    }
+
+    @Override
+    public void reset() {
+        sentenceProvider.reset();
+    }
+
+    @Override
+    public int batch() {
+        return minibatchSize;
+    }
+
+    @Override
+    public void setPreProcessor(DataSetPreProcessor preProcessor) {
+        this.dataSetPreProcessor = preProcessor;
+    }
+
+    @Override
+    public DataSetPreProcessor getPreProcessor() {
+        return dataSetPreProcessor;
+    }
+
+    @Override
+    public List<String> getLabels() {
+        return labels;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Not supported");
+    }
+
+    public static class Builder {
+        private BaseTextVectorizer vectorizer;
+        private LabeledSentenceProvider sentenceProvider;
+        private int minibatchSize = 32;
+        private INDArray embeddingWeights;
+        private INDArray embeddingBias;
+        private DataSetPreProcessor dataSetPreProcessor;
+
+        public Builder() {}
+
+        /**
+         * Fitted TfidfVectorizer or BagOfWordsVectorizer
+         */
+        public Builder vectorizer(@NonNull BaseTextVectorizer vectorizer) {
+            this.vectorizer = vectorizer;
+            return this;
+        }
+
+        /**
+         * Specify how the (labelled) sentences / documents should be provided
+         */
+        public Builder sentenceProvider(@NonNull LabeledSentenceProvider sentenceProvider) {
+            this.sentenceProvider = sentenceProvider;
+            return this;
+        }
+
+        /**
+         * Specify how the (labelled) sentences / documents should be provided
+         */
+        public Builder sentenceProvider(@NonNull LabelAwareIterator iterator, @NonNull List<String> labels) {
+            return sentenceProvider(new LabelAwareConverter(iterator, labels));
+        }
+
+        /**
+         * Minibatch size to use for the DataSetIterator
+         */
+        public Builder minibatchSize(int minibatchSize) {
+            this.minibatchSize = minibatchSize;
+            return this;
+        }
+
+        /**
+         * Optional: frozen weights of shape [vocabSize, N] used for the dense-gather path. If set, {@link #next(int)}
+         * returns features of shape [minibatch, N] computed without building dense [minibatch, vocabSize] input.
+         * These weights are not trained, see class javadoc
+         */
+        public Builder embeddingWeights(INDArray weights) {
+            this.embeddingWeights = weights;
+            return this;
+        }
+
+        /**
+         * Optional: bias row vector of length N, added to the dense-gather output
+         */
+        public Builder embeddingBias(INDArray bias) {
+            this.embeddingBias = bias;
+            return this;
+        }
+
+        /**
+         * Optional DataSetPreProcessor
+         */
+        public Builder dataSetPreProcessor(DataSetPreProcessor dataSetPreProcessor) {
+            this.dataSetPreProcessor = dataSetPreProcessor;
+            return this;
+        }
+
+        public SparseTextDataSetIterator build() {
+            if (vectorizer == null)
+                throw new IllegalStateException("Cannot build SparseTextDataSetIterator without a vectorizer");
+            if (sentenceProvider == null)
+                throw new IllegalStateException("Cannot build SparseTextDataSetIterator without a sentence provider");
+            if (embeddingWeights != null && embeddingWeights.rows() != vectorizer.getVocabCache().numWords())
+                throw new IllegalStateException("Embedding weights must have " + vectorizer.getVocabCache().numWords()
+                                + " rows, got " + embeddingWeights.rows());
+
+            return new SparseTextDataSetIterator(this);
+        }
+    }
+}
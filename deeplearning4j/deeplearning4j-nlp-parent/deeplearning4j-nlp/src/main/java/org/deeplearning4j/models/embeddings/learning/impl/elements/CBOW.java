@@ -21,7 +21,6 @@
 package org.deeplearning4j.models.embeddings.learning.impl.elements;
 
 import lombok.*;
-import org.apache.commons.lang3.RandomUtils;
 import org.deeplearning4j.config.DL4JSystemProperties;
 import org.deeplearning4j.models.embeddings.WeightLookupTable;
 import org.deeplearning4j.models.embeddings.inmemory.InMemoryLookupTable;
@@ -48,6 +47,7 @@ import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicLong;
 
 public class CBOW<T extends SequenceElement> implements ElementsLearningAlgorithm<T> {
@@ -68,6 +68,8 @@ public class CBOW<T extends SequenceElement> implements ElementsLearningAlgorith
             .maximumSize(Integer.parseInt(System.getProperty(DL4JSystemProperties.NLP_CACHE_SIZE,"10000")))
             .build();
 
+    protected static final int HOGWILD_BATCH_FACTOR = 4;
+
     protected int maxQueueSize = Integer.parseInt(System.getProperty(DL4JSystemProperties.NLP_QUEUE_SIZE,"1000"));
 
 
@@ -76,6 +78,14 @@ public class CBOW<T extends SequenceElement> implements ElementsLearningAlgorith
         return workers;
     }
 
+    /**
+     * Number of accumulated items that triggers a native round. In hogwild mode rounds are
+     * single-threaded, so larger batches are fused to amortize the call overhead.
+     */
+    protected int batchLimit() {
+        return configuration.isHogwild() ? configuration.getBatchSize() * HOGWILD_BATCH_FACTOR : configuration.getBatchSize();
+    }
+
     public void setWorkers(int workers) {
         this.workers = workers;
     }
@@ -118,7 +128,8 @@ public class CBOW<T extends SequenceElement> implements ElementsLearningAlgorith
         this.useAdaGrad = configuration.isUseAdaGrad();
         this.negative = configuration.getNegative();
         this.sampling = configuration.getSampling();
-        this.workers = configuration.getWorkers();
+        // in hogwild mode parallelism comes from calculation threads, so each native round runs single-threaded
+        this.workers = configuration.isHogwild() ? 1 : configuration.getWorkers();
         if (configuration.getNegative() > 0) {
             if (((InMemoryLookupTable<T>) lookupTable).getSyn1Neg() == null) {
                 logger.info("Initializing syn1Neg...");
@@ -174,7 +185,7 @@ public class CBOW<T extends SequenceElement> implements ElementsLearningAlgorith
         int currentWindow = window;
 
         if (variableWindows != null && variableWindows.length != 0) {
-            currentWindow = variableWindows[RandomUtils.nextInt(0, variableWindows.length)];
+            currentWindow = variableWindows[ThreadLocalRandom.current().nextInt(variableWindows.length)];
         }
 
         for (int i = 0; i < tempSequence.getElements().size(); i++) {
@@ -183,7 +194,7 @@ public class CBOW<T extends SequenceElement> implements ElementsLearningAlgorith
                     currentWindow, null);
         }
 
-        if (getBatch() != null && getBatch().size() >= configuration.getBatchSize()) {
+        if (getBatch() != null && getBatch().size() >= batchLimit()) {
             doExec(getBatch(),null);
             getBatch().clear();
         }
@@ -478,7 +489,7 @@ public class CBOW<T extends SequenceElement> implements ElementsLearningAlgorith
         else
             batches.get().addAll(batch);
 
-        if(batches.get().size() >= configuration.getBatchSize()) {
+        if(batches.get().size() >= batchLimit()) {
             score = doExec(batches.get(),null);
             batches.get().clear();
 
@@ -22,7 +22,6 @@ package org.deeplearning4j.models.embeddings.learning.impl.elements;
 
 import lombok.*;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.RandomUtils;
 import org.deeplearning4j.config.DL4JSystemProperties;
 import org.deeplearning4j.models.embeddings.WeightLookupTable;
 import org.deeplearning4j.models.embeddings.inmemory.InMemoryLookupTable;
@@ -50,6 +49,7 @@ import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicLong;
 
 @Slf4j
@@ -63,6 +63,8 @@ public class SkipGram<T extends SequenceElement> implements ElementsLearningAlgo
     protected double sampling;
     protected int[] variableWindows;
     protected int vectorLength;
+    protected static final int HOGWILD_BATCH_FACTOR = 4;
+
     protected int maxQueueSize = Integer.parseInt(System.getProperty(DL4JSystemProperties.NLP_QUEUE_SIZE,"1000"));
 
     private Cache<IterationArraysKey, Queue<IterationArrays>> iterationArrays = CacheBuilder.newBuilder()
@@ -79,6 +81,14 @@ public class SkipGram<T extends SequenceElement> implements ElementsLearningAlgo
         return workers;
     }
 
+    /**
+     * Number of accumulated items that triggers a native round. In hogwild mode rounds are
+     * single-threaded, so larger batches are fused to amortize the call overhead.
+     */
+    protected int batchLimit() {
+        return configuration.isHogwild() ? configuration.getBatchSize() * HOGWILD_BATCH_FACTOR : configuration.getBatchSize();
+    }
+
     public void setWorkers(int workers) {
         this.workers = workers;
     }
@@ -150,7 +160,8 @@ public class SkipGram<T extends SequenceElement> implements ElementsLearningAlgo
         this.negative = configuration.getNegative();
         this.sampling = configuration.getSampling();
         this.variableWindows = configuration.getVariableWindows();
-        this.workers = configuration.getWorkers();
+        // in hogwild mode parallelism comes from calculation threads, so each native round runs single-threaded
+        this.workers = configuration.isHogwild() ? 1 : configuration.getWorkers();
         this.vectorLength = configuration.getLayersSize();
     }
 
@@ -211,7 +222,7 @@ public class SkipGram<T extends SequenceElement> implements ElementsLearningAlgo
         int currentWindow = window;
 
         if (variableWindows != null && variableWindows.length != 0) {
-            currentWindow = variableWindows[RandomUtils.nextInt(0, variableWindows.length)];
+            currentWindow = variableWindows[ThreadLocalRandom.current().nextInt(variableWindows.length)];
         }
         for (int i = 0; i < tempSequence.getElements().size(); i++) {
             nextRandom.set(Math.abs(nextRandom.get() * 25214903917L + 11));
@@ -219,7 +230,7 @@ public class SkipGram<T extends SequenceElement> implements ElementsLearningAlgo
                     learningRate, currentWindow);
         }
 
-        if (getBatch() != null && getBatch().size() >= configuration.getBatchSize()) {
+        if (getBatch() != null && getBatch().size() >= batchLimit()) {
             doExec(getBatch(),null);
             getBatch().clear();
         }
@@ -292,11 +303,11 @@ public class SkipGram<T extends SequenceElement> implements ElementsLearningAlgo
         List<BatchItem<T>> items = getBatch();
         if(item != null) {
             items.add(item);
-            if(items.size() >= configuration.getBatchSize()) {
+            if(items.size() >= batchLimit()) {
                 score = doExec(items, null);
             }
         } else if(item == null && !items.isEmpty()) {
-            if(items.size() >= configuration.getBatchSize()) {
+            if(items.size() >= batchLimit()) {
                 score = doExec(items, null);
             }
         }
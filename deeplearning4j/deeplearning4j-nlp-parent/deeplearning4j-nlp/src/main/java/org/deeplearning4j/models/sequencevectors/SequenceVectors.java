@@ -85,6 +85,11 @@ public class SequenceVectors<T extends SequenceElement> extends WordVectorsImpl<
 
     protected static final Logger log = LoggerFactory.getLogger(SequenceVectors.class);
 
+    /**
+     * Number of words a calculation thread processes in Hogwild mode before publishing its counters
+     */
+    protected static final int HOGWILD_SYNC_WORDS = 10000;
+
     protected transient WordVectors existingModel;
     protected transient WordVectors intersectModel;
     protected transient T unknownElement;
@@ -520,6 +525,11 @@ public class SequenceVectors<T extends SequenceElement> extends WordVectorsImpl<
          */
         protected boolean preciseMode = false;
 
+        /**
+         * Experimental field. Switches on lock-free (Hogwild) training.
+         */
+        protected boolean hogwild = false;
+
         // defaults values for learning algorithms are set here
         protected ElementsLearningAlgorithm<T> elementsLearningAlgorithm;
         protected SequenceLearningAlgorithm<T> sequenceLearningAlgorithm;
@@ -551,6 +561,7 @@ public class SequenceVectors<T extends SequenceElement> extends WordVectorsImpl<
             this.variableWindows = configuration.getVariableWindows();
             this.useHierarchicSoftmax = configuration.isUseHierarchicSoftmax();
             this.preciseMode = configuration.isPreciseMode();
+            this.hogwild = configuration.isHogwild();
             this.vectorCalcThreads = configuration.getVectorCalcThreads();
             String modelUtilsClassName = configuration.getModelUtils();
             if (StringUtils.isNotEmpty(modelUtilsClassName)) {
@@ -1014,6 +1025,22 @@ public class SequenceVectors<T extends SequenceElement> extends WordVectorsImpl<
             return this;
         }
 
+        /**
+         * This method enables lock-free (Hogwild) training: calculation threads update shared weights
+         * without any coordination, keep processed words/lines counters locally and publish them
+         * only every few thousand words, and native rounds are executed single-threaded over larger
+         * batches, so parallelism comes from vectorCalcThreads instead.
+         *
+         * Default value: FALSE
+         *
+         * @param reallyUse
+         * @return
+         */
+        public Builder<T> useHogwild(boolean reallyUse) {
+            this.hogwild = reallyUse;
+            return this;
+        }
+
         /**
          * This method creates new WeightLookupTable<T> and VocabCache<T> if there were none set
          */
@@ -1163,6 +1190,7 @@ public class SequenceVectors<T extends SequenceElement> extends WordVectorsImpl<
                 this.configuration.setUseHierarchicSoftmax(this.useHierarchicSoftmax);
                 this.configuration.setPreciseWeightInit(this.preciseWeightInit);
                 this.configuration.setModelUtils(this.modelUtils.getClass().getCanonicalName());
+                this.configuration.setHogwild(this.hogwild);
 
             }
 
@@ -1299,6 +1327,12 @@ public class SequenceVectors<T extends SequenceElement> extends WordVectorsImpl<
         private final long startTime;
         private final int totalEpochs;
 
+        // Hogwild mode: counters are kept thread-local and published to the shared ones periodically
+        private final boolean hogwild;
+        private long localWords;
+        private long localLines;
+        private long publishedWords;
+
         /*
                 Long constructors suck, so this should be reduced to something reasonable later
          */
@@ -1314,9 +1348,54 @@ public class SequenceVectors<T extends SequenceElement> extends WordVectorsImpl<
             this.timer = timer;
             this.startTime = timer.get();
             this.nextRandom = new AtomicLong(this.threadId);
+            this.hogwild = configuration.isHogwild();
+            this.publishedWords = wordsCounter.get();
             this.setName("VectorCalculationsThread " + this.threadId);
         }
 
+        /**
+         * Publishes thread-local counters to the shared ones, and refreshes this thread's view of global progress
+         */
+        private void publishCounters(double alpha) {
+            if (localWords == 0 && localLines == 0)
+                return;
+
+            long linesBefore = totalLines.getAndAdd(localLines);
+            long linesAfter = linesBefore + localLines;
+            publishedWords = wordsCounter.addAndGet(localWords);
+            localWords = 0;
+            localLines = 0;
+
+            if (linesBefore / 100000 != linesAfter / 100000)
+                logProgress(alpha);
+
+            // same events as in non-hogwild mode: one per line, so frequency-based listeners still match
+            if (eventListeners != null && !eventListeners.isEmpty()) {
+                for (long line = linesBefore + 1; line <= linesAfter; line++) {
+                    for (VectorsListener listener : eventListeners) {
+                        if (listener.validateEvent(ListenerEvent.LINE, line))
+                            listener.processEvent(ListenerEvent.LINE, SequenceVectors.this, line);
+                    }
+                }
+            }
+        }
+
+        private void logProgress(double alpha) {
+            long currentTime = System.currentTimeMillis();
+            long timeSpent = currentTime - timer.get();
+
+            timer.set(currentTime);
+            long totalTimeSpent = currentTime - startTime;
+
+            double seqSec = (100000.0 / ((double) timeSpent / 1000.0));
+            double wordsSecTotal = this.wordsCounter.get() / ((double) totalTimeSpent / 1000.0);
+
+            log.info("Epoch: [{}]; Words vectorized so far: [{}];  Lines vectorized so far: [{}]; Seq/sec: [{}]; Words/sec: [{}]; learningRate: [{}]",
+                    this.epochNumber, this.wordsCounter.get(), this.totalLines.get(),
+                    String.format("%.2f", seqSec), String.format("%.2f", wordsSecTotal),
+                    alpha);
+        }
+
         @Override
         public void run() {
             // small workspace, just to handle
@@ -1353,32 +1432,30 @@ public class SequenceVectors<T extends SequenceElement> extends WordVectorsImpl<
                             try (val ws = Nd4j.getWorkspaceManager().scopeOutOfWorkspaces()) {
                                 Sequence<T> sequence = sequences.get(x);
 
-                                log.debug("LR before: {}; wordsCounter: {}; totalWordsCount: {}", learningRate.get(), this.wordsCounter.get(), this.totalWordsCount);
+                                // in hogwild mode we rely on the last published global count plus our own progress
+                                long wordsSoFar = hogwild ? publishedWords + localWords : this.wordsCounter.get();
 
                                 alpha = Math.max(minLearningRate,
-                                        learningRate.get() * (1 - (1.0 * this.wordsCounter.get()
+                                        learningRate.get() * (1 - (1.0 * wordsSoFar
                                                 / ((double) this.totalWordsCount) / (numIterations
                                                 * totalEpochs))));
 
                                 trainSequence(sequence, nextRandom, alpha);
-                                      // increment processed word count, please note: this affects learningRate decay
+
+                                if (hogwild) {
+                                    localLines++;
+                                    localWords += sequence.getElements().size();
+                                    if (localWords >= HOGWILD_SYNC_WORDS)
+                                        publishCounters(alpha);
+                                    continue;
+                                }
+
+                                // increment processed word count, please note: this affects learningRate decay
                                 totalLines.incrementAndGet();
                                 this.wordsCounter.addAndGet(sequence.getElements().size());
 
                                 if (totalLines.get() % 100000 == 0) {
-                                    long currentTime = System.currentTimeMillis();
-                                    long timeSpent = currentTime - timer.get();
-
-                                    timer.set(currentTime);
-                                    long totalTimeSpent = currentTime - startTime;
-
-                                    double seqSec = (100000.0 / ((double) timeSpent / 1000.0));
-                                    double wordsSecTotal = this.wordsCounter.get() / ((double) totalTimeSpent / 1000.0);
-
-                                    log.info("Epoch: [{}]; Words vectorized so far: [{}];  Lines vectorized so far: [{}]; Seq/sec: [{}]; Words/sec: [{}]; learningRate: [{}]",
-                                            this.epochNumber, this.wordsCounter.get(), this.totalLines.get(),
-                                            String.format("%.2f", seqSec), String.format("%.2f", wordsSecTotal),
-                                            alpha);
+                                    logProgress(alpha);
                                 }
                                 if (eventListeners != null && !eventListeners.isEmpty()) {
                                     for (VectorsListener listener : eventListeners) {
@@ -1406,6 +1483,9 @@ public class SequenceVectors<T extends SequenceElement> extends WordVectorsImpl<
                 }
             }
 
+            if (hogwild)
+                publishCounters(configuration.getMinLearningRate());
+
             if (trainElementsVectors) {
                 elementsLearningAlgorithm.finish();
             }
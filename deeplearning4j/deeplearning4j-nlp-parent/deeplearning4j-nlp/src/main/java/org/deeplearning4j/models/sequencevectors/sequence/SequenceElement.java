@@ -346,7 +346,7 @@ public abstract class SequenceElement implements Comparable<SequenceElement>, Se
 
     @Override
     public int compareTo(SequenceElement o) {
-        return Double.compare(elementFrequency.get(), o.elementFrequency.get());
+        return Double.compare(getElementFrequency(), o.getElementFrequency());
     }
 
     @Override
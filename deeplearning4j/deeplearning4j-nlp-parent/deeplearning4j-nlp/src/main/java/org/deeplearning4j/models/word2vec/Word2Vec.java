@@ -672,6 +672,12 @@ public class Word2Vec extends SequenceVectors<VocabWord> {
             return this;
         }
 
+        @Override
+        public Builder useHogwild(boolean reallyUse) {
+            super.useHogwild(reallyUse);
+            return this;
+        }
+
         @Override
         public Builder intersectModel(@NonNull SequenceVectors vectors, boolean isLocked) {
             super.intersectModel(vectors, isLocked);
@@ -765,6 +771,7 @@ public class Word2Vec extends SequenceVectors<VocabWord> {
                 this.configuration.setModelUtils(this.modelUtils.getClass().getCanonicalName());
                 this.configuration.setAllowParallelTokenization(this.allowParallelTokenization);
                 this.configuration.setPreciseMode(this.preciseMode);
+                this.configuration.setHogwild(this.hogwild);
 
             }
 
@@ -31,7 +31,6 @@ import org.deeplearning4j.models.sequencevectors.sequence.SequenceElement;
 import org.deeplearning4j.models.word2vec.Huffman;
 import org.deeplearning4j.models.word2vec.wordstore.inmemory.AbstractCache;
 import org.deeplearning4j.text.invertedindex.InvertedIndex;
-import org.nd4j.common.util.ThreadUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.threadly.concurrent.PriorityScheduler;
@@ -54,6 +53,13 @@ public class VocabConstructor<T extends SequenceElement> {
     private T unk;
     private boolean allowParallelBuilder = true;
     private boolean lockf = false;
+    private boolean shardedBuilder = false;
+    private int workers = 0;
+    private int shardLimit = 0;
+    private volatile double tokensPerSecond = 0.0;
+
+    // number of sequences passed to sharded builder workers at once
+    private static final int SHARD_BATCH_SIZE = 64;
 
     protected static final Logger log = LoggerFactory.getLogger(VocabConstructor.class);
 
@@ -99,6 +105,15 @@ public class VocabConstructor<T extends SequenceElement> {
     }
 
 
+    /**
+     * This method returns number of tokens processed per second during last buildJointVocabulary() call
+     *
+     * @return
+     */
+    public double getTokensPerSecond() {
+        return tokensPerSecond;
+    }
+
     /**
      * This method transfers existing vocabulary into current one
      *
@@ -279,6 +294,7 @@ public class VocabConstructor<T extends SequenceElement> {
         PriorityScheduler executorService = new PriorityScheduler(numThreads);
         final AtomicLong execCounter = new AtomicLong(0);
         final AtomicLong finCounter = new AtomicLong(0);
+        final Semaphore inFlight = new Semaphore(numProc);
 
         for (VocabSource<T> source : sources) {
             SequenceIterator<T> iterator = source.getIterator();
@@ -290,6 +306,10 @@ public class VocabConstructor<T extends SequenceElement> {
 
             AbstractCache<T> tempHolder = new AbstractCache.Builder<T>().build();
 
+            // sharded builder consumes whole iterator, so loop below is skipped
+            if (shardedBuilder && index == null)
+                buildShardedVocabulary(iterator, tempHolder, parsedCount);
+
             int sequences = 0;
             while (iterator.hasMoreSequences()) {
                 Sequence<T> document = iterator.nextSequence();
@@ -300,13 +320,9 @@ public class VocabConstructor<T extends SequenceElement> {
                 execCounter.incrementAndGet();
 
                 if (allowParallelBuilder) {
-                    executorService.execute(new VocabRunnable(tempHolder, document, finCounter, loopCounter));
-                    // as we see in profiler, this lock isn't really happen too often
-                    // we don't want too much left in tail
-
-                    while (execCounter.get() - finCounter.get() > numProc) {
-                        ThreadUtils.uncheckedSleep(1);
-                    }
+                    // we don't want too much left in tail, so we block until one of in-flight documents is processed
+                    inFlight.acquireUninterruptibly();
+                    executorService.execute(new VocabRunnable(tempHolder, document, finCounter, loopCounter, inFlight));
                 }
                 else  {
                     processDocument(tempHolder, document, finCounter, loopCounter);
@@ -339,9 +355,7 @@ public class VocabConstructor<T extends SequenceElement> {
                  */
                 if (enableScavenger && loopCounter.get() >= 2000000 && tempHolder.numWords() > 10000000) {
                     log.info("Starting scavenger...");
-                    while (execCounter.get() != finCounter.get()) {
-                        ThreadUtils.uncheckedSleep(1);
-                    }
+                    awaitInFlight(inFlight, numProc);
 
                     filterVocab(tempHolder, Math.max(1, source.getMinWordFrequency() / 2));
                     loopCounter.set(0);
@@ -351,9 +365,7 @@ public class VocabConstructor<T extends SequenceElement> {
 
             // block untill all threads are finished
             log.debug("Waiting till all processes stop...");
-            while (execCounter.get() != finCounter.get()) {
-                ThreadUtils.uncheckedSleep(1);
-            }
+            awaitInFlight(inFlight, numProc);
 
 
             // apply minWordFrequency set for this source
@@ -417,13 +429,124 @@ public class VocabConstructor<T extends SequenceElement> {
 
         long endSequences = seqCount.get();
         long endTime = System.currentTimeMillis();
-        double seconds = (endTime - startTime) / (double) 1000;
+        double seconds = Math.max(endTime - startTime, 1) / (double) 1000;
         double seqPerSec = endSequences / seconds;
-        log.info("Sequences checked: [{}], Current vocabulary size: [{}]; Sequences/sec: [{}];", seqCount.get(),
-                        cache.numWords(), String.format("%.2f", seqPerSec));
+        tokensPerSecond = parsedCount.get() / seconds;
+        log.info("Sequences checked: [{}], Current vocabulary size: [{}]; Sequences/sec: [{}]; Tokens/sec: [{}];",
+                        seqCount.get(), cache.numWords(), String.format("%.2f", seqPerSec),
+                        String.format("%.2f", tokensPerSecond));
         return cache;
     }
 
+    /**
+     * This method counts elements of the given iterator using sharded map-reduce approach:
+     * - current thread reads sequences and hands them over to worker threads in batches, through a bounded blocking queue
+     * - each worker counts elements into its own local shard, without any shared state
+     * - if shard limit is set, each shard is periodically pruned: rare elements are dropped, and prune threshold grows,
+     *   the same way original word2vec ReduceVocab() works. Please note: this makes counts of rare elements approximate
+     * - once all sequences are processed, shards are split into partitions by label hash and partitions are merged in parallel
+     *
+     * @param iterator source iterator
+     * @param tempHolder vocabulary to be filled
+     * @param parsedCount counter of processed tokens
+     */
+    protected void buildShardedVocabulary(@NonNull SequenceIterator<T> iterator, @NonNull AbstractCache<T> tempHolder,
+                                          @NonNull AtomicLong parsedCount) {
+        int numWorkers = workers > 0 ? workers : Math.max(Runtime.getRuntime().availableProcessors() / 2, 2);
+        final BlockingQueue<List<Sequence<T>>> queue = new ArrayBlockingQueue<>(numWorkers * 4);
+        final List<Sequence<T>> poison = Collections.emptyList();
+
+        ExecutorService executorService = Executors.newFixedThreadPool(numWorkers, r -> {
+            Thread t = new Thread(r, "VocabShard");
+            t.setDaemon(true);
+            return t;
+        });
+
+        List<Future<List<Map<String, ShardEntry<T>>>>> futures = new ArrayList<>();
+        for (int w = 0; w < numWorkers; w++)
+            futures.add(executorService.submit(new ShardCallable(queue, poison, numWorkers)));
+
+        long lastTime = System.currentTimeMillis();
+        long lastElements = parsedCount.get();
+        try {
+            List<Sequence<T>> batch = new ArrayList<>(SHARD_BATCH_SIZE);
+            while (iterator.hasMoreSequences()) {
+                Sequence<T> document = iterator.nextSequence();
+                batch.add(document);
+
+                seqCount.incrementAndGet();
+                parsedCount.addAndGet(document.size());
+                tempHolder.incrementTotalDocCount();
+
+                if (batch.size() == SHARD_BATCH_SIZE) {
+                    queue.put(batch);
+                    batch = new ArrayList<>(SHARD_BATCH_SIZE);
+                }
+
+                if (seqCount.get() % 100000 == 0) {
+                    long currentTime = System.currentTimeMillis();
+                    double seconds = Math.max(currentTime - lastTime, 1) / (double) 1000;
+                    log.info("Sequences checked: [{}]; Words/sec: {};", seqCount.get(),
+                                    String.format("%.2f", (parsedCount.get() - lastElements) / seconds));
+                    lastTime = currentTime;
+                    lastElements = parsedCount.get();
+                }
+            }
+
+            if (!batch.isEmpty())
+                queue.put(batch);
+
+            for (int w = 0; w < numWorkers; w++)
+                queue.put(poison);
+
+            // each worker returns its shard split into numWorkers partitions
+            List<List<Map<String, ShardEntry<T>>>> shards = new ArrayList<>();
+            for (Future<List<Map<String, ShardEntry<T>>>> future : futures)
+                shards.add(future.get());
+
+            List<Future<?>> merges = new ArrayList<>();
+            for (int p = 0; p < numWorkers; p++) {
+                final int partition = p;
+                merges.add(executorService.submit(() -> mergePartition(shards, partition, tempHolder)));
+            }
+
+            for (Future<?> future : merges)
+                future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private static void awaitInFlight(Semaphore inFlight, int permits) {
+        inFlight.acquireUninterruptibly(permits);
+        inFlight.release(permits);
+    }
+
+    private void mergePartition(List<List<Map<String, ShardEntry<T>>>> shards, int partition, AbstractCache<T> target) {
+        Map<String, ShardEntry<T>> merged = new HashMap<>();
+        for (List<Map<String, ShardEntry<T>>> shard : shards) {
+            for (ShardEntry<T> entry : shard.get(partition).values()) {
+                ShardEntry<T> existing = merged.putIfAbsent(entry.element.getLabel(), entry);
+                if (existing != null) {
+                    existing.frequency += entry.frequency;
+                    existing.sequences += entry.sequences;
+                }
+            }
+        }
+
+        // partitions are disjoint by label, so concurrent insertion into target vocabulary is safe
+        for (ShardEntry<T> entry : merged.values()) {
+            entry.element.setElementFrequency(entry.frequency);
+            entry.element.setSequencesCount(entry.sequences);
+            target.addToken(entry.element);
+        }
+    }
+
     protected void filterVocab(AbstractCache<T> cache, int minWordFrequency) {
         int numWords = cache.numWords();
         LinkedBlockingQueue<String> labelsToRemove = new LinkedBlockingQueue<>();
@@ -451,6 +574,9 @@ public class VocabConstructor<T extends SequenceElement> {
         private T unk;
         private boolean allowParallelBuilder = true;
         private boolean lockf = false;
+        private boolean shardedBuilder = false;
+        private int workers = 0;
+        private int shardLimit = 0;
 
         public Builder() {
 
@@ -475,6 +601,45 @@ public class VocabConstructor<T extends SequenceElement> {
             return this;
         }
 
+        /**
+         * This method enables sharded vocabulary construction: each worker thread counts elements into its own
+         * local shard, and shards are merged once source is exhausted. This avoids contention on shared vocabulary.
+         *
+         * PLEASE NOTE: InvertedIndex isn't supported by sharded builder, so it's ignored if index is set.
+         *
+         * @param reallyEnable
+         * @return
+         */
+        public Builder<T> enableShardedBuilder(boolean reallyEnable) {
+            this.shardedBuilder = reallyEnable;
+            return this;
+        }
+
+        /**
+         * This method sets number of worker threads used by sharded builder.
+         * Default value is half of available processors, but at least 2.
+         *
+         * @param numWorkers
+         * @return
+         */
+        public Builder<T> setWorkers(int numWorkers) {
+            this.workers = numWorkers;
+            return this;
+        }
+
+        /**
+         * This method sets max number of distinct elements kept in each shard of sharded builder.
+         * Once shard exceeds this limit, its rarest elements are dropped and prune threshold grows,
+         * so counts for long tail elements become approximate. 0 means no limit.
+         *
+         * @param limit
+         * @return
+         */
+        public Builder<T> setShardLimit(int limit) {
+            this.shardLimit = limit;
+            return this;
+        }
+
         /**
          * Defines, if adaptive gradients should be created during vocabulary mastering
          *
@@ -571,6 +736,9 @@ public class VocabConstructor<T extends SequenceElement> {
             constructor.unk = this.unk;
             constructor.allowParallelBuilder = this.allowParallelBuilder;
             constructor.lockf = this.lockf;
+            constructor.shardedBuilder = this.shardedBuilder;
+            constructor.workers = this.workers;
+            constructor.shardLimit = this.shardLimit;
 
             return constructor;
         }
@@ -595,14 +763,21 @@ public class VocabConstructor<T extends SequenceElement> {
         private final Sequence<T> document;
         private final AbstractCache<T> targetVocab;
         private final AtomicLong loopCounter;
+        private final Semaphore permits;
         private AtomicBoolean done = new AtomicBoolean(false);
 
         public VocabRunnable(@NonNull AbstractCache<T> targetVocab, @NonNull Sequence<T> sequence,
                         @NonNull AtomicLong finalCounter, @NonNull AtomicLong loopCounter) {
+            this(targetVocab, sequence, finalCounter, loopCounter, null);
+        }
+
+        public VocabRunnable(@NonNull AbstractCache<T> targetVocab, @NonNull Sequence<T> sequence,
+                        @NonNull AtomicLong finalCounter, @NonNull AtomicLong loopCounter, Semaphore permits) {
             this.finalCounter = finalCounter;
             this.document = sequence;
             this.targetVocab = targetVocab;
             this.loopCounter = loopCounter;
+            this.permits = permits;
         }
 
 	    @Override
@@ -614,7 +789,127 @@ public class VocabConstructor<T extends SequenceElement> {
              }
              finally {
                 done.set(true);
+                if (permits != null)
+                    permits.release();
+            }
+        }
+    }
+
+    private static class ShardEntry<T extends SequenceElement> {
+        private final T element;
+        private long frequency;
+        private long sequences;
+        // id of the last sequence this element was seen in, within current shard
+        private long lastSequence = -1;
+
+        private ShardEntry(T element) {
+            this.element = element;
+        }
+    }
+
+    protected class ShardCallable implements Callable<List<Map<String, ShardEntry<T>>>> {
+        private final BlockingQueue<List<Sequence<T>>> queue;
+        private final List<Sequence<T>> poison;
+        private final int partitions;
+        private final Map<String, ShardEntry<T>> shard = new HashMap<>();
+        private long sequenceId = 0;
+        private long minReduce = 1;
+
+        public ShardCallable(@NonNull BlockingQueue<List<Sequence<T>>> queue, @NonNull List<Sequence<T>> poison,
+                        int partitions) {
+            this.queue = queue;
+            this.poison = poison;
+            this.partitions = partitions;
+        }
+
+        @Override
+        public List<Map<String, ShardEntry<T>>> call() throws Exception {
+            RuntimeException exception = null;
+            while (true) {
+                List<Sequence<T>> batch = queue.take();
+                if (batch == poison)
+                    break;
+
+                // if something went wrong we keep draining the queue, so producer never blocks
+                if (exception != null)
+                    continue;
+
+                try {
+                    for (Sequence<T> document : batch)
+                        processSequence(document);
+                } catch (RuntimeException e) {
+                    exception = e;
+                }
+            }
+
+            if (exception != null)
+                throw exception;
+
+            List<Map<String, ShardEntry<T>>> result = new ArrayList<>(partitions);
+            for (int p = 0; p < partitions; p++)
+                result.add(new HashMap<String, ShardEntry<T>>());
+
+            for (Map.Entry<String, ShardEntry<T>> entry : shard.entrySet())
+                result.get((entry.getKey().hashCode() & Integer.MAX_VALUE) % partitions).put(entry.getKey(), entry.getValue());
+
+            shard.clear();
+            return result;
+        }
+
+        protected void processSequence(Sequence<T> document) {
+            sequenceId++;
+
+            if (fetchLabels && document.getSequenceLabels() != null) {
+                for (T labelWord : document.getSequenceLabels()) {
+                    ShardEntry<T> entry = shard.get(labelWord.getLabel());
+                    if (entry == null) {
+                        labelWord.setSpecial(true);
+                        labelWord.markAsLabel(true);
+                        entry = new ShardEntry<>(labelWord);
+                        entry.frequency = 1;
+                        shard.put(labelWord.getLabel(), entry);
+                    }
+                }
+            }
+
+            for (T element : document.getElements()) {
+                String token = element.getLabel();
+                if (token == null || token.isEmpty())
+                    continue;
+                if (stopWords != null && stopWords.contains(token))
+                    continue;
+
+                ShardEntry<T> entry = shard.get(token);
+                if (entry == null) {
+                    entry = new ShardEntry<>(element);
+                    shard.put(token, entry);
+                }
+
+                entry.frequency++;
+                if (entry.lastSequence != sequenceId) {
+                    entry.lastSequence = sequenceId;
+                    entry.sequences++;
+                }
+            }
+
+            if (shardLimit > 0 && shard.size() > shardLimit)
+                pruneShard();
+        }
+
+        /**
+         * Drops rare elements from local shard, raising threshold each time, like ReduceVocab() in original word2vec
+         */
+        protected void pruneShard() {
+            int before = shard.size();
+            Iterator<ShardEntry<T>> iterator = shard.values().iterator();
+            while (iterator.hasNext()) {
+                ShardEntry<T> entry = iterator.next();
+                if (entry.frequency <= minReduce && !entry.element.isSpecial() && !entry.element.isLabel())
+                    iterator.remove();
             }
+            log.debug("Shard pruned with threshold [{}]: words before: {}; words after: {};", minReduce, before,
+                            shard.size());
+            minReduce++;
         }
     }
 }
@@ -0,0 +1,1060 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.models.word2vec.wordstore.inmemory;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * VocabCache implementation that keeps the whole vocabulary in primitive storage instead of one VocabWord
+ * object (plus boxed map keys, AtomicDouble/AtomicLong counters and boxed code/point lists) per element.
+ *
+ * Labels are stored in a contiguous UTF-8 arena, lookups by label and by storage id go through open-addressing
+ * int tables, and frequencies, document counts, Huffman indexes, codes and points live in parallel arrays.
+ * Huffman codes are bit-packed into a single long per element, points are stored in a shared int arena.
+ *
+ * Elements returned by this cache are lightweight {@link CompactVocabWord} views: every getter and setter
+ * reads or writes the underlying arrays, so Huffman tree building, VocabConstructor and training code keep
+ * working without changes. Views hold no state of their own and can be discarded at any time.
+ *
+ * Use {@link #memoryFootprint()} to get the number of bytes used by this cache, and
+ * {@link #estimateAbstractCacheFootprint(VocabCache)} for a comparable estimate of the same vocabulary kept in
+ * {@link AbstractCache}.
+ *
+ * PLEASE NOTE: structural modifications (addToken/removeElement) are synchronized, reads are not. Concurrent
+ * reads are safe once the vocabulary is built, which is how SequenceVectors uses it during training.
+ */
+@Slf4j
+public class CompactVocabCache implements VocabCache<VocabWord> {
+    private static final long serialVersionUID = 4236108793542380315L;
+
+    private static final byte FLAG_SPECIAL = 1;
+    private static final byte FLAG_LABEL = 2;
+    private static final byte FLAG_LOCKED = 4;
+    private static final byte FLAG_INIT = 8;
+    private static final byte FLAG_REMOVED = 16;
+
+    // codes are bit-packed into a single long per element
+    private static final int MAX_CODE_LENGTH = 64;
+
+    // open-addressing tables, holding slot + 1. 0 means empty bucket
+    private int[] idTable;
+    private int[] labelTable;
+
+    // per-element parallel arrays, addressed by slot
+    private long[] storageIds;
+    private int[] labelHashes;
+    private int[] labelOffsets;
+    private int[] labelLengths;
+    private double[] frequencies;
+    private long[] sequencesCounts;
+    private int[] indices;
+    private byte[] flags;
+    private short[] codeLengths;
+    private byte[] codesSizes;
+    private long[] codes;
+    private int[] pointOffsets;
+    private short[] pointLengths;
+    private short[] pointCapacities;
+
+    private byte[] labelArena;
+    private int labelArenaSize;
+    private int[] pointArena;
+    private int pointArenaSize;
+
+    // Huffman index -> slot, -1 if not assigned
+    private int[] indexToSlot;
+
+    // number of slots used so far, including removed ones
+    private int slots;
+    private int numWords;
+
+    private final AtomicLong documentsCounter = new AtomicLong(0);
+    private final AtomicLong totalWordCount = new AtomicLong(0);
+
+    private int minWordFrequency = 0;
+
+    protected CompactVocabCache(int initialCapacity) {
+        int capacity = Math.max(16, initialCapacity);
+        storageIds = new long[capacity];
+        labelHashes = new int[capacity];
+        labelOffsets = new int[capacity];
+        labelLengths = new int[capacity];
+        frequencies = new double[capacity];
+        sequencesCounts = new long[capacity];
+        indices = new int[capacity];
+        flags = new byte[capacity];
+        codeLengths = new short[capacity];
+        codesSizes = new byte[capacity];
+        codes = new long[capacity];
+        pointOffsets = new int[capacity];
+        pointLengths = new short[capacity];
+        pointCapacities = new short[capacity];
+
+        labelArena = new byte[capacity * 8];
+        pointArena = new int[capacity * 4];
+
+        indexToSlot = new int[capacity];
+        Arrays.fill(indexToSlot, -1);
+
+        int tableSize = tableSizeFor(capacity);
+        idTable = new int[tableSize];
+        labelTable = new int[tableSize];
+    }
+
+    @Override
+    public void loadVocab() {
+        // TODO: this method should be static and accept path
+    }
+
+    @Override
+    public boolean vocabExists() {
+        return numWords > 0;
+    }
+
+    @Override
+    public void saveVocab() {
+        // TODO: this method should be static and accept path
+    }
+
+    /**
+     * Returns collection of labels available in this vocabulary
+     *
+     * @return
+     */
+    @Override
+    public Collection<String> words() {
+        List<String> result = new ArrayList<>(numWords);
+        for (int slot = 0; slot < slots; slot++) {
+            if (isLive(slot) && labelLengths[slot] >= 0)
+                result.add(labelAt(slot));
+        }
+        return Collections.unmodifiableCollection(result);
+    }
+
+    @Override
+    public void incrementWordCount(String word) {
+        incrementWordCount(word, 1);
+    }
+
+    @Override
+    public synchronized void incrementWordCount(String word, int increment) {
+        int slot = slotForLabel(word);
+        if (slot >= 0) {
+            frequencies[slot] += increment;
+            totalWordCount.addAndGet(increment);
+        }
+    }
+
+    @Override
+    public int wordFrequency(@NonNull String word) {
+        int slot = slotForLabel(word);
+        if (slot >= 0)
+            return (int) frequencies[slot];
+        return 0;
+    }
+
+    @Override
+    public boolean containsWord(String word) {
+        return word != null && slotForLabel(word) >= 0;
+    }
+
+    @Override
+    public String wordAtIndex(int index) {
+        int slot = slotForIndex(index);
+        return slot >= 0 ? labelAt(slot) : null;
+    }
+
+    @Override
+    public VocabWord elementAtIndex(int index) {
+        int slot = slotForIndex(index);
+        return slot >= 0 ? new CompactVocabWord(this, slot, null) : null;
+    }
+
+    /**
+     * Returns Huffman index for specified label
+     *
+     * @param label the label to get index for
+     * @return >=0 if label exists, -1 if Huffman tree wasn't built yet, -2 if specified label wasn't found
+     */
+    @Override
+    public int indexOf(String label) {
+        int slot = slotForLabel(label);
+        return slot >= 0 ? indices[slot] : -2;
+    }
+
+    /**
+     * Returns collection of views over elements stored in this vocabulary
+     *
+     * @return
+     */
+    @Override
+    public Collection<VocabWord> vocabWords() {
+        List<VocabWord> result = new ArrayList<>(numWords);
+        for (int slot = 0; slot < slots; slot++) {
+            if (isLive(slot))
+                result.add(new CompactVocabWord(this, slot, null));
+        }
+        return result;
+    }
+
+    @Override
+    public long totalWordOccurrences() {
+        return totalWordCount.get();
+    }
+
+    public void setTotalWordOccurences(long value) {
+        totalWordCount.set(value);
+    }
+
+    @Override
+    public VocabWord wordFor(@NonNull String label) {
+        int slot = slotForLabel(label);
+        return slot >= 0 ? new CompactVocabWord(this, slot, label) : null;
+    }
+
+    @Override
+    public VocabWord wordFor(long id) {
+        int slot = slotForId(id);
+        return slot >= 0 ? new CompactVocabWord(this, slot, null) : null;
+    }
+
+    /**
+     * This method allows to insert specified label to specified Huffman tree position.
+     * CAUTION: Never use this, unless you 100% sure what are you doing.
+     *
+     * @param index
+     * @param label
+     */
+    @Override
+    public synchronized void addWordToIndex(int index, String label) {
+        if (index >= 0) {
+            int slot = slotForLabel(label);
+            if (slot >= 0) {
+                mapIndex(index, slot);
+                indices[slot] = index;
+            }
+        }
+    }
+
+    @Override
+    public synchronized void addWordToIndex(int index, long elementId) {
+        if (index >= 0) {
+            int slot = slotForId(elementId);
+            if (slot >= 0)
+                mapIndex(index, slot);
+        }
+    }
+
+    @Override
+    @Deprecated
+    public void putVocabWord(String word) {
+        if (!containsWord(word))
+            throw new IllegalStateException("Specified label is not present in vocabulary");
+    }
+
+    @Override
+    public int numWords() {
+        return numWords;
+    }
+
+    @Override
+    public int docAppearedIn(String word) {
+        int slot = slotForLabel(word);
+        return slot >= 0 ? (int) sequencesCounts[slot] : -1;
+    }
+
+    @Override
+    public synchronized void incrementDocCount(String word, long howMuch) {
+        int slot = slotForLabel(word);
+        if (slot >= 0)
+            sequencesCounts[slot]++;
+    }
+
+    @Override
+    public synchronized void setCountForDoc(String word, long count) {
+        int slot = slotForLabel(word);
+        if (slot >= 0)
+            sequencesCounts[slot] = count;
+    }
+
+    @Override
+    public long totalNumberOfDocs() {
+        return documentsCounter.intValue();
+    }
+
+    @Override
+    public void incrementTotalDocCount() {
+        documentsCounter.incrementAndGet();
+    }
+
+    @Override
+    public void incrementTotalDocCount(long by) {
+        documentsCounter.addAndGet(by);
+    }
+
+    public void setTotalDocCount(long by) {
+        documentsCounter.set(by);
+    }
+
+    @Override
+    public Collection<VocabWord> tokens() {
+        return vocabWords();
+    }
+
+    /**
+     * This method copies state of specified element into this vocabulary.
+     * If element with the same storage id already exists, its counters are increased instead.
+     *
+     * @param element the word to add
+     * @return true if element was added, false if existing element was updated
+     */
+    @Override
+    public synchronized boolean addToken(@NonNull VocabWord element) {
+        long id = element.getStorageId();
+        int slot = slotForId(id);
+        boolean added = false;
+        if (slot < 0) {
+            slot = insert(element);
+            added = true;
+        } else {
+            sequencesCounts[slot] += element.getSequencesCount();
+            frequencies[slot] += (int) element.getElementFrequency();
+        }
+        totalWordCount.addAndGet((long) frequencies[slot]);
+        return added;
+    }
+
+    @Override
+    public VocabWord tokenFor(String label) {
+        return wordFor(label);
+    }
+
+    @Override
+    public VocabWord tokenFor(long id) {
+        return wordFor(id);
+    }
+
+    @Override
+    public boolean hasToken(String label) {
+        return containsWord(label);
+    }
+
+    @Override
+    public void importVocabulary(@NonNull VocabCache<VocabWord> vocabCache) {
+        AtomicBoolean added = new AtomicBoolean(false);
+        for (VocabWord element : vocabCache.vocabWords()) {
+            if (this.addToken(element))
+                added.set(true);
+        }
+        if (added.get())
+            this.documentsCounter.addAndGet(vocabCache.totalNumberOfDocs());
+    }
+
+    @Override
+    public synchronized void updateWordsOccurrences() {
+        totalWordCount.set(0);
+        for (int slot = 0; slot < slots; slot++) {
+            if (isLive(slot) && frequencies[slot] > 0)
+                totalWordCount.addAndGet((long) frequencies[slot]);
+        }
+        log.info("Updated counter: [" + totalWordCount.get() + "]");
+    }
+
+    @Override
+    public synchronized void removeElement(String label) {
+        int slot = label == null ? -1 : slotForLabel(label);
+        if (slot < 0)
+            throw new IllegalStateException("Can't get label: '" + label + "'");
+
+        totalWordCount.getAndAdd((long) frequencies[slot] * -1);
+        int index = indices[slot];
+        if (index >= 0 && index < indexToSlot.length && indexToSlot[index] == slot)
+            indexToSlot[index] = -1;
+
+        removeFromTable(idTable, slot, true);
+        removeFromTable(labelTable, slot, false);
+        flags[slot] |= FLAG_REMOVED;
+        numWords--;
+    }
+
+    @Override
+    public void removeElement(VocabWord element) {
+        removeElement(element.getLabel());
+    }
+
+    public int getMinWordFrequency() {
+        return minWordFrequency;
+    }
+
+    public void setMinWordFrequency(int minWordFrequency) {
+        this.minWordFrequency = minWordFrequency;
+    }
+
+    /**
+     * This method returns number of bytes allocated by this vocabulary, including arenas and lookup tables.
+     *
+     * @return memory footprint in bytes
+     */
+    public long memoryFootprint() {
+        long capacity = storageIds.length;
+        // storageIds, labelHashes, labelOffsets, labelLengths, frequencies, sequencesCounts, indices, flags,
+        // codeLengths, codesSizes, codes, pointOffsets, pointLengths, pointCapacities
+        long perSlot = 8 + 4 + 4 + 4 + 8 + 8 + 4 + 1 + 2 + 1 + 8 + 4 + 2 + 2;
+        return capacity * perSlot
+                + labelArena.length
+                + (long) pointArena.length * 4
+                + (long) indexToSlot.length * 4
+                + (long) (idTable.length + labelTable.length) * 4;
+    }
+
+    /**
+     * This method returns estimated number of bytes the same vocabulary would take if stored in {@link AbstractCache}:
+     * one VocabWord per element with its AtomicDouble/AtomicLong counters, boxed codes and points lists,
+     * label String, and entries in three ConcurrentHashMaps with boxed keys.
+     *
+     * Estimate assumes 64-bit JVM with compressed oops.
+     *
+     * @param vocabCache vocabulary to estimate
+     * @return estimated memory footprint in bytes
+     */
+    public static long estimateAbstractCacheFootprint(@NonNull VocabCache<? extends VocabWord> vocabCache) {
+        long total = 0;
+        for (VocabWord word : vocabCache.vocabWords()) {
+            // VocabWord header + fields, AtomicDouble, AtomicLong, two ArrayLists
+            total += 64 + 16 + 24 + 2 * 24;
+            // ArrayList<Byte> backing array (Byte values are cached), ArrayList<Integer> backing array + Integer objects
+            total += align(16 + 4L * word.getCodes().size());
+            total += align(16 + 4L * word.getPoints().size()) + 16L * word.getPoints().size();
+            // label String + its byte[]
+            String label = word.getLabel();
+            total += 24 + align(16 + (label == null ? 0 : label.length()));
+            // three CHM nodes, boxed Long and Integer keys, and table slots assuming 0.75 load factor
+            total += 3 * 32 + 16 + 16 + (long) (3 * 4 / 0.75);
+        }
+        return total;
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    protected boolean isLive(int slot) {
+        return (flags[slot] & FLAG_REMOVED) == 0;
+    }
+
+    protected String labelAt(int slot) {
+        int length = labelLengths[slot];
+        if (length < 0)
+            return null;
+        return new String(labelArena, labelOffsets[slot], length, StandardCharsets.UTF_8);
+    }
+
+    protected int slotForIndex(int index) {
+        int[] map = indexToSlot;
+        if (index < 0 || index >= map.length)
+            return -1;
+        return map[index];
+    }
+
+    protected int slotForId(long id) {
+        int[] table = idTable;
+        int mask = table.length - 1;
+        int bucket = mix(id) & mask;
+        while (true) {
+            int entry = table[bucket];
+            if (entry == 0)
+                return -1;
+            if (storageIds[entry - 1] == id)
+                return entry - 1;
+            bucket = (bucket + 1) & mask;
+        }
+    }
+
+    protected int slotForLabel(String label) {
+        int hash = label.hashCode();
+        int[] table = labelTable;
+        int mask = table.length - 1;
+        int bucket = mix(hash) & mask;
+        byte[] encoded = null;
+        while (true) {
+            int entry = table[bucket];
+            if (entry == 0)
+                return -1;
+            int slot = entry - 1;
+            if (labelHashes[slot] == hash) {
+                if (encoded == null)
+                    encoded = label.getBytes(StandardCharsets.UTF_8);
+                int offset = labelOffsets[slot];
+                if (labelLengths[slot] == encoded.length
+                        && Arrays.equals(labelArena, offset, offset + encoded.length, encoded, 0, encoded.length))
+                    return slot;
+            }
+            bucket = (bucket + 1) & mask;
+        }
+    }
+
+    private int insert(VocabWord element) {
+        ensureSlotCapacity(slots + 1);
+        int slot = slots++;
+
+        String label = element.getLabel();
+        if (label != null) {
+            byte[] encoded = label.getBytes(StandardCharsets.UTF_8);
+            ensureLabelArenaCapacity(labelArenaSize + encoded.length);
+            System.arraycopy(encoded, 0, labelArena, labelArenaSize, encoded.length);
+            labelOffsets[slot] = labelArenaSize;
+            labelLengths[slot] = encoded.length;
+            labelHashes[slot] = label.hashCode();
+            labelArenaSize += encoded.length;
+        } else {
+            labelLengths[slot] = -1;
+        }
+
+        storageIds[slot] = element.getStorageId();
+        frequencies[slot] = element.getElementFrequency();
+        sequencesCounts[slot] = element.getSequencesCount();
+        indices[slot] = element.getIndex();
+
+        byte f = 0;
+        if (element.isSpecial())
+            f |= FLAG_SPECIAL;
+        if (element.isLabel())
+            f |= FLAG_LABEL;
+        if (element.isLocked())
+            f |= FLAG_LOCKED;
+        if (element.isInit())
+            f |= FLAG_INIT;
+        flags[slot] = f;
+
+        setCodes(slot, element.getCodes());
+        setPoints(slot, element.getPoints());
+        codeLengths[slot] = (short) element.getCodeLength();
+
+        if ((slots + 1) * 4L > idTable.length * 3L)
+            rehash(idTable.length * 2);
+
+        putIntoTable(idTable, slot, true);
+        if (label != null)
+            putIntoTable(labelTable, slot, false);
+
+        numWords++;
+        return slot;
+    }
+
+    private void putIntoTable(int[] table, int slot, boolean byId) {
+        int mask = table.length - 1;
+        int bucket = (byId ? mix(storageIds[slot]) : mix(labelHashes[slot])) & mask;
+        while (table[bucket] != 0)
+            bucket = (bucket + 1) & mask;
+        table[bucket] = slot + 1;
+    }
+
+    /**
+     * Backward-shift deletion for linear probing, so no tombstones are left in the table
+     */
+    private void removeFromTable(int[] table, int slot, boolean byId) {
+        int mask = table.length - 1;
+        int bucket = (byId ? mix(storageIds[slot]) : mix(labelHashes[slot])) & mask;
+        while (table[bucket] != slot + 1) {
+            if (table[bucket] == 0)
+                return;
+            bucket = (bucket + 1) & mask;
+        }
+
+        int hole = bucket;
+        int next = (hole + 1) & mask;
+        while (table[next] != 0) {
+            int other = table[next] - 1;
+            int home = (byId ? mix(storageIds[other]) : mix(labelHashes[other])) & mask;
+            // entry at "next" can be moved into the hole only if its home bucket isn't within (hole, next]
+            boolean movable = hole <= next ? (home <= hole || home > next) : (home <= hole && home > next);
+            if (movable) {
+                table[hole] = table[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        table[hole] = 0;
+    }
+
+    private void rehash(int newSize) {
+        int[] newIdTable = new int[newSize];
+        int[] newLabelTable = new int[newSize];
+        for (int slot = 0; slot < slots; slot++) {
+            if (!isLive(slot))
+                continue;
+            putIntoTable(newIdTable, slot, true);
+            if (labelLengths[slot] >= 0)
+                putIntoTable(newLabelTable, slot, false);
+        }
+        idTable = newIdTable;
+        labelTable = newLabelTable;
+    }
+
+    private void ensureSlotCapacity(int required) {
+        if (required <= storageIds.length)
+            return;
+        int capacity = Math.max(required, storageIds.length + (storageIds.length >> 1));
+        storageIds = Arrays.copyOf(storageIds, capacity);
+        labelHashes = Arrays.copyOf(labelHashes, capacity);
+        labelOffsets = Arrays.copyOf(labelOffsets, capacity);
+        labelLengths = Arrays.copyOf(labelLengths, capacity);
+        frequencies = Arrays.copyOf(frequencies, capacity);
+        sequencesCounts = Arrays.copyOf(sequencesCounts, capacity);
+        indices = Arrays.copyOf(indices, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        codeLengths = Arrays.copyOf(codeLengths, capacity);
+        codesSizes = Arrays.copyOf(codesSizes, capacity);
+        codes = Arrays.copyOf(codes, capacity);
+        pointOffsets = Arrays.copyOf(pointOffsets, capacity);
+        pointLengths = Arrays.copyOf(pointLengths, capacity);
+        pointCapacities = Arrays.copyOf(pointCapacities, capacity);
+    }
+
+    private void ensureLabelArenaCapacity(int required) {
+        if (required < 0)
+            throw new IllegalStateException("Labels arena can't hold more than 2GB of UTF-8 data");
+        if (required > labelArena.length)
+            labelArena = Arrays.copyOf(labelArena, (int) Math.min(Integer.MAX_VALUE - 8,
+                    Math.max(required, labelArena.length + (long) (labelArena.length >> 1))));
+    }
+
+    private void mapIndex(int index, int slot) {
+        if (index >= indexToSlot.length) {
+            int oldLength = indexToSlot.length;
+            indexToSlot = Arrays.copyOf(indexToSlot, Math.max(index + 1, oldLength + (oldLength >> 1)));
+            Arrays.fill(indexToSlot, oldLength, indexToSlot.length, -1);
+        }
+        indexToSlot[index] = slot;
+    }
+
+    /**
+     * Reserves room for at least the given number of points for the given slot, relocating them to the end
+     * of the arena if necessary. Space released by relocation isn't reused.
+     */
+    private void ensurePointCapacity(int slot, int required) {
+        if (required <= pointCapacities[slot])
+            return;
+        if (required > Short.MAX_VALUE)
+            throw new IllegalArgumentException("Number of points can't exceed " + Short.MAX_VALUE);
+
+        int capacity = Math.min(Short.MAX_VALUE, Math.max(required, pointCapacities[slot] * 2));
+        if (pointArenaSize + capacity > pointArena.length)
+            pointArena = Arrays.copyOf(pointArena,
+                    Math.max(pointArenaSize + capacity, pointArena.length + (pointArena.length >> 1)));
+
+        System.arraycopy(pointArena, pointOffsets[slot], pointArena, pointArenaSize, pointLengths[slot]);
+        pointOffsets[slot] = pointArenaSize;
+        pointCapacities[slot] = (short) capacity;
+        pointArenaSize += capacity;
+    }
+
+    private synchronized void setCodes(int slot, List<Byte> values) {
+        if (values.size() > MAX_CODE_LENGTH)
+            throw new IllegalArgumentException("Code length can't exceed " + MAX_CODE_LENGTH + ", got " + values.size());
+        long packed = 0;
+        for (int i = 0; i < values.size(); i++) {
+            if (values.get(i) != 0)
+                packed |= 1L << i;
+        }
+        codes[slot] = packed;
+        codesSizes[slot] = (byte) values.size();
+    }
+
+    private synchronized void setPoints(int slot, List<Integer> values) {
+        pointLengths[slot] = 0;
+        ensurePointCapacity(slot, values.size());
+        int offset = pointOffsets[slot];
+        for (int i = 0; i < values.size(); i++)
+            pointArena[offset + i] = values.get(i);
+        pointLengths[slot] = (short) values.size();
+    }
+
+    private synchronized void setCodeLength(int slot, short codeLength) {
+        if (codeLength > MAX_CODE_LENGTH)
+            throw new IllegalArgumentException("Code length can't exceed " + MAX_CODE_LENGTH + ", got " + codeLength);
+        codeLengths[slot] = codeLength;
+        if (codesSizes[slot] < codeLength)
+            codesSizes[slot] = (byte) codeLength;
+
+        if (pointLengths[slot] < codeLength) {
+            // reserving one extra point: Huffman appends root node right after setting code length
+            ensurePointCapacity(slot, codeLength + 1);
+            Arrays.fill(pointArena, pointOffsets[slot] + pointLengths[slot], pointOffsets[slot] + codeLength, 0);
+            pointLengths[slot] = codeLength;
+        }
+    }
+
+    private synchronized void appendPoint(int slot, int value) {
+        ensurePointCapacity(slot, pointLengths[slot] + 1);
+        pointArena[pointOffsets[slot] + pointLengths[slot]] = value;
+        pointLengths[slot]++;
+    }
+
+    private synchronized void setFlag(int slot, byte flag, boolean value) {
+        if (value)
+            flags[slot] |= flag;
+        else
+            flags[slot] &= ~flag;
+    }
+
+    private boolean hasFlag(int slot, byte flag) {
+        return (flags[slot] & flag) != 0;
+    }
+
+    private static int tableSizeFor(int capacity) {
+        int size = Integer.highestOneBit(Math.max(16, capacity * 4 / 3)) << 1;
+        return size;
+    }
+
+    private static int mix(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * VocabWord view over a single slot of {@link CompactVocabCache}.
+     * All state is read from and written to the parent cache, instances of this class are cheap and disposable.
+     *
+     * Java serialization and toJSON() produce detached VocabWord copies.
+     */
+    public static class CompactVocabWord extends VocabWord {
+        private static final long serialVersionUID = -2185917464385063472L;
+
+        private final transient CompactVocabCache cache;
+        private final int slot;
+        private String label;
+
+        protected CompactVocabWord(@NonNull CompactVocabCache cache, int slot, String label) {
+            this.cache = cache;
+            this.slot = slot;
+            this.label = label;
+        }
+
+        /**
+         * This method returns standalone copy of this element, not backed by the vocabulary
+         *
+         * @return
+         */
+        public VocabWord detach() {
+            VocabWord word = new VocabWord(getElementFrequency(), getLabel(), getStorageId());
+            word.setSequencesCount(getSequencesCount());
+            word.setIndex(getIndex());
+            word.setCodes(new ArrayList<>(getCodes()));
+            word.setPoints(new ArrayList<>(getPoints()));
+            word.setCodeLength((short) getCodeLength());
+            word.setSpecial(isSpecial());
+            word.markAsLabel(isLabel());
+            word.setLocked(isLocked());
+            word.setInit(isInit());
+            return word;
+        }
+
+        protected Object writeReplace() {
+            return detach();
+        }
+
+        @Override
+        public String getLabel() {
+            if (label == null)
+                label = cache.labelAt(slot);
+            return label;
+        }
+
+        @Override
+        public String getWord() {
+            return getLabel();
+        }
+
+        @Override
+        public void setWord(String word) {
+            throw new UnsupportedOperationException("Labels of CompactVocabCache elements can't be changed");
+        }
+
+        @Override
+        public Long getStorageId() {
+            return cache.storageIds[slot];
+        }
+
+        @Override
+        public void setStorageId(Long storageId) {
+            throw new UnsupportedOperationException("Storage ids of CompactVocabCache elements can't be changed");
+        }
+
+        @Override
+        public double getElementFrequency() {
+            return cache.frequencies[slot];
+        }
+
+        @Override
+        public void setElementFrequency(long value) {
+            synchronized (cache) {
+                cache.frequencies[slot] = value;
+            }
+        }
+
+        @Override
+        public void increaseElementFrequency(int by) {
+            synchronized (cache) {
+                cache.frequencies[slot] += by;
+            }
+        }
+
+        @Override
+        public long getSequencesCount() {
+            return cache.sequencesCounts[slot];
+        }
+
+        @Override
+        public void setSequencesCount(long count) {
+            synchronized (cache) {
+                cache.sequencesCounts[slot] = count;
+            }
+        }
+
+        @Override
+        public void incrementSequencesCount() {
+            incrementSequencesCount(1);
+        }
+
+        @Override
+        public void incrementSequencesCount(long count) {
+            synchronized (cache) {
+                cache.sequencesCounts[slot] += count;
+            }
+        }
+
+        @Override
+        public int getIndex() {
+            return cache.indices[slot];
+        }
+
+        @Override
+        public void setIndex(int index) {
+            cache.indices[slot] = index;
+        }
+
+        @Override
+        public List<Byte> getCodes() {
+            return new AbstractList<Byte>() {
+                @Override
+                public Byte get(int i) {
+                    checkIndex(i, size());
+                    return (byte) ((cache.codes[slot] >>> i) & 1L);
+                }
+
+                @Override
+                public Byte set(int i, Byte value) {
+                    checkIndex(i, size());
+                    Byte old = get(i);
+                    synchronized (cache) {
+                        if (value != 0)
+                            cache.codes[slot] |= 1L << i;
+                        else
+                            cache.codes[slot] &= ~(1L << i);
+                    }
+                    return old;
+                }
+
+                @Override
+                public int size() {
+                    return cache.codesSizes[slot];
+                }
+            };
+        }
+
+        @Override
+        public void setCodes(List<Byte> codes) {
+            cache.setCodes(slot, codes);
+        }
+
+        @Override
+        public List<Integer> getPoints() {
+            return new AbstractList<Integer>() {
+                @Override
+                public Integer get(int i) {
+                    checkIndex(i, size());
+                    return cache.pointArena[cache.pointOffsets[slot] + i];
+                }
+
+                @Override
+                public Integer set(int i, Integer value) {
+                    checkIndex(i, size());
+                    Integer old = get(i);
+                    cache.pointArena[cache.pointOffsets[slot] + i] = value;
+                    return old;
+                }
+
+                @Override
+                public boolean add(Integer value) {
+                    cache.appendPoint(slot, value);
+                    modCount++;
+                    return true;
+                }
+
+                @Override
+                public int size() {
+                    return cache.pointLengths[slot];
+                }
+            };
+        }
+
+        @Override
+        public void setPoints(List<Integer> points) {
+            cache.setPoints(slot, points);
+        }
+
+        @Override
+        public void setPoints(int[] points) {
+            List<Integer> list = new ArrayList<>(points.length);
+            for (int point : points)
+                list.add(point);
+            cache.setPoints(slot, list);
+        }
+
+        @Override
+        public int getCodeLength() {
+            return cache.codeLengths[slot];
+        }
+
+        @Override
+        public void setCodeLength(short codeLength) {
+            cache.setCodeLength(slot, codeLength);
+        }
+
+        @Override
+        public boolean isSpecial() {
+            return cache.hasFlag(slot, FLAG_SPECIAL);
+        }
+
+        @Override
+        public void setSpecial(boolean special) {
+            cache.setFlag(slot, FLAG_SPECIAL, special);
+        }
+
+        @Override
+        public boolean isLabel() {
+            return cache.hasFlag(slot, FLAG_LABEL);
+        }
+
+        @Override
+        public void setLabel(boolean isLabel) {
+            cache.setFlag(slot, FLAG_LABEL, isLabel);
+        }
+
+        @Override
+        public void markAsLabel(boolean isLabel) {
+            cache.setFlag(slot, FLAG_LABEL, isLabel);
+        }
+
+        @Override
+        public boolean isLocked() {
+            return cache.hasFlag(slot, FLAG_LOCKED);
+        }
+
+        @Override
+        public void setLocked(boolean locked) {
+            cache.setFlag(slot, FLAG_LOCKED, locked);
+        }
+
+        @Override
+        public boolean isInit() {
+            return cache.hasFlag(slot, FLAG_INIT);
+        }
+
+        @Override
+        public void setInit(boolean init) {
+            cache.setFlag(slot, FLAG_INIT, init);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof VocabWord))
+                return false;
+            return Objects.equals(getLabel(), ((VocabWord) o).getWord());
+        }
+
+        @Override
+        public int hashCode() {
+            String l = getLabel();
+            return l == null ? 0 : l.hashCode();
+        }
+
+        @Override
+        public String toJSON() {
+            return detach().toJSON();
+        }
+
+        @Override
+        public String toString() {
+            return "CompactVocabWord{" +
+                    "word='" + getLabel() + '\'' +
+                    ", elementFrequency=" + getElementFrequency() +
+                    ", index=" + getIndex() +
+                    ", codes=" + getCodes() +
+                    ", points=" + getPoints() +
+                    ", codeLength=" + getCodeLength() +
+                    '}';
+        }
+
+        private static void checkIndex(int i, int size) {
+            if (i < 0 || i >= size)
+                throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+        }
+    }
+
+    public static class Builder {
+        protected int initialCapacity = 1024;
+        protected int minElementFrequency;
+
+        /**
+         * Expected number of elements. Setting this for huge vocabularies avoids repeated array growth.
+         *
+         * @param capacity
+         * @return
+         */
+        public Builder initialCapacity(int capacity) {
+            this.initialCapacity = capacity;
+            return this;
+        }
+
+        public Builder minElementFrequency(int minFrequency) {
+            this.minElementFrequency = minFrequency;
+            return this;
+        }
+
+        public CompactVocabCache build() {
+            CompactVocabCache cache = new CompactVocabCache(initialCapacity);
+            cache.minWordFrequency = this.minElementFrequency;
+            return cache;
+        }
+    }
+}
@@ -22,6 +22,7 @@ package org.deeplearning4j.nn.conf;
 import lombok.Data;
 import lombok.NonNull;
 import org.deeplearning4j.nn.conf.inputs.InputType;
+import org.nd4j.common.base.Preconditions;
 import org.nd4j.linalg.api.buffer.DataType;
 
 import java.util.ArrayList;
@@ -48,6 +49,8 @@ public abstract class BaseBuilder {
     protected boolean validateOutputConfig = true;
     protected boolean validateTbpttConfig = true;
     protected DataType dataType;
+    protected DynamicLossScaler lossScaler;
+    protected int microBatches = 1;
     protected boolean overrideNinUponBuild = true;
 
 
@@ -213,6 +216,30 @@ public abstract class BaseBuilder {
         return (T) this;
     }
 
+    /**
+     * Loss scaler for mixed precision training. Null (default) disables mixed precision training
+     * @param lossScaler Loss scaler, may be null
+     */
+    public <T extends BaseBuilder> T lossScaler(DynamicLossScaler lossScaler) {
+        this.lossScaler = lossScaler;
+        return (T) this;
+    }
+
+    /**
+     * Gradient accumulation: split each minibatch passed to fit into the specified number of micro-batches, and
+     * accumulate the gradients of the micro-batches before a single parameter update. The update is the same as for
+     * the full minibatch (excluding the effects of layers such as BatchNormalization, that use minibatch statistics),
+     * while the activation memory required is that of a single micro-batch. Default: 1 (no accumulation).<br>
+     * Can't be used with truncated backpropagation through time.
+     *
+     * @param microBatches Number of micro-batches per minibatch. Must be >= 1
+     */
+    public <T extends BaseBuilder> T gradientAccumulation(int microBatches) {
+        Preconditions.checkArgument(microBatches >= 1, "Number of micro-batches must be >= 1, got %s", microBatches);
+        this.microBatches = microBatches;
+        return (T) this;
+    }
+
     public abstract <T> T build();
 
 
@@ -45,6 +45,7 @@ import org.nd4j.common.base.Preconditions;
 import org.nd4j.linalg.activations.Activation;
 import org.nd4j.linalg.activations.IActivation;
 import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.shade.jackson.annotation.JsonIgnore;
 import org.nd4j.shade.jackson.databind.*;
 import org.nd4j.shade.jackson.databind.deser.BeanDeserializerModifier;
 import org.nd4j.shade.jackson.databind.exc.InvalidTypeIdException;
@@ -83,8 +84,21 @@ public class ComputationGraphConfiguration implements Serializable, Cloneable {
     @Setter
     protected DataType dataType = DataType.FLOAT;   //Default to float for 1.0.0-beta3 and earlier nets
 
+    //Loss scaler for mixed precision training; null if disabled. Holds the current loss scale, and is stored here (like
+    // the iteration count) to ensure it is persisted with the network
+    protected DynamicLossScaler lossScaler;
+
     protected boolean validateOutputLayerConfig = true;     //Default for 1.0.0-beta3 and earlier nets
 
+    //Activation checkpointing: close a recomputed segment after this many layers (0: disabled), and/or after each of
+    // the named vertices. See activationCheckpointSegments()
+    protected int activationCheckpointInterval = 0;
+    protected List<String> activationCheckpoints;
+
+    //Gradient accumulation: number of micro-batches each minibatch is split into for forward/backward passes, with a
+    // single parameter update per minibatch. 1: disabled
+    protected int microBatches = 1;
+
 
     /**
      * List of inputs to the network, by name
@@ -389,6 +403,10 @@ public class ComputationGraphConfiguration implements Serializable, Cloneable {
         conf.defaultConfiguration.cacheMode = this.cacheMode;
         conf.validateOutputLayerConfig = this.validateOutputLayerConfig;
         conf.dataType = this.dataType;
+        conf.lossScaler = this.lossScaler == null ? null : this.lossScaler.clone();
+        conf.activationCheckpointInterval = this.activationCheckpointInterval;
+        conf.activationCheckpoints = this.activationCheckpoints == null ? null : new ArrayList<>(this.activationCheckpoints);
+        conf.microBatches = this.microBatches;
 
         return conf;
     }
@@ -706,6 +724,93 @@ public class ComputationGraphConfiguration implements Serializable, Cloneable {
         return topologicalOrdering;
     }
 
+    /**
+     * @return True if activation checkpointing has been configured, via either
+     * {@link GraphBuilder#activationCheckpointing(int)} or {@link GraphBuilder#activationCheckpoints(String...)}
+     */
+    @JsonIgnore
+    public boolean isActivationCheckpointing() {
+        return activationCheckpointInterval > 0 || (activationCheckpoints != null && !activationCheckpoints.isEmpty());
+    }
+
+    /**
+     * Get the activation checkpointing segments, using the topological order of this configuration.
+     * See {@link #activationCheckpointSegments(List)}
+     */
+    public List<List<String>> activationCheckpointSegments() {
+        return activationCheckpointSegments(topologicalOrderStr != null ? topologicalOrderStr : topologicalOrdering());
+    }
+
+    /**
+     * Get the activation checkpointing segments: groups of consecutive vertices (in topological order) whose
+     * activations are discarded after the forward pass, and are recomputed one segment at a time during backprop.<br>
+     * A segment is closed after every {@link #getActivationCheckpointInterval()} layers (vertices other than layers,
+     * such as merge vertices, don't count), and after each of the {@link #getActivationCheckpoints()} vertices.
+     * Activations consumed outside of their segment (such as the output of the last vertex of a segment) are retained
+     * as checkpoints. Segments containing network outputs, and the vertices after the last segment boundary, are never
+     * recomputed and are not returned here.
+     *
+     * @param topologicalOrdering Topological order of the vertices in the network, including network inputs
+     * @return Segments, each as a list of vertex names in topological order. Empty if checkpointing is not configured
+     */
+    public List<List<String>> activationCheckpointSegments(List<String> topologicalOrdering) {
+        List<List<String>> segments = new ArrayList<>();
+        if (!isActivationCheckpointing()) {
+            return segments;
+        }
+
+        List<String> current = new ArrayList<>();
+        boolean containsOutput = false;
+        int numLayers = 0;
+        for (String s : topologicalOrdering) {
+            if (networkInputs.contains(s)) {
+                continue;
+            }
+            current.add(s);
+            containsOutput |= networkOutputs.contains(s);
+            if (vertices.get(s) instanceof LayerVertex) {
+                numLayers++;
+            }
+
+            boolean endOfSegment = (activationCheckpointInterval > 0 && numLayers >= activationCheckpointInterval)
+                    || (activationCheckpoints != null && activationCheckpoints.contains(s));
+            if (endOfSegment) {
+                if (!containsOutput) {
+                    segments.add(current);
+                }
+                current = new ArrayList<>();
+                containsOutput = false;
+                numLayers = 0;
+            }
+        }
+
+        return segments;
+    }
+
+    /**
+     * Get the vertices (out of the given activation checkpointing segments) whose activations are retained during the
+     * forward pass: those that are consumed by a vertex in another segment
+     */
+    protected List<String> activationCheckpointsRetained(List<List<String>> segments) {
+        Map<String, List<String>> verticesOutputTo = verticesOutputTo();
+        List<String> retained = new ArrayList<>();
+        for (List<String> segment : segments) {
+            for (String s : segment) {
+                List<String> outputTo = verticesOutputTo.get(s);
+                if (outputTo == null) {
+                    continue;
+                }
+                for (String to : outputTo) {
+                    if (!segment.contains(to)) {
+                        retained.add(s);
+                        break;
+                    }
+                }
+            }
+        }
+        return retained;
+    }
+
     /**
      * Get a {@link MemoryReport} for the given computation graph configuration. This is used to estimate the
      * memory requirements for the given network configuration and input
@@ -758,8 +863,9 @@ public class ComputationGraphConfiguration implements Serializable, Cloneable {
             memoryReportMap.put(s, mr);
         }
 
+        List<List<String>> checkpointSegments = activationCheckpointSegments(topologicalOrdering);
         return new NetworkMemoryReport(memoryReportMap, ComputationGraphConfiguration.class, "ComputationGraph",
-                inputTypes);
+                checkpointSegments, activationCheckpointsRetained(checkpointSegments), inputTypes);
     }
 
     @Data
@@ -788,6 +894,9 @@ public class ComputationGraphConfiguration implements Serializable, Cloneable {
         protected boolean allowNoOutput = false;
         protected boolean validateOutputConfig = true;
         protected boolean validateTbpttConfig = true;
+        protected int activationCheckpointInterval = 0;
+        protected List<String> activationCheckpoints = new ArrayList<>();
+        protected int microBatches = 1;
 
         protected String lastAdded = null;
 
@@ -878,6 +987,53 @@ public class ComputationGraphConfiguration implements Serializable, Cloneable {
             return tBPTTBackwardLength(tbpttLength);
         }
 
+        /**
+         * Activation checkpointing (gradient rematerialization): split the network into segments of the specified
+         * number of layers (in topological order). Only the activations at the boundaries of each segment are kept
+         * after the forward pass; the remaining activations are discarded, and recomputed one segment at a time during
+         * backprop. This reduces the activation memory for training deep networks from O(numLayers) to roughly
+         * O(numLayers / segmentLength + segmentLength), at the cost of one additional forward pass for each segment.<br>
+         * Segments containing network outputs are never recomputed. Requires workspaces to be enabled for training
+         * (with {@link org.deeplearning4j.nn.conf.WorkspaceMode#NONE} checkpointing is ignored), and can't be used
+         * with truncated backpropagation through time.<br>
+         * Can be combined with {@link #activationCheckpoints(String...)}.
+         *
+         * @param segmentLength Number of layers per segment. 0 to disable
+         */
+        public GraphBuilder activationCheckpointing(int segmentLength) {
+            Preconditions.checkArgument(segmentLength >= 0, "Segment length must be >= 0, got %s", segmentLength);
+            this.activationCheckpointInterval = segmentLength;
+            return this;
+        }
+
+        /**
+         * Activation checkpointing (gradient rematerialization) with explicit checkpoints: the activations of the
+         * specified vertices are kept after the forward pass, and each of them closes a segment whose other
+         * activations are discarded and recomputed during backprop. See {@link #activationCheckpointing(int)}
+         *
+         * @param vertexNames Names of the vertices (layers or other vertices) to use as checkpoints
+         */
+        public GraphBuilder activationCheckpoints(String... vertexNames) {
+            Collections.addAll(this.activationCheckpoints, vertexNames);
+            return this;
+        }
+
+        /**
+         * Gradient accumulation: split each minibatch passed to fit into the specified number of micro-batches, and
+         * accumulate the gradients of the micro-batches before a single parameter update. The update is the same as
+         * for the full minibatch (excluding the effects of layers such as BatchNormalization, that use minibatch
+         * statistics), while the activation memory required is that of a single micro-batch. Default: 1 (no
+         * accumulation).<br>
+         * Can't be used with truncated backpropagation through time.
+         *
+         * @param microBatches Number of micro-batches per minibatch. Must be >= 1
+         */
+        public GraphBuilder gradientAccumulation(int microBatches) {
+            Preconditions.checkArgument(microBatches >= 1, "Number of micro-batches must be >= 1, got %s", microBatches);
+            this.microBatches = microBatches;
+            return this;
+        }
+
         /**
          * Add a layer, with no {@link InputPreProcessor}, with the specified name and specified inputs.
          *
@@ -1256,6 +1412,15 @@ public class ComputationGraphConfiguration implements Serializable, Cloneable {
             conf.cacheMode = globalConfiguration.cacheMode;
             conf.validateOutputLayerConfig = validateOutputConfig;
             conf.dataType = globalConfiguration.dataType;
+            if (globalConfiguration.lossScaler != null) {
+                if (conf.dataType != DataType.HALF && conf.dataType != DataType.BFLOAT16)
+                    throw new IllegalStateException("Mixed precision training requires network data type HALF or " +
+                            "BFLOAT16, got " + conf.dataType + ". Set it using NeuralNetConfiguration.Builder.dataType(DataType)");
+                conf.lossScaler = globalConfiguration.lossScaler.clone();
+            }
+            conf.activationCheckpointInterval = activationCheckpointInterval;
+            conf.activationCheckpoints = activationCheckpoints.isEmpty() ? null : new ArrayList<>(activationCheckpoints);
+            conf.microBatches = microBatches;
 
             conf.defaultConfiguration = globalConfiguration.build();
 
@@ -1295,6 +1460,23 @@ public class ComputationGraphConfiguration implements Serializable, Cloneable {
             ComputationGraphConfiguration conf = buildConfig();
             conf.validate(allowDisconnected, allowNoOutput); //throws exception for invalid configuration
 
+            if (conf.isActivationCheckpointing()) {
+                for (String s : activationCheckpoints) {
+                    if (!vertices.containsKey(s)) {
+                        throw new IllegalStateException("Invalid configuration: activation checkpoint \"" + s
+                                + "\" is not a valid vertex");
+                    }
+                }
+                if (backpropType == BackpropType.TruncatedBPTT) {
+                    throw new IllegalStateException("Invalid configuration: activation checkpointing cannot be used" +
+                            " with truncated backpropagation through time (TBPTT)");
+                }
+            }
+            if (microBatches > 1 && backpropType == BackpropType.TruncatedBPTT) {
+                throw new IllegalStateException("Invalid configuration: gradient accumulation cannot be used with " +
+                        "truncated backpropagation through time (TBPTT)");
+            }
+
             //Automatically add preprocessors, set nIns for CNN->dense transitions, etc
             if (!networkInputTypes.isEmpty()) {
                 conf.addPreProcessors(networkInputTypes.toArray(new InputType[networkInputs.size()]));
@@ -0,0 +1,170 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.nn.conf;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Dynamic loss scaler for mixed precision training, see {@link NeuralNetConfiguration.Builder#mixedPrecision(DynamicLossScaler)}.<br>
+ * <br>
+ * Gradients of HALF precision networks often underflow to zero. To avoid that, the output layer gradients (and hence
+ * all gradients flowing back from them) are multiplied by the current loss scale, and divided by it again in FP32,
+ * before the updater is applied.<br>
+ * If the scaled gradients overflow (contain Inf or NaN values), the parameter update for that iteration is skipped and
+ * the scale is multiplied by {@link #getBackoffFactor()}. After {@link #getGrowthInterval()} consecutive iterations
+ * without overflow, the scale is multiplied by {@link #getGrowthFactor()}.<br>
+ * <br>
+ * The current scale and counters are part of the network configuration (in the same way as the iteration count), hence
+ * are persisted when the network is saved.
+ */
+@Data
+@NoArgsConstructor
+public class DynamicLossScaler implements Serializable, Cloneable {
+
+    public static final double DEFAULT_INITIAL_SCALE = 32768.0;
+    public static final double DEFAULT_GROWTH_FACTOR = 2.0;
+    public static final double DEFAULT_BACKOFF_FACTOR = 0.5;
+    public static final int DEFAULT_GROWTH_INTERVAL = 2000;
+    public static final double DEFAULT_MIN_SCALE = 1.0;
+    public static final double DEFAULT_MAX_SCALE = 16777216.0;
+
+    private double scale = DEFAULT_INITIAL_SCALE;
+    private double growthFactor = DEFAULT_GROWTH_FACTOR;
+    private double backoffFactor = DEFAULT_BACKOFF_FACTOR;
+    private int growthInterval = DEFAULT_GROWTH_INTERVAL;
+    private double minScale = DEFAULT_MIN_SCALE;
+    private double maxScale = DEFAULT_MAX_SCALE;
+
+    //Number of consecutive iterations without overflow, since the last scale change
+    private int goodSteps;
+    //Total number of iterations skipped due to overflow
+    private long skippedSteps;
+
+    private DynamicLossScaler(Builder builder) {
+        this.scale = builder.initialScale;
+        this.growthFactor = builder.growthFactor;
+        this.backoffFactor = builder.backoffFactor;
+        this.growthInterval = builder.growthInterval;
+        this.minScale = builder.minScale;
+        this.maxScale = builder.maxScale;
+    }
+
+    /**
+     * Update the loss scale after one iteration
+     *
+     * @param overflow True if the (scaled) gradients for this iteration contained Inf or NaN values
+     */
+    public void update(boolean overflow) {
+        if (overflow) {
+            scale = Math.max(minScale, scale * backoffFactor);
+            goodSteps = 0;
+            skippedSteps++;
+        } else if (++goodSteps >= growthInterval) {
+            scale = Math.min(maxScale, scale * growthFactor);
+            goodSteps = 0;
+        }
+    }
+
+    @Override
+    public DynamicLossScaler clone() {
+        try {
+            return (DynamicLossScaler) super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static class Builder {
+        private double initialScale = DEFAULT_INITIAL_SCALE;
+        private double growthFactor = DEFAULT_GROWTH_FACTOR;
+        private double backoffFactor = DEFAULT_BACKOFF_FACTOR;
+        private int growthInterval = DEFAULT_GROWTH_INTERVAL;
+        private double minScale = DEFAULT_MIN_SCALE;
+        private double maxScale = DEFAULT_MAX_SCALE;
+
+        /**
+         * Loss scale used for the first iteration. Default: 2^15
+         */
+        public Builder initialScale(double initialScale) {
+            this.initialScale = initialScale;
+            return this;
+        }
+
+        /**
+         * Factor the scale is multiplied by after {@link #growthInterval(int)} iterations without overflow. Default: 2.0
+         */
+        public Builder growthFactor(double growthFactor) {
+            this.growthFactor = growthFactor;
+            return this;
+        }
+
+        /**
+         * Factor the scale is multiplied by when an overflow is detected. Default: 0.5
+         */
+        public Builder backoffFactor(double backoffFactor) {
+            this.backoffFactor = backoffFactor;
+            return this;
+        }
+
+        /**
+         * Number of consecutive iterations without overflow before the scale is increased. Default: 2000
+         */
+        public Builder growthInterval(int growthInterval) {
+            this.growthInterval = growthInterval;
+            return this;
+        }
+
+        /**
+         * Lower bound for the loss scale. Default: 1.0
+         */
+        public Builder minScale(double minScale) {
+            this.minScale = minScale;
+            return this;
+        }
+
+        /**
+         * Upper bound for the loss scale. Default: 2^24
+         */
+        public Builder maxScale(double maxScale) {
+            this.maxScale = maxScale;
+            return this;
+        }
+
+        public DynamicLossScaler build() {
+            if (growthFactor < 1.0)
+                throw new IllegalStateException("Growth factor must be >= 1.0, got " + growthFactor);
+            if (backoffFactor <= 0.0 || backoffFactor > 1.0)
+                throw new IllegalStateException("Backoff factor must be in range (0, 1], got " + backoffFactor);
+            if (growthInterval <= 0)
+                throw new IllegalStateException("Growth interval must be > 0, got " + growthInterval);
+            if (minScale <= 0.0 || minScale > maxScale)
+                throw new IllegalStateException("Invalid scale bounds: min " + minScale + ", max " + maxScale);
+            if (initialScale < minScale || initialScale > maxScale)
+                throw new IllegalStateException("Initial scale " + initialScale + " is outside of range [" + minScale
+                        + ", " + maxScale + "]");
+
+            return new DynamicLossScaler(this);
+        }
+    }
+}
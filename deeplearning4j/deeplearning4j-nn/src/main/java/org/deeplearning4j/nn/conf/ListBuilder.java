@@ -195,7 +195,8 @@ public class ListBuilder extends BaseBuilder {
                 .trainingWorkspaceMode(wsmTrain).cacheMode(globalConfig.cacheMode)
                 .inferenceWorkspaceMode(wsmTest).confs(list).validateOutputLayerConfig(validateOutputConfig)
                 .overrideNinUponBuild(overrideNinUponBuild)
-                .dataType(globalConfig.dataType);
+                .dataType(globalConfig.dataType)
+                .lossScaler(globalConfig.lossScaler == null ? null : globalConfig.lossScaler.clone());
         return builder.build();
     }
 
@@ -86,6 +86,14 @@ public class MultiLayerConfiguration implements Serializable, Cloneable {
     @Setter
     protected DataType dataType = DataType.FLOAT;   //Default to float for deserialization of beta3 and earlier nets
 
+    //Loss scaler for mixed precision training; null if disabled. Holds the current loss scale, and is stored here (like
+    // the iteration count) to ensure it is persisted with the network
+    protected DynamicLossScaler lossScaler;
+
+    //Gradient accumulation: number of micro-batches each minibatch is split into for forward/backward passes, with a
+    // single parameter update per minibatch. 1: disabled
+    protected int microBatches = 1;
+
     //Counter for the number of parameter updates so far
     // This is important for learning rate schedules, for example, and is stored here to ensure it is persisted
     // for Spark and model serialization
@@ -444,6 +452,8 @@ public class MultiLayerConfiguration implements Serializable, Cloneable {
             clone.cacheMode = this.cacheMode;
             clone.validateOutputLayerConfig = this.validateOutputLayerConfig;
             clone.dataType = this.dataType;
+            clone.lossScaler = this.lossScaler == null ? null : this.lossScaler.clone();
+            clone.microBatches = this.microBatches;
 
             return clone;
 
@@ -620,6 +630,17 @@ public class MultiLayerConfiguration implements Serializable, Cloneable {
             conf.inferenceWorkspaceMode = inferenceWorkspaceMode;
             conf.cacheMode = cacheMode;
             conf.dataType = dataType;
+            if (lossScaler != null) {
+                if (dataType != DataType.HALF && dataType != DataType.BFLOAT16)
+                    throw new IllegalStateException("Mixed precision training requires network data type HALF or " +
+                            "BFLOAT16, got " + dataType + ". Set it using NeuralNetConfiguration.Builder.dataType(DataType)");
+                conf.lossScaler = lossScaler;
+            }
+            if (microBatches > 1 && backpropType == BackpropType.TruncatedBPTT) {
+                throw new IllegalStateException("Invalid configuration: gradient accumulation cannot be used with " +
+                        "truncated backpropagation through time (TBPTT)");
+            }
+            conf.microBatches = microBatches;
 
             Nd4j.getRandom().setSeed(conf.getConf(0).getSeed());
 
@@ -257,6 +257,7 @@ public class NeuralNetConfiguration implements Serializable, Cloneable {
         protected boolean setIWM = false;
         protected CacheMode cacheMode = CacheMode.NONE;
         protected DataType dataType = DataType.FLOAT;
+        protected DynamicLossScaler lossScaler;
 
         protected ConvolutionMode convolutionMode = ConvolutionMode.Truncate;
         protected ConvolutionLayer.AlgoMode cudnnAlgoMode = ConvolutionLayer.AlgoMode.PREFER_FASTEST;
@@ -913,15 +914,41 @@ public class NeuralNetConfiguration implements Serializable, Cloneable {
 
         /**
          * Set the DataType for the network parameters and activations. Must be a floating point type: {@link DataType#DOUBLE},
-         * {@link DataType#FLOAT} or {@link DataType#HALF}.<br>
+         * {@link DataType#FLOAT}, {@link DataType#HALF} or {@link DataType#BFLOAT16}.<br>
          */
         public Builder dataType(@NonNull DataType dataType){
-            Preconditions.checkState(dataType == DataType.DOUBLE || dataType == DataType.FLOAT || dataType == DataType.HALF,
-                    "Data type must be a floating point type: one of DOUBLE, FLOAT, or HALF. Got datatype: %s", dataType);
+            Preconditions.checkState(dataType == DataType.DOUBLE || dataType == DataType.FLOAT || dataType == DataType.HALF
+                            || dataType == DataType.BFLOAT16,
+                    "Data type must be a floating point type: one of DOUBLE, FLOAT, HALF or BFLOAT16. Got datatype: %s", dataType);
             this.dataType = dataType;
             return this;
         }
 
+        /**
+         * Enable mixed precision training with the default {@link DynamicLossScaler} configuration.
+         *
+         * @see #mixedPrecision(DynamicLossScaler)
+         */
+        public Builder mixedPrecision() {
+            return mixedPrecision(new DynamicLossScaler());
+        }
+
+        /**
+         * Enable mixed precision training. Must be used with {@link #dataType(DataType)} set to {@link DataType#HALF}
+         * or {@link DataType#BFLOAT16}.<br>
+         * Forward and backward passes are executed in the network data type, while the updater keeps an FP32 master copy
+         * of the parameters, and FP32 updater state. Gradients are scaled by the given loss scaler to avoid underflow,
+         * and iterations with overflowing gradients are skipped.<br>
+         * Note that the loss scale is applied at the output layers: when fitting with external errors, the errors must be
+         * multiplied by {@link DynamicLossScaler#getScale()} by the caller.
+         *
+         * @param lossScaler Loss scaler configuration
+         */
+        public Builder mixedPrecision(@NonNull DynamicLossScaler lossScaler) {
+            this.lossScaler = lossScaler;
+            return this;
+        }
+
         /**
          * Return a configuration based on this builder
          *
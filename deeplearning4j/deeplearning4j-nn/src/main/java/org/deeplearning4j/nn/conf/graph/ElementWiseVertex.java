@@ -28,18 +28,33 @@ import org.deeplearning4j.nn.conf.layers.InputTypeUtil;
 import org.deeplearning4j.nn.conf.memory.LayerMemoryReport;
 import org.deeplearning4j.nn.conf.memory.MemoryReport;
 import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.nd4j.linalg.activations.IActivation;
 import org.nd4j.linalg.api.buffer.DataType;
 import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.shade.jackson.annotation.JsonInclude;
 import org.nd4j.shade.jackson.annotation.JsonProperty;
 
+import java.util.Objects;
+
 @Data
 public class ElementWiseVertex extends GraphVertex {
 
     /**
      * @param op The operation to perform on the inputs
      */
-    public ElementWiseVertex(@JsonProperty("op") Op op) {
+    public ElementWiseVertex(Op op) {
+        this(op, null);
+    }
+
+    /**
+     * @param op           The operation to perform on the inputs
+     * @param activationFn Activation function applied (in place) to the result of the operation. May be null: no
+     *                     activation. Usually set by inference graph fusion, which replaces ElementWiseVertex -> ActivationLayer
+     *                     with a single vertex
+     */
+    public ElementWiseVertex(@JsonProperty("op") Op op, @JsonProperty("activationFn") IActivation activationFn) {
         this.op = op;
+        this.activationFn = activationFn;
     }
 
     public enum Op {
@@ -47,22 +62,24 @@ public class ElementWiseVertex extends GraphVertex {
     }
 
     protected Op op;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    protected IActivation activationFn;
 
     @Override
     public ElementWiseVertex clone() {
-        return new ElementWiseVertex(op);
+        return new ElementWiseVertex(op, activationFn);
     }
 
     @Override
     public boolean equals(Object o) {
         if (!(o instanceof ElementWiseVertex))
             return false;
-        return ((ElementWiseVertex) o).op == op;
+        return ((ElementWiseVertex) o).op == op && Objects.equals(((ElementWiseVertex) o).activationFn, activationFn);
     }
 
     @Override
     public int hashCode() {
-        return op.hashCode();
+        return activationFn == null ? op.hashCode() : 31 * op.hashCode() + activationFn.hashCode();
     }
 
     @Override
@@ -114,7 +131,7 @@ public class ElementWiseVertex extends GraphVertex {
             default:
                 throw new RuntimeException();
         }
-        return new org.deeplearning4j.nn.graph.vertex.impl.ElementWiseVertex(graph, name, idx, op, networkDatatype);
+        return new org.deeplearning4j.nn.graph.vertex.impl.ElementWiseVertex(graph, name, idx, op, activationFn, networkDatatype);
     }
 
     @Override
@@ -30,9 +30,7 @@ import org.nd4j.linalg.api.buffer.DataType;
 import org.nd4j.shade.jackson.annotation.JsonProperty;
 
 import java.text.DecimalFormat;
-import java.util.Arrays;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.*;
 
 @Getter
 @EqualsAndHashCode(callSuper = true)
@@ -44,15 +42,33 @@ public class NetworkMemoryReport extends MemoryReport {
     private final Class<?> modelClass;
     private final String modelName;
     private final InputType[] networkInputTypes;
+    //Activation checkpointing: vertices recomputed during backprop (one list per segment), and the vertices out of
+    // those segments whose activations are retained after the forward pass
+    private final List<List<String>> activationCheckpointSegments;
+    private final List<String> activationCheckpoints;
+
+    //Memory types that are only held for one segment at a time for vertices that are recomputed during backprop
+    private static final MemoryType[] CHECKPOINTED_MEMORY_TYPES = {MemoryType.ACTIVATIONS,
+                    MemoryType.CACHED_MEMORY_FIXED, MemoryType.CACHED_MEMORY_VARIABLE};
+
+    public NetworkMemoryReport(@NonNull Map<String, MemoryReport> layerAndVertexReports, @NonNull Class<?> modelClass,
+                    String modelName, @NonNull InputType... networkInputTypes) {
+        this(layerAndVertexReports, modelClass, modelName, null, null, networkInputTypes);
+    }
 
     public NetworkMemoryReport(
                     @NonNull @JsonProperty("layerAndVertexReports") Map<String, MemoryReport> layerAndVertexReports,
                     @NonNull @JsonProperty("modelClass") Class<?> modelClass,
                     @JsonProperty("modelName") String modelName,
+                    @JsonProperty("activationCheckpointSegments") List<List<String>> activationCheckpointSegments,
+                    @JsonProperty("activationCheckpoints") List<String> activationCheckpoints,
                     @NonNull @JsonProperty("networkInputTypes") InputType... networkInputTypes) {
         this.layerAndVertexReports = layerAndVertexReports;
         this.modelClass = modelClass;
         this.modelName = modelName;
+        this.activationCheckpointSegments = activationCheckpointSegments == null ? Collections.<List<String>>emptyList()
+                        : activationCheckpointSegments;
+        this.activationCheckpoints = activationCheckpoints == null ? Collections.<String>emptyList() : activationCheckpoints;
         this.networkInputTypes = networkInputTypes;
     }
 
@@ -101,7 +117,39 @@ public class NetworkMemoryReport extends MemoryReport {
             }
         }
 
-        return totalBytes + maxWorkingFixed + maxWorkingVariable;
+        return totalBytes + maxWorkingFixed + maxWorkingVariable
+                        - checkpointingSavedBytes(minibatchSize, memoryUseMode, cacheMode, dataType,
+                                        CHECKPOINTED_MEMORY_TYPES);
+    }
+
+    /**
+     * Memory saved by activation checkpointing, for the given memory types: activations (and cached memory) of the
+     * vertices that are recomputed during backprop are only held for one segment at a time.<br>
+     * Zero for inference, or if activation checkpointing is not used.
+     */
+    protected long checkpointingSavedBytes(int minibatchSize, MemoryUseMode memoryUseMode, CacheMode cacheMode,
+                    DataType dataType, MemoryType... memoryTypes) {
+        if (memoryUseMode != MemoryUseMode.TRAINING || activationCheckpointSegments.isEmpty()) {
+            return 0;
+        }
+
+        long discardedBytes = 0;
+        long maxSegmentBytes = 0;
+        for (List<String> segment : activationCheckpointSegments) {
+            long segmentBytes = 0;
+            for (String s : segment) {
+                MemoryReport mr = layerAndVertexReports.get(s);
+                if (mr == null || activationCheckpoints.contains(s)) {
+                    continue;
+                }
+                for (MemoryType mt : memoryTypes) {
+                    segmentBytes += mr.getMemoryBytes(mt, minibatchSize, memoryUseMode, cacheMode, dataType);
+                }
+            }
+            discardedBytes += segmentBytes;
+            maxSegmentBytes = Math.max(maxSegmentBytes, segmentBytes);
+        }
+        return discardedBytes - maxSegmentBytes;
     }
 
     @Override
@@ -119,6 +167,9 @@ public class NetworkMemoryReport extends MemoryReport {
             }
         }
 
+        if (Arrays.asList(CHECKPOINTED_MEMORY_TYPES).contains(memoryType)) {
+            totalBytes -= checkpointingSavedBytes(minibatchSize, memoryUseMode, cacheMode, dataType, memoryType);
+        }
         return totalBytes;
     }
 
@@ -159,6 +210,23 @@ public class NetworkMemoryReport extends MemoryReport {
         appendFixedPlusVariable(sb, "  Inference Memory (FP32)             ", fixedMemBytes, perEx);
         appendFixedPlusVariable(sb, "  Training Memory (FP32):             ", fixedMemBytesTrain, perExTrain);
 
+        if (!activationCheckpointSegments.isEmpty()) {
+            int recomputed = 0;
+            for (List<String> segment : activationCheckpointSegments) {
+                recomputed += segment.size();
+            }
+            sb.append("  Activation Checkpointing:           ").append(activationCheckpointSegments.size())
+                            .append(" segments, ").append(recomputed).append(" of ").append(layerAndVertexReports.size())
+                            .append(" layers/vertices recomputed during backprop\n");
+
+            long savedFixed = checkpointingSavedBytes(0, MemoryUseMode.TRAINING, CacheMode.NONE, DataType.FLOAT,
+                            CHECKPOINTED_MEMORY_TYPES);
+            long savedPerEx = checkpointingSavedBytes(1, MemoryUseMode.TRAINING, CacheMode.NONE, DataType.FLOAT,
+                            CHECKPOINTED_MEMORY_TYPES) - savedFixed;
+            appendFixedPlusVariable(sb, "  Training Memory, No Checkpointing:  ", fixedMemBytesTrain + savedFixed,
+                            perExTrain + savedPerEx);
+        }
+
         sb.append("  Inference Memory Breakdown (FP32):\n");
         appendBreakDown(sb, MemoryUseMode.INFERENCE, CacheMode.NONE, DataType.FLOAT);
 
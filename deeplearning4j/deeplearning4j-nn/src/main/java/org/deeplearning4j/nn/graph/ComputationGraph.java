@@ -60,6 +60,7 @@ import org.deeplearning4j.nn.workspace.ArrayType;
 import org.deeplearning4j.nn.workspace.LayerWorkspaceMgr;
 import org.deeplearning4j.optimize.Solver;
 import org.deeplearning4j.optimize.api.ConvexOptimizer;
+import org.deeplearning4j.optimize.api.SpanListener;
 import org.deeplearning4j.optimize.api.TrainingListener;
 import org.nd4j.common.base.Preconditions;
 import org.nd4j.evaluation.IEvaluation;
@@ -143,6 +144,11 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
      * Workspace for output methods that use OutputAdapter
      */
     protected static final String WS_OUTPUT_MEM = "WS_OUTPUT_MEM";
+    /**
+     * Workspace for the activations of a single activation checkpointing segment - opened and closed once per segment
+     * in both the forward pass and the backward pass (where the segment's activations are recomputed)
+     */
+    protected static final String WS_CHECKPOINT_SEGMENT = "WS_CHECKPOINT_SEGMENT";
 
     protected final WorkspaceConfiguration WS_LAYER_WORKING_MEM_CONFIG;
 
@@ -162,6 +168,11 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
             .policyAllocation(AllocationPolicy.OVERALLOCATE).policySpill(SpillPolicy.REALLOCATE)
             .policyLearning(LearningPolicy.FIRST_LOOP).build();
 
+    protected static final WorkspaceConfiguration WS_CHECKPOINT_SEGMENT_CONFIG = WorkspaceConfiguration.builder()
+            .initialSize(0).overallocationLimit(0.05).policyReset(ResetPolicy.BLOCK_LEFT)
+            .policyAllocation(AllocationPolicy.OVERALLOCATE).policySpill(SpillPolicy.REALLOCATE)
+            .policyLearning(LearningPolicy.FIRST_LOOP).build();
+
 
     protected transient ThreadLocal<Long> lastEtlTime = new ThreadLocal<>();
 
@@ -208,6 +219,20 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
 
     private transient int[] outputLayerIdxs;
 
+    //Activation checkpointing: segment (>= 0) of the vertex at each position of the topological order, or -1 if the
+    // activations of that vertex are never recomputed. Null until first used
+    private transient int[] checkpointSegments;
+    //Position in the topological order, for each vertex index
+    private transient int[] checkpointPositions;
+    //Random number generator state at the start of each segment in the forward pass (so that dropout etc. is identical
+    // when recomputing), plus the state at the end of the forward pass as the last entry
+    private transient long[][] checkpointRngStates;
+    //True if the activations for the next call of calcBackpropGradients have been calculated with checkpointing
+    private transient boolean checkpointedForward;
+
+    //Gradient accumulation: sum of the gradients of the micro-batches so far. Reused between iterations
+    private transient INDArray accumulatedGradients;
+
     private NeuralNetConfiguration defaultConfiguration;
     private Collection<TrainingListener> trainingListeners = new ArrayList<>();
 
@@ -1076,7 +1101,9 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
 
         long time1 = System.currentTimeMillis();
         while(multiDataSetIterator.hasNext()){
+            long fetchStart = SpanUtils.start(trainingListeners);
             MultiDataSet mds = multiDataSetIterator.next();
+            SpanUtils.end(this, trainingListeners, SpanListener.Type.DATA_FETCH, "fetch", fetchStart);
             long time2 = System.currentTimeMillis();
             lastEtlTime.set((time2 - time1));
 
@@ -1343,6 +1370,81 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
     }
 
     public void computeGradientAndScore() {
+        int microBatches = configuration.getMicroBatches();
+        if (microBatches > 1 && configuration.getBackpropType() != BackpropType.TruncatedBPTT
+                && inputs != null && inputs[0] != null && inputs[0].size(0) > 1) {
+            computeGradientAndScoreAccumulated(microBatches);
+        } else {
+            computeGradientAndScoreHelper();
+        }
+    }
+
+    /**
+     * Gradient accumulation: calculate the gradient and score for the current minibatch using separate
+     * forward/backward passes for each of the micro-batches, summing the gradients in the flattened gradients view.
+     * As the updater divides the gradients by the size of the full minibatch, the resulting parameter update is the
+     * same as for a single forward/backward pass, but only the activations of one micro-batch are in memory at a time.
+     * The score is the average over all examples in the minibatch
+     *
+     * @param microBatches Number of micro-batches to split the minibatch into
+     */
+    protected void computeGradientAndScoreAccumulated(int microBatches) {
+        INDArray[] fullInputs = inputs;
+        INDArray[] fullLabels = labels;
+        INDArray[] fullInputMasks = inputMaskArrays;
+        INDArray[] fullLabelMasks = labelMaskArrays;
+
+        long n = fullInputs[0].size(0);
+        for (INDArray[] arrs : new INDArray[][]{fullInputs, fullLabels}) {
+            for (INDArray arr : arrs) {
+                if (arr != null && arr.size(0) != n) {
+                    throw new IllegalStateException("Cannot use gradient accumulation when the features and labels " +
+                            "have different minibatch sizes: got " + arr.size(0) + " and " + n);
+                }
+            }
+        }
+        int k = (int) Math.min(microBatches, n);
+
+        double scoreSum = 0.0;
+        try {
+            for (int i = 0; i < k; i++) {
+                long start = n * i / k;
+                long end = n * (i + 1) / k;
+                setInputs(NetworkUtils.getMicroBatch(fullInputs, start, end));
+                setLabels(NetworkUtils.getMicroBatch(fullLabels, start, end));
+                setLayerMaskArrays(NetworkUtils.getMicroBatch(fullInputMasks, start, end),
+                        NetworkUtils.getMicroBatch(fullLabelMasks, start, end));
+
+                computeGradientAndScoreHelper();
+                scoreSum += score * (end - start);
+
+                try (MemoryWorkspace ws = Nd4j.getMemoryManager().scopeOutOfWorkspaces()) {
+                    if (i > 0) {
+                        accumulatedGradients.addi(flattenedGradients);
+                    } else if (accumulatedGradients == null || !accumulatedGradients.equalShapes(flattenedGradients)
+                            || accumulatedGradients.dataType() != flattenedGradients.dataType()) {
+                        accumulatedGradients = flattenedGradients.dup();
+                    } else {
+                        accumulatedGradients.assign(flattenedGradients);
+                    }
+                }
+            }
+        } finally {
+            setInputs(fullInputs);
+            setLabels(fullLabels);
+            setLayerMaskArrays(fullInputMasks, fullLabelMasks);
+        }
+
+        flattenedGradients.assign(accumulatedGradients);
+        //Some "gradients" (BatchNormalization global mean/variance) are actually updates, not divided by the minibatch
+        // size in the updater: average these over the micro-batches instead of summing them
+        for (INDArray arr : getUpdater().getNonMinibatchDivisionSubsets(flattenedGradients)) {
+            arr.divi(k);
+        }
+        score = scoreSum / n;
+    }
+
+    protected void computeGradientAndScoreHelper() {
         synchronizeIterEpochCounts();
 
         LayerWorkspaceMgr workspaceMgr;
@@ -1372,8 +1474,14 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
         //Calculate activations (which are stored in each layer, and used in backprop)
         try(MemoryWorkspace wsAllActivations = workspaceMgr.notifyScopeEntered(ArrayType.ACTIVATIONS)) {
 
-            Map<String, INDArray> activations = ffToLayerActivationsInWS(true, -1, getOutputLayerIndices(),
-                    fwdType, tbptt, inputs, inputMaskArrays, labelMaskArrays, false);
+            Map<String, INDArray> activations;
+            if (!tbptt && configuration.isActivationCheckpointing()
+                    && configuration.getTrainingWorkspaceMode() != WorkspaceMode.NONE) {
+                activations = ffToLayerActivationsCheckpointed(inputs, inputMaskArrays, labelMaskArrays);
+            } else {
+                activations = ffToLayerActivationsInWS(true, -1, getOutputLayerIndices(),
+                        fwdType, tbptt, inputs, inputMaskArrays, labelMaskArrays, false);
+            }
             if (!trainingListeners.isEmpty()) {
                 try (MemoryWorkspace workspace = Nd4j.getMemoryManager().scopeOutOfWorkspaces()) {
                     for (TrainingListener tl : trainingListeners) {
@@ -2137,7 +2245,9 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
 
             VertexIndices[] inputsTo = current.getOutputVertices();
 
+            long spanStart = current.isInputVertex() ? -1 : SpanUtils.start(trainingListeners);
             try(MemoryWorkspace wsFFWorking = workspaceMgr.notifyScopeEntered(ArrayType.FF_WORKING_MEM)) {
+                spanStart = SpanUtils.end(this, trainingListeners, SpanListener.Type.WORKSPACE, vName, spanStart);
 
                 INDArray out;
                 if (current.isInputVertex()) {
@@ -2187,6 +2297,8 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
                     }
                 }
 
+                SpanUtils.end(this, trainingListeners, SpanListener.Type.FORWARD, vName, spanStart);
+
                 if (clearInputs) {
                     current.clear();
                 }
@@ -2203,6 +2315,234 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
         return activations;
     }
 
+    /**
+     * Set up the activation checkpointing segments for the topological order of this network.
+     * See {@link ComputationGraphConfiguration#activationCheckpointSegments(List)}
+     */
+    protected void initActivationCheckpointing() {
+        List<String> order = new ArrayList<>(topologicalOrder.length);
+        for (int idx : topologicalOrder) {
+            order.add(vertices[idx].getVertexName());
+        }
+        List<List<String>> segments = configuration.activationCheckpointSegments(order);
+
+        checkpointPositions = new int[topologicalOrder.length];
+        for (int i = 0; i < topologicalOrder.length; i++) {
+            checkpointPositions[topologicalOrder[i]] = i;
+        }
+        int[] segmentByPosition = new int[topologicalOrder.length];
+        Arrays.fill(segmentByPosition, -1);
+        for (int s = 0; s < segments.size(); s++) {
+            for (String name : segments.get(s)) {
+                segmentByPosition[checkpointPositions[verticesMap.get(name).getVertexIndex()]] = s;
+            }
+        }
+        checkpointRngStates = new long[segments.size() + 1][];
+        checkpointSegments = segmentByPosition;
+    }
+
+    /**
+     * Feed-forward for training with activation checkpointing, as an alternative to
+     * {@link #ffToLayerActivationsInWS(boolean, int, int[], FwdPassType, boolean, INDArray[], INDArray[], INDArray[], boolean)}
+     * for the standard forward pass.<br>
+     * The activations of vertices that aren't part of any checkpointing segment are placed in WS_ALL_LAYERS_ACT as usual.
+     * The vertices of each segment are executed in the WS_CHECKPOINT_SEGMENT workspace, which is closed at the end of
+     * the segment: only those activations consumed outside of the segment are copied to WS_ALL_LAYERS_ACT. The
+     * remaining activations are recomputed, one segment at a time, by {@link #calcBackpropGradients(boolean, boolean, INDArray...)}
+     *
+     * @return Activations retained after the forward pass. Keys = vertex name
+     */
+    protected Map<String, INDArray> ffToLayerActivationsCheckpointed(INDArray[] input, INDArray[] fMask, INDArray[] lMask) {
+        if (checkpointSegments == null) {
+            initActivationCheckpointing();
+        }
+        setInputs(input);
+        setLayerMaskArrays(fMask, lMask);
+
+        WorkspaceUtils.assertOpenAndActive(WS_ALL_LAYERS_ACT, "ffToLayerActivationsCheckpointed method requires workspace WS_ALL_LAYERS_ACT to be open");
+        LayerWorkspaceMgr workspaceMgr = LayerWorkspaceMgr.builder()
+                .with(ArrayType.ACTIVATIONS, WS_ALL_LAYERS_ACT, WS_ALL_LAYERS_ACT_CONFIG)
+                .with(ArrayType.INPUT, WS_ALL_LAYERS_ACT, WS_ALL_LAYERS_ACT_CONFIG)
+                .with(ArrayType.FF_WORKING_MEM, WS_LAYER_WORKING_MEM, WS_LAYER_WORKING_MEM_CONFIG)
+                .with(ArrayType.RNN_FF_LOOP_WORKING_MEM, WS_RNN_LOOP_WORKING_MEM, WS_RNN_LOOP_WORKING_MEM_CONFIG)
+                .build();
+        if(configuration.getCacheMode() != CacheMode.NONE) {
+            workspaceMgr.setWorkspace(ArrayType.FF_CACHE, WS_ALL_LAYERS_ACT, WS_ALL_LAYERS_ACT_CONFIG);
+        }
+        LayerWorkspaceMgr segmentMgr = checkpointSegmentWorkspaceMgr();
+        if(input[0].isAttached()) {
+            //Don't leverage out of async DataMultiSetIterator workspaces
+            workspaceMgr.setNoLeverageOverride(input[0].data().getParentWorkspace().getId());
+            segmentMgr.setNoLeverageOverride(input[0].data().getParentWorkspace().getId());
+        }
+        workspaceMgr.setHelperWorkspacePointers(helperWorkspaces);
+
+        int[] excludeIdxs = getOutputLayerIndices();
+        Map<String, INDArray> activations = new HashMap<>();
+        for (int i = 0; i < topologicalOrder.length; i++) {
+            GraphVertex current = vertices[topologicalOrder[i]];
+            String vName = current.getVertexName();
+            int vIdx = current.getVertexIndex();
+
+            if (ArrayUtils.contains(excludeIdxs, vIdx)) {
+                continue;
+            }
+
+            int segment = checkpointSegments[i];
+            if (segment >= 0) {
+                int segmentEnd = i;
+                while (segmentEnd + 1 < topologicalOrder.length && checkpointSegments[segmentEnd + 1] == segment) {
+                    segmentEnd++;
+                }
+                checkpointRngStates[segment] = new long[]{Nd4j.getRandom().rootState(), Nd4j.getRandom().nodeState()};
+                try (MemoryWorkspace wsSegment = segmentMgr.notifyScopeEntered(ArrayType.ACTIVATIONS)) {
+                    forwardCheckpointSegment(i, segmentEnd, segmentMgr, workspaceMgr, activations);
+                }
+                clearCheckpointSegmentState(i);
+                i = segmentEnd;
+                continue;
+            }
+
+            long spanStart = current.isInputVertex() ? -1 : SpanUtils.start(trainingListeners);
+            try (MemoryWorkspace wsFFWorking = workspaceMgr.notifyScopeEntered(ArrayType.FF_WORKING_MEM)) {
+                spanStart = SpanUtils.end(this, trainingListeners, SpanListener.Type.WORKSPACE, vName, spanStart);
+
+                INDArray out;
+                if (current.isInputVertex()) {
+                    out = inputs[vIdx];
+                } else {
+                    out = current.doForward(true, workspaceMgr);
+                    validateArrayWorkspaces(workspaceMgr, out, ArrayType.ACTIVATIONS, vName, false, "Feed forward (checkpointed)");
+                }
+                activations.put(vName, out);
+
+                VertexIndices[] inputsTo = current.getOutputVertices();
+                if (inputsTo != null) {
+                    for (VertexIndices v : inputsTo) {
+                        vertices[v.getVertexIndex()].setInput(v.getVertexEdgeNumber(), out, workspaceMgr);
+                    }
+                }
+
+                SpanUtils.end(this, trainingListeners, SpanListener.Type.FORWARD, vName, spanStart);
+            }
+        }
+        checkpointRngStates[checkpointRngStates.length - 1] = new long[]{Nd4j.getRandom().rootState(), Nd4j.getRandom().nodeState()};
+        checkpointedForward = true;
+
+        Nd4j.getMemoryManager().setCurrentWorkspace(null);
+
+        return activations;
+    }
+
+    /**
+     * Workspace manager for the forward pass of a single activation checkpointing segment: activations, layer inputs
+     * and (if enabled via {@link CacheMode}) cached forward pass arrays all go into WS_CHECKPOINT_SEGMENT
+     */
+    protected LayerWorkspaceMgr checkpointSegmentWorkspaceMgr() {
+        LayerWorkspaceMgr mgr = LayerWorkspaceMgr.builder()
+                .with(ArrayType.ACTIVATIONS, WS_CHECKPOINT_SEGMENT, WS_CHECKPOINT_SEGMENT_CONFIG)
+                .with(ArrayType.INPUT, WS_CHECKPOINT_SEGMENT, WS_CHECKPOINT_SEGMENT_CONFIG)
+                .with(ArrayType.FF_WORKING_MEM, WS_LAYER_WORKING_MEM, WS_LAYER_WORKING_MEM_CONFIG)
+                .with(ArrayType.RNN_FF_LOOP_WORKING_MEM, WS_RNN_LOOP_WORKING_MEM, WS_RNN_LOOP_WORKING_MEM_CONFIG)
+                .build();
+        if (configuration.getCacheMode() != CacheMode.NONE) {
+            mgr.setWorkspace(ArrayType.FF_CACHE, WS_CHECKPOINT_SEGMENT, WS_CHECKPOINT_SEGMENT_CONFIG);
+        }
+        mgr.setHelperWorkspacePointers(helperWorkspaces);
+        return mgr;
+    }
+
+    /**
+     * Forward pass for the vertices at positions [start, end] of the topological order (a single checkpointing
+     * segment), with WS_CHECKPOINT_SEGMENT open.
+     *
+     * @param segmentMgr    Workspace manager from {@link #checkpointSegmentWorkspaceMgr()}
+     * @param checkpointMgr Workspace manager for WS_ALL_LAYERS_ACT, for the initial forward pass: activations consumed
+     *                      outside of the segment are copied there, and added to the activations map.
+     *                      Null when recomputing the segment during backprop
+     */
+    private void forwardCheckpointSegment(int start, int end, LayerWorkspaceMgr segmentMgr,
+                                          LayerWorkspaceMgr checkpointMgr, Map<String, INDArray> activations) {
+        int segment = checkpointSegments[start];
+        for (int i = start; i <= end; i++) {
+            GraphVertex current = vertices[topologicalOrder[i]];
+            String vName = current.getVertexName();
+
+            //Inputs from outside of the segment are retained activations: set them again, so that preprocessors,
+            // dropout etc. are (re)applied within the segment workspace
+            VertexIndices[] inputsFrom = current.getInputVertices();
+            for (int j = 0; j < inputsFrom.length; j++) {
+                if (checkpointSegments[checkpointPositions[inputsFrom[j].getVertexIndex()]] != segment) {
+                    current.setInput(j, current.getInputs()[j], segmentMgr);
+                }
+            }
+
+            long spanStart = SpanUtils.start(trainingListeners);
+            try (MemoryWorkspace wsFFWorking = segmentMgr.notifyScopeEntered(ArrayType.FF_WORKING_MEM)) {
+                spanStart = SpanUtils.end(this, trainingListeners, SpanListener.Type.WORKSPACE, vName, spanStart);
+
+                INDArray out = current.doForward(true, segmentMgr);
+                validateArrayWorkspaces(segmentMgr, out, ArrayType.ACTIVATIONS, vName, false, "Feed forward (checkpointed)");
+
+                VertexIndices[] inputsTo = current.getOutputVertices();
+                if (inputsTo != null) {
+                    INDArray retained = null;
+                    for (VertexIndices v : inputsTo) {
+                        int inputToIndex = v.getVertexIndex();
+                        if (checkpointSegments[checkpointPositions[inputToIndex]] == segment) {
+                            vertices[inputToIndex].setInput(v.getVertexEdgeNumber(), out, segmentMgr);
+                        } else if (checkpointMgr != null) {
+                            if (retained == null) {
+                                retained = checkpointMgr.leverageTo(ArrayType.ACTIVATIONS, out);
+                                activations.put(vName, retained);
+                            }
+                            vertices[inputToIndex].setInput(v.getVertexEdgeNumber(), retained, checkpointMgr);
+                        }
+                    }
+                }
+
+                SpanUtils.end(this, trainingListeners, SpanListener.Type.FORWARD, vName, spanStart);
+            }
+        }
+    }
+
+    /**
+     * Recompute the activations of the checkpointing segment ending at the specified position of the topological
+     * order, for use in backprop. The random number generator state is restored to what it was in the original forward
+     * pass first, to ensure identical activations (for example, the same dropout masks).
+     *
+     * @return The open WS_CHECKPOINT_SEGMENT workspace holding the activations. Close it when backprop for the segment
+     * is complete
+     */
+    protected MemoryWorkspace recomputeCheckpointSegment(int end) {
+        int segment = checkpointSegments[end];
+        int start = end;
+        while (start > 0 && checkpointSegments[start - 1] == segment) {
+            start--;
+        }
+
+        long[] rngState = checkpointRngStates[segment];
+        Nd4j.getRandom().setStates(rngState[0], rngState[1]);
+
+        LayerWorkspaceMgr segmentMgr = checkpointSegmentWorkspaceMgr();
+        MemoryWorkspace wsSegment = segmentMgr.notifyScopeEntered(ArrayType.ACTIVATIONS);
+        forwardCheckpointSegment(start, end, segmentMgr, null, null);
+        return wsSegment;
+    }
+
+    /**
+     * Clear the state of the layers in the checkpointing segment starting at the specified position, that would
+     * otherwise refer to the (closed) segment workspace - such as weight noise
+     */
+    private void clearCheckpointSegmentState(int start) {
+        for (int i = start; i < topologicalOrder.length && checkpointSegments[i] == checkpointSegments[start]; i++) {
+            GraphVertex gv = vertices[topologicalOrder[i]];
+            if (gv.hasLayer()) {
+                gv.getLayer().clearNoiseWeightParams();
+            }
+        }
+    }
+
 
     /**
      * Provide the output of the specified layers, detached from any workspace. This is most commonly used at inference/test
@@ -2622,6 +2962,11 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
 
         boolean traceLog = log.isTraceEnabled();
 
+        //Activation checkpointing: the activations of each segment are recomputed when backprop reaches its last vertex
+        boolean recompute = checkpointedForward;
+        checkpointedForward = false;
+        MemoryWorkspace wsCheckpointSegment = null;
+
         Throwable t = null;
         try {
             for (int i = topologicalOrder.length - 1; i >= 0; i--) {
@@ -2634,6 +2979,12 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
                     log.trace("About backprop: {} (\"{}\") - {}", i, vertexName, current.getClass().getSimpleName());
                 }
 
+                if (recompute && wsCheckpointSegment == null && checkpointSegments[i] >= 0) {
+                    wsCheckpointSegment = recomputeCheckpointSegment(i);
+                    //As per the activation gradient workspaces below, workspace use isn't simply nested here
+                    wsCheckpointSegment.setPreviousWorkspace(initialWorkspace);
+                }
+
                 //FIXME: make the frozen vertex feature extraction more flexible
                 if (current.hasLayer() && current.getLayer() instanceof FrozenLayer || current instanceof FrozenVertex) {
                     hitFrozen = true;
@@ -2671,6 +3022,7 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
                     // layerWorkspaceMgr.keepOpen(ArrayType.values());
                 }
 
+                boolean lossOutput = false;
                 if (current.isOutputVertex()) {
                     //Two reasons for a vertex to be an output vertex:
                     //(a) it's an output layer (i.e., instanceof IOutputLayer), or
@@ -2686,6 +3038,7 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
 
                         INDArray currLabels = labels[thisOutputNumber];
                         outputLayer.setLabels(currLabels);
+                        lossOutput = true;
                     } else {
                         if ((externalEpsilons == null || externalEpsilons.length == 0)
                                 && labels[thisOutputNumber] != null) {
@@ -2703,6 +3056,7 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
                 //Actually execute backprop for the specified vertex
                 //First: Open the relevant workspace for the activations.
                 //Note that this will be closed only once the current vertex's activations have been consumed
+                long spanStart = SpanUtils.start(trainingListeners);
                 MemoryWorkspace wsActivationGrads = workspaceMgr.notifyScopeEntered(ArrayType.ACTIVATION_GRAD);
                 openActivationsWorkspaces.put(wsActivationGrads, workspaceMgr);
 
@@ -2722,9 +3076,13 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
                 Pair<Gradient, INDArray[]> pair;
                 INDArray[] epsilons;
                 try (MemoryWorkspace wsWorkingMem = workspaceMgr.notifyScopeEntered(ArrayType.BP_WORKING_MEM)) {
+                    spanStart = SpanUtils.end(this, trainingListeners, SpanListener.Type.WORKSPACE, vertexName, spanStart);
 
                     pair = current.doBackward(truncatedBPTT, workspaceMgr);
                     epsilons = pair.getSecond();
+                    if (lossOutput) {
+                        applyLossScale(pair.getFirst(), epsilons);
+                    }
 
                     //Validate workspace location for the activation gradients:
                     for (INDArray epsilon : epsilons) {
@@ -2733,6 +3091,7 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
                             validateArrayWorkspaces(workspaceMgr, epsilon, ArrayType.ACTIVATION_GRAD, vertexName, false, "Backprop");
                         }
                     }
+                    SpanUtils.end(this, trainingListeners, SpanListener.Type.BACKWARD, vertexName, spanStart);
                 }
 
                 //Inputs to the current GraphVertex:
@@ -2777,10 +3136,25 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
                 if (traceLog) {
                     log.trace("Completed backprop: {} (\"{}\") - {}", i, vertexName, current.getClass().getSimpleName());
                 }
+
+                if (wsCheckpointSegment != null && (i == 0 || checkpointSegments[i - 1] != checkpointSegments[i])) {
+                    //Backprop for the first vertex of the segment is done: its activations are no longer required
+                    wsCheckpointSegment.close();
+                    wsCheckpointSegment = null;
+                    clearCheckpointSegmentState(i);
+                }
             }
         } catch (Throwable t2) {
             t = t2;
         } finally {
+            if (wsCheckpointSegment != null) {
+                wsCheckpointSegment.close();
+            }
+            if (recompute) {
+                //Continue from the random number generator state at the end of the (original) forward pass
+                long[] rngState = checkpointRngStates[checkpointRngStates.length - 1];
+                Nd4j.getRandom().setStates(rngState[0], rngState[1]);
+            }
             Nd4j.getMemoryManager().setCurrentWorkspace(initialWorkspace);
 
             if(t != null){
@@ -3263,6 +3637,7 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
 
         if (this.flattenedParams != null && this.flattenedParams.length() == params.length()) {
             this.flattenedParams.assign(params.reshape(flattenedParams.shape()));
+            syncMasterParams();
             return;
         }
 
@@ -3407,6 +3782,7 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
             INDArray arrNew = paramTable.get(s);
             arrCurrent.assign(arrNew);
         }
+        syncMasterParams();
     }
 
     @Override
@@ -3418,6 +3794,40 @@ public class ComputationGraph implements Serializable, Model, NeuralNetwork {
         String layerName = key.substring(0, idx);
         String paramType = key.substring(idx + 1);
         getLayer(layerName).setParam(paramType, val);
+        syncMasterParams();
+    }
+
+    /**
+     * Mixed precision training only: multiply the output layer gradients and activation gradients by the current loss
+     * scale, so that small gradients don't underflow in HALF precision. The updater divides by the same scale in FP32.
+     */
+    protected void applyLossScale(Gradient gradient, INDArray[] epsilons) {
+        DynamicLossScaler lossScaler = configuration.getLossScaler();
+        if (lossScaler == null)
+            return;
+
+        double scale = lossScaler.getScale();
+        if (gradient != null) {
+            for (INDArray g : gradient.gradientForVariable().values()) {
+                g.muli(scale);
+            }
+        }
+        if (epsilons != null) {
+            for (INDArray epsilon : epsilons) {
+                if (epsilon != null)
+                    epsilon.muli(scale);
+            }
+        }
+    }
+
+    /**
+     * Mixed precision training only: parameters were modified outside of the updater, update the FP32 master copy
+     */
+    protected void syncMasterParams() {
+        ComputationGraphUpdater u = getUpdater(false);
+        if (u != null) {
+            u.syncMasterParams();
+        }
     }
 
     @Override
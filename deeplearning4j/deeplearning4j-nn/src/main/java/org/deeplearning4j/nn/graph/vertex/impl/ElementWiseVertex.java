@@ -26,6 +26,7 @@ import org.deeplearning4j.nn.gradient.Gradient;
 import org.deeplearning4j.nn.graph.ComputationGraph;
 import org.deeplearning4j.nn.graph.vertex.BaseGraphVertex;
 import org.deeplearning4j.nn.graph.vertex.VertexIndices;
+import org.nd4j.linalg.activations.IActivation;
 import org.nd4j.linalg.api.buffer.DataType;
 import org.nd4j.linalg.api.memory.MemoryWorkspace;
 import org.nd4j.linalg.api.ndarray.INDArray;
@@ -52,16 +53,32 @@ public class ElementWiseVertex extends BaseGraphVertex {
     }
 
     private Op op;
+    private IActivation activationFn;
     private int nInForwardPass;
 
     public ElementWiseVertex(ComputationGraph graph, String name, int vertexIndex, Op op, DataType dataType) {
         this(graph, name, vertexIndex, null, null, op, dataType);
     }
 
+    public ElementWiseVertex(ComputationGraph graph, String name, int vertexIndex, Op op, IActivation activationFn,
+                             DataType dataType) {
+        this(graph, name, vertexIndex, null, null, op, activationFn, dataType);
+    }
+
     public ElementWiseVertex(ComputationGraph graph, String name, int vertexIndex, VertexIndices[] inputVertices,
                              VertexIndices[] outputVertices, Op op, DataType dataType) {
+        this(graph, name, vertexIndex, inputVertices, outputVertices, op, null, dataType);
+    }
+
+    /**
+     * @param activationFn Activation function applied in place to the output of the op, without a separate
+     *                     activations array. May be null
+     */
+    public ElementWiseVertex(ComputationGraph graph, String name, int vertexIndex, VertexIndices[] inputVertices,
+                             VertexIndices[] outputVertices, Op op, IActivation activationFn, DataType dataType) {
         super(graph, name, vertexIndex, inputVertices, outputVertices, dataType);
         this.op = op;
+        this.activationFn = activationFn;
     }
 
     @Override
@@ -79,6 +96,14 @@ public class ElementWiseVertex extends BaseGraphVertex {
         if (!canDoForward())
             throw new IllegalStateException("Cannot do forward pass: inputs not set");
 
+        INDArray out = doForwardOp(workspaceMgr);
+        if (activationFn == null)
+            return out;
+        //Output of the op is always a new array here, so activation can be applied in place
+        return workspaceMgr.leverageTo(ArrayType.ACTIVATIONS, activationFn.getActivation(out, training));
+    }
+
+    private INDArray doForwardOp(LayerWorkspaceMgr workspaceMgr) {
         nInForwardPass = inputs.length;
         if (inputs.length == 1)
             return workspaceMgr.dup(ArrayType.ACTIVATIONS, inputs[0]);
@@ -181,6 +206,13 @@ public class ElementWiseVertex extends BaseGraphVertex {
         if (!canDoBackward())
             throw new IllegalStateException("Cannot do backward pass: errors not set");
 
+        INDArray epsilon = this.epsilon;
+        if (activationFn != null) {
+            //Pre-activation output isn't kept after forward pass: recompute it, outside of workspaces
+            INDArray preOut = doForwardOp(LayerWorkspaceMgr.noWorkspaces());
+            epsilon = activationFn.backprop(preOut, epsilon.dup()).getFirst();
+        }
+
         if (nInForwardPass == 1)
             return new Pair<>(null, new INDArray[] {workspaceMgr.dup(ArrayType.ACTIVATION_GRAD, epsilon)});
 
@@ -360,6 +392,6 @@ public class ElementWiseVertex extends BaseGraphVertex {
     @Override
     public String toString() {
         return "ElementWiseVertex(id=" + this.getVertexIndex() + ",name=\"" + this.getVertexName() + "\",op=" + op
-                + ")";
+                + (activationFn == null ? "" : ",activationFn=" + activationFn) + ")";
     }
 }
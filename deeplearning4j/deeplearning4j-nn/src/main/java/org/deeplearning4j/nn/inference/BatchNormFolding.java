@@ -0,0 +1,290 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.nn.inference;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
+import org.deeplearning4j.nn.conf.InputPreProcessor;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.graph.GraphVertex;
+import org.deeplearning4j.nn.conf.graph.LayerVertex;
+import org.deeplearning4j.nn.conf.layers.BatchNormalization;
+import org.deeplearning4j.nn.conf.layers.ConvolutionLayer;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.FeedForwardLayer;
+import org.deeplearning4j.nn.conf.layers.Layer;
+import org.deeplearning4j.nn.conf.layers.SeparableConvolution2D;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.params.BatchNormalizationParamInitializer;
+import org.deeplearning4j.nn.params.DefaultParamInitializer;
+import org.deeplearning4j.nn.params.SeparableConvolutionParamInitializer;
+import org.deeplearning4j.util.ConvolutionUtils;
+import org.nd4j.enums.WeightsFormat;
+import org.nd4j.linalg.activations.impl.ActivationIdentity;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.impl.broadcast.BroadcastMulOp;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.ops.transforms.Transforms;
+
+import java.util.*;
+
+/**
+ * Folds {@link BatchNormalization} layers into the preceding {@link ConvolutionLayer}, {@link SeparableConvolution2D}
+ * or {@link DenseLayer}, for inference.<br>
+ * At inference time, batch normalization is a fixed per-channel affine transform:
+ * {@code y = gamma * (x - mean) / sqrt(var + eps) + beta}. When x is the output of a convolution or dense layer, the
+ * same transform can be applied once to the weights and bias of that layer instead:
+ * {@code W' = W * scale} (per output channel) and {@code b' = (b - mean) * scale + beta}, with
+ * {@code scale = gamma / sqrt(var + eps)}. Folded batch normalization layers are removed from the network, so their
+ * forward pass - and all temporary arrays it allocates - is gone entirely.<br>
+ * <br>
+ * A batch normalization layer is folded only if all of the following hold:<br>
+ * - its only input is a ConvolutionLayer, SeparableConvolution2D or DenseLayer (exactly these classes, without layer norm)
+ *   with identity activation<br>
+ * - the output of that layer isn't used anywhere else (and isn't a network output)<br>
+ * - it has no input preprocessor<br>
+ * The preceding layer keeps its identity activation: the activation function of a batch normalization layer
+ * configuration is not applied by the layer implementation, so it is not carried over either. Layers that can't be
+ * folded are copied as is.<br>
+ * <br>
+ * The original network is not modified. The returned network is meant for inference only: it is not equivalent to the
+ * original network for training purposes, so all its layers are frozen (NoOp updater, no regularization).
+ *
+ * @see #fold(MultiLayerNetwork)
+ * @see #fold(ComputationGraph)
+ */
+@Slf4j
+public class BatchNormFolding {
+
+    private BatchNormFolding() {
+    }
+
+    /**
+     * Returns a new network with batch normalization layers folded into preceding layers where possible
+     *
+     * @param network Initialized network. Not modified
+     * @return New, frozen, network
+     */
+    public static MultiLayerNetwork fold(@NonNull MultiLayerNetwork network) {
+        if (network.getLayers() == null)
+            throw new IllegalStateException("Network must be initialized before batch normalization folding");
+
+        MultiLayerConfiguration conf = network.getLayerWiseConfigurations().clone();
+        List<NeuralNetConfiguration> confs = conf.getConfs();
+        Map<Integer, InputPreProcessor> preProcessors = conf.getInputPreProcessors();
+
+        List<NeuralNetConfiguration> newConfs = new ArrayList<>();
+        Map<Integer, InputPreProcessor> newPreProcessors = new HashMap<>();
+        //For each layer of the new network: index of the original layer, and index of the folded BN layer (or -1)
+        List<int[]> sources = new ArrayList<>();
+        for (int i = 0; i < confs.size(); i++) {
+            NeuralNetConfiguration c = confs.get(i);
+            if (preProcessors.get(i) != null)
+                newPreProcessors.put(newConfs.size(), preProcessors.get(i));
+
+            if (i + 1 < confs.size() && preProcessors.get(i + 1) == null && canFold(c.getLayer(), confs.get(i + 1).getLayer())) {
+                foldConfiguration(c);
+                sources.add(new int[] {i, i + 1});
+                newConfs.add(c);
+                i++;
+            } else {
+                sources.add(new int[] {i, -1});
+                newConfs.add(c);
+            }
+        }
+
+        for (NeuralNetConfiguration c : newConfs)
+            NetworkRewrites.freeze(c.getLayer());
+        conf.setConfs(newConfs);
+        conf.setInputPreProcessors(newPreProcessors);
+
+        MultiLayerNetwork ret = new MultiLayerNetwork(conf);
+        ret.init();
+
+        for (int i = 0; i < sources.size(); i++) {
+            int[] source = sources.get(i);
+            if (source[1] < 0)
+                NetworkRewrites.copyParams(network.getLayer(source[0]), ret.getLayer(i));
+            else
+                foldParams(network.getLayer(source[0]), network.getLayer(source[1]), ret.getLayer(i));
+        }
+
+        log.info("Folded {} of {} BatchNormalization layers", confs.size() - newConfs.size(), countBatchNorm(confs));
+        return ret;
+    }
+
+    /**
+     * Returns a new network with batch normalization layers folded into preceding layers where possible
+     *
+     * @param network Initialized network. Not modified
+     * @return New, frozen, network
+     */
+    public static ComputationGraph fold(@NonNull ComputationGraph network) {
+        if (network.getLayers() == null)
+            throw new IllegalStateException("Network must be initialized before batch normalization folding");
+
+        ComputationGraphConfiguration conf = network.getConfiguration().clone();
+        Map<String, GraphVertex> vertices = conf.getVertices();
+        Map<String, List<String>> vertexInputs = conf.getVertexInputs();
+
+        List<NeuralNetConfiguration> originalConfs = new ArrayList<>();
+        //Name of the layer folded into -> name of the folded BN layer
+        Map<String, String> folded = new HashMap<>();
+        for (Map.Entry<String, GraphVertex> entry : new ArrayList<>(vertices.entrySet())) {
+            String name = entry.getKey();
+            if (!(entry.getValue() instanceof LayerVertex))
+                continue;
+            LayerVertex vertex = (LayerVertex) entry.getValue();
+            originalConfs.add(vertex.getLayerConf());
+            List<String> inputs = vertexInputs.get(name);
+            if (vertex.getPreProcessor() != null || inputs == null || inputs.size() != 1)
+                continue;
+
+            String inputName = inputs.get(0);
+            GraphVertex input = vertices.get(inputName);
+            if (!(input instanceof LayerVertex) || folded.containsKey(inputName)
+                            || NetworkRewrites.numConsumers(conf, inputName) != 1)
+                continue;
+
+            NeuralNetConfiguration inputConf = ((LayerVertex) input).getLayerConf();
+            if (!canFold(inputConf.getLayer(), vertex.getLayerConf().getLayer()))
+                continue;
+
+            foldConfiguration(inputConf);
+            NetworkRewrites.removeVertex(conf, name, inputName);
+            folded.put(inputName, name);
+        }
+
+        NetworkRewrites.freeze(conf);
+
+        ComputationGraph ret = new ComputationGraph(conf);
+        ret.init();
+
+        for (Map.Entry<String, GraphVertex> entry : vertices.entrySet()) {
+            if (!(entry.getValue() instanceof LayerVertex))
+                continue;
+            String name = entry.getKey();
+            if (folded.containsKey(name))
+                foldParams(network.getLayer(name), network.getLayer(folded.get(name)), ret.getLayer(name));
+            else
+                NetworkRewrites.copyParams(network.getLayer(name), ret.getLayer(name));
+        }
+
+        log.info("Folded {} of {} BatchNormalization layers", folded.size(), countBatchNorm(originalConfs));
+        return ret;
+    }
+
+    /**
+     * @return True if given batch normalization layer can be folded into given layer, its only input
+     */
+    public static boolean canFold(Layer layer, Layer batchNorm) {
+        if (!(batchNorm instanceof BatchNormalization))
+            return false;
+        if (layer == null || (layer.getClass() != ConvolutionLayer.class && layer.getClass() != SeparableConvolution2D.class
+                        && layer.getClass() != DenseLayer.class))
+            return false;
+        if (layer instanceof DenseLayer && ((DenseLayer) layer).hasLayerNorm())
+            return false;
+
+        FeedForwardLayer l = (FeedForwardLayer) layer;
+        return l.getActivationFn() instanceof ActivationIdentity && l.getNOut() == ((BatchNormalization) batchNorm).getNOut();
+    }
+
+    private static void foldConfiguration(NeuralNetConfiguration conf) {
+        Layer layer = conf.getLayer();
+        if (layer instanceof ConvolutionLayer)
+            ((ConvolutionLayer) layer).setHasBias(true);     //Including SeparableConvolution2D
+        else
+            ((DenseLayer) layer).setHasBias(true);
+        //Parameters may change (bias added): let the param initializer register them again
+        conf.clearVariables();
+    }
+
+    private static void foldParams(org.deeplearning4j.nn.api.Layer from, org.deeplearning4j.nn.api.Layer batchNorm,
+                    org.deeplearning4j.nn.api.Layer to) {
+        BatchNormalization bnConf = (BatchNormalization) batchNorm.conf().getLayer();
+        INDArray mean = batchNorm.getParam(BatchNormalizationParamInitializer.GLOBAL_MEAN);
+        long nOut = mean.length();
+        mean = mean.reshape(nOut);
+
+        INDArray var;
+        if (bnConf.isUseLogStd()) {
+            //var = (10^log10(s))^2
+            INDArray log10s = batchNorm.getParam(BatchNormalizationParamInitializer.GLOBAL_LOG_STD).reshape(nOut);
+            var = Transforms.exp(log10s.mul(Math.log(10.0)), false);
+            var.muli(var);
+        } else {
+            var = batchNorm.getParam(BatchNormalizationParamInitializer.GLOBAL_VAR).reshape(nOut);
+        }
+
+        INDArray gamma;
+        INDArray beta;
+        if (bnConf.isLockGammaBeta()) {
+            //Same as BatchNormalization layer: fixed gamma/beta are only applied if both are non-default
+            boolean apply = bnConf.getGamma() != 1.0 && bnConf.getBeta() != 0.0;
+            gamma = Nd4j.valueArrayOf(new long[] {nOut}, apply ? bnConf.getGamma() : 1.0, mean.dataType());
+            beta = Nd4j.valueArrayOf(new long[] {nOut}, apply ? bnConf.getBeta() : 0.0, mean.dataType());
+        } else {
+            gamma = batchNorm.getParam(BatchNormalizationParamInitializer.GAMMA).reshape(nOut);
+            beta = batchNorm.getParam(BatchNormalizationParamInitializer.BETA).reshape(nOut);
+        }
+
+        INDArray scale = gamma.div(Transforms.sqrt(var.add(bnConf.getEps()), false));
+
+        Layer layerConf = from.conf().getLayer();
+        String weightKey = DefaultParamInitializer.WEIGHT_KEY;
+        int outputDim;
+        if (layerConf instanceof SeparableConvolution2D) {
+            //Only pointwise weights [nOut, depthMultiplier * nIn, 1, 1] are scaled, depthwise weights are kept as is
+            weightKey = SeparableConvolutionParamInitializer.POINT_WISE_WEIGHT_KEY;
+            outputDim = 0;
+        } else if (layerConf instanceof ConvolutionLayer) {
+            WeightsFormat format = ConvolutionUtils.getWeightFormat(((ConvolutionLayer) layerConf).getCnn2dDataFormat());
+            outputDim = format == WeightsFormat.YXIO ? 3 : 0;
+        } else {
+            //Dense weights: [nIn, nOut]
+            outputDim = 1;
+        }
+
+        INDArray w = from.getParam(weightKey).dup();
+        Nd4j.getExecutioner().exec(new BroadcastMulOp(w, scale, w, outputDim));
+
+        INDArray b = from.getParam(DefaultParamInitializer.BIAS_KEY);
+        b = b == null ? Nd4j.zeros(mean.dataType(), nOut) : b.reshape(nOut).dup();
+        b.subi(mean).muli(scale).addi(beta);
+
+        NetworkRewrites.copyParams(from, to);
+        to.setParam(weightKey, w);
+        to.setParam(DefaultParamInitializer.BIAS_KEY, b.reshape(to.getParam(DefaultParamInitializer.BIAS_KEY).shape()));
+    }
+
+    private static int countBatchNorm(List<NeuralNetConfiguration> confs) {
+        int count = 0;
+        for (NeuralNetConfiguration c : confs) {
+            if (c.getLayer() instanceof BatchNormalization)
+                count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.nn.inference;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
+import org.deeplearning4j.nn.conf.graph.ElementWiseVertex;
+import org.deeplearning4j.nn.conf.graph.GraphVertex;
+import org.deeplearning4j.nn.conf.graph.LayerVertex;
+import org.deeplearning4j.nn.conf.layers.*;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.nd4j.linalg.activations.IActivation;
+import org.nd4j.linalg.activations.impl.ActivationIdentity;
+
+import java.util.*;
+
+/**
+ * Inference compile step for {@link ComputationGraph}: rewrites common vertex patterns into fused vertices, so fewer
+ * intermediate activation arrays are materialized in the workspace during the forward pass.<br>
+ * <br>
+ * Patterns:<br>
+ * - layer -> {@link ActivationLayer}: for ConvolutionLayer, SeparableConvolution2D, DepthwiseConvolution2D and DenseLayer
+ *   with identity activation, the activation function is moved into the layer (applied in place to its output)<br>
+ * - {@link ElementWiseVertex} -> ActivationLayer: replaced with a single ElementWiseVertex with activation function<br>
+ * - chains of ElementWiseVertex with the same associative op (Add, Product, Max), such as {@code add(add(a, b), c)}:
+ *   merged into a single ElementWiseVertex with all inputs, {@code add(a, b, c)}<br>
+ * In all cases, the output of the first vertex must not be used anywhere else, and the ActivationLayer must not have
+ * an input preprocessor.<br>
+ * <br>
+ * In networks such as ResNet50 and Xception, convolutions are followed by batch normalization: use
+ * {@link BatchNormFolding#fold(ComputationGraph)} first, to expose the convolution -> activation patterns.<br>
+ * The original network is not modified. As with batch normalization folding, the returned network is meant for
+ * inference only, and all its layers are frozen.
+ */
+@Slf4j
+public class GraphFusion {
+
+    private static final Set<Class<? extends Layer>> ACTIVATION_FUSION_LAYERS = new HashSet<>(Arrays.asList(
+            ConvolutionLayer.class, SeparableConvolution2D.class, DepthwiseConvolution2D.class, DenseLayer.class));
+
+    private GraphFusion() {
+    }
+
+    /**
+     * Returns a new network with fusible vertex patterns replaced by fused vertices
+     *
+     * @param network Initialized network. Not modified
+     * @return New, frozen, network
+     */
+    public static ComputationGraph fuse(@NonNull ComputationGraph network) {
+        if (network.getLayers() == null)
+            throw new IllegalStateException("Network must be initialized before graph fusion");
+
+        ComputationGraphConfiguration conf = network.getConfiguration().clone();
+        int merged = mergeElementWiseChains(conf);
+        int activations = fuseActivations(conf);
+
+        NetworkRewrites.freeze(conf);
+        ComputationGraph ret = new ComputationGraph(conf);
+        ret.init();
+
+        for (Map.Entry<String, GraphVertex> entry : conf.getVertices().entrySet()) {
+            if (entry.getValue() instanceof LayerVertex)
+                NetworkRewrites.copyParams(network.getLayer(entry.getKey()), ret.getLayer(entry.getKey()));
+        }
+
+        log.info("Graph fusion: {} activation layers fused, {} element-wise vertices merged; vertices {} -> {}",
+                activations, merged, network.getVertices().length, ret.getVertices().length);
+        return ret;
+    }
+
+    private static int fuseActivations(ComputationGraphConfiguration conf) {
+        Map<String, GraphVertex> vertices = conf.getVertices();
+        int count = 0;
+        for (Map.Entry<String, GraphVertex> entry : new ArrayList<>(vertices.entrySet())) {
+            String name = entry.getKey();
+            IActivation activation = activationOf(entry.getValue());
+            List<String> inputs = conf.getVertexInputs().get(name);
+            if (activation == null || inputs == null || inputs.size() != 1)
+                continue;
+
+            String inputName = inputs.get(0);
+            GraphVertex input = vertices.get(inputName);
+            if (input == null || NetworkRewrites.numConsumers(conf, inputName) != 1)
+                continue;
+
+            if (input instanceof ElementWiseVertex && ((ElementWiseVertex) input).getActivationFn() == null) {
+                ((ElementWiseVertex) input).setActivationFn(activation);
+            } else if (input instanceof LayerVertex && canFuseActivation(((LayerVertex) input).getLayerConf().getLayer())) {
+                ((BaseLayer) ((LayerVertex) input).getLayerConf().getLayer()).setActivationFn(activation);
+            } else {
+                continue;
+            }
+
+            NetworkRewrites.removeVertex(conf, name, inputName);
+            count++;
+        }
+        return count;
+    }
+
+    private static int mergeElementWiseChains(ComputationGraphConfiguration conf) {
+        Map<String, GraphVertex> vertices = conf.getVertices();
+        int count = 0;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Map.Entry<String, GraphVertex> entry : vertices.entrySet()) {
+                if (!(entry.getValue() instanceof ElementWiseVertex))
+                    continue;
+                ElementWiseVertex.Op op = ((ElementWiseVertex) entry.getValue()).getOp();
+                if (op != ElementWiseVertex.Op.Add && op != ElementWiseVertex.Op.Product && op != ElementWiseVertex.Op.Max)
+                    continue;
+
+                List<String> inputs = conf.getVertexInputs().get(entry.getKey());
+                for (int i = 0; i < inputs.size(); i++) {
+                    String inputName = inputs.get(i);
+                    GraphVertex input = vertices.get(inputName);
+                    if (!(input instanceof ElementWiseVertex) || ((ElementWiseVertex) input).getOp() != op
+                                    || ((ElementWiseVertex) input).getActivationFn() != null
+                                    || NetworkRewrites.numConsumers(conf, inputName) != 1)
+                        continue;
+
+                    List<String> inputInputs = conf.getVertexInputs().get(inputName);
+                    inputs.remove(i);
+                    inputs.addAll(i, inputInputs);
+                    vertices.remove(inputName);
+                    conf.getVertexInputs().remove(inputName);
+                    count++;
+                    changed = true;
+                    break;
+                }
+                if (changed)
+                    break;
+            }
+        }
+        return count;
+    }
+
+    private static IActivation activationOf(GraphVertex vertex) {
+        if (!(vertex instanceof LayerVertex) || ((LayerVertex) vertex).getPreProcessor() != null)
+            return null;
+        Layer layer = ((LayerVertex) vertex).getLayerConf().getLayer();
+        return layer instanceof ActivationLayer ? ((ActivationLayer) layer).getActivationFn() : null;
+    }
+
+    /**
+     * @return True if activation function of given layer can be replaced by the one of a following ActivationLayer
+     */
+    public static boolean canFuseActivation(Layer layer) {
+        return layer != null && ACTIVATION_FUSION_LAYERS.contains(layer.getClass())
+                        && ((BaseLayer) layer).getActivationFn() instanceof ActivationIdentity;
+    }
+}
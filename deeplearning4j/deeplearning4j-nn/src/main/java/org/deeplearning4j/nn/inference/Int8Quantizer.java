@@ -0,0 +1,281 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.nn.inference;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.ActivationLayer;
+import org.deeplearning4j.nn.conf.layers.Layer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.evaluation.classification.Evaluation;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.api.DataSet;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Post-training INT8 quantization of {@link MultiLayerNetwork} DenseLayer and ConvolutionLayer layers, for CPU inference.<br>
+ * <br>
+ * Steps:<br>
+ * 1. Calibration: sample data is passed through the network, recording the maximum absolute input value of each
+ *    quantizable layer. Weights get one symmetric scale per output channel, see {@link QuantizedLayer}<br>
+ * 2. Accuracy check: classification accuracy of the original network, of the network with each single layer quantized,
+ *    and of the network with all layers quantized is measured on the evaluation data<br>
+ * 3. Per-layer fallback: while accuracy loss exceeds {@link Builder#maxAccuracyLoss(double)}, layers are moved back to
+ *    floating point, starting with the one that loses most accuracy on its own<br>
+ * The INT8 GEMM kernel is used if the ND4J backend supports int8 x int8 -> int32 matmul, otherwise weight-only
+ * quantization (see {@link QuantizedLayer.Kernel}).<br>
+ * <br>
+ * Usage:
+ * <pre>
+ * {@code
+ * QuantizedNetwork quantized = new Int8Quantizer.Builder()
+ *         .calibrationData(trainSample)
+ *         .evaluationData(testData)
+ *         .maxAccuracyLoss(0.005)
+ *         .build()
+ *         .quantize(network);
+ * log.info(quantized.getReport().toString());
+ * INDArray out = quantized.output(features);
+ * }
+ * </pre>
+ */
+@Slf4j
+public class Int8Quantizer {
+
+    private final DataSetIterator calibrationData;
+    private final DataSetIterator evaluationData;
+    private final int calibrationBatches;
+    private final double maxAccuracyLoss;
+    private final QuantizedLayer.Kernel kernel;
+
+    protected Int8Quantizer(Builder builder) {
+        this.calibrationData = builder.calibrationData;
+        this.evaluationData = builder.evaluationData == null ? builder.calibrationData : builder.evaluationData;
+        this.calibrationBatches = builder.calibrationBatches;
+        this.maxAccuracyLoss = builder.maxAccuracyLoss;
+        this.kernel = builder.kernel != null ? builder.kernel
+                        : (QuantizedLayer.isInt8GemmSupported() ? QuantizedLayer.Kernel.INT8_GEMM : QuantizedLayer.Kernel.WEIGHT_ONLY);
+    }
+
+    /**
+     * Quantizes given network. The original network is not modified
+     *
+     * @param network Initialized network, trained for classification
+     * @return Inference-only network, with the quantization report
+     */
+    public QuantizedNetwork quantize(@NonNull MultiLayerNetwork network) {
+        if (network.getLayers() == null)
+            throw new IllegalStateException("Network must be initialized before quantization");
+
+        int nLayers = network.getnLayers();
+        double[] maxAbsInput = calibrate(network);
+
+        QuantizedLayer[] candidates = new QuantizedLayer[nLayers];
+        List<Integer> candidateIdxs = new ArrayList<>();
+        for (int i = 0; i < nLayers; i++) {
+            if (!QuantizedLayer.isSupported(network.getLayer(i).conf().getLayer()))
+                continue;
+            double inputScale = maxAbsInput[i] > 0 ? maxAbsInput[i] / 127.0 : 1.0;
+            candidates[i] = QuantizedLayer.quantize(network.getLayer(i), inputScale, kernel);
+            candidateIdxs.add(i);
+        }
+
+        double originalAccuracy = accuracy(network::output);
+
+        //Accuracy loss of each layer on its own: used for the report, and to decide fallback order
+        double[] layerLoss = new double[nLayers];
+        Arrays.fill(layerLoss, Double.NaN);
+        for (int i : candidateIdxs) {
+            QuantizedLayer[] single = new QuantizedLayer[nLayers];
+            single[i] = candidates[i];
+            layerLoss[i] = originalAccuracy - accuracy(new QuantizedNetwork(network, single)::output);
+        }
+
+        List<Integer> quantizedIdxs = new ArrayList<>(candidateIdxs);
+        quantizedIdxs.sort((a, b) -> Double.compare(layerLoss[b], layerLoss[a]));
+        double quantizedAccuracy = accuracy(new QuantizedNetwork(network, select(candidates, quantizedIdxs))::output);
+        while (!quantizedIdxs.isEmpty() && originalAccuracy - quantizedAccuracy > maxAccuracyLoss) {
+            int fallback = quantizedIdxs.remove(0);
+            log.info("Layer {} kept in floating point: accuracy loss {} exceeds {}", fallback,
+                            originalAccuracy - quantizedAccuracy, maxAccuracyLoss);
+            quantizedAccuracy = quantizedIdxs.isEmpty() ? originalAccuracy
+                            : accuracy(new QuantizedNetwork(network, select(candidates, quantizedIdxs))::output);
+        }
+
+        QuantizedLayer[] quantized = select(candidates, quantizedIdxs);
+        QuantizedNetwork ret = new QuantizedNetwork(withPlaceholders(network, quantized), quantized);
+
+        List<QuantizationReport.LayerReport> layerReports = new ArrayList<>();
+        for (int i = 0; i < nLayers; i++) {
+            Layer conf = network.getLayer(i).conf().getLayer();
+            QuantizationReport.Status status = quantized[i] != null ? QuantizationReport.Status.QUANTIZED
+                            : (candidates[i] != null ? QuantizationReport.Status.FALLBACK : QuantizationReport.Status.UNSUPPORTED);
+            layerReports.add(new QuantizationReport.LayerReport(i, conf.getLayerName(), conf.getClass().getSimpleName(),
+                            status, layerLoss[i]));
+        }
+
+        long originalSize = network.numParams() * network.getLayerWiseConfigurations().getDataType().width();
+        QuantizationReport report = new QuantizationReport(kernel, layerReports, originalSize, ret.sizeBytes(),
+                        originalAccuracy, quantizedAccuracy, latencyMs(network::output), latencyMs(ret::output));
+        ret.setReport(report);
+        log.info("{}", report);
+        return ret;
+    }
+
+    private double[] calibrate(MultiLayerNetwork network) {
+        double[] maxAbs = new double[network.getnLayers()];
+        calibrationData.reset();
+        int batches = 0;
+        while (calibrationData.hasNext() && (calibrationBatches <= 0 || batches < calibrationBatches)) {
+            DataSet ds = calibrationData.next();
+            //Entry i: input of layer i (before its preprocessor, which doesn't change values)
+            List<INDArray> activations = network.feedForward(ds.getFeatures(), false);
+            for (int i = 0; i < maxAbs.length; i++)
+                maxAbs[i] = Math.max(maxAbs[i], activations.get(i).amaxNumber().doubleValue());
+            batches++;
+        }
+        if (batches == 0)
+            throw new IllegalStateException("No calibration data: calibration iterator is empty");
+        return maxAbs;
+    }
+
+    private double accuracy(Function<INDArray, INDArray> model) {
+        Evaluation evaluation = new Evaluation();
+        evaluationData.reset();
+        while (evaluationData.hasNext()) {
+            DataSet ds = evaluationData.next();
+            evaluation.eval(ds.getLabels(), model.apply(ds.getFeatures()));
+        }
+        return evaluation.accuracy();
+    }
+
+    private double latencyMs(Function<INDArray, INDArray> model) {
+        evaluationData.reset();
+        long time = 0;
+        int batches = 0;
+        while (evaluationData.hasNext()) {
+            INDArray features = evaluationData.next().getFeatures();
+            long start = System.nanoTime();
+            model.apply(features);
+            time += System.nanoTime() - start;
+            batches++;
+        }
+        return batches == 0 ? 0 : time / 1e6 / batches;
+    }
+
+    private static QuantizedLayer[] select(QuantizedLayer[] candidates, Collection<Integer> idxs) {
+        QuantizedLayer[] ret = new QuantizedLayer[candidates.length];
+        for (int i : idxs)
+            ret[i] = candidates[i];
+        return ret;
+    }
+
+    /**
+     * Returns a copy of the network, where quantized layers are replaced with parameter-free identity placeholders
+     */
+    private static MultiLayerNetwork withPlaceholders(MultiLayerNetwork network, QuantizedLayer[] quantized) {
+        MultiLayerConfiguration conf = network.getLayerWiseConfigurations().clone();
+        for (int i = 0; i < quantized.length; i++) {
+            if (quantized[i] == null)
+                continue;
+            NeuralNetConfiguration c = conf.getConf(i);
+            c.setLayer(new ActivationLayer.Builder().activation(Activation.IDENTITY).name(c.getLayer().getLayerName()).build());
+            c.clearVariables();
+        }
+        for (NeuralNetConfiguration c : conf.getConfs())
+            NetworkRewrites.freeze(c.getLayer());
+
+        MultiLayerNetwork ret = new MultiLayerNetwork(conf);
+        ret.init();
+        for (int i = 0; i < quantized.length; i++) {
+            if (quantized[i] == null)
+                NetworkRewrites.copyParams(network.getLayer(i), ret.getLayer(i));
+        }
+        return ret;
+    }
+
+    public static class Builder {
+        private DataSetIterator calibrationData;
+        private DataSetIterator evaluationData;
+        private int calibrationBatches = 0;
+        private double maxAccuracyLoss = 0.01;
+        private QuantizedLayer.Kernel kernel;
+
+        public Builder() {}
+
+        /**
+         * Sample data used to calibrate input scales of quantized layers. Must support reset
+         */
+        public Builder calibrationData(@NonNull DataSetIterator calibrationData) {
+            this.calibrationData = calibrationData;
+            return this;
+        }
+
+        /**
+         * Labelled data used to measure accuracy and latency. Must support reset. Default: calibration data
+         */
+        public Builder evaluationData(DataSetIterator evaluationData) {
+            this.evaluationData = evaluationData;
+            return this;
+        }
+
+        /**
+         * Maximum number of calibration minibatches to use. Default: 0, all of them
+         */
+        public Builder calibrationBatches(int calibrationBatches) {
+            this.calibrationBatches = calibrationBatches;
+            return this;
+        }
+
+        /**
+         * Maximum accepted loss of classification accuracy (0.01 = 1 percentage point). Layers are moved back to
+         * floating point until the loss is within this threshold. Default: 0.01
+         */
+        public Builder maxAccuracyLoss(double maxAccuracyLoss) {
+            this.maxAccuracyLoss = maxAccuracyLoss;
+            return this;
+        }
+
+        /**
+         * Kernel to use. Default: INT8_GEMM if supported by the ND4J backend, WEIGHT_ONLY otherwise
+         */
+        public Builder kernel(QuantizedLayer.Kernel kernel) {
+            this.kernel = kernel;
+            return this;
+        }
+
+        public Int8Quantizer build() {
+            if (calibrationData == null)
+                throw new IllegalStateException("Cannot build Int8Quantizer without calibration data");
+            if (!calibrationData.resetSupported() || (evaluationData != null && !evaluationData.resetSupported()))
+                throw new IllegalStateException("Calibration and evaluation iterators must support reset");
+            if (maxAccuracyLoss < 0)
+                throw new IllegalStateException("Max accuracy loss must be >= 0, got " + maxAccuracyLoss);
+            return new Int8Quantizer(this);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.nn.inference;
+
+import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
+import org.deeplearning4j.nn.conf.graph.GraphVertex;
+import org.deeplearning4j.nn.conf.graph.LayerVertex;
+import org.deeplearning4j.nn.conf.layers.BaseLayer;
+import org.deeplearning4j.nn.conf.layers.Layer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.learning.config.NoOp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Configuration and parameter helpers shared by the inference network rewrites in this package
+ */
+class NetworkRewrites {
+
+    private NetworkRewrites() {
+    }
+
+    /**
+     * @return Number of vertices (and network outputs) that use the output of given vertex
+     */
+    static int numConsumers(ComputationGraphConfiguration conf, String vertexName) {
+        int count = Collections.frequency(conf.getNetworkOutputs(), vertexName);
+        for (List<String> inputs : conf.getVertexInputs().values())
+            count += Collections.frequency(inputs, vertexName);
+        return count;
+    }
+
+    /**
+     * Removes given vertex from the configuration, connecting its consumers to the replacement vertex instead
+     */
+    static void removeVertex(ComputationGraphConfiguration conf, String vertexName, String replacement) {
+        conf.getVertices().remove(vertexName);
+        conf.getVertexInputs().remove(vertexName);
+        for (List<String> inputs : conf.getVertexInputs().values())
+            Collections.replaceAll(inputs, vertexName, replacement);
+        Collections.replaceAll(conf.getNetworkOutputs(), vertexName, replacement);
+    }
+
+    /**
+     * Freezes all layers of the configuration: NoOp updater, no regularization
+     */
+    static void freeze(ComputationGraphConfiguration conf) {
+        for (GraphVertex vertex : conf.getVertices().values()) {
+            if (vertex instanceof LayerVertex)
+                freeze(((LayerVertex) vertex).getLayerConf().getLayer());
+        }
+    }
+
+    static void freeze(Layer layer) {
+        if (layer instanceof BaseLayer) {
+            BaseLayer l = (BaseLayer) layer;
+            l.setIUpdater(new NoOp());
+            l.setBiasUpdater(new NoOp());
+            l.setRegularization(new ArrayList<>());
+            l.setRegularizationBias(new ArrayList<>());
+        }
+    }
+
+    static void copyParams(org.deeplearning4j.nn.api.Layer from, org.deeplearning4j.nn.api.Layer to) {
+        for (Map.Entry<String, INDArray> entry : from.paramTable().entrySet())
+            to.setParam(entry.getKey(), entry.getValue());
+    }
+}
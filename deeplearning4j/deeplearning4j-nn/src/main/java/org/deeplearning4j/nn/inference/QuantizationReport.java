@@ -0,0 +1,89 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.nn.inference;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Report of {@link Int8Quantizer}: per-layer decisions, and size, latency and accuracy of the original and the
+ * quantized networks. Accuracy and latency are measured on the evaluation data of the quantizer
+ */
+@Data
+@AllArgsConstructor
+public class QuantizationReport {
+
+    public enum Status {
+        /**
+         * Layer runs with INT8 weights
+         */
+        QUANTIZED,
+        /**
+         * Layer could be quantized, but kept in floating point as quantizing it lost too much accuracy
+         */
+        FALLBACK,
+        /**
+         * Layer type can't be quantized
+         */
+        UNSUPPORTED
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class LayerReport {
+        private int index;
+        private String name;
+        private String type;
+        private Status status;
+        /**
+         * Accuracy loss when quantizing only this layer, or NaN if not measured
+         */
+        private double accuracyLoss;
+    }
+
+    private QuantizedLayer.Kernel kernel;
+    private List<LayerReport> layers;
+    private long originalSizeBytes;
+    private long quantizedSizeBytes;
+    private double originalAccuracy;
+    private double quantizedAccuracy;
+    private double originalLatencyMs;
+    private double quantizedLatencyMs;
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("INT8 quantization report (kernel: ").append(kernel).append(")\n");
+        sb.append(String.format("%-6s %-25s %-20s %-12s %s%n", "Index", "Name", "Type", "Status", "Accuracy loss"));
+        for (LayerReport l : layers) {
+            sb.append(String.format("%-6d %-25s %-20s %-12s %s%n", l.getIndex(), l.getName(), l.getType(), l.getStatus(),
+                            Double.isNaN(l.getAccuracyLoss()) ? "-" : String.format("%.4f", l.getAccuracyLoss())));
+        }
+        sb.append(String.format("Size:     %d -> %d bytes (%.2fx)%n", originalSizeBytes, quantizedSizeBytes,
+                        originalSizeBytes / (double) Math.max(1, quantizedSizeBytes)));
+        sb.append(String.format("Latency:  %.3f -> %.3f ms per minibatch%n", originalLatencyMs, quantizedLatencyMs));
+        sb.append(String.format("Accuracy: %.4f -> %.4f (delta %.4f)%n", originalAccuracy, quantizedAccuracy,
+                        quantizedAccuracy - originalAccuracy));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.nn.inference;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.conf.CNN2DFormat;
+import org.deeplearning4j.nn.conf.ConvolutionMode;
+import org.deeplearning4j.nn.conf.layers.ConvolutionLayer;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.FeedForwardLayer;
+import org.deeplearning4j.nn.conf.layers.Layer;
+import org.deeplearning4j.nn.params.DefaultParamInitializer;
+import org.nd4j.linalg.activations.IActivation;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.DynamicCustomOp;
+import org.nd4j.linalg.convolution.Convolution;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.ops.transforms.Transforms;
+
+import java.util.Arrays;
+
+/**
+ * INT8 inference kernel for a single {@link DenseLayer} or {@link ConvolutionLayer}, created by {@link Int8Quantizer}.<br>
+ * Weights are stored as INT8 in GEMM layout ([nIn, nOut] for dense layers, [inChannels * kH * kW, outChannels] for
+ * convolutions, which are computed as im2col + GEMM), with one symmetric scale per output channel:
+ * {@code W ~= Wq * weightScale[c]}. Inputs are quantized with a single symmetric scale calibrated on sample data.<br>
+ * <br>
+ * Two kernels are available, see {@link Kernel}. Both keep only INT8 weights in memory; INT8_GEMM additionally runs
+ * the matrix multiplication itself as int8 x int8 -> int32.
+ */
+@Slf4j
+@Getter
+public class QuantizedLayer {
+
+    public enum Kernel {
+        /**
+         * Inputs quantized to INT8, int8 x int8 -> int32 GEMM, result rescaled by inputScale * weightScale[c].
+         * Requires libnd4j matmul support for these types (for example, the oneDNN platform implementation)
+         */
+        INT8_GEMM,
+        /**
+         * Weights dequantized to the network data type for each forward pass, then regular floating point GEMM
+         */
+        WEIGHT_ONLY
+    }
+
+    private static Boolean int8GemmSupported;
+
+    private final int layerIndex;
+    private final Layer layerConf;
+    private final Kernel kernel;
+    private final double inputScale;
+    private final INDArray weights;
+    private final INDArray weightScales;
+    private final INDArray outputScales;
+    private final INDArray bias;
+    private final IActivation activationFn;
+    private final DataType dataType;
+
+    protected QuantizedLayer(int layerIndex, @NonNull Layer layerConf, @NonNull Kernel kernel, double inputScale,
+                    @NonNull INDArray floatWeights, INDArray bias) {
+        this.layerIndex = layerIndex;
+        this.layerConf = layerConf;
+        this.kernel = kernel;
+        this.inputScale = inputScale;
+        this.activationFn = ((FeedForwardLayer) layerConf).getActivationFn();
+        this.dataType = floatWeights.dataType();
+
+        INDArray w = toGemmLayout(layerConf, floatWeights);
+        INDArray maxAbs = w.amax(0);
+        this.weightScales = Transforms.max(maxAbs.divi(127.0), 1e-12, false);
+        this.weights = Transforms.round(w.divRowVector(weightScales), false).castTo(DataType.INT8);
+        this.outputScales = weightScales.mul(inputScale);
+        this.bias = bias == null ? null : bias.reshape(bias.length()).dup();
+    }
+
+    /**
+     * Quantizes given layer
+     *
+     * @param layer      Layer to quantize. Must be supported, see {@link #isSupported(Layer)}
+     * @param inputScale Symmetric input scale: maximum absolute input value / 127
+     * @param kernel     Kernel to use
+     */
+    public static QuantizedLayer quantize(@NonNull org.deeplearning4j.nn.api.Layer layer, double inputScale,
+                    @NonNull Kernel kernel) {
+        Layer conf = layer.conf().getLayer();
+        if (!isSupported(conf))
+            throw new IllegalArgumentException("Layer " + layer.getIndex() + " of type " + conf.getClass().getSimpleName()
+                            + " can't be quantized");
+        return new QuantizedLayer(layer.getIndex(), conf, kernel, inputScale,
+                        layer.getParam(DefaultParamInitializer.WEIGHT_KEY), layer.getParam(DefaultParamInitializer.BIAS_KEY));
+    }
+
+    /**
+     * @return True if layer of given configuration can be quantized: DenseLayer without layer norm, or NCHW ConvolutionLayer
+     * with non-causal convolution mode. Subclasses of these layers are not supported
+     */
+    public static boolean isSupported(Layer layer) {
+        if (layer == null)
+            return false;
+        if (layer.getClass() == DenseLayer.class)
+            return !((DenseLayer) layer).hasLayerNorm();
+        if (layer.getClass() == ConvolutionLayer.class) {
+            ConvolutionLayer c = (ConvolutionLayer) layer;
+            return c.getCnn2dDataFormat() == CNN2DFormat.NCHW && c.getConvolutionMode() != ConvolutionMode.Causal;
+        }
+        return false;
+    }
+
+    /**
+     * @return True if current ND4J backend computes int8 x int8 -> int32 matrix multiplication correctly. Checked once
+     */
+    public static synchronized boolean isInt8GemmSupported() {
+        if (int8GemmSupported == null) {
+            try {
+                //Products that overflow int8 detect kernels accumulating in the input type
+                INDArray a = Nd4j.createFromArray(new byte[][] {{100, -100, 50}, {127, 127, 127}});
+                INDArray b = Nd4j.createFromArray(new byte[][] {{100}, {-100}, {2}});
+                INDArray out = Nd4j.create(DataType.INT32, 2, 1);
+                Nd4j.exec(DynamicCustomOp.builder("matmul").addInputs(a, b).addOutputs(out).build());
+                int8GemmSupported = out.getInt(0, 0) == 20100 && out.getInt(1, 0) == 254;
+            } catch (Exception e) {
+                log.debug("INT8 matmul is not supported", e);
+                int8GemmSupported = false;
+            }
+            log.info("INT8 GEMM supported by current backend: {}", int8GemmSupported);
+        }
+        return int8GemmSupported;
+    }
+
+    /**
+     * Inference forward pass
+     *
+     * @param input Layer input: [minibatch, nIn] for dense layers, [minibatch, channels, height, width] for convolutions
+     * @return Layer activations
+     */
+    public INDArray activate(@NonNull INDArray input) {
+        INDArray x = input.castTo(dataType);
+        long[] outShape = null;
+        if (layerConf instanceof ConvolutionLayer) {
+            ConvolutionLayer c = (ConvolutionLayer) layerConf;
+            //[minibatch, inChannels, kH, kW, outH, outW]
+            INDArray cols = Convolution.im2col(x, (int) c.getKernelSize()[0], (int) c.getKernelSize()[1],
+                            (int) c.getStride()[0], (int) c.getStride()[1], (int) c.getPadding()[0], (int) c.getPadding()[1],
+                            (int) c.getDilation()[0], (int) c.getDilation()[1], c.getConvolutionMode() == ConvolutionMode.Same);
+            outShape = new long[] {cols.size(0), cols.size(4), cols.size(5), weights.size(1)};
+            x = cols.permute(0, 4, 5, 1, 2, 3).reshape('c', outShape[0] * outShape[1] * outShape[2], weights.size(0));
+        }
+
+        INDArray z;
+        if (kernel == Kernel.INT8_GEMM) {
+            INDArray xq = Transforms.round(x.div(inputScale), false);
+            xq = Transforms.max(Transforms.min(xq, 127.0, false), -127.0, false).castTo(DataType.INT8);
+            INDArray acc = Nd4j.create(DataType.INT32, xq.size(0), weights.size(1));
+            Nd4j.exec(DynamicCustomOp.builder("matmul").addInputs(xq, weights).addOutputs(acc).build());
+            z = acc.castTo(dataType).muliRowVector(outputScales);
+        } else {
+            z = x.mmul(weights.castTo(dataType).muliRowVector(weightScales));
+        }
+
+        if (bias != null)
+            z.addiRowVector(bias);
+
+        if (outShape != null)
+            z = z.reshape('c', outShape).permute(0, 3, 1, 2).dup('c');
+
+        return activationFn.getActivation(z, false);
+    }
+
+    /**
+     * @return Memory used by this layer: INT8 weights, and scales + bias in the network data type
+     */
+    public long sizeBytes() {
+        long floats = weightScales.length() + (bias == null ? 0 : bias.length());
+        return weights.length() + floats * dataType.width();
+    }
+
+    private static INDArray toGemmLayout(Layer layerConf, INDArray weights) {
+        if (layerConf instanceof ConvolutionLayer) {
+            //NCHW convolution weights are stored as [kH, kW, inChannels, outChannels]; im2col columns are ordered as [inChannels, kH, kW]
+            long[] s = weights.shape();
+            if (s.length != 4 || s[3] != ((ConvolutionLayer) layerConf).getNOut())
+                throw new IllegalStateException("Unexpected convolution weights shape: " + Arrays.toString(s));
+            return weights.permute(2, 0, 1, 3).reshape('c', s[2] * s[0] * s[1], s[3]);
+        }
+        //Dense weights: [nIn, nOut]
+        return weights.dup();
+    }
+
+    @Override
+    public String toString() {
+        return "QuantizedLayer(index=" + layerIndex + ",type=" + layerConf.getClass().getSimpleName() + ",kernel=" + kernel
+                        + ",weights=" + Arrays.toString(weights.shape()) + ")";
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.nn.inference;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.deeplearning4j.nn.conf.InputPreProcessor;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.workspace.LayerWorkspaceMgr;
+import org.nd4j.linalg.api.memory.MemoryWorkspace;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+/**
+ * Inference-only network produced by {@link Int8Quantizer}: a {@link MultiLayerNetwork} where some of the layers are
+ * executed by {@link QuantizedLayer} INT8 kernels.<br>
+ * In the underlying network, quantized layers are replaced by parameter-free placeholders, so floating point weights
+ * of those layers are not kept in memory.<br>
+ * Like MultiLayerNetwork, this class is not thread safe.
+ */
+@Getter
+public class QuantizedNetwork {
+
+    private final MultiLayerNetwork network;
+    private final QuantizedLayer[] quantizedLayers;
+    private QuantizationReport report;
+
+    /**
+     * @param network         Network executing all non-quantized layers
+     * @param quantizedLayers Quantized layer for each layer index of the network, or null for layers executed by the network
+     */
+    public QuantizedNetwork(@NonNull MultiLayerNetwork network, @NonNull QuantizedLayer[] quantizedLayers) {
+        if (quantizedLayers.length != network.getnLayers())
+            throw new IllegalArgumentException("Expected " + network.getnLayers() + " quantized layer entries, got "
+                            + quantizedLayers.length);
+        this.network = network;
+        this.quantizedLayers = quantizedLayers;
+    }
+
+    /**
+     * Inference forward pass
+     *
+     * @param input Network input
+     * @return Network output, detached from any workspace
+     */
+    public INDArray output(@NonNull INDArray input) {
+        LayerWorkspaceMgr workspaceMgr = LayerWorkspaceMgr.noWorkspaces();
+        try (MemoryWorkspace ws = Nd4j.getMemoryManager().scopeOutOfWorkspaces()) {
+            INDArray x = input;
+            for (int i = 0; i < quantizedLayers.length; i++) {
+                InputPreProcessor preProcessor = network.getLayerWiseConfigurations().getInputPreProcess(i);
+                if (preProcessor != null)
+                    x = preProcessor.preProcess(x, (int) x.size(0), workspaceMgr);
+
+                if (quantizedLayers[i] != null)
+                    x = quantizedLayers[i].activate(x);
+                else
+                    x = network.getLayer(i).activate(x, false, workspaceMgr);
+            }
+            return x;
+        } finally {
+            network.clearLayersStates();
+        }
+    }
+
+    /**
+     * @return Number of layers executed with INT8 weights
+     */
+    public int numQuantizedLayers() {
+        int count = 0;
+        for (QuantizedLayer l : quantizedLayers) {
+            if (l != null)
+                count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return Memory used by parameters: floating point parameters of the network, plus quantized layers
+     */
+    public long sizeBytes() {
+        long bytes = network.numParams() * network.getLayerWiseConfigurations().getDataType().width();
+        for (QuantizedLayer l : quantizedLayers) {
+            if (l != null)
+                bytes += l.sizeBytes();
+        }
+        return bytes;
+    }
+
+    void setReport(QuantizationReport report) {
+        this.report = report;
+    }
+}
@@ -47,11 +47,13 @@ import org.deeplearning4j.nn.layers.FrozenLayer;
 import org.deeplearning4j.nn.layers.FrozenLayerWithBackprop;
 import org.deeplearning4j.nn.layers.recurrent.BidirectionalLayer;
 import org.deeplearning4j.nn.layers.wrapper.BaseWrapperLayer;
+import org.deeplearning4j.nn.updater.BaseMultiLayerUpdater;
 import org.deeplearning4j.nn.updater.MultiLayerUpdater;
 import org.deeplearning4j.nn.workspace.ArrayType;
 import org.deeplearning4j.nn.workspace.LayerWorkspaceMgr;
 import org.deeplearning4j.optimize.Solver;
 import org.deeplearning4j.optimize.api.ConvexOptimizer;
+import org.deeplearning4j.optimize.api.SpanListener;
 import org.deeplearning4j.optimize.api.TrainingListener;
 import org.deeplearning4j.util.*;
 import org.nd4j.adapters.OutputAdapter;
@@ -122,6 +124,11 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
     protected boolean clearTbpttState = true;  //Mainly for unit testing (should be enabled otherwise)
     protected transient ThreadLocal<Long> lastEtlTime = new ThreadLocal<>();
     protected INDArray mask;
+    //Mask arrays currently set on the layers via setLayerMaskArrays; used to split them for gradient accumulation
+    protected transient INDArray inputMaskArray;
+    protected transient INDArray labelMaskArray;
+    //Gradient accumulation: sum of the gradients of the micro-batches so far. Reused between iterations
+    protected transient INDArray accumulatedGradients;
 
     protected int layerIndex; //For Layer.get/setIndex()
 
@@ -557,6 +564,7 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
             INDArray toSet = paramTable.get(s);
             curr.assign(toSet);
         }
+        syncMasterParams();
     }
 
     /**
@@ -575,6 +583,7 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
         String newKey = key.substring(idx + 1);
 
         layers[layerIdx].setParam(newKey, val);
+        syncMasterParams();
     }
 
     /**
@@ -1128,7 +1137,9 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
 
         boolean traceLog = log.isTraceEnabled();
         for( int i = 0; i <= layerIndex; i++) {
+            long spanStart = SpanUtils.start(trainingListeners);
             try(MemoryWorkspace wsFFWorking = workspaceMgr.notifyScopeEntered(ArrayType.FF_WORKING_MEM)) {
+                spanStart = SpanUtils.end(this, trainingListeners, SpanListener.Type.WORKSPACE, spanName(i), spanStart);
                 if (getLayerWiseConfigurations().getInputPreProcess(i) != null) {
                     input = workspaceMgr.dup(ArrayType.ACTIVATIONS, getLayerWiseConfigurations().getInputPreProcess(i).preProcess(input, getInputMiniBatchSize(), workspaceMgr));
                     //Validation: Exception if invalid (bad preprocessor implementation)
@@ -1166,6 +1177,7 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
                 validateArrayWorkspaces(workspaceMgr, layers[i].input(), ArrayType.INPUT, i, false, "Feed forward to layer (training)");
 
                 out.add(input);
+                SpanUtils.end(this, trainingListeners, SpanListener.Type.FORWARD, spanName(i), spanStart);
             }
 
 
@@ -1565,6 +1577,35 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
                 idx += range;
             }
         }
+        syncMasterParams();
+    }
+
+    /**
+     * Mixed precision training only: multiply the output layer gradients and activation gradients by the current loss
+     * scale, so that small gradients don't underflow in HALF precision. The updater divides by the same scale in FP32.
+     */
+    protected void applyLossScale(Gradient gradient, INDArray epsilon) {
+        DynamicLossScaler lossScaler = layerWiseConfigurations.getLossScaler();
+        if (lossScaler == null)
+            return;
+
+        double scale = lossScaler.getScale();
+        for (INDArray g : gradient.gradientForVariable().values()) {
+            g.muli(scale);
+        }
+        if (epsilon != null) {
+            epsilon.muli(scale);
+        }
+    }
+
+    /**
+     * Mixed precision training only: parameters were modified outside of the updater, update the FP32 master copy
+     */
+    protected void syncMasterParams() {
+        Updater u = getUpdater(false);
+        if (u instanceof BaseMultiLayerUpdater) {
+            ((BaseMultiLayerUpdater<?>) u).syncMasterParams();
+        }
     }
 
     @Override
@@ -1707,7 +1748,9 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
         long time1 = System.currentTimeMillis();
         while (iter.hasNext()) {
 
+            long fetchStart = SpanUtils.start(trainingListeners);
             DataSet next = iter.next();
+            SpanUtils.end(this, trainingListeners, SpanListener.Type.DATA_FETCH, "fetch", fetchStart);
             long time2 = System.currentTimeMillis();
 
             lastEtlTime.set((time2 - time1));
@@ -1836,6 +1879,14 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
         }
     }
 
+    /**
+     * Name of the layer, as reported in {@link SpanListener} spans
+     */
+    private String spanName(int layerIdx) {
+        String name = layers[layerIdx].conf().getLayer().getLayerName();
+        return name != null ? name : String.valueOf(layerIdx);
+    }
+
     /** Calculate gradients and errors. Used in two places:
      * (a) backprop (for standard multi layer network learning)
      * (b) backpropGradient (layer method, for when MultiLayerNetwork is used as a layer)
@@ -1957,8 +2008,10 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
                 }
 
                 //Open activation gradients WS *then* BP working memory, so BP working memory is opened last for use in layers
+                long spanStart = SpanUtils.start(trainingListeners);
                 wsActGradTemp = workspaceMgr.notifyScopeEntered(ArrayType.ACTIVATION_GRAD);
                 try (MemoryWorkspace wsBPWorking = workspaceMgr.notifyScopeEntered(ArrayType.BP_WORKING_MEM)) {
+                    spanStart = SpanUtils.end(this, trainingListeners, SpanListener.Type.WORKSPACE, spanName(i), spanStart);
 
                     //Note that because we're opening activation workspaces not in a simple nested order, we'll manually
                     // override the previous workspace setting. Otherwise, when we close these workspaces, the "current"
@@ -1981,6 +2034,10 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
                         }
                     }
 
+                    if (withOutputLayer && i == layers.length - 1) {
+                        applyLossScale(currPair.getFirst(), currPair.getSecond());
+                    }
+
                     if (currPair.getSecond() != null) {
                         //Edge case: may be null for Embedding layer, for example
                         validateArrayWorkspaces(workspaceMgr, currPair.getSecond(), ArrayType.ACTIVATION_GRAD, i,
@@ -2016,6 +2073,7 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
                     }
                     wsActGradCloseNext = wsActGradTemp;
                     wsActGradTemp = null;
+                    SpanUtils.end(this, trainingListeners, SpanListener.Type.BACKWARD, spanName(i), spanStart);
                 }
 
                 if (traceLog) {
@@ -2717,6 +2775,77 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
     }
 
     public void computeGradientAndScore() {
+        int microBatches = layerWiseConfigurations.getMicroBatches();
+        if (microBatches > 1 && layerWiseConfigurations.getBackpropType() != BackpropType.TruncatedBPTT
+                && input != null && labels != null && labels.size(0) > 1) {
+            computeGradientAndScoreAccumulated(microBatches);
+        } else {
+            computeGradientAndScoreHelper();
+        }
+    }
+
+    /**
+     * Gradient accumulation: calculate the gradient and score for the current minibatch using separate
+     * forward/backward passes for each of the micro-batches, summing the gradients in the flattened gradients view.
+     * As the updater divides the gradients by the size of the full minibatch, the resulting parameter update is the
+     * same as for a single forward/backward pass, but only the activations of one micro-batch are in memory at a time.
+     * The score is the average over all examples in the minibatch
+     *
+     * @param microBatches Number of micro-batches to split the minibatch into
+     */
+    protected void computeGradientAndScoreAccumulated(int microBatches) {
+        INDArray fullInput = input;
+        INDArray fullLabels = labels;
+        INDArray fullInputMask = inputMaskArray;
+        INDArray fullLabelMask = labelMaskArray;
+
+        long n = fullLabels.size(0);
+        if (fullInput.size(0) != n) {
+            throw new IllegalStateException("Cannot use gradient accumulation when the features and labels have " +
+                    "different minibatch sizes: features " + fullInput.size(0) + ", labels " + n);
+        }
+        int k = (int) Math.min(microBatches, n);
+
+        double scoreSum = 0.0;
+        try {
+            for (int i = 0; i < k; i++) {
+                long start = n * i / k;
+                long end = n * (i + 1) / k;
+                setInput(NetworkUtils.getMicroBatch(fullInput, start, end));
+                setLabels(NetworkUtils.getMicroBatch(fullLabels, start, end));
+                setLayerMaskArrays(NetworkUtils.getMicroBatch(fullInputMask, start, end),
+                        NetworkUtils.getMicroBatch(fullLabelMask, start, end));
+
+                computeGradientAndScoreHelper();
+                scoreSum += score * (end - start);
+
+                try (MemoryWorkspace ws = Nd4j.getMemoryManager().scopeOutOfWorkspaces()) {
+                    if (i > 0) {
+                        accumulatedGradients.addi(flattenedGradients);
+                    } else if (accumulatedGradients == null || !accumulatedGradients.equalShapes(flattenedGradients)
+                            || accumulatedGradients.dataType() != flattenedGradients.dataType()) {
+                        accumulatedGradients = flattenedGradients.dup();
+                    } else {
+                        accumulatedGradients.assign(flattenedGradients);
+                    }
+                }
+            }
+        } finally {
+            setInput(fullInput);
+            setLabels(fullLabels);
+            setLayerMaskArrays(fullInputMask, fullLabelMask);
+        }
+
+        flattenedGradients.assign(accumulatedGradients);
+        //Some "gradients" (BatchNormalization global mean/variance) are actually updates, not divided by the minibatch
+        // size in the updater: average these over the micro-batches instead of summing them
+        for (INDArray arr : ((BaseMultiLayerUpdater<?>) getUpdater()).getNonMinibatchDivisionSubsets(flattenedGradients)) {
+            arr.divi(k);
+        }
+        score = scoreSum / n;
+    }
+
+    protected void computeGradientAndScoreHelper() {
         if (!(getOutputLayer() instanceof IOutputLayer)) {
             throw new DL4JException(
                     "Cannot calculate gradient and score with respect to labels: final layer is not an IOutputLayer. " +
@@ -3279,6 +3408,7 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
      */
     public void setLayerMaskArrays(INDArray featuresMaskArray, INDArray labelsMaskArray) {
         if (featuresMaskArray != null) {
+            this.inputMaskArray = featuresMaskArray;
 
             if (featuresMaskArray.size(0) > Integer.MAX_VALUE)
                 throw new ND4JArraySizeException();
@@ -3290,6 +3420,7 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
         if (labelsMaskArray != null) {
             if (!(getOutputLayer() instanceof IOutputLayer))
                 return;
+            this.labelMaskArray = labelsMaskArray;
             layers[layers.length - 1].setMaskArray(labelsMaskArray);
         }
     }
@@ -3301,6 +3432,8 @@ public class MultiLayerNetwork implements Serializable, Classifier, Layer, Neura
         for (Layer layer : layers) {
             layer.setMaskArray(null);
         }
+        this.inputMaskArray = null;
+        this.labelMaskArray = null;
     }
 
     /**
@@ -21,13 +21,18 @@
 package org.deeplearning4j.nn.updater;
 
 import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.api.Layer;
 import org.deeplearning4j.nn.api.Model;
 import org.deeplearning4j.nn.api.Trainable;
 import org.deeplearning4j.nn.api.Updater;
+import org.deeplearning4j.nn.conf.DynamicLossScaler;
 import org.deeplearning4j.nn.conf.GradientNormalization;
 import org.deeplearning4j.nn.gradient.DefaultGradient;
 import org.deeplearning4j.nn.gradient.Gradient;
+import org.deeplearning4j.nn.graph.vertex.GraphVertex;
 import org.nd4j.common.base.Preconditions;
+import org.nd4j.linalg.api.buffer.DataType;
 import org.nd4j.linalg.api.memory.MemoryWorkspace;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.api.ops.CustomOp;
@@ -43,7 +48,15 @@ import org.nd4j.linalg.learning.config.IUpdater;
 
 import java.util.*;
 
+/**
+ * Base updater for MultiLayerNetwork and ComputationGraph.<br>
+ * <br>
+ * Mixed precision: if the network data type is HALF or BFLOAT16 and a {@link DynamicLossScaler} is configured, the
+ * updater keeps an FP32 master copy of the parameters and gradients, and FP32 updater state. The updater blocks
+ * operate on the master arrays; after each update the master parameters are copied back to the network parameters.
+ */
 @Getter
+@Slf4j
 public abstract class BaseMultiLayerUpdater<T extends Model> implements Updater {
 
     protected final T network;
@@ -53,6 +66,13 @@ public abstract class BaseMultiLayerUpdater<T extends Model> implements Updater
     protected boolean initializedMinibatchDivision;
     protected List<INDArray> gradientsForMinibatchDivision;
 
+    //Mixed precision only: FP32 master copies of the network parameters and gradients, plus per-layer gradient views
+    protected INDArray masterParams;
+    protected INDArray masterGradients;
+    protected Map<Trainable, INDArray> masterLayerGradientViews;
+    protected Map<Trainable, Gradient> masterLayerGradients;
+    protected boolean constrained;
+
     public BaseMultiLayerUpdater(T network) {
         this(network, null);
     }
@@ -78,10 +98,24 @@ public abstract class BaseMultiLayerUpdater<T extends Model> implements Updater
 
         INDArray paramsView = network.params();
         INDArray gradientView = getFlattenedGradientsView();
+        if (getLossScaler() != null && paramsView != null
+                && (paramsView.dataType() == DataType.HALF || paramsView.dataType() == DataType.BFLOAT16)) {
+            try (MemoryWorkspace ws = Nd4j.getMemoryManager().scopeOutOfWorkspaces()) {
+                masterParams = Nd4j.create(DataType.FLOAT, paramsView.shape(), paramsView.ordering()).assign(paramsView);
+                masterGradients = Nd4j.create(DataType.FLOAT, gradientView.shape(), gradientView.ordering());
+            }
+            masterLayerGradientViews = new IdentityHashMap<>();
+            masterLayerGradients = new IdentityHashMap<>();
+
+            //Updater blocks and updater state below are created for the FP32 master arrays
+            paramsView = masterParams;
+            gradientView = masterGradients;
+        }
         int paramsViewSoFar = 0;
         int currentUpdaterOffset = 0;
         for (int i = 0; i < layers.length; i++) {
             Map<String, INDArray> layerParamTable = layers[i].paramTable(false);
+            int layerParamsStart = paramsViewSoFar;
             if (layerParamTable != null) {
                 List<String> variables = new ArrayList<>(layerParamTable.keySet()); //Is from a set, but iteration order should be fixed per layer as it's a from a LinkedHashSet
                 for (int j = 0; j < variables.size(); j++) {
@@ -131,6 +165,15 @@ public abstract class BaseMultiLayerUpdater<T extends Model> implements Updater
                                         gradientViewSubset));
                     }
 
+                    if (masterLayerGradients != null && gradientViewSubset != null) {
+                        Gradient g = masterLayerGradients.get(layers[i]);
+                        if (g == null) {
+                            g = new DefaultGradient();
+                            masterLayerGradients.put(layers[i], g);
+                        }
+                        g.setGradientFor(var, gradientViewSubset);
+                    }
+
                     lastLayer = layers[i];
                     lastVariable = variables.get(j);
                     updaterStateSize += updaterStateSizeThisVariable;
@@ -138,6 +181,21 @@ public abstract class BaseMultiLayerUpdater<T extends Model> implements Updater
                     currentUpdaterOffset += updaterStateSizeThisVariable;
                 }
             }
+
+            if (masterLayerGradientViews != null && paramsViewSoFar > layerParamsStart) {
+                masterLayerGradientViews.put(layers[i], gradientView.reshape(gradientView.length())
+                        .get(NDArrayIndex.interval(layerParamsStart, paramsViewSoFar)));
+                Layer l = null;
+                if (layers[i] instanceof Layer) {
+                    l = (Layer) layers[i];
+                } else if (layers[i] instanceof GraphVertex && ((GraphVertex) layers[i]).hasLayer()) {
+                    l = ((GraphVertex) layers[i]).getLayer();
+                }
+                if (l != null && l.conf() != null && l.conf().getLayer() != null) {
+                    List<?> constraints = l.conf().getLayer().getConstraints();
+                    constrained |= constraints != null && !constraints.isEmpty();
+                }
+            }
         }
 
         //Initialize the updater state, if required
@@ -147,7 +205,7 @@ public abstract class BaseMultiLayerUpdater<T extends Model> implements Updater
             updaterRequiresInit = false;
         } else if (updaterStateSize > 0) {
             //May be 0 if all SGD or NONE updaters, for example
-            updaterStateViewArray = Nd4j.createUninitialized(network.params().dataType(), new long[] { updaterStateSize}, Nd4j.order());
+            updaterStateViewArray = Nd4j.createUninitialized(paramsView.dataType(), new long[] { updaterStateSize}, Nd4j.order());
             updaterRequiresInit = true;
         }
 
@@ -202,6 +260,32 @@ public abstract class BaseMultiLayerUpdater<T extends Model> implements Updater
      */
     protected abstract boolean isMiniBatch();
 
+    /**
+     * @return The loss scaler for mixed precision training, or null if mixed precision training is not configured
+     */
+    protected DynamicLossScaler getLossScaler() {
+        return null;
+    }
+
+    /**
+     * @return True if this updater keeps FP32 master parameters (mixed precision training). In this case, the network
+     * parameters have already been updated at the end of {@link #update(Gradient, int, int, int, LayerWorkspaceMgr)}
+     */
+    public boolean isMixedPrecision() {
+        return masterParams != null;
+    }
+
+    /**
+     * Mixed precision only: copy the (HALF/BFLOAT16) network parameters to the FP32 master parameters. Must be called
+     * after the network parameters have been modified outside of this updater - for example by setParams or by
+     * parameter constraints. No-op if mixed precision training is not used.
+     */
+    public void syncMasterParams() {
+        if (masterParams != null) {
+            masterParams.assign(getParams());
+        }
+    }
+
     /**
      * Set the view array. Note that this does an assign operation - the provided array is not stored internally.
      *
@@ -265,6 +349,12 @@ public abstract class BaseMultiLayerUpdater<T extends Model> implements Updater
         // hence should be the same object under normal circumstances
         boolean isExternal = gradient.gradient() != getFlattenedGradientsView();
 
+        if (isMixedPrecision()) {
+            Preconditions.checkState(!isExternal, "External gradients are not supported with mixed precision training");
+            updateMixedPrecision(iteration, epoch, batchSize);
+            return;
+        }
+
         //Split up the gradients on a per-layer basis, for pre-apply
         Map<String, Gradient> layerGradients = new HashMap<>();
 
@@ -321,6 +411,55 @@ public abstract class BaseMultiLayerUpdater<T extends Model> implements Updater
         }
     }
 
+    /**
+     * Mixed precision update: unscale the gradients in FP32, skip the step if they overflowed, apply gradient
+     * normalization and the updaters to the master arrays, and finally update the master and network parameters
+     */
+    protected void updateMixedPrecision(int iteration, int epoch, int batchSize) {
+        DynamicLossScaler lossScaler = getLossScaler();
+        Preconditions.checkState(lossScaler != null, "Mixed precision updater requires a loss scaler in the network configuration");
+        INDArray gradientView = getFlattenedGradientsView();
+        masterGradients.assign(gradientView);
+
+        double scale = lossScaler.getScale();
+        if (!Double.isFinite(masterGradients.sumNumber().doubleValue())) {
+            //Inf or NaN: skip this step entirely, and reduce the loss scale
+            lossScaler.update(true);
+            gradientView.assign(0);
+            log.debug("Gradient overflow at iteration {} with loss scale {}: skipping parameter update, new loss scale {}",
+                    iteration, scale, lossScaler.getScale());
+            return;
+        }
+
+        //Unscale and divide by minibatch in one op. Gradients excluded from minibatch division (BatchNorm mean/variance
+        // updates) are not derived from the loss, hence are not scaled either
+        if (!initializedMinibatchDivision) {
+            gradientsForMinibatchDivision = getMinibatchDivisionSubsets(masterGradients);
+            initializedMinibatchDivision = true;
+        }
+        double divisor = isMiniBatch() ? scale * batchSize : scale;
+        for (INDArray arr : gradientsForMinibatchDivision) {
+            arr.divi(divisor);
+        }
+
+        for (Map.Entry<Trainable, Gradient> entry : masterLayerGradients.entrySet()) {
+            preApply(entry.getKey(), entry.getValue(), iteration, masterLayerGradientViews.get(entry.getKey()));
+        }
+
+        for (UpdaterBlock ub : updaterBlocks) {
+            if (ub.skipDueToPretrainConfig(this instanceof LayerUpdater)) {
+                continue;
+            }
+            ub.update(iteration, epoch);
+        }
+
+        masterParams.subi(masterGradients);
+        getParams().assign(masterParams);
+        //Expose the applied update to listeners, the same way as for the standard (non mixed precision) case
+        gradientView.assign(masterGradients);
+        lossScaler.update(false);
+    }
+
     protected void divideByMinibatch(boolean isExternal, Gradient gradient, int batchSize){
         //Challenge here: most gradients are actual gradients, and should be divided by the minibatch to get the average
         //However, some 'gradients' are actually updates - an example being BatchNorm mean/variance estimates... these
@@ -343,6 +482,23 @@ public abstract class BaseMultiLayerUpdater<T extends Model> implements Updater
     }
 
     protected List<INDArray> getMinibatchDivisionSubsets(INDArray from){
+        return getGradientSubsets(from, true);
+    }
+
+    /**
+     * Get the subsets of the specified gradient array that are not divided by the minibatch size: i.e., those for
+     * which {@link Trainable#updaterDivideByMinibatch(String)} returns false, such as the BatchNormalization global
+     * mean/variance estimates. These are updates rather than gradients, and need to be averaged (not summed) when
+     * gradients are accumulated over multiple micro-batches
+     *
+     * @param from Gradient array, with the same layout as the flattened gradients view
+     * @return Views of the subsets of the array that are not divided by the minibatch size
+     */
+    public List<INDArray> getNonMinibatchDivisionSubsets(INDArray from){
+        return getGradientSubsets(from, false);
+    }
+
+    protected List<INDArray> getGradientSubsets(INDArray from, boolean divideByMinibatch){
         from = from.reshape(from.length());
         List<INDArray> out = new ArrayList<>();
         long paramsSoFar = 0;
@@ -352,7 +508,7 @@ public abstract class BaseMultiLayerUpdater<T extends Model> implements Updater
             Set<String> layerParams = t.paramTable(false).keySet();
             Map<String,INDArray> paramTable = t.paramTable(false);
             for(String s : layerParams) {
-                if(t.updaterDivideByMinibatch(s)) {
+                if(t.updaterDivideByMinibatch(s) == divideByMinibatch) {
                     long l = paramTable.get(s).length();
                     currentEnd += l;
                 } else {
@@ -388,6 +544,18 @@ public abstract class BaseMultiLayerUpdater<T extends Model> implements Updater
      * @param iteration The current iteration (i.e., number of parameter updates so far)
      */
     public void preApply(Trainable layer, Gradient gradient, int iteration) {
+        preApply(layer, gradient, iteration, layer.getGradientsViewArray());
+    }
+
+    /**
+     * Pre-apply: Apply gradient normalization/clipping
+     *
+     * @param layer              Layer to apply gradient normalization/clipping for
+     * @param gradient           Gradient to update
+     * @param iteration          The current iteration (i.e., number of parameter updates so far)
+     * @param layerGradientView  Gradient view array for all parameters of the layer
+     */
+    protected void preApply(Trainable layer, Gradient gradient, int iteration, INDArray layerGradientView) {
 
         if (layer.getConfig() == null || layer.numParams() == 0) {
             //Layer does not have parameters -> no gradient
@@ -399,7 +567,6 @@ public abstract class BaseMultiLayerUpdater<T extends Model> implements Updater
             return; //no op
 
         final double threshold = layer.getConfig().getGradientNormalizationThreshold();
-        INDArray layerGradientView = layer.getGradientsViewArray();
 
         switch (normalization) {
             case RenormalizeL2PerLayer:
@@ -25,6 +25,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.deeplearning4j.nn.api.Layer;
 import org.deeplearning4j.nn.api.Trainable;
 import org.deeplearning4j.nn.api.Updater;
+import org.deeplearning4j.nn.conf.DynamicLossScaler;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.nd4j.linalg.api.ndarray.INDArray;
 
@@ -74,6 +75,11 @@ public class MultiLayerUpdater extends BaseMultiLayerUpdater<MultiLayerNetwork>
         return network.conf().isMiniBatch();
     }
 
+    @Override
+    protected DynamicLossScaler getLossScaler() {
+        return network.getLayerWiseConfigurations().getLossScaler();
+    }
+
     @Override
     public Updater clone() {
         return new MultiLayerUpdater(network, null);
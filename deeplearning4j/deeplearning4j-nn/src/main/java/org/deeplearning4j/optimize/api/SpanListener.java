@@ -0,0 +1,55 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.optimize.api;
+
+import org.deeplearning4j.nn.api.Model;
+
+/**
+ * Listener for timed spans of the training loop (data fetch, per-layer forward and backward passes, workspace
+ * scope entry, updater and whole iterations), as recorded by {@link org.deeplearning4j.nn.multilayer.MultiLayerNetwork}
+ * and {@link org.deeplearning4j.nn.graph.ComputationGraph}.<br>
+ * Spans are only recorded for listeners that are added as regular {@link TrainingListener}s and return true from
+ * {@link #isRecording()}: when no listener is recording, timestamps aren't even taken.
+ *
+ * @see org.deeplearning4j.optimize.listeners.TimelineListener
+ */
+public interface SpanListener {
+
+    enum Type {
+        DATA_FETCH, FORWARD, BACKWARD, WORKSPACE, UPDATER, ITERATION
+    }
+
+    /**
+     * @return true if spans should be recorded right now. Called frequently, so must be cheap
+     */
+    boolean isRecording();
+
+    /**
+     * Called once span is finished
+     *
+     * @param model      Model
+     * @param type       Span type
+     * @param name       Span name, usually name of the layer/vertex
+     * @param startNanos Span start, as returned by {@link System#nanoTime()}
+     * @param endNanos   Span end, as returned by {@link System#nanoTime()}
+     */
+    void onSpan(Model model, Type type, String name, long startNanos, long endNanos);
+}
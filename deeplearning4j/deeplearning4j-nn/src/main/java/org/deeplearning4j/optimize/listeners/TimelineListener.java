@@ -0,0 +1,318 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.optimize.listeners;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.api.Model;
+import org.deeplearning4j.optimize.api.BaseTrainingListener;
+import org.deeplearning4j.optimize.api.SpanListener;
+import org.deeplearning4j.util.NetworkUtils;
+import org.nd4j.autodiff.listeners.profiler.ProfilingListener;
+import org.nd4j.common.base.Preconditions;
+import org.nd4j.shade.jackson.databind.ObjectMapper;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TimelineListener records timeline of MultiLayerNetwork/ComputationGraph training: data fetch, per-layer forward and
+ * backward passes, workspace scope entry, updater and whole iterations.<br>
+ * Output is Chrome trace event format JSON (as with SameDiff's {@link ProfilingListener}), viewable in
+ * chrome://tracing or Perfetto (https://ui.perfetto.dev). Span types are used as event categories.<br>
+ * <br>
+ * Only every N-th iteration is recorded (see {@link Builder#frequency(int)}); for other iterations no timestamps are
+ * taken at all. Events are serialized and written to file by a separate thread, and spans are dropped rather than
+ * blocking the training thread if the writer can't keep up.
+ *
+ * @see SpanListener
+ */
+@Slf4j
+public class TimelineListener extends BaseTrainingListener implements SpanListener, Closeable {
+
+    private final File outputFile;
+    private final int frequency;
+    private final int warmup;
+    private final int maxIterations;
+    private final Set<Type> types;
+
+    private final long pid;
+    private final Set<Long> namedThreads = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean recording;
+    private int iterationsSeen;
+    private int iterationsRecorded;
+
+    private final BlockingQueue<Map<String, Object>> writeQueue;
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicBoolean writing = new AtomicBoolean(false);
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final Writer writer;
+    private final ObjectMapper json;
+    private final Thread fileWritingThread;
+    private boolean firstEvent = true;
+
+    protected TimelineListener(Builder builder) {
+        Preconditions.checkArgument(!builder.outputFile.exists(), "Output file already exists: %s", builder.outputFile);
+        this.outputFile = builder.outputFile;
+        this.frequency = builder.frequency;
+        this.warmup = builder.warmup;
+        this.maxIterations = builder.maxIterations;
+        this.types = builder.types;
+        this.pid = ProcessHandle.current().pid();
+        this.writeQueue = new ArrayBlockingQueue<>(builder.queueSize);
+        this.json = ProfilingListener.jsonMapper();
+
+        try {
+            this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputFile), StandardCharsets.UTF_8));
+            this.writer.write("[");
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        this.recording = shouldRecord(0);
+
+        //Set up a thread so file access doesn't add latency to the training thread
+        fileWritingThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (!closed.get() || !writeQueue.isEmpty()) {
+                        Map<String, Object> te = writeQueue.poll(100, TimeUnit.MILLISECONDS);
+                        if (te == null)
+                            continue;
+
+                        writing.set(true);
+                        try {
+                            write(te);
+                        } finally {
+                            writing.set(false);
+                        }
+                    }
+                } catch (Throwable t) {
+                    log.error("Error when attempting to write timeline to file", t);
+                }
+            }
+        });
+        fileWritingThread.setName("TimelineListener writer");
+        fileWritingThread.setDaemon(true);
+        fileWritingThread.start();
+    }
+
+    public static Builder builder(@NonNull File outputFile) {
+        return new Builder(outputFile);
+    }
+
+    private boolean shouldRecord(int iteration) {
+        if (closed.get() || iteration < warmup)
+            return false;
+        if (maxIterations > 0 && iterationsRecorded >= maxIterations)
+            return false;
+        return (iteration - warmup) % frequency == 0;
+    }
+
+    @Override
+    public boolean isRecording() {
+        return recording;
+    }
+
+    @Override
+    public void onSpan(Model model, Type type, String name, long startNanos, long endNanos) {
+        if (!types.contains(type))
+            return;
+
+        long tid = Thread.currentThread().getId();
+        if (namedThreads.add(tid)) {
+            //Metadata event, so trace viewers show thread names instead of ids
+            Map<String, Object> meta = event("thread_name", "M", tid);
+            meta.put("args", Collections.singletonMap("name", Thread.currentThread().getName()));
+            enqueue(meta);
+        }
+
+        Map<String, Object> e = event(name, "X", tid);
+        e.put("cat", type.name());
+        e.put("ts", startNanos / 1000.0);
+        e.put("dur", (endNanos - startNanos) / 1000.0);
+        e.put("args", Collections.singletonMap("iteration", NetworkUtils.getIterationCount(model)));
+        enqueue(e);
+    }
+
+    private Map<String, Object> event(String name, String phase, long tid) {
+        Map<String, Object> e = new LinkedHashMap<>();
+        e.put("name", name);
+        e.put("ph", phase);
+        e.put("pid", pid);
+        e.put("tid", tid);
+        return e;
+    }
+
+    private void enqueue(Map<String, Object> event) {
+        if (!writeQueue.offer(event))
+            dropped.incrementAndGet();
+    }
+
+    private void write(Map<String, Object> event) throws IOException {
+        if (!firstEvent)
+            writer.write(",\n");
+        firstEvent = false;
+        writer.write(json.writeValueAsString(event));
+    }
+
+    @Override
+    public void iterationDone(Model model, int iteration, int epoch) {
+        if (recording)
+            iterationsRecorded++;
+        iterationsSeen++;
+        recording = shouldRecord(iterationsSeen);
+    }
+
+    @Override
+    public void onEpochEnd(Model model) {
+        flush();
+    }
+
+    /**
+     * @return number of spans dropped because the writer thread couldn't keep up
+     */
+    public long getDroppedSpans() {
+        return dropped.get();
+    }
+
+    /**
+     * Blocks until all spans recorded so far are written to the output file
+     */
+    public void flush() {
+        while ((!writeQueue.isEmpty() || writing.get()) && fileWritingThread.isAlive()) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Stops recording, writes all pending spans and closes the output file
+     */
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true))
+            return;
+        recording = false;
+
+        try {
+            fileWritingThread.join();
+            writer.write("]");
+            writer.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        if (dropped.get() > 0)
+            log.warn("TimelineListener dropped {} spans, consider larger queue size or lower recording frequency", dropped.get());
+    }
+
+    @Override
+    public String toString() {
+        return "TimelineListener(" + outputFile + ", frequency=" + frequency + ")";
+    }
+
+    public static class Builder {
+        private final File outputFile;
+        private int frequency = 1;
+        private int warmup = 0;
+        private int maxIterations = -1;
+        private int queueSize = 65536;
+        private Set<Type> types = EnumSet.allOf(Type.class);
+
+        public Builder(@NonNull File outputFile) {
+            this.outputFile = outputFile;
+        }
+
+        /**
+         * Record one out of every N iterations. Default: 1 (record all iterations)
+         */
+        public Builder frequency(int frequency) {
+            Preconditions.checkArgument(frequency > 0, "Frequency must be > 0, got %s", frequency);
+            this.frequency = frequency;
+            return this;
+        }
+
+        /**
+         * Number of iterations at the start of training that won't be recorded. Default: 0
+         */
+        public Builder warmup(int iterations) {
+            this.warmup = iterations;
+            return this;
+        }
+
+        /**
+         * Maximum number of iterations to record (after warmup). Default: no limit
+         */
+        public Builder maxIterations(int iterations) {
+            this.maxIterations = iterations;
+            return this;
+        }
+
+        /**
+         * Maximum number of spans waiting to be written. If the queue is full, new spans are dropped. Default: 65536
+         */
+        public Builder queueSize(int queueSize) {
+            Preconditions.checkArgument(queueSize > 0, "Queue size must be > 0, got %s", queueSize);
+            this.queueSize = queueSize;
+            return this;
+        }
+
+        /**
+         * Span types to record. Default: all types
+         */
+        public Builder types(@NonNull Type... types) {
+            Preconditions.checkArgument(types.length > 0, "At least one span type must be specified");
+            this.types = EnumSet.of(types[0], types);
+            return this;
+        }
+
+        public TimelineListener build() {
+            return new TimelineListener(this);
+        }
+    }
+}
@@ -30,9 +30,11 @@ import org.deeplearning4j.nn.graph.ComputationGraph;
 import org.deeplearning4j.nn.updater.graph.ComputationGraphUpdater;
 import org.deeplearning4j.nn.workspace.LayerWorkspaceMgr;
 import org.deeplearning4j.optimize.api.ConvexOptimizer;
+import org.deeplearning4j.optimize.api.SpanListener;
 import org.deeplearning4j.optimize.api.StepFunction;
 import org.deeplearning4j.optimize.api.TrainingListener;
 import org.deeplearning4j.util.NetworkUtils;
+import org.deeplearning4j.util.SpanUtils;
 import org.nd4j.linalg.api.memory.MemoryWorkspace;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
@@ -188,11 +190,20 @@ public abstract class BaseOptimizer implements ConvexOptimizer {
 
     @Override
     public void updateGradientAccordingToParams(Gradient gradient, Model model, int batchSize, LayerWorkspaceMgr workspaceMgr) {
+        long spanStart = SpanUtils.start(trainingListeners);
         if (model instanceof ComputationGraph) {
             ComputationGraph graph = (ComputationGraph) model;
             if (computationGraphUpdater == null) {
-                try (MemoryWorkspace ws = Nd4j.getMemoryManager().scopeOutOfWorkspaces()) {
-                    computationGraphUpdater = new ComputationGraphUpdater(graph);
+                if (updater instanceof ComputationGraphUpdater) {
+                    //Updater already created via ComputationGraph.getUpdater(): use the same instance, so that the
+                    // updater state (and the master parameters, for mixed precision training) exist only once
+                    computationGraphUpdater = (ComputationGraphUpdater) updater;
+                } else {
+                    try (MemoryWorkspace ws = Nd4j.getMemoryManager().scopeOutOfWorkspaces()) {
+                        computationGraphUpdater = new ComputationGraphUpdater(graph);
+                    }
+                    if (updater == null)
+                        updater = computationGraphUpdater;
                 }
             }
             computationGraphUpdater.update(gradient, NetworkUtils.getIterationCount(model), NetworkUtils.getEpochCount(model), batchSize, workspaceMgr);
@@ -206,6 +217,7 @@ public abstract class BaseOptimizer implements ConvexOptimizer {
 
             updater.update(layer, gradient, NetworkUtils.getIterationCount(model), NetworkUtils.getEpochCount(model), batchSize, workspaceMgr);
         }
+        SpanUtils.end(model, trainingListeners, SpanListener.Type.UPDATER, "updater", spanStart);
     }
 
     /**
@@ -22,12 +22,17 @@ package org.deeplearning4j.optimize.solvers;
 
 import lombok.extern.slf4j.Slf4j;
 import org.deeplearning4j.nn.api.Model;
+import org.deeplearning4j.nn.api.Updater;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
 import org.deeplearning4j.nn.gradient.Gradient;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.updater.BaseMultiLayerUpdater;
 import org.deeplearning4j.nn.workspace.LayerWorkspaceMgr;
+import org.deeplearning4j.optimize.api.SpanListener;
 import org.deeplearning4j.optimize.api.StepFunction;
 import org.deeplearning4j.optimize.api.TrainingListener;
 import org.deeplearning4j.util.NetworkUtils;
+import org.deeplearning4j.util.SpanUtils;
 import org.nd4j.linalg.api.memory.MemoryWorkspace;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
@@ -47,20 +52,27 @@ public class StochasticGradientDescent extends BaseOptimizer {
 
     @Override
     public boolean optimize(LayerWorkspaceMgr workspaceMgr) {
+        long spanStart = SpanUtils.start(trainingListeners);
         Pair<Gradient, Double> pair = gradientAndScore(workspaceMgr);
 
         Gradient gradient = pair.getFirst();
 
         INDArray params = model.params();
-        INDArray fullGrad = gradient.gradient();
-        fullGrad = fullGrad.reshape(fullGrad.length());
-        stepFunction.step(params, fullGrad);
+        BaseMultiLayerUpdater<?> mixedPrecisionUpdater = getMixedPrecisionUpdater();
+        if (mixedPrecisionUpdater == null) {
+            INDArray fullGrad = gradient.gradient();
+            fullGrad = fullGrad.reshape(fullGrad.length());
+            stepFunction.step(params, fullGrad);
+        }
+        //Otherwise: the updater has already applied the step to the FP32 master parameters, and copied them to the
+        // network parameters (or skipped the step entirely, on gradient overflow)
 
 
         //Note: model.params() is always in-place for MultiLayerNetwork and ComputationGraph, hence no setParams is necessary there
         //However: for pretrain layers, params are NOT a view. Thus a setParams call is necessary
         //But setParams should be a no-op for MLN and CG
         model.setParams(params);
+        SpanUtils.end(model, trainingListeners, SpanListener.Type.ITERATION, "iteration", spanStart);
 
         int iterationCount = NetworkUtils.getIterationCount(model);
         int epochCount = NetworkUtils.getEpochCount(model);
@@ -71,9 +83,18 @@ public class StochasticGradientDescent extends BaseOptimizer {
 
         NetworkUtils.incrementIterationCount(model, 1);
         NetworkUtils.applyConstraints(model);
+        if (mixedPrecisionUpdater != null && mixedPrecisionUpdater.isConstrained())
+            mixedPrecisionUpdater.syncMasterParams();
         return true;
     }
 
+    protected BaseMultiLayerUpdater<?> getMixedPrecisionUpdater() {
+        Updater u = (model instanceof ComputationGraph ? computationGraphUpdater : updater);
+        if (u instanceof BaseMultiLayerUpdater && ((BaseMultiLayerUpdater<?>) u).isMixedPrecision())
+            return (BaseMultiLayerUpdater<?>) u;
+        return null;
+    }
+
     @Override
     public void preProcessLine() {}
 
@@ -43,6 +43,7 @@ import org.deeplearning4j.optimize.stepfunctions.NegativeGradientStepFunction;
 import org.nd4j.common.base.Preconditions;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.INDArrayIndex;
 import org.nd4j.linalg.indexing.NDArrayIndex;
 import org.nd4j.linalg.learning.config.IUpdater;
 import org.nd4j.linalg.schedule.ISchedule;
@@ -560,4 +561,40 @@ public class NetworkUtils {
         int epoch = getEpochCount(model);
         model.applyConstraints(iter, epoch);
     }
+
+    /**
+     * Get a view of a subset of the examples (along dimension 0) of the specified array. Used to split a minibatch
+     * into micro-batches for gradient accumulation
+     *
+     * @param arr   Features, labels or mask array. May be null
+     * @param start Index of the first example (inclusive)
+     * @param end   Index of the last example (exclusive)
+     * @return View of the examples, or null if the array is null
+     */
+    public static INDArray getMicroBatch(INDArray arr, long start, long end) {
+        if (arr == null)
+            return null;
+        INDArrayIndex[] indices = new INDArrayIndex[arr.rank()];
+        indices[0] = NDArrayIndex.interval(start, end);
+        for (int i = 1; i < indices.length; i++) {
+            indices[i] = NDArrayIndex.all();
+        }
+        return arr.get(indices);
+    }
+
+    /**
+     * As per {@link #getMicroBatch(INDArray, long, long)}, for each of the specified arrays
+     *
+     * @param arrs Arrays. May be null, or contain null entries
+     * @return Views of the examples, or null if the array of arrays is null
+     */
+    public static INDArray[] getMicroBatch(INDArray[] arrs, long start, long end) {
+        if (arrs == null)
+            return null;
+        INDArray[] out = new INDArray[arrs.length];
+        for (int i = 0; i < arrs.length; i++) {
+            out[i] = getMicroBatch(arrs[i], start, end);
+        }
+        return out;
+    }
 }
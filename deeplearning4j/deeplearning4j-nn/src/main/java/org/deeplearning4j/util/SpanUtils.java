@@ -0,0 +1,70 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.util;
+
+import org.deeplearning4j.nn.api.Model;
+import org.deeplearning4j.optimize.api.SpanListener;
+import org.deeplearning4j.optimize.api.TrainingListener;
+
+import java.util.Collection;
+
+/**
+ * Helpers for recording {@link SpanListener} spans with minimal overhead when no listener is recording
+ */
+public class SpanUtils {
+
+    private SpanUtils() {
+    }
+
+    /**
+     * Starts a span
+     *
+     * @return current {@link System#nanoTime()} if any span listener is recording, -1 otherwise
+     */
+    public static long start(Collection<TrainingListener> listeners) {
+        if (listeners == null || listeners.isEmpty())
+            return -1;
+
+        for (TrainingListener l : listeners) {
+            if (l instanceof SpanListener && ((SpanListener) l).isRecording())
+                return System.nanoTime();
+        }
+        return -1;
+    }
+
+    /**
+     * Finishes a span started with {@link #start(Collection)}, notifying recording listeners
+     *
+     * @return end timestamp, usable as start of the next adjacent span, or -1 if span wasn't recorded
+     */
+    public static long end(Model model, Collection<TrainingListener> listeners, SpanListener.Type type, String name,
+                    long start) {
+        if (start < 0)
+            return -1;
+
+        long now = System.nanoTime();
+        for (TrainingListener l : listeners) {
+            if (l instanceof SpanListener && ((SpanListener) l).isRecording())
+                ((SpanListener) l).onSpan(model, type, name, start, now);
+        }
+        return now;
+    }
+}
@@ -40,7 +40,9 @@ import org.deeplearning4j.ui.model.stats.impl.DefaultStatsInitializationConfigur
 import org.deeplearning4j.ui.model.stats.impl.DefaultStatsUpdateConfiguration;
 import org.deeplearning4j.core.util.UIDProvider;
 import org.nd4j.linalg.api.buffer.util.DataTypeUtil;
+import org.nd4j.linalg.api.memory.MemoryWorkspace;
 import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.ops.impl.shape.Gather;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.common.primitives.Pair;
 import org.nd4j.nativeblas.NativeOps;
@@ -53,10 +55,19 @@ import java.lang.management.ManagementFactory;
 import java.lang.management.OperatingSystemMXBean;
 import java.lang.management.RuntimeMXBean;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 public abstract class BaseStatsListener implements RoutingIterationListener {
     public static final String TYPE_ID = "StatsListener";
+    private static final int MAX_SAMPLE_INDEX_SETS = 64;
+    private static final long STATS_THREAD_KEEP_ALIVE_SECONDS = 30;
 
     private enum StatType {
         Mean, Stdev, MeanMagnitude
@@ -74,15 +85,25 @@ public abstract class BaseStatsListener implements RoutingIterationListener {
     //NOTE: may have multiple models, due to multiple pretrain layers all using the same StatsListener
     private List<ModelInfo> modelInfos = new ArrayList<>();
 
-    private Map<String, Histogram> activationHistograms;
-    private Map<String, Double> meanActivations;        //TODO replace with Eclipse collections primitive maps...
-    private Map<String, Double> stdevActivations;
-    private Map<String, Double> meanMagActivations;
+    private ArrayStats activationStats;
+    private ArrayStats gradientStats;
 
-    private Map<String, Histogram> gradientHistograms;
-    private Map<String, Double> meanGradients;        //TODO replace with Eclipse collections primitive maps...
-    private Map<String, Double> stdevGradient;
-    private Map<String, Double> meanMagGradients;
+    //Async collection: arrays are copied to reusable buffers, and stats are calculated on a background thread
+    private transient ExecutorService statsExecutor;
+    private transient Future<?> pendingReport;
+    private transient Map<String, INDArray> snapshotBuffers;
+    private transient Map<String, INDArray> activationSnapshot;
+    private transient Map<String, INDArray> gradientSnapshot;
+
+    //Histogram sampling: positions to sample, for each array length
+    private transient Map<Long, INDArray> sampleIndices;
+
+    private static class ArrayStats implements Serializable {
+        private Map<String, Histogram> histograms;
+        private Map<String, Double> mean;        //TODO replace with Eclipse collections primitive maps...
+        private Map<String, Double> stdev;
+        private Map<String, Double> meanMagnitudes;
+    }
 
     private static class ModelInfo implements Serializable {
         private final Model model;
@@ -237,7 +258,8 @@ public abstract class BaseStatsListener implements RoutingIterationListener {
 
     @Override
     public void onEpochEnd(Model model) {
-
+        awaitPendingReports();
+        shutdownStatsExecutor();
     }
 
     @Override
@@ -261,17 +283,11 @@ public abstract class BaseStatsListener implements RoutingIterationListener {
         int iterCount = getModelInfo(model).iterCount;
         if (calcFromActivations() && updateConfig.reportingFrequency() > 0
                 && (iterCount == 0 || iterCount % updateConfig.reportingFrequency() == 0)) {
-            if (updateConfig.collectHistograms(StatsType.Activations)) {
-                activationHistograms = getHistograms(activations, updateConfig.numHistogramBins(StatsType.Activations));
-            }
-            if (updateConfig.collectMean(StatsType.Activations)) {
-                meanActivations = calculateSummaryStats(activations, StatType.Mean);
-            }
-            if (updateConfig.collectStdev(StatsType.Activations)) {
-                stdevActivations = calculateSummaryStats(activations, StatType.Stdev);
-            }
-            if (updateConfig.collectMeanMagnitudes(StatsType.Activations)) {
-                meanMagActivations = calculateSummaryStats(activations, StatType.MeanMagnitude);
+            if (updateConfig.collectAsync()) {
+                awaitPendingReports();
+                activationSnapshot = snapshot("activations/", activations);
+            } else {
+                activationStats = calculateStats(activations, StatsType.Activations);
             }
         }
     }
@@ -282,32 +298,26 @@ public abstract class BaseStatsListener implements RoutingIterationListener {
         if (calcFromGradients() && updateConfig.reportingFrequency() > 0
                 && (iterCount == 0 || iterCount % updateConfig.reportingFrequency() == 0)) {
             Gradient g = model.gradient();
-            if (updateConfig.collectHistograms(StatsType.Gradients)) {
-                gradientHistograms = getHistograms(g.gradientForVariable(), updateConfig.numHistogramBins(StatsType.Gradients));
-            }
-
-            if (updateConfig.collectMean(StatsType.Gradients)) {
-                meanGradients = calculateSummaryStats(g.gradientForVariable(), StatType.Mean);
-            }
-            if (updateConfig.collectStdev(StatsType.Gradients)) {
-                stdevGradient = calculateSummaryStats(g.gradientForVariable(), StatType.Stdev);
-            }
-            if (updateConfig.collectMeanMagnitudes(StatsType.Gradients)) {
-                meanMagGradients = calculateSummaryStats(g.gradientForVariable(), StatType.MeanMagnitude);
+            if (updateConfig.collectAsync()) {
+                awaitPendingReports();
+                gradientSnapshot = snapshot("gradients/", g.gradientForVariable());
+            } else {
+                gradientStats = calculateStats(g.gradientForVariable(), StatsType.Gradients);
             }
         }
     }
 
     private boolean calcFromActivations() {
-        return updateConfig.collectMean(StatsType.Activations) || updateConfig.collectStdev(StatsType.Activations)
-                || updateConfig.collectMeanMagnitudes(StatsType.Activations)
-                || updateConfig.collectHistograms(StatsType.Activations);
+        return calcStats(StatsType.Activations);
     }
 
     private boolean calcFromGradients() {
-        return updateConfig.collectMean(StatsType.Gradients) || updateConfig.collectStdev(StatsType.Gradients)
-                || updateConfig.collectMeanMagnitudes(StatsType.Gradients)
-                || updateConfig.collectHistograms(StatsType.Gradients);
+        return calcStats(StatsType.Gradients);
+    }
+
+    private boolean calcStats(StatsType type) {
+        return updateConfig.collectMean(type) || updateConfig.collectStdev(type)
+                || updateConfig.collectMeanMagnitudes(type) || updateConfig.collectHistograms(type);
     }
 
     @Override
@@ -464,110 +474,165 @@ public abstract class BaseStatsListener implements RoutingIterationListener {
         }
 
 
-        //--- Histograms ---
-
-        if (updateConfig.collectHistograms(StatsType.Parameters)) {
-            Map<String, Histogram> paramHistograms = getHistograms(model.paramTable(backpropParamsOnly),
-                    updateConfig.numHistogramBins(StatsType.Parameters));
-            report.reportHistograms(StatsType.Parameters, paramHistograms);
-        }
+        //--- Histograms and Summary Stats: Mean, Variance, Mean Magnitudes ---
 
-        if (updateConfig.collectHistograms(StatsType.Gradients)) {
-            report.reportHistograms(StatsType.Gradients, gradientHistograms);
-        }
+        Map<String, INDArray> params = calcStats(StatsType.Parameters) ? model.paramTable(backpropParamsOnly) : null;
+        Map<String, INDArray> updates = calcStats(StatsType.Updates) ? model.gradient().gradientForVariable() : null;
 
-        if (updateConfig.collectHistograms(StatsType.Updates)) {
-            Map<String, Histogram> updateHistograms = getHistograms(model.gradient().gradientForVariable(),
-                    updateConfig.numHistogramBins(StatsType.Updates));
-            report.reportHistograms(StatsType.Updates, updateHistograms);
-        }
-
-        if (updateConfig.collectHistograms(StatsType.Activations)) {
-            report.reportHistograms(StatsType.Activations, activationHistograms);
+        final Map<String, INDArray> paramSnapshot;
+        final Map<String, INDArray> updateSnapshot;
+        if (updateConfig.collectAsync()) {
+            awaitPendingReports();
+            paramSnapshot = snapshot("parameters/", params);
+            updateSnapshot = snapshot("updates/", updates);
+        } else {
+            paramSnapshot = null;
+            updateSnapshot = null;
+            reportStats(report, StatsType.Parameters, calculateStats(params, StatsType.Parameters));
+            reportStats(report, StatsType.Gradients, gradientStats);
+            reportStats(report, StatsType.Updates, calculateStats(updates, StatsType.Updates));
+            reportStats(report, StatsType.Activations, activationStats);
         }
 
 
-        //--- Summary Stats: Mean, Variance, Mean Magnitudes ---
+        long endTime = getTime();
+        report.reportStatsCollectionDurationMS((int) (endTime - currentTime)); //Amount of time required to alculate all histograms, means etc.
+        modelInfo.lastReportTime = currentTime;
+        modelInfo.lastReportIteration = iteration;
+        report.reportIterationCount(iteration);
 
-        if (updateConfig.collectMean(StatsType.Parameters)) {
-            Map<String, Double> meanParams = calculateSummaryStats(model.paramTable(backpropParamsOnly), StatType.Mean);
-            report.reportMean(StatsType.Parameters, meanParams);
+        if (updateConfig.collectAsync()) {
+            //Stats collection duration reported here is the time spent on the training thread only
+            final Map<String, INDArray> gradients = gradientSnapshot;
+            final Map<String, INDArray> activations = activationSnapshot;
+            pendingReport = getStatsExecutor().submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        reportStats(report, StatsType.Parameters, calculateStats(paramSnapshot, StatsType.Parameters));
+                        reportStats(report, StatsType.Gradients, calculateStats(gradients, StatsType.Gradients));
+                        reportStats(report, StatsType.Updates, calculateStats(updateSnapshot, StatsType.Updates));
+                        reportStats(report, StatsType.Activations, calculateStats(activations, StatsType.Activations));
+                        router.putUpdate(report);
+                    } catch (Throwable t) {
+                        log.error("Error calculating stats for iteration {}", report.getIterationCount(), t);
+                    }
+                }
+            });
+        } else {
+            this.router.putUpdate(report);
         }
 
-        if (updateConfig.collectMean(StatsType.Gradients)) {
-            report.reportMean(StatsType.Gradients, meanGradients);
-        }
+        modelInfo.iterCount = iteration;
+        activationStats = null;
+        gradientStats = null;
+        activationSnapshot = null;
+        gradientSnapshot = null;
+    }
 
-        if (updateConfig.collectMean(StatsType.Updates)) {
-            Map<String, Double> meanUpdates =
-                    calculateSummaryStats(model.gradient().gradientForVariable(), StatType.Mean);
-            report.reportMean(StatsType.Updates, meanUpdates);
+    /**
+     * Blocks until stats calculated on a background thread (see {@link StatsUpdateConfiguration#collectAsync()})
+     * have been reported to the storage router. Called automatically at the end of each epoch, which also stops
+     * the background thread until the next report
+     */
+    public void awaitPendingReports() {
+        Future<?> f = pendingReport;
+        if (f == null)
+            return;
+        try {
+            f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        pendingReport = null;
+    }
+
+    private synchronized ExecutorService getStatsExecutor() {
+        if (statsExecutor == null) {
+            //Idle thread is released after a while, so listeners that never see an epoch end (fit(DataSet) loops,
+            // detached listeners) don't keep it around
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, STATS_THREAD_KEEP_ALIVE_SECONDS,
+                    TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "StatsListener stats collection");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            executor.allowCoreThreadTimeOut(true);
+            statsExecutor = executor;
         }
+        return statsExecutor;
+    }
 
-        if (updateConfig.collectMean(StatsType.Activations)) {
-            report.reportMean(StatsType.Activations, meanActivations);
+    private synchronized void shutdownStatsExecutor() {
+        if (statsExecutor != null) {
+            statsExecutor.shutdown();
+            statsExecutor = null;
         }
+    }
 
-
-        if (updateConfig.collectStdev(StatsType.Parameters)) {
-            Map<String, Double> stdevParams =
-                    calculateSummaryStats(model.paramTable(backpropParamsOnly), StatType.Stdev);
-            report.reportStdev(StatsType.Parameters, stdevParams);
+    /**
+     * Copies the given arrays into reusable (detached) buffers, so they can be used after the arrays themselves are
+     * modified or invalidated (workspaces)
+     */
+    private Map<String, INDArray> snapshot(String prefix, Map<String, INDArray> arrays) {
+        if (arrays == null)
+            return null;
+        if (snapshotBuffers == null)
+            snapshotBuffers = new HashMap<>();
+
+        Map<String, INDArray> out = new LinkedHashMap<>();
+        for (Map.Entry<String, INDArray> entry : arrays.entrySet()) {
+            INDArray arr = entry.getValue();
+            String key = prefix + entry.getKey();
+            INDArray buffer = snapshotBuffers.get(key);
+            if (buffer == null || buffer.dataType() != arr.dataType() || !Arrays.equals(buffer.shape(), arr.shape())) {
+                buffer = Nd4j.createUninitializedDetached(arr.dataType(), arr.shape());
+                snapshotBuffers.put(key, buffer);
+            }
+            buffer.assign(arr);
+            out.put(entry.getKey(), buffer);
         }
+        return out;
+    }
 
-        if (updateConfig.collectStdev(StatsType.Gradients)) {
-            report.reportStdev(StatsType.Gradients, stdevGradient);
+    private ArrayStats calculateStats(Map<String, INDArray> arrays, StatsType type) {
+        if (arrays == null)
+            return null;
+        ArrayStats stats = new ArrayStats();
+        if (updateConfig.collectHistograms(type)) {
+            stats.histograms = getHistograms(arrays, updateConfig.numHistogramBins(type));
         }
-
-        if (updateConfig.collectStdev(StatsType.Updates)) {
-            Map<String, Double> stdevUpdates =
-                    calculateSummaryStats(model.gradient().gradientForVariable(), StatType.Stdev);
-            report.reportStdev(StatsType.Updates, stdevUpdates);
+        if (updateConfig.collectMean(type)) {
+            stats.mean = calculateSummaryStats(arrays, StatType.Mean);
         }
-
-        if (updateConfig.collectStdev(StatsType.Activations)) {
-            report.reportStdev(StatsType.Activations, stdevActivations);
+        if (updateConfig.collectStdev(type)) {
+            stats.stdev = calculateSummaryStats(arrays, StatType.Stdev);
         }
-
-
-        if (updateConfig.collectMeanMagnitudes(StatsType.Parameters)) {
-            Map<String, Double> meanMagParams =
-                    calculateSummaryStats(model.paramTable(backpropParamsOnly), StatType.MeanMagnitude);
-            report.reportMeanMagnitudes(StatsType.Parameters, meanMagParams);
+        if (updateConfig.collectMeanMagnitudes(type)) {
+            stats.meanMagnitudes = calculateSummaryStats(arrays, StatType.MeanMagnitude);
         }
+        return stats;
+    }
 
-        if (updateConfig.collectMeanMagnitudes(StatsType.Gradients)) {
-            report.reportMeanMagnitudes(StatsType.Gradients, meanMagGradients);
+    private void reportStats(StatsReport report, StatsType type, ArrayStats stats) {
+        if (updateConfig.collectHistograms(type)) {
+            report.reportHistograms(type, stats == null ? null : stats.histograms);
         }
-
-        if (updateConfig.collectMeanMagnitudes(StatsType.Updates)) {
-            Map<String, Double> meanMagUpdates =
-                    calculateSummaryStats(model.gradient().gradientForVariable(), StatType.MeanMagnitude);
-            report.reportMeanMagnitudes(StatsType.Updates, meanMagUpdates);
+        if (updateConfig.collectMean(type)) {
+            report.reportMean(type, stats == null ? null : stats.mean);
         }
-
-        if (updateConfig.collectMeanMagnitudes(StatsType.Activations)) {
-            report.reportMeanMagnitudes(StatsType.Activations, meanMagActivations);
+        if (updateConfig.collectStdev(type)) {
+            report.reportStdev(type, stats == null ? null : stats.stdev);
+        }
+        if (updateConfig.collectMeanMagnitudes(type)) {
+            report.reportMeanMagnitudes(type, stats == null ? null : stats.meanMagnitudes);
         }
-
-
-        long endTime = getTime();
-        report.reportStatsCollectionDurationMS((int) (endTime - currentTime)); //Amount of time required to alculate all histograms, means etc.
-        modelInfo.lastReportTime = currentTime;
-        modelInfo.lastReportIteration = iteration;
-        report.reportIterationCount(iteration);
-
-        this.router.putUpdate(report);
-
-        modelInfo.iterCount = iteration;
-        activationHistograms = null;
-        meanActivations = null;
-        stdevActivations = null;
-        meanMagActivations = null;
-        gradientHistograms = null;
-        meanGradients = null;
-        stdevGradient = null;
-        meanMagGradients = null;
     }
 
     private long getTime() {
@@ -756,13 +821,18 @@ public abstract class BaseStatsListener implements RoutingIterationListener {
         return out;
     }
 
-    private static Map<String, Histogram> getHistograms(Map<String, INDArray> map, int nBins) {
+    private Map<String, Histogram> getHistograms(Map<String, INDArray> map, int nBins) {
         Map<String, Histogram> out = new LinkedHashMap<>();
 
         if (map == null)
             return out;
 
+        int sampleSize = updateConfig.histogramSampleSize();
         for (Map.Entry<String, INDArray> entry : map.entrySet()) {
+            if (sampleSize > 0 && entry.getValue().length() > sampleSize) {
+                out.put(entry.getKey(), getSampledHistogram(entry.getValue(), nBins, sampleSize));
+                continue;
+            }
 
             org.nd4j.linalg.api.ops.impl.transforms.Histogram hOp =
                     new org.nd4j.linalg.api.ops.impl.transforms.Histogram(entry.getValue(), nBins);
@@ -784,6 +854,74 @@ public abstract class BaseStatsListener implements RoutingIterationListener {
         return out;
     }
 
+    /**
+     * Histogram from a fixed random sample of values of the array, with counts scaled to the array length
+     */
+    private Histogram getSampledHistogram(INDArray arr, int nBins, int sampleSize) {
+        INDArray flat = arr.reshape(arr.ordering(), arr.length());
+        INDArray sample = Nd4j.exec(new Gather(flat, getSampleIndices(arr.length(), sampleSize), 0))[0];
+        double[] values = sample.toDoubleVector();
+
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+        for (double v : values) {
+            min = Math.min(min, v);
+            max = Math.max(max, v);
+        }
+
+        long[] sampleCount = new long[nBins];
+        double binWidth = (max - min) / nBins;
+        for (double v : values) {
+            int bin = binWidth > 0 ? (int) ((v - min) / binWidth) : 0;
+            sampleCount[Math.min(bin, nBins - 1)]++;
+        }
+
+        double scale = (double) arr.length() / values.length;
+        int[] count = new int[nBins];
+        for (int i = 0; i < nBins; i++) {
+            count[i] = (int) Math.round(sampleCount[i] * scale);
+        }
+        return new Histogram(min, max, nBins, count);
+    }
+
+    private synchronized INDArray getSampleIndices(long length, int sampleSize) {
+        if (sampleIndices == null)
+            sampleIndices = new HashMap<>();
+        INDArray indices = sampleIndices.get(length);
+        if (indices == null) {
+            if (sampleIndices.size() >= MAX_SAMPLE_INDEX_SETS)
+                sampleIndices.clear();  //Rare: many different array lengths (variable length activations, for example)
+            try (MemoryWorkspace ws = Nd4j.getMemoryManager().scopeOutOfWorkspaces()) {
+                indices = Nd4j.createFromArray(reservoirSample(length, sampleSize, new Random(length)));
+            }
+            sampleIndices.put(length, indices);
+        }
+        return indices;
+    }
+
+    /**
+     * Uniform random sample of k positions out of [0, n), sorted. Reservoir sampling with geometric skips
+     * (Li's "algorithm L"), so cost is O(k * log(n/k)) instead of O(n)
+     */
+    private static long[] reservoirSample(long n, int k, Random rng) {
+        long[] reservoir = new long[k];
+        for (int i = 0; i < k; i++) {
+            reservoir[i] = i;
+        }
+
+        double w = Math.exp(Math.log(1.0 - rng.nextDouble()) / k);
+        long i = k - 1;
+        while (true) {
+            i += (long) Math.floor(Math.log(1.0 - rng.nextDouble()) / Math.log(1.0 - w)) + 1;
+            if (i >= n || i < 0)
+                break;
+            reservoir[rng.nextInt(k)] = i;
+            w *= Math.exp(Math.log(1.0 - rng.nextDouble()) / k);
+        }
+        Arrays.sort(reservoir);
+        return reservoir;
+    }
+
     @Override
     public abstract BaseStatsListener clone();
 }
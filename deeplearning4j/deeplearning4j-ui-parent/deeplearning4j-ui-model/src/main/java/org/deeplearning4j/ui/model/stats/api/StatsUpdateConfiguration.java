@@ -99,4 +99,25 @@ public interface StatsUpdateConfiguration extends Serializable {
      */
     boolean collectMeanMagnitudes(StatsType type);
 
+    //--- Collection ---
+
+    /**
+     * Should histograms and summary stats be calculated on a background thread? If true, the training thread only
+     * copies the required arrays (parameters, gradients, updates, activations) into reusable buffers, and the stats
+     * are calculated and reported asynchronously.
+     */
+    default boolean collectAsync() {
+        return false;
+    }
+
+    /**
+     * Maximum number of values per parameter (or per layer, for activations) used to calculate histograms.
+     * Larger arrays are subsampled, using a fixed uniform random sample of positions (reservoir sampling), so
+     * histogram cost doesn't depend on the model size. Histogram counts are scaled to the full array size.
+     * 0 (default): no sampling, all values are used.
+     */
+    default int histogramSampleSize() {
+        return 0;
+    }
+
 }
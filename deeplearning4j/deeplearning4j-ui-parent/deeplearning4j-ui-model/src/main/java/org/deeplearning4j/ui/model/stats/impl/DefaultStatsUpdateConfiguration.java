@@ -51,6 +51,8 @@ public class DefaultStatsUpdateConfiguration implements StatsUpdateConfiguration
     private boolean collectMeanMagnitudesGradients = true;
     private boolean collectMeanMagnitudesUpdates = true;
     private boolean collectMeanMagnitudesActivations = true;
+    private boolean collectAsync = false;
+    private int histogramSampleSize = 0;
 
     private DefaultStatsUpdateConfiguration(Builder b) {
         this.reportingFrequency = b.reportingFrequency;
@@ -75,6 +77,8 @@ public class DefaultStatsUpdateConfiguration implements StatsUpdateConfiguration
         this.collectMeanMagnitudesGradients = b.collectMeanMagnitudesGradients;
         this.collectMeanMagnitudesUpdates = b.collectMeanMagnitudesUpdates;
         this.collectMeanMagnitudesActivations = b.collectMeanMagnitudesActivations;
+        this.collectAsync = b.collectAsync;
+        this.histogramSampleSize = b.histogramSampleSize;
     }
 
     @Override
@@ -167,6 +171,16 @@ public class DefaultStatsUpdateConfiguration implements StatsUpdateConfiguration
         return false;
     }
 
+    @Override
+    public boolean collectAsync() {
+        return collectAsync;
+    }
+
+    @Override
+    public int histogramSampleSize() {
+        return histogramSampleSize;
+    }
+
     public static class Builder {
         private int reportingFrequency = DEFAULT_REPORTING_FREQUENCY;
         private boolean collectPerformanceStats = true;
@@ -190,6 +204,8 @@ public class DefaultStatsUpdateConfiguration implements StatsUpdateConfiguration
         private boolean collectMeanMagnitudesGradients = true;
         private boolean collectMeanMagnitudesUpdates = true;
         private boolean collectMeanMagnitudesActivations = true;
+        private boolean collectAsync = false;
+        private int histogramSampleSize = 0;
 
         public Builder reportingFrequency(int reportingFrequency) {
             this.reportingFrequency = reportingFrequency;
@@ -301,6 +317,26 @@ public class DefaultStatsUpdateConfiguration implements StatsUpdateConfiguration
             return this;
         }
 
+        /**
+         * If true: calculate histograms and summary stats on a background thread, instead of the training thread.
+         * See {@link StatsUpdateConfiguration#collectAsync()}
+         */
+        public Builder collectAsync(boolean collectAsync) {
+            this.collectAsync = collectAsync;
+            return this;
+        }
+
+        /**
+         * Maximum number of values per array used to calculate histograms; 0 to use all values.
+         * See {@link StatsUpdateConfiguration#histogramSampleSize()}
+         */
+        public Builder histogramSampleSize(int histogramSampleSize) {
+            if (histogramSampleSize < 0)
+                throw new IllegalArgumentException("Histogram sample size must be >= 0, got " + histogramSampleSize);
+            this.histogramSampleSize = histogramSampleSize;
+            return this;
+        }
+
         public DefaultStatsUpdateConfiguration build() {
             return new DefaultStatsUpdateConfiguration(this);
         }
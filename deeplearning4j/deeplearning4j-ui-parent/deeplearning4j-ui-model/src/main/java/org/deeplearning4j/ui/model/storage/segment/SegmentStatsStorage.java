@@ -0,0 +1,697 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.ui.model.storage.segment;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.config.DL4JClassLoading;
+import org.deeplearning4j.core.storage.*;
+import org.deeplearning4j.ui.model.storage.BaseCollectionStatsStorage;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Log-structured, file based StatsStorage implementation.<br>
+ * All records (static info, updates, metadata) are appended to segment files in a directory, in their own
+ * (SBE, for the default stats implementations) encoding. Nothing is rewritten in place, and no write ahead log
+ * or per-record transaction is involved, so ingestion cost stays constant over the length of a training run.<br>
+ * <br>
+ * Updates are never held in memory: for each session/type/worker, only a time index (sorted timestamps and file
+ * positions, 16 bytes per update) is maintained, and rebuilt on opening existing storage by scanning record headers.
+ * Updates are read from disk when requested.<br>
+ * <br>
+ * {@link #getUpdatesDownsampled(String, String, String, long, int)} (used by the training UI charts) is served from
+ * multi-resolution rollups: the update history is split into buckets of 1, F, F^2, ... updates (F = rollup factor),
+ * and one update per bucket is read for the finest resolution that fits the requested number of points. Thus cost of
+ * a chart refresh depends on the number of points shown, and not on the total number of iterations. As bucket
+ * boundaries are fixed, the same updates are returned by subsequent queries, so charts don't jitter as training
+ * progresses.<br>
+ * <br>
+ * Writes are buffered; buffer is flushed when full, when static info or metadata is posted, before any query and
+ * on {@link #close()}. Records from a partially written tail (i.e., after a crash) are discarded when reopening.
+ */
+@Slf4j
+public class SegmentStatsStorage extends BaseCollectionStatsStorage {
+    public static final String SEGMENT_PREFIX = "segment-";
+    public static final String SEGMENT_EXTENSION = ".seg";
+
+    //Record header: payload length (int), kind (byte), key id (int), class id (int), timestamp (long)
+    private static final int HEADER_BYTES = 4 + 1 + 4 + 4 + 8;
+    private static final byte KIND_CLASS = 0;
+    private static final byte KIND_KEY = 1;
+    private static final byte KIND_METADATA = 2;
+    private static final byte KIND_STATIC = 3;
+    private static final byte KIND_UPDATE = 4;
+
+    private final File directory;
+    private final long segmentSize;
+    private final int rollupFactor;
+    private final ByteBuffer writeBuffer;
+
+    private final List<FileChannel> segments = new ArrayList<>();
+    private long flushedBytes;          //Bytes of the current (last) segment that are on disk
+    private long segmentBytes;          //Bytes of the current (last) segment, including buffered ones
+
+    private final Map<String, Integer> classToInteger = new HashMap<>();
+    private final List<String> integerToClass = new ArrayList<>();
+    private final Map<SessionTypeWorkerId, Integer> keyToInteger = new HashMap<>();
+    private final List<UpdateIndex> integerToIndex = new ArrayList<>();
+
+    private boolean isClosed = false;
+
+    public SegmentStatsStorage(@NonNull File directory) {
+        this(new Builder(directory));
+    }
+
+    private SegmentStatsStorage(Builder builder) {
+        this.directory = builder.directory;
+        this.segmentSize = builder.segmentSizeBytes;
+        this.rollupFactor = builder.rollupFactor;
+        this.writeBuffer = ByteBuffer.allocate(builder.writeBufferBytes);
+
+        sessionIDs = ConcurrentHashMap.newKeySet();
+        storageMetaData = new ConcurrentHashMap<>();
+        staticInfo = new ConcurrentHashMap<>();
+
+        if (!directory.exists() && !directory.mkdirs())
+            throw new IllegalStateException("Could not create directory: " + directory.getAbsolutePath());
+        if (!directory.isDirectory())
+            throw new IllegalStateException("Not a directory: " + directory.getAbsolutePath());
+
+        try {
+            File[] files = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_EXTENSION));
+            Arrays.sort(files);
+            for (int i = 0; i < files.length; i++) {
+                if (!files[i].getName().equals(segmentName(i)))
+                    throw new IllegalStateException("Expected segment file " + segmentName(i) + ", got " + files[i].getName());
+                segments.add(FileChannel.open(files[i].toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE));
+                segmentBytes = scanSegment(i, files[i]);
+                flushedBytes = segmentBytes;
+            }
+            if (segments.isEmpty())
+                newSegment();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error opening stats storage in " + directory.getAbsolutePath(), e);
+        }
+    }
+
+    private static String segmentName(int idx) {
+        return String.format("%s%06d%s", SEGMENT_PREFIX, idx, SEGMENT_EXTENSION);
+    }
+
+    private static long position(int segment, long offset) {
+        return ((long) segment << 32) | offset;
+    }
+
+    /**
+     * Reads all record headers of the given segment, rebuilding class/key tables, static info, metadata and
+     * update indexes. Returns the length of the valid part of the segment
+     */
+    private long scanSegment(int segmentIdx, File f) throws IOException {
+        long length = f.length();
+        long offset = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f), 1 << 16))) {
+            while (offset + HEADER_BYTES <= length) {
+                int payloadLength = in.readInt();
+                byte kind = in.readByte();
+                int keyId = in.readInt();
+                int classId = in.readInt();
+                long timestamp = in.readLong();
+                if (payloadLength < 0 || offset + HEADER_BYTES + payloadLength > length)
+                    break;
+
+                if (kind == KIND_UPDATE) {
+                    integerToIndex.get(keyId).add(timestamp, position(segmentIdx, offset));
+                    skipFully(in, payloadLength);
+                } else {
+                    byte[] payload = new byte[payloadLength];
+                    in.readFully(payload);
+                    switch (kind) {
+                        case KIND_CLASS:
+                            integerToClass.add(new String(payload, StandardCharsets.UTF_8));
+                            classToInteger.put(integerToClass.get(classId), classId);
+                            break;
+                        case KIND_KEY:
+                            DataInputStream keyIn = new DataInputStream(new ByteArrayInputStream(payload));
+                            registerKey(new SessionTypeWorkerId(keyIn.readUTF(), keyIn.readUTF(), keyIn.readUTF()));
+                            break;
+                        case KIND_METADATA:
+                            StorageMetaData m = (StorageMetaData) decode(classId, payload);
+                            storageMetaData.put(new SessionTypeId(m.getSessionID(), m.getTypeID()), m);
+                            break;
+                        case KIND_STATIC:
+                            Persistable p = decode(classId, payload);
+                            sessionIDs.add(p.getSessionID());
+                            staticInfo.put(new SessionTypeWorkerId(p.getSessionID(), p.getTypeID(), p.getWorkerID()), p);
+                            break;
+                        default:
+                            throw new IllegalStateException("Unknown record type " + kind + " in " + f.getAbsolutePath());
+                    }
+                }
+                offset += HEADER_BYTES + payloadLength;
+            }
+        }
+
+        if (offset < length) {
+            log.warn("Discarding {} bytes of partially written records at the end of {}", length - offset, f.getAbsolutePath());
+            segments.get(segmentIdx).truncate(offset);
+        }
+        return offset;
+    }
+
+    private static void skipFully(DataInputStream in, int bytes) throws IOException {
+        while (bytes > 0) {
+            int skipped = in.skipBytes(bytes);
+            if (skipped <= 0)
+                throw new EOFException();
+            bytes -= skipped;
+        }
+    }
+
+    private void newSegment() throws IOException {
+        flushBuffer();
+        File f = new File(directory, segmentName(segments.size()));
+        segments.add(FileChannel.open(f.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE));
+        segmentBytes = 0;
+        flushedBytes = 0;
+    }
+
+    private UpdateIndex registerKey(SessionTypeWorkerId id) {
+        UpdateIndex index = new UpdateIndex();
+        keyToInteger.put(id, integerToIndex.size());
+        integerToIndex.add(index);
+        updates.put(id, index);
+        return index;
+    }
+
+    private Persistable decode(int classId, byte[] payload) {
+        Persistable p = DL4JClassLoading.createNewInstance(integerToClass.get(classId));
+        p.decode(payload);
+        return p;
+    }
+
+    // ----- Writing -----
+
+    private int getIntForClass(Class<?> c) throws IOException {
+        Integer idx = classToInteger.get(c.getName());
+        if (idx == null) {
+            idx = integerToClass.size();
+            append(KIND_CLASS, -1, idx, 0, c.getName().getBytes(StandardCharsets.UTF_8));
+            classToInteger.put(c.getName(), idx);
+            integerToClass.add(c.getName());
+        }
+        return idx;
+    }
+
+    private int getIntForKey(SessionTypeWorkerId id) throws IOException {
+        Integer idx = keyToInteger.get(id);
+        if (idx == null) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            try (DataOutputStream dos = new DataOutputStream(baos)) {
+                dos.writeUTF(id.getSessionID());
+                dos.writeUTF(id.getTypeID());
+                dos.writeUTF(id.getWorkerID());
+            }
+            idx = integerToIndex.size();
+            append(KIND_KEY, idx, -1, 0, baos.toByteArray());
+            registerKey(id);
+        }
+        return idx;
+    }
+
+    /**
+     * Appends a record to the current segment (via write buffer), and returns its position
+     */
+    private long append(byte kind, int keyId, int classId, long timestamp, byte[] payload) throws IOException {
+        if (isClosed)
+            throw new IllegalStateException("Cannot write to closed stats storage");
+
+        int recordBytes = HEADER_BYTES + payload.length;
+        if (segmentBytes > 0 && segmentBytes + recordBytes > segmentSize)
+            newSegment();
+
+        if (writeBuffer.remaining() < recordBytes)
+            flushBuffer();
+
+        long pos = position(segments.size() - 1, segmentBytes);
+        if (writeBuffer.remaining() >= recordBytes) {
+            writeBuffer.putInt(payload.length).put(kind).putInt(keyId).putInt(classId).putLong(timestamp).put(payload);
+        } else {
+            //Record larger than the whole buffer - write it directly
+            ByteBuffer bb = ByteBuffer.allocate(recordBytes);
+            bb.putInt(payload.length).put(kind).putInt(keyId).putInt(classId).putLong(timestamp).put(payload);
+            bb.flip();
+            writeFully(bb, flushedBytes);
+            flushedBytes += recordBytes;
+        }
+        segmentBytes += recordBytes;
+        return pos;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (writeBuffer.position() == 0)
+            return;
+        writeBuffer.flip();
+        int bytes = writeBuffer.remaining();
+        writeFully(writeBuffer, flushedBytes);
+        writeBuffer.clear();
+        flushedBytes += bytes;
+    }
+
+    private void writeFully(ByteBuffer bb, long offset) throws IOException {
+        FileChannel channel = segments.get(segments.size() - 1);
+        while (bb.hasRemaining())
+            offset += channel.write(bb, offset);
+    }
+
+    /**
+     * Write all buffered records to disk
+     */
+    public synchronized void flush() {
+        try {
+            flushBuffer();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long appendPersistable(byte kind, int keyId, Persistable p) {
+        try {
+            return append(kind, keyId, getIntForClass(p.getClass()), p.getTimeStamp(), p.encode());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing to stats storage in " + directory.getAbsolutePath(), e);
+        }
+    }
+
+    @Override
+    protected Map<Long, Persistable> getUpdateMap(String sessionID, String typeID, String workerID,
+                    boolean createIfRequired) {
+        SessionTypeWorkerId id = new SessionTypeWorkerId(sessionID, typeID, workerID);
+        synchronized (this) {
+            Integer idx = keyToInteger.get(id);
+            if (idx != null)
+                return integerToIndex.get(idx);
+            if (!createIfRequired)
+                return null;
+            try {
+                return integerToIndex.get(getIntForKey(id));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    @Override
+    public void putStaticInfo(Persistable staticInfo) {
+        List<StatsStorageEvent> sses = checkStorageEvents(staticInfo);
+        synchronized (this) {
+            appendPersistable(KIND_STATIC, -1, staticInfo);
+            flush();
+        }
+        if (!sessionIDs.contains(staticInfo.getSessionID())) {
+            sessionIDs.add(staticInfo.getSessionID());
+        }
+        SessionTypeWorkerId id = new SessionTypeWorkerId(staticInfo.getSessionID(), staticInfo.getTypeID(),
+                        staticInfo.getWorkerID());
+        this.staticInfo.put(id, staticInfo);
+
+        StatsStorageEvent sse = null;
+        if (!listeners.isEmpty())
+            sse = new StatsStorageEvent(this, StatsStorageListener.EventType.PostStaticInfo, staticInfo.getSessionID(),
+                            staticInfo.getTypeID(), staticInfo.getWorkerID(), staticInfo.getTimeStamp());
+        for (StatsStorageListener l : listeners) {
+            l.notify(sse);
+        }
+
+        notifyListeners(sses);
+    }
+
+    @Override
+    public void putUpdate(Persistable update) {
+        List<StatsStorageEvent> sses = checkStorageEvents(update);
+        synchronized (this) {
+            UpdateIndex index = (UpdateIndex) getUpdateMap(update.getSessionID(), update.getTypeID(),
+                            update.getWorkerID(), true);
+            int keyId = keyToInteger.get(new SessionTypeWorkerId(update.getSessionID(), update.getTypeID(),
+                            update.getWorkerID()));
+            index.add(update.getTimeStamp(), appendPersistable(KIND_UPDATE, keyId, update));
+        }
+
+        StatsStorageEvent sse = null;
+        if (!listeners.isEmpty())
+            sse = new StatsStorageEvent(this, StatsStorageListener.EventType.PostUpdate, update.getSessionID(),
+                            update.getTypeID(), update.getWorkerID(), update.getTimeStamp());
+        for (StatsStorageListener l : listeners) {
+            l.notify(sse);
+        }
+
+        notifyListeners(sses);
+    }
+
+    @Override
+    public void putStorageMetaData(StorageMetaData storageMetaData) {
+        List<StatsStorageEvent> sses = checkStorageEvents(storageMetaData);
+        synchronized (this) {
+            appendPersistable(KIND_METADATA, -1, storageMetaData);
+            flush();
+        }
+        SessionTypeId id = new SessionTypeId(storageMetaData.getSessionID(), storageMetaData.getTypeID());
+        this.storageMetaData.put(id, storageMetaData);
+
+        StatsStorageEvent sse = null;
+        if (!listeners.isEmpty())
+            sse = new StatsStorageEvent(this, StatsStorageListener.EventType.PostMetaData,
+                            storageMetaData.getSessionID(), storageMetaData.getTypeID(), storageMetaData.getWorkerID(),
+                            storageMetaData.getTimeStamp());
+        for (StatsStorageListener l : listeners) {
+            l.notify(sse);
+        }
+
+        notifyListeners(sses);
+    }
+
+    // ----- Reading -----
+
+    private Persistable read(long position) {
+        int segment = (int) (position >>> 32);
+        long offset = position & 0xFFFFFFFFL;
+        try {
+            if (segment == segments.size() - 1 && offset >= flushedBytes)
+                flushBuffer();
+
+            FileChannel channel = segments.get(segment);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            readFully(channel, header, offset);
+            header.flip();
+            int payloadLength = header.getInt();
+            header.get();
+            header.getInt();
+            int classId = header.getInt();
+
+            ByteBuffer payload = ByteBuffer.allocate(payloadLength);
+            readFully(channel, payload, offset + HEADER_BYTES);
+            return decode(classId, payload.array());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading from stats storage in " + directory.getAbsolutePath(), e);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer bb, long offset) throws IOException {
+        while (bb.hasRemaining()) {
+            int read = channel.read(bb, offset);
+            if (read < 0)
+                throw new EOFException("Unexpected end of segment file");
+            offset += read;
+        }
+    }
+
+    private synchronized List<Persistable> read(long[] positions, int count) {
+        List<Persistable> out = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            out.add(read(positions[i]));
+        return out;
+    }
+
+    @Override
+    public Persistable getLatestUpdate(String sessionID, String typeID, String workerID) {
+        UpdateIndex index = (UpdateIndex) getUpdateMap(sessionID, typeID, workerID, false);
+        if (index == null)
+            return null;
+        synchronized (this) {
+            return index.size == 0 ? null : read(index.positions[index.size - 1]);
+        }
+    }
+
+    @Override
+    public Persistable getUpdate(String sessionID, String typeID, String workerID, long timestamp) {
+        UpdateIndex index = (UpdateIndex) getUpdateMap(sessionID, typeID, workerID, false);
+        return index == null ? null : index.get(timestamp);
+    }
+
+    @Override
+    public List<Persistable> getAllUpdatesAfter(String sessionID, String typeID, String workerID, long timestamp) {
+        UpdateIndex index = (UpdateIndex) getUpdateMap(sessionID, typeID, workerID, false);
+        if (index == null)
+            return new ArrayList<>();
+        synchronized (this) {
+            int start = index.firstAfter(timestamp);
+            return read(Arrays.copyOfRange(index.positions, start, index.size), index.size - start);
+        }
+    }
+
+    @Override
+    public long[] getAllUpdateTimes(String sessionID, String typeID, String workerID) {
+        UpdateIndex index = (UpdateIndex) getUpdateMap(sessionID, typeID, workerID, false);
+        if (index == null)
+            return new long[0];
+        synchronized (this) {
+            return Arrays.copyOf(index.timestamps, index.size);
+        }
+    }
+
+    @Override
+    public List<Persistable> getUpdates(String sessionID, String typeID, String workerID, long[] timestamps) {
+        UpdateIndex index = (UpdateIndex) getUpdateMap(sessionID, typeID, workerID, false);
+        if (index == null)
+            return Collections.emptyList();
+
+        synchronized (this) {
+            long[] positions = new long[timestamps.length];
+            int count = 0;
+            for (long t : timestamps) {
+                int idx = Arrays.binarySearch(index.timestamps, 0, index.size, t);
+                if (idx >= 0)
+                    positions[count++] = index.positions[idx];
+            }
+            return read(positions, count);
+        }
+    }
+
+    /**
+     * Returns updates from the rollup level with the finest resolution that doesn't exceed maxPoints: that is, one
+     * update out of each bucket of rollupFactor^level updates, plus the most recent update.
+     */
+    @Override
+    public List<Persistable> getUpdatesDownsampled(String sessionID, String typeID, String workerID, long timestamp,
+                    int maxPoints) {
+        if (maxPoints <= 0)
+            throw new IllegalArgumentException("Max points must be > 0, got " + maxPoints);
+        UpdateIndex index = (UpdateIndex) getUpdateMap(sessionID, typeID, workerID, false);
+        if (index == null)
+            return new ArrayList<>();
+
+        synchronized (this) {
+            int start = index.firstAfter(timestamp);
+            int n = index.size - start;
+            long bucket = 1;
+            while (n / bucket > maxPoints)
+                bucket *= rollupFactor;
+
+            long[] positions = new long[(int) (n / bucket) + 2];
+            int count = 0;
+            long first = ((start + bucket - 1) / bucket) * bucket;
+            for (long i = first; i < index.size; i += bucket)
+                positions[count++] = index.positions[(int) i];
+            if (n > 0 && (count == 0 || positions[count - 1] != index.positions[index.size - 1]))
+                positions[count++] = index.positions[index.size - 1];
+            return read(positions, count);
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (isClosed)
+                return;
+            try {
+                flushBuffer();
+                for (FileChannel c : segments) {
+                    c.force(false);
+                    c.close();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error closing stats storage in " + directory.getAbsolutePath(), e);
+            }
+            isClosed = true;
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return isClosed;
+    }
+
+    @Override
+    public String toString() {
+        return "SegmentStatsStorage(" + directory.getPath() + ")";
+    }
+
+    /**
+     * Time index of updates for one session/type/worker: sorted timestamps and positions of records.<br>
+     * Also exposed as a (read-only) map view, for use by {@link BaseCollectionStatsStorage} methods: values are read
+     * from disk on access.
+     */
+    private class UpdateIndex extends AbstractMap<Long, Persistable> {
+        private long[] timestamps = new long[16];
+        private long[] positions = new long[16];
+        private int size;
+
+        private void add(long timestamp, long position) {
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+
+            if (size == 0 || timestamp > timestamps[size - 1]) {
+                //Common case: in-order updates
+                timestamps[size] = timestamp;
+                positions[size++] = position;
+                return;
+            }
+
+            int idx = Arrays.binarySearch(timestamps, 0, size, timestamp);
+            if (idx >= 0) {
+                //Same timestamp: most recent record replaces earlier one, as for other StatsStorage implementations
+                positions[idx] = position;
+            } else {
+                idx = -(idx + 1);
+                System.arraycopy(timestamps, idx, timestamps, idx + 1, size - idx);
+                System.arraycopy(positions, idx, positions, idx + 1, size - idx);
+                timestamps[idx] = timestamp;
+                positions[idx] = position;
+                size++;
+            }
+        }
+
+        /**
+         * Index of the first update with timestamp strictly greater than the given one
+         */
+        private int firstAfter(long timestamp) {
+            int idx = Arrays.binarySearch(timestamps, 0, size, timestamp);
+            return idx >= 0 ? idx + 1 : -(idx + 1);
+        }
+
+        @Override
+        public int size() {
+            synchronized (SegmentStatsStorage.this) {
+                return size;
+            }
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            if (!(key instanceof Long))
+                return false;
+            synchronized (SegmentStatsStorage.this) {
+                return Arrays.binarySearch(timestamps, 0, size, (Long) key) >= 0;
+            }
+        }
+
+        @Override
+        public Persistable get(Object key) {
+            if (!(key instanceof Long))
+                return null;
+            synchronized (SegmentStatsStorage.this) {
+                int idx = Arrays.binarySearch(timestamps, 0, size, (Long) key);
+                return idx >= 0 ? read(positions[idx]) : null;
+            }
+        }
+
+        @Override
+        public Set<Long> keySet() {
+            Set<Long> out = new LinkedHashSet<>();
+            synchronized (SegmentStatsStorage.this) {
+                for (int i = 0; i < size; i++)
+                    out.add(timestamps[i]);
+            }
+            return out;
+        }
+
+        @Override
+        public Set<Entry<Long, Persistable>> entrySet() {
+            Set<Entry<Long, Persistable>> out = new LinkedHashSet<>();
+            synchronized (SegmentStatsStorage.this) {
+                for (int i = 0; i < size; i++)
+                    out.add(new SimpleImmutableEntry<>(timestamps[i], read(positions[i])));
+            }
+            return out;
+        }
+    }
+
+    public static class Builder {
+        private final File directory;
+        private long segmentSizeBytes = 64L * 1024 * 1024;
+        private int rollupFactor = 2;
+        private int writeBufferBytes = 1024 * 1024;
+
+        /**
+         * @param directory Directory for segment files. Will be created if it doesn't exist. If it contains segment
+         *                  files, their content is loaded
+         */
+        public Builder(@NonNull File directory) {
+            this.directory = directory;
+        }
+
+        /**
+         * Maximum size of a segment file, in bytes. Default: 64MB
+         */
+        public Builder segmentSizeBytes(long segmentSizeBytes) {
+            if (segmentSizeBytes <= HEADER_BYTES || segmentSizeBytes > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("Segment size must be between " + HEADER_BYTES + " and "
+                                + Integer.MAX_VALUE + " bytes, got " + segmentSizeBytes);
+            this.segmentSizeBytes = segmentSizeBytes;
+            return this;
+        }
+
+        /**
+         * Ratio of bucket sizes of consecutive rollup levels: with factor 10, levels hold one out of every 1, 10, 100,
+         * ... updates. Queries for N points return between N/factor and N points, so smaller factors give charts
+         * closer to the requested resolution. Default: 2
+         */
+        public Builder rollupFactor(int rollupFactor) {
+            if (rollupFactor < 2)
+                throw new IllegalArgumentException("Rollup factor must be >= 2, got " + rollupFactor);
+            this.rollupFactor = rollupFactor;
+            return this;
+        }
+
+        /**
+         * Size of the write buffer, in bytes. Default: 1MB
+         */
+        public Builder writeBufferBytes(int writeBufferBytes) {
+            if (writeBufferBytes <= 0)
+                throw new IllegalArgumentException("Write buffer size must be > 0, got " + writeBufferBytes);
+            this.writeBufferBytes = writeBufferBytes;
+            return this;
+        }
+
+        public SegmentStatsStorage build() {
+            return new SegmentStatsStorage(this);
+        }
+    }
+}
@@ -26,7 +26,6 @@ import freemarker.template.TemplateExceptionHandler;
 import freemarker.template.Version;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.vertx.ext.web.RoutingContext;
-import it.unimi.dsi.fastutil.longs.LongArrayList;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
@@ -618,24 +617,8 @@ public class TrainModule implements UIModule {
         result.put("scoresIter", scoresIterCount);
 
         //Get scores info
-        long[] allTimes = (noData ? null : ss.getAllUpdateTimes(sessionId, StatsListener.TYPE_ID, wid));
-        List<Persistable> updates = null;
-        if (allTimes != null && allTimes.length > maxChartPoints) {
-            int subsamplingFrequency = allTimes.length / maxChartPoints;
-            LongArrayList timesToQuery = new LongArrayList(maxChartPoints + 2);
-            int i = 0;
-            for (; i < allTimes.length; i += subsamplingFrequency) {
-                timesToQuery.add(allTimes[i]);
-            }
-            if ((i - subsamplingFrequency) != allTimes.length - 1) {
-                //Also add final point
-                timesToQuery.add(allTimes[allTimes.length - 1]);
-            }
-            updates = ss.getUpdates(sessionId, StatsListener.TYPE_ID, wid, timesToQuery.toLongArray());
-        } else if (allTimes != null) {
-            //Don't subsample
-            updates = ss.getAllUpdatesAfter(sessionId, StatsListener.TYPE_ID, wid, 0);
-        }
+        List<Persistable> updates =
+                (noData ? null : ss.getUpdatesDownsampled(sessionId, StatsListener.TYPE_ID, wid, 0, maxChartPoints));
         if (updates == null || updates.isEmpty()) {
             noData = true;
         }
@@ -962,28 +945,11 @@ public class TrainModule implements UIModule {
 
         result.put("layerInfo", layerInfoTable);
 
-        //First: get all data, and subsample it if necessary, to avoid returning too many points...
-        long[] allTimes = (noData ? null : ss.getAllUpdateTimes(sessionId, StatsListener.TYPE_ID, wid));
-
-        List<Persistable> updates = null;
+        //First: get all data, subsampled if necessary, to avoid returning too many points...
+        List<Persistable> updates =
+                (noData ? null : ss.getUpdatesDownsampled(sessionId, StatsListener.TYPE_ID, wid, 0, maxChartPoints));
         List<Integer> iterationCounts = null;
         boolean needToHandleLegacyIterCounts = false;
-        if (allTimes != null && allTimes.length > maxChartPoints) {
-            int subsamplingFrequency = allTimes.length / maxChartPoints;
-            LongArrayList timesToQuery = new LongArrayList(maxChartPoints + 2);
-            int i = 0;
-            for (; i < allTimes.length; i += subsamplingFrequency) {
-                timesToQuery.add(allTimes[i]);
-            }
-            if ((i - subsamplingFrequency) != allTimes.length - 1) {
-                //Also add final point
-                timesToQuery.add(allTimes[allTimes.length - 1]);
-            }
-            updates = ss.getUpdates(sessionId, StatsListener.TYPE_ID, wid, timesToQuery.toLongArray());
-        } else if (allTimes != null) {
-            //Don't subsample
-            updates = ss.getAllUpdatesAfter(sessionId, StatsListener.TYPE_ID, wid, 0);
-        }
 
         iterationCounts = new ArrayList<>(updates.size());
         int lastIterCount = -1;
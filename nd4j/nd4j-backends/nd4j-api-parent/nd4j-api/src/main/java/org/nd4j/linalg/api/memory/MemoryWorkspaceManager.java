@@ -25,6 +25,7 @@ import org.nd4j.linalg.api.memory.conf.WorkspaceConfiguration;
 import org.nd4j.linalg.api.memory.enums.DebugMode;
 
 import java.util.List;
+import java.util.Map;
 
 
 public interface MemoryWorkspaceManager {
@@ -217,4 +218,39 @@ public interface MemoryWorkspaceManager {
      * @return True if any workspaces are open for this thread, false otherwise
      */
     boolean anyWorkspaceActiveForCurrentThread();
+
+    /**
+     * This method returns telemetry for all workspaces for current thread
+     *
+     * @return
+     */
+    List<WorkspaceTelemetry> getWorkspaceTelemetryForCurrentThread();
+
+    /**
+     * This method returns telemetry for all workspaces in all live threads, one entry per workspace id and thread
+     *
+     * @return
+     */
+    List<WorkspaceTelemetry> getWorkspaceTelemetry();
+
+    /**
+     * This method sets sizing for workspaces with given id, that will be created after this call.
+     * Workspaces that already exist aren't affected.
+     *
+     * @param recommendation
+     * @see WorkspaceSizingAdvisor
+     */
+    void setSizingRecommendation(WorkspaceSizingAdvisor.Recommendation recommendation);
+
+    /**
+     * This method returns sizing recommendations applied to this manager, keyed by workspace id
+     *
+     * @return
+     */
+    Map<String, WorkspaceSizingAdvisor.Recommendation> getSizingRecommendations();
+
+    /**
+     * This method removes all sizing recommendations applied to this manager
+     */
+    void clearSizingRecommendations();
 }
@@ -0,0 +1,237 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.linalg.api.memory;
+
+import com.jakewharton.byteunits.BinaryByteUnit;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.nd4j.common.base.Preconditions;
+import org.nd4j.linalg.api.memory.conf.WorkspaceConfiguration;
+import org.nd4j.linalg.api.memory.enums.AllocationPolicy;
+import org.nd4j.linalg.api.memory.enums.LocationPolicy;
+import org.nd4j.linalg.api.memory.enums.ResetPolicy;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * This class turns {@link WorkspaceTelemetry} into WorkspaceConfiguration sizing for the next run.<br>
+ * <br>
+ * Recommended initialSize is the peak cycle observed across all threads (spilled and pinned allocations included),
+ * and overallocationLimit is derived from the spread between smallest and biggest cycles, bounded by
+ * minHeadroom/maxHeadroom. Circular workspaces keep their overallocationLimit (it defines number of steps there),
+ * so headroom goes into initialSize instead, same as for AllocationPolicy.STRICT.<br>
+ * <br>
+ * Recommendations can be applied to MemoryWorkspaceManager, and will be used for workspaces created after that point.
+ * Please note: workspace with explicit initialSize and SpillPolicy.EXTERNAL won't learn its size anymore.
+ *
+ * Usage:
+ * <pre>
+ * {@code
+ * WorkspaceSizingAdvisor advisor = new WorkspaceSizingAdvisor();
+ * advisor.recommendAndApply(Nd4j.getWorkspaceManager());
+ * }
+ * </pre>
+ */
+@Slf4j
+@Data
+@Builder
+@AllArgsConstructor
+public class WorkspaceSizingAdvisor {
+
+    /**
+     * Minimal fraction of peak cycle size added on top of it
+     */
+    @Builder.Default
+    private double minHeadroom = 0.05;
+
+    /**
+     * Maximal fraction of peak cycle size added on top of it
+     */
+    @Builder.Default
+    private double maxHeadroom = 1.0;
+
+    public WorkspaceSizingAdvisor() {
+        this(0.05, 1.0);
+    }
+
+    /**
+     * Sizing recommendation for a single workspace id
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Recommendation implements Serializable {
+        private String workspaceId;
+        private long initialSize;
+        private double overallocationLimit;
+
+        // observations this recommendation is based on
+        private long peakCycleAllocations;
+        private long currentSize;
+        private long missedAllocations;
+        private int threads;
+
+        /**
+         * This method returns copy of given configuration, with sizing from this recommendation applied
+         *
+         * @param configuration
+         * @return
+         */
+        public WorkspaceConfiguration applyTo(@NonNull WorkspaceConfiguration configuration) {
+            // memory-mapped workspaces are sized by their file
+            if (configuration.getPolicyLocation() == LocationPolicy.MMAP)
+                return configuration;
+
+            WorkspaceConfiguration.WorkspaceConfigurationBuilder builder = configuration.toBuilder().initialSize(initialSize);
+            if (configuration.getPolicyReset() != ResetPolicy.ENDOFBUFFER_REACHED)
+                builder.overallocationLimit(overallocationLimit);
+
+            return builder.build();
+        }
+    }
+
+    /**
+     * This method builds recommendations for all workspaces known to given manager, in all threads
+     *
+     * @param manager
+     * @return map of workspace id to recommendation
+     */
+    public Map<String, Recommendation> recommend(@NonNull MemoryWorkspaceManager manager) {
+        return recommend(manager.getWorkspaceTelemetry());
+    }
+
+    /**
+     * This method builds recommendations from given telemetry. Entries with the same workspace id coming from
+     * different threads are merged, so the biggest of them defines the size.
+     * Workspaces without any closed cycles, and memory-mapped workspaces, are skipped.
+     *
+     * @param telemetry
+     * @return map of workspace id to recommendation
+     */
+    public Map<String, Recommendation> recommend(@NonNull Collection<WorkspaceTelemetry> telemetry) {
+        Preconditions.checkArgument(minHeadroom >= 0 && maxHeadroom >= minHeadroom,
+                "Expected 0 <= minHeadroom <= maxHeadroom, got minHeadroom=%s, maxHeadroom=%s", minHeadroom, maxHeadroom);
+
+        Map<String, List<WorkspaceTelemetry>> byId = new LinkedHashMap<>();
+        for (WorkspaceTelemetry t : telemetry)
+            byId.computeIfAbsent(t.getWorkspaceId(), k -> new ArrayList<>()).add(t);
+
+        Map<String, Recommendation> result = new LinkedHashMap<>();
+        for (Map.Entry<String, List<WorkspaceTelemetry>> e : byId.entrySet()) {
+            Recommendation r = recommend(e.getKey(), e.getValue());
+            if (r != null)
+                result.put(e.getKey(), r);
+        }
+
+        return result;
+    }
+
+    protected Recommendation recommend(String id, List<WorkspaceTelemetry> telemetry) {
+        long peak = 0;
+        long min = 0;
+        long current = 0;
+        long missed = 0;
+        WorkspaceConfiguration configuration = null;
+        for (WorkspaceTelemetry t : telemetry) {
+            if (t.getPeakCycleAllocations() >= peak) {
+                peak = t.getPeakCycleAllocations();
+                configuration = t.getConfiguration();
+            }
+
+            if (t.getMinCycleAllocations() > 0 && (min == 0 || t.getMinCycleAllocations() < min))
+                min = t.getMinCycleAllocations();
+
+            current = Math.max(current, t.getCurrentSize());
+            missed += t.getMissedAllocations();
+        }
+
+        if (peak == 0 || configuration == null || configuration.getPolicyLocation() == LocationPolicy.MMAP)
+            return null;
+
+        double spread = min > 0 ? (peak - min) / (double) peak : 0.0;
+        double headroom = Math.min(maxHeadroom, Math.max(minHeadroom, spread));
+
+        long initialSize;
+        double overallocation;
+        if (configuration.getPolicyReset() == ResetPolicy.ENDOFBUFFER_REACHED
+                || configuration.getPolicyAllocation() != AllocationPolicy.OVERALLOCATE) {
+            initialSize = aligned((long) (peak * (1.0 + headroom)));
+            overallocation = configuration.getOverallocationLimit();
+        } else {
+            initialSize = aligned(peak);
+            overallocation = headroom;
+        }
+
+        if (configuration.getMaxSize() > 0)
+            initialSize = Math.min(initialSize, configuration.getMaxSize());
+
+        return Recommendation.builder()
+                .workspaceId(id)
+                .initialSize(initialSize)
+                .overallocationLimit(overallocation)
+                .peakCycleAllocations(peak)
+                .currentSize(current)
+                .missedAllocations(missed)
+                .threads(telemetry.size())
+                .build();
+    }
+
+    /**
+     * This method registers given recommendations within manager, so workspaces created with the same ids
+     * will use recommended sizing
+     *
+     * @param manager
+     * @param recommendations
+     */
+    public void apply(@NonNull MemoryWorkspaceManager manager, @NonNull Collection<Recommendation> recommendations) {
+        for (Recommendation r : recommendations) {
+            log.info("Workspace [{}]: initialSize {}, overallocationLimit {} (peak cycle: {}, current size: {}, missed allocations: {})",
+                    r.getWorkspaceId(), BinaryByteUnit.format(r.getInitialSize(), "#.00"),
+                    String.format("%.2f", r.getOverallocationLimit()),
+                    BinaryByteUnit.format(r.getPeakCycleAllocations(), "#.00"),
+                    BinaryByteUnit.format(r.getCurrentSize(), "#.00"), r.getMissedAllocations());
+
+            manager.setSizingRecommendation(r);
+        }
+    }
+
+    /**
+     * This method builds recommendations for all workspaces known to given manager, and applies them
+     *
+     * @param manager
+     * @return applied recommendations
+     */
+    public Map<String, Recommendation> recommendAndApply(@NonNull MemoryWorkspaceManager manager) {
+        Map<String, Recommendation> recommendations = recommend(manager);
+        apply(manager, recommendations.values());
+        return recommendations;
+    }
+
+    private static long aligned(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.linalg.api.memory;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.nd4j.linalg.api.memory.conf.WorkspaceConfiguration;
+
+/**
+ * Snapshot of size and spill counters for a single workspace in a single thread.
+ * All sizes are in bytes.
+ *
+ * @see MemoryWorkspaceManager#getWorkspaceTelemetry()
+ * @see WorkspaceSizingAdvisor
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WorkspaceTelemetry {
+    private String workspaceId;
+    private long threadId;
+    private int deviceId;
+
+    /**
+     * Size of workspace memory, as currently allocated
+     */
+    private long currentSize;
+
+    /**
+     * Biggest amount of memory requested within single cycle, including spilled and pinned allocations.
+     * Unlike {@link MemoryWorkspace#getMaxCycleAllocations()} this is the observed value, without the margin
+     * circular workspaces add on initialization
+     */
+    private long peakCycleAllocations;
+
+    /**
+     * Smallest non-zero amount of memory requested within single cycle
+     */
+    private long minCycleAllocations;
+    private long lastCycleAllocations;
+
+    /**
+     * Bytes in spilled allocations that weren't purged yet
+     */
+    private long spilledSize;
+
+    /**
+     * Biggest amount of bytes in spilled allocations observed at once
+     */
+    private long maxSpilledSize;
+    private long pinnedSize;
+
+    /**
+     * Number of closed cycles (scope left events)
+     */
+    private long cycles;
+
+    /**
+     * Total number of allocations that didn't fit into workspace and were spilled
+     */
+    private long spilledAllocations;
+
+    /**
+     * Total number of allocations that didn't fit into circular workspace and were pinned
+     */
+    private long pinnedAllocations;
+    private WorkspaceConfiguration configuration;
+
+    /**
+     * @return total number of allocations that missed the workspace
+     */
+    public long getMissedAllocations() {
+        return spilledAllocations + pinnedAllocations;
+    }
+}
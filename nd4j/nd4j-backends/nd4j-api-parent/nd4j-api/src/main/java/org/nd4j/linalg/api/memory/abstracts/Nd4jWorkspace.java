@@ -29,6 +29,7 @@ import org.bytedeco.javacpp.Pointer;
 import org.nd4j.linalg.api.buffer.DataType;
 import org.nd4j.linalg.api.memory.AllocationsTracker;
 import org.nd4j.linalg.api.memory.MemoryWorkspace;
+import org.nd4j.linalg.api.memory.WorkspaceTelemetry;
 import org.nd4j.linalg.api.memory.conf.WorkspaceConfiguration;
 import org.nd4j.linalg.api.memory.enums.*;
 import org.nd4j.linalg.api.memory.pointers.PagedPointer;
@@ -104,6 +105,7 @@ public abstract class Nd4jWorkspace implements MemoryWorkspace {
     protected AtomicLong spilledAllocationsSize = new AtomicLong(0);
     protected AtomicLong pinnedAllocationsSize = new AtomicLong(0);
     protected AtomicLong maxCycle = new AtomicLong(0);
+    protected AtomicLong minCycle = new AtomicLong(0);
     protected AtomicBoolean resetPlanned = new AtomicBoolean(false);
     protected AtomicBoolean isOpen = new AtomicBoolean(false);
     protected AtomicBoolean isInit = new AtomicBoolean(false);
@@ -116,6 +118,13 @@ public abstract class Nd4jWorkspace implements MemoryWorkspace {
     protected AtomicInteger externalCount = new AtomicInteger(0);
     protected AtomicInteger pinnedCount = new AtomicInteger(0);
 
+    // unlike externalCount/pinnedCount these are never reset, and are used for telemetry only
+    protected AtomicLong spilledAllocationsCount = new AtomicLong(0);
+    protected AtomicLong pinnedAllocationsCount = new AtomicLong(0);
+    protected AtomicLong maxSpilledSize = new AtomicLong(0);
+    // biggest cycle actually observed: unlike maxCycle it's never bumped by workspace initialization
+    protected AtomicLong peakCycle = new AtomicLong(0);
+
     protected AtomicBoolean trimmedMode = new AtomicBoolean(false);
     protected AtomicLong trimmedStep = new AtomicLong(0);
 
@@ -467,6 +476,7 @@ public abstract class Nd4jWorkspace implements MemoryWorkspace {
                         AllocationsTracker.getInstance().getTracker(id).allocateSpilled(type,kind,numElements,requiredMemory);
                         AllocationsTracker.getInstance().getTracker(id).allocateExternal(type,kind,numElements,requiredMemory);
                         spilledAllocationsSize.addAndGet(requiredMemory);
+                        recordMissedAllocation(false);
                         PagedPointer pointer = new PagedPointer(
                                 memoryManager.allocate(requiredMemory, MemoryKind.HOST, initialize),
                                 numElements);
@@ -478,6 +488,7 @@ public abstract class Nd4jWorkspace implements MemoryWorkspace {
                         pinnedCount.incrementAndGet();
                         AllocationsTracker.getInstance().getTracker(id).allocatePinned(type,kind,numElements,requiredMemory);
                         pinnedAllocationsSize.addAndGet(requiredMemory);
+                        recordMissedAllocation(true);
                         PagedPointer pointer = new PagedPointer(
                                 memoryManager.allocate(requiredMemory, MemoryKind.HOST, initialize),
                                 numElements);
@@ -579,6 +590,44 @@ public abstract class Nd4jWorkspace implements MemoryWorkspace {
         return pinnedCount.get();
     }
 
+    /**
+     * This method updates telemetry counters for allocation that didn't fit into this workspace
+     *
+     * @param pinned true for pinned allocation (circular mode), false for spilled one
+     */
+    protected void recordMissedAllocation(boolean pinned) {
+        if (pinned) {
+            pinnedAllocationsCount.incrementAndGet();
+        } else {
+            spilledAllocationsCount.incrementAndGet();
+            maxSpilledSize.accumulateAndGet(spilledAllocationsSize.get(), Math::max);
+        }
+    }
+
+    /**
+     * This method returns snapshot of size/spill counters of this workspace
+     *
+     * @return
+     */
+    public WorkspaceTelemetry getTelemetry() {
+        return WorkspaceTelemetry.builder()
+                .workspaceId(id)
+                .threadId(threadId)
+                .deviceId(deviceId)
+                .currentSize(currentSize.get())
+                .peakCycleAllocations(peakCycle.get())
+                .minCycleAllocations(minCycle.get())
+                .lastCycleAllocations(lastCycleAllocations.get())
+                .spilledSize(spilledAllocationsSize.get())
+                .maxSpilledSize(maxSpilledSize.get())
+                .pinnedSize(pinnedAllocationsSize.get())
+                .cycles(cyclesCount.get())
+                .spilledAllocations(spilledAllocationsCount.get())
+                .pinnedAllocations(pinnedAllocationsCount.get())
+                .configuration(workspaceConfiguration)
+                .build();
+    }
+
     @Override
     public void destroyWorkspace() {
         destroyWorkspace(true);
@@ -691,6 +740,11 @@ public abstract class Nd4jWorkspace implements MemoryWorkspace {
             maxCycle.set(cycleAllocations.get());
         }
 
+        peakCycle.accumulateAndGet(cycleAllocations.get(), Math::max);
+
+        if (cycleAllocations.get() > 0 && (minCycle.get() == 0 || cycleAllocations.get() < minCycle.get()))
+            minCycle.set(cycleAllocations.get());
+
         // checking, if we should reallocate this workspace to higher amount of memory
         if (workspaceConfiguration.getPolicyLearning() != LearningPolicy.NONE && maxCycle.get() > 0) {
             // if we're going to resize - we're probably safe to purge spilled allocations
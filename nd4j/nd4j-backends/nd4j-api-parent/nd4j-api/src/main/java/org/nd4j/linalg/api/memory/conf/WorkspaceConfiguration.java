@@ -28,7 +28,7 @@ import org.nd4j.linalg.api.memory.enums.*;
 
 import java.io.Serializable;
 
-@Builder
+@Builder(toBuilder = true)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -25,6 +25,8 @@ import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.nd4j.linalg.api.memory.MemoryWorkspace;
 import org.nd4j.linalg.api.memory.MemoryWorkspaceManager;
+import org.nd4j.linalg.api.memory.WorkspaceSizingAdvisor;
+import org.nd4j.linalg.api.memory.WorkspaceTelemetry;
 import org.nd4j.linalg.api.memory.abstracts.Nd4jWorkspace;
 import org.nd4j.linalg.api.memory.conf.WorkspaceConfiguration;
 import org.nd4j.linalg.api.memory.enums.*;
@@ -32,10 +34,8 @@ import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.api.memory.abstracts.DummyWorkspace;
 import org.nd4j.common.primitives.SynchronizedObject;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 
 
@@ -46,6 +46,11 @@ public abstract class BasicWorkspaceManager implements MemoryWorkspaceManager {
     protected WorkspaceConfiguration defaultConfiguration;
     protected ThreadLocal<Map<String, MemoryWorkspace>> backingMap = new ThreadLocal<>();
 
+    // same maps as in backingMap, but visible from other threads. used for telemetry. weak keys, so dead threads are gone
+    protected final Map<Thread, Map<String, MemoryWorkspace>> threadMaps = Collections.synchronizedMap(new WeakHashMap<>());
+
+    protected final Map<String, WorkspaceSizingAdvisor.Recommendation> sizingRecommendations = new ConcurrentHashMap<>();
+
     // default mode is DISABLED, as in: production mode
     protected SynchronizedObject<DebugMode> debugMode = new SynchronizedObject<>(DebugMode.DISABLED);
 
@@ -169,8 +174,24 @@ public abstract class BasicWorkspaceManager implements MemoryWorkspaceManager {
     }
 
     protected void ensureThreadExistense() {
-        if (backingMap.get() == null)
-            backingMap.set(new HashMap<>());
+        if (backingMap.get() == null) {
+            Map<String, MemoryWorkspace> map = new ConcurrentHashMap<>();
+            backingMap.set(map);
+            threadMaps.put(Thread.currentThread(), map);
+        }
+    }
+
+    /**
+     * This method returns configuration to be used for new workspace with given id:
+     * either given configuration, or its copy with sizing recommendation applied
+     *
+     * @param configuration
+     * @param id
+     * @return
+     */
+    protected WorkspaceConfiguration configurationFor(@NonNull WorkspaceConfiguration configuration, @NonNull String id) {
+        WorkspaceSizingAdvisor.Recommendation recommendation = sizingRecommendations.get(id);
+        return recommendation == null ? configuration : recommendation.applyTo(configuration);
     }
 
     /**
@@ -289,6 +310,48 @@ public abstract class BasicWorkspaceManager implements MemoryWorkspaceManager {
         return new ArrayList<>(backingMap.get().values());
     }
 
+    @Override
+    public List<WorkspaceTelemetry> getWorkspaceTelemetryForCurrentThread() {
+        ensureThreadExistense();
+        return telemetryOf(backingMap.get().values());
+    }
+
+    @Override
+    public List<WorkspaceTelemetry> getWorkspaceTelemetry() {
+        List<MemoryWorkspace> workspaces = new ArrayList<>();
+        synchronized (threadMaps) {
+            for (Map<String, MemoryWorkspace> map : threadMaps.values())
+                workspaces.addAll(map.values());
+        }
+
+        return telemetryOf(workspaces);
+    }
+
+    protected List<WorkspaceTelemetry> telemetryOf(Collection<MemoryWorkspace> workspaces) {
+        List<WorkspaceTelemetry> result = new ArrayList<>();
+        for (MemoryWorkspace workspace : workspaces) {
+            if (workspace instanceof Nd4jWorkspace)
+                result.add(((Nd4jWorkspace) workspace).getTelemetry());
+        }
+
+        return result;
+    }
+
+    @Override
+    public void setSizingRecommendation(@NonNull WorkspaceSizingAdvisor.Recommendation recommendation) {
+        sizingRecommendations.put(recommendation.getWorkspaceId(), recommendation);
+    }
+
+    @Override
+    public Map<String, WorkspaceSizingAdvisor.Recommendation> getSizingRecommendations() {
+        return Collections.unmodifiableMap(sizingRecommendations);
+    }
+
+    @Override
+    public void clearSizingRecommendations() {
+        sizingRecommendations.clear();
+    }
+
     @Override
     public boolean anyWorkspaceActiveForCurrentThread(){
         ensureThreadExistense();
@@ -353,7 +353,17 @@ public abstract class DefaultOpExecutioner implements OpExecutioner {
 
     @Override
     public void setProfilingConfig(ProfilerConfig config) {
+        // negative rate means sampling isn't configured here: keep whatever was enabled before
+        if (config.getOpSamplingRate() < 0)
+            return;
 
+        OpSamplingProfiler sampler = OpSamplingProfiler.getInstance();
+        sampler.setSamplingRate(config.getOpSamplingRate());
+        if (config.getOpSamplingRate() > 0 && config.getOpSamplingReportInterval() > 0) {
+            sampler.startReporting(config.getOpSamplingReportInterval(), config.getOpSamplingTopK());
+        } else {
+            sampler.stopReporting();
+        }
     }
 
     @Deprecated
@@ -661,7 +671,7 @@ public abstract class DefaultOpExecutioner implements OpExecutioner {
         logOpArrayEventsIfNeccessary(op,inArgs ,outArgs, NDArrayEventType.BEFORE_OP_INPUT, NDArrayEventType.BEFORE_OP_OUTPUT);
         logOpArrayEventsIfNeccessary(op,inArgs ,outArgs, NDArrayEventType.OP_INPUT, NDArrayEventType.OP_OUTPUT);
 
-        return System.nanoTime();
+        return OpSamplingProfiler.getInstance().sampleStart();
     }
 
     public long profilingConfigurableHookIn(CustomOp op, OpContext oc) {
@@ -679,7 +689,7 @@ public abstract class DefaultOpExecutioner implements OpExecutioner {
         logCustomOpArrayEventIfNeccessary(inArgs, outArgs,NDArrayEventType.BEFORE_OP_INPUT ,NDArrayEventType.BEFORE_OP_OUTPUT);
         logCustomOpArrayEventIfNeccessary(inArgs, outArgs,NDArrayEventType.OP_INPUT , NDArrayEventType.OP_OUTPUT);
 
-        return System.nanoTime();
+        return OpSamplingProfiler.getInstance().sampleStart();
     }
 
     public long profilingConfigurableHookIn(Op op, DataBuffer... tadBuffers) {
@@ -689,13 +699,15 @@ public abstract class DefaultOpExecutioner implements OpExecutioner {
         List<INDArray> outputs = outputArrsFromOp(op,null);
         logOpArrayEventsIfNeccessary(op,inputs,outputs, NDArrayEventType.BEFORE_OP_INPUT, NDArrayEventType.BEFORE_OP_OUTPUT);
 
-        return System.nanoTime();
+        return OpSamplingProfiler.getInstance().sampleStart();
 
     }
 
     public void profilingConfigurableHookOut(Op op, OpContext oc, long timeStart) {
         Nd4j.getDeallocatorService().toggleDeallocationBlock(false);
         List<INDArray> inArgs = inputArrsFromOp(op,oc);
+        if (timeStart != OpSamplingProfiler.NOT_SAMPLED)
+            OpSamplingProfiler.getInstance().record(op.opName(), inArgs, timeStart);
         List<INDArray> outArgs = outputArrsFromOp(op,oc);
 
         if (Nd4j.getExecutioner().isVerbose()) {
@@ -716,6 +728,8 @@ public abstract class DefaultOpExecutioner implements OpExecutioner {
     public void profilingConfigurableHookOut(CustomOp op, OpContext oc, long timeStart) {
         Nd4j.getDeallocatorService().toggleDeallocationBlock(true);
         List<INDArray> inArgs = inputsFromOp(op,oc);
+        if (timeStart != OpSamplingProfiler.NOT_SAMPLED)
+            OpSamplingProfiler.getInstance().record(op.opName(), inArgs, timeStart);
         List<INDArray> outArgs = outputsFromOp(op,oc);
         logCustomOpArrayEventIfNeccessary(inArgs, outArgs,NDArrayEventType.OP_INPUT , NDArrayEventType.OP_OUTPUT);
 
@@ -0,0 +1,521 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.linalg.cache;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Byte-budgeted cache with W-TinyLFU style eviction, used for constant, shape info and TAD buffers.<br>
+ * <br>
+ * Entries are split into three LRU queues:<br>
+ * - window (1% of the budget by default): every new entry lands here, so bursts of new keys don't flush the cache<br>
+ * - probation: entries that left the window, or were demoted from protected queue<br>
+ * - protected (80% of the rest): entries that were requested again while on probation<br>
+ * When the budget is exceeded, the entry most recently moved to probation competes with the least recently used
+ * probation entry, and the one requested less often recently (according to a {@link FrequencySketch}) is evicted.
+ * So one-off shapes are dropped quickly, while frequently used entries survive scans of new keys.<br>
+ * <br>
+ * Lookups of cached keys are lock-free: recency and frequency updates are skipped if another thread holds the lock.
+ * Misses are loaded outside of the lock, so a slow load doesn't hold up hits or loads of other keys. Concurrent misses
+ * on the same key wait for a single load.<br>
+ * <br>
+ * Every loaded value ends up either in the cache, or passed to the {@link RemovalListener} exactly once: on eviction,
+ * on rejection (value weighs more than the whole budget) or on {@link #invalidateAll()}. The listener is invoked
+ * under the cache lock, so it should be cheap. Please note: values handed out earlier may still be in use when they
+ * are removed, so the listener must not free memory eagerly.
+ *
+ * @param <K> key type, must implement equals/hashCode
+ * @param <V> value type
+ */
+@Slf4j
+public class AdaptiveCache<K, V> {
+
+    public enum RemovalCause {
+        /**
+         * Entry was removed to stay within the byte budget
+         */
+        EVICTED,
+        /**
+         * Value was never cached, because it weighs more than the whole byte budget
+         */
+        REJECTED,
+        /**
+         * Entry was removed via {@link #invalidateAll()}
+         */
+        EXPLICIT
+    }
+
+    public interface Weigher<V> {
+        /**
+         * @return size of given value in bytes, must be positive
+         */
+        long weigh(V value);
+    }
+
+    public interface RemovalListener<K, V> {
+        void onRemoval(K key, V value, RemovalCause cause);
+    }
+
+    private enum Queue {
+        WINDOW, PROBATION, PROTECTED
+    }
+
+    private static class Node<K, V> {
+        private final K key;
+        private final V value;
+        private final long weight;
+        private Queue queue;
+        private Node<K, V> prev;
+        private Node<K, V> next;
+
+        private Node(K key, V value, long weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Intrusive doubly linked list: head is the least recently used node
+     */
+    private static class Deque<K, V> {
+        private Node<K, V> head;
+        private Node<K, V> tail;
+        private long bytes;
+
+        private void addLast(Node<K, V> node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null)
+                head = node;
+            else
+                tail.next = node;
+            tail = node;
+            bytes += node.weight;
+        }
+
+        private void remove(Node<K, V> node) {
+            if (node.prev == null)
+                head = node.next;
+            else
+                node.prev.next = node.next;
+
+            if (node.next == null)
+                tail = node.prev;
+            else
+                node.next.prev = node.prev;
+
+            node.prev = null;
+            node.next = null;
+            bytes -= node.weight;
+        }
+
+        private void moveToLast(Node<K, V> node) {
+            if (node != tail) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+        private void clear() {
+            head = null;
+            tail = null;
+            bytes = 0;
+        }
+    }
+
+    @Getter
+    private final String name;
+    @Getter
+    private final long maximumBytes;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private final Weigher<V> weigher;
+    private final RemovalListener<K, V> removalListener;
+
+    private final Map<K, Node<K, V>> data = new ConcurrentHashMap<>();
+    private final Map<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final FrequencySketch sketch;
+    private final Deque<K, V> window = new Deque<>();
+    private final Deque<K, V> probation = new Deque<>();
+    private final Deque<K, V> protectedQueue = new Deque<>();
+
+    private final AtomicLong bytes = new AtomicLong(0);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    protected AdaptiveCache(Builder<K, V> builder) {
+        this.name = builder.name;
+        this.maximumBytes = builder.maximumBytes;
+        this.windowMaximum = Math.max(1, (long) (maximumBytes * builder.windowFraction));
+        this.protectedMaximum = (long) ((maximumBytes - windowMaximum) * 0.8);
+        this.weigher = builder.weigher;
+        this.removalListener = builder.removalListener;
+        this.sketch = new FrequencySketch(256);
+
+        if (builder.registerMetrics)
+            CacheMetricsRegistry.getInstance().register(this);
+    }
+
+    public static <K, V> Builder<K, V> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * Returns cached value for given key, or null if there's no such entry
+     */
+    public V getIfPresent(@NonNull K key) {
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+        afterRead(node);
+        return node.value;
+    }
+
+    /**
+     * Returns cached value for given key, loading it with given function on cache miss.<br>
+     * Loaded value is returned even if it wasn't admitted into the cache, or was evicted immediately.
+     *
+     * Loader runs outside of the cache lock, and must not request the same key from this cache.
+     *
+     * @param loader function creating the value. Null return values aren't cached
+     */
+    public V get(@NonNull K key, @NonNull Function<? super K, ? extends V> loader) {
+        Node<K, V> node = data.get(key);
+        if (node != null) {
+            hits.increment();
+            afterRead(node);
+            return node.value;
+        }
+
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = loading.putIfAbsent(key, future);
+        if (inFlight != null) {
+            // another thread is loading this key: share its value
+            hits.increment();
+            return await(inFlight);
+        }
+
+        try {
+            // value might have been inserted between the lookup above and registration of the load
+            node = data.get(key);
+            if (node != null) {
+                hits.increment();
+                afterRead(node);
+                future.complete(node.value);
+                return node.value;
+            }
+
+            misses.increment();
+            V value;
+            try {
+                value = loader.apply(key);
+                if (value != null)
+                    insert(key, value);
+            } catch (RuntimeException | Error e) {
+                future.completeExceptionally(e);
+                throw e;
+            }
+
+            future.complete(value);
+            return value;
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+
+    private V await(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw e;
+        }
+    }
+
+    private void insert(K key, V value) {
+        long weight = weigher.weigh(value);
+        if (weight <= 0)
+            throw new IllegalStateException("Weigher returned non-positive weight " + weight + " for cache [" + name + "]");
+
+        lock.lock();
+        try {
+            sketch.increment(key);
+            if (weight > maximumBytes) {
+                rejections.increment();
+                notifyRemoval(key, value, RemovalCause.REJECTED);
+                return;
+            }
+
+            Node<K, V> node = new Node<>(key, value, weight);
+            node.queue = Queue.WINDOW;
+            data.put(key, node);
+            window.addLast(node);
+            bytes.addAndGet(weight);
+            sketch.ensureCapacity(data.size());
+
+            evict();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes all entries, passing each of them to the removal listener
+     */
+    public void invalidateAll() {
+        List<Node<K, V>> removed;
+        lock.lock();
+        try {
+            removed = new ArrayList<>(data.values());
+            data.clear();
+            window.clear();
+            probation.clear();
+            protectedQueue.clear();
+            bytes.set(0);
+
+            for (Node<K, V> node : removed) {
+                node.queue = null;
+                notifyRemoval(node.key, node.value, RemovalCause.EXPLICIT);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of cached entries
+     */
+    public long size() {
+        return data.size();
+    }
+
+    /**
+     * @return total weight of cached entries, in bytes
+     */
+    public long weightedSize() {
+        return bytes.get();
+    }
+
+    public CacheStats stats() {
+        return CacheStats.builder()
+                .name(name)
+                .hitCount(hits.sum())
+                .missCount(misses.sum())
+                .evictionCount(evictions.sum())
+                .rejectionCount(rejections.sum())
+                .entries(data.size())
+                .bytes(bytes.get())
+                .maximumBytes(maximumBytes)
+                .build();
+    }
+
+    /**
+     * Records access to cached node, unless another thread is busy with the cache: precise recency isn't worth the wait
+     */
+    private void afterRead(Node<K, V> node) {
+        if (lock.tryLock()) {
+            try {
+                onAccess(node);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void onAccess(Node<K, V> node) {
+        // node might have been evicted after it was looked up
+        if (node.queue == null)
+            return;
+
+        sketch.increment(node.key);
+        switch (node.queue) {
+            case WINDOW:
+                window.moveToLast(node);
+                break;
+            case PROBATION:
+                probation.remove(node);
+                node.queue = Queue.PROTECTED;
+                protectedQueue.addLast(node);
+
+                while (protectedQueue.bytes > protectedMaximum && protectedQueue.head != null) {
+                    Node<K, V> demoted = protectedQueue.head;
+                    protectedQueue.remove(demoted);
+                    demoted.queue = Queue.PROBATION;
+                    probation.addLast(demoted);
+                }
+                break;
+            case PROTECTED:
+                protectedQueue.moveToLast(node);
+                break;
+        }
+    }
+
+    private void evict() {
+        // entries leaving the window become candidates for the main region, at the tail of probation queue
+        while (window.bytes > windowMaximum && window.head != null) {
+            Node<K, V> node = window.head;
+            window.remove(node);
+            node.queue = Queue.PROBATION;
+            probation.addLast(node);
+        }
+
+        while (bytes.get() > maximumBytes) {
+            Node<K, V> victim = probation.head;
+            Node<K, V> candidate = probation.tail;
+
+            if (victim == null) {
+                // probation is empty, so fall back to plain LRU over the remaining queues
+                remove(protectedQueue.head != null ? protectedQueue.head : window.head);
+            } else if (victim == candidate) {
+                remove(victim);
+            } else if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                remove(victim);
+            } else {
+                remove(candidate);
+            }
+        }
+    }
+
+    private void remove(Node<K, V> node) {
+        switch (node.queue) {
+            case WINDOW:
+                window.remove(node);
+                break;
+            case PROBATION:
+                probation.remove(node);
+                break;
+            case PROTECTED:
+                protectedQueue.remove(node);
+                break;
+        }
+
+        node.queue = null;
+        data.remove(node.key);
+        bytes.addAndGet(-node.weight);
+        evictions.increment();
+        notifyRemoval(node.key, node.value, RemovalCause.EVICTED);
+    }
+
+    private void notifyRemoval(K key, V value, RemovalCause cause) {
+        if (removalListener == null)
+            return;
+
+        try {
+            removalListener.onRemoval(key, value, cause);
+        } catch (Exception e) {
+            log.error("Removal listener of cache [{}] failed", name, e);
+        }
+    }
+
+    public static class Builder<K, V> {
+        private String name;
+        private long maximumBytes;
+        private double windowFraction = 0.01;
+        private Weigher<V> weigher;
+        private RemovalListener<K, V> removalListener;
+        private boolean registerMetrics = true;
+
+        /**
+         * Name of the cache, used as key in {@link CacheMetricsRegistry}
+         */
+        public Builder<K, V> name(@NonNull String name) {
+            this.name = name;
+            return this;
+        }
+
+        /**
+         * Byte budget of the cache: total weight of cached values never exceeds it
+         */
+        public Builder<K, V> maximumBytes(long maximumBytes) {
+            this.maximumBytes = maximumBytes;
+            return this;
+        }
+
+        /**
+         * Fraction of the budget used for admission window. Default: 0.01
+         */
+        public Builder<K, V> windowFraction(double windowFraction) {
+            this.windowFraction = windowFraction;
+            return this;
+        }
+
+        /**
+         * Function returning size of values, in bytes
+         */
+        public Builder<K, V> weigher(@NonNull Weigher<V> weigher) {
+            this.weigher = weigher;
+            return this;
+        }
+
+        /**
+         * Optional listener, notified about every value that leaves the cache or never enters it
+         */
+        public Builder<K, V> removalListener(RemovalListener<K, V> removalListener) {
+            this.removalListener = removalListener;
+            return this;
+        }
+
+        /**
+         * If true (default), cache is registered in {@link CacheMetricsRegistry}
+         */
+        public Builder<K, V> registerMetrics(boolean registerMetrics) {
+            this.registerMetrics = registerMetrics;
+            return this;
+        }
+
+        public AdaptiveCache<K, V> build() {
+            if (name == null)
+                throw new IllegalStateException("Cache name must be set");
+            if (weigher == null)
+                throw new IllegalStateException("Cache weigher must be set");
+            if (maximumBytes <= 0)
+                throw new IllegalStateException("Maximum bytes must be positive, got " + maximumBytes);
+            if (windowFraction <= 0.0 || windowFraction >= 1.0)
+                throw new IllegalStateException("Window fraction must be in range (0, 1), got " + windowFraction);
+
+            return new AdaptiveCache<>(this);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.linalg.cache;
+
+import lombok.NonNull;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of named {@link AdaptiveCache} instances, so their statistics can be queried at runtime:
+ * <pre>
+ * CacheStats stats = CacheMetricsRegistry.getInstance().getStats("shapeInfo");
+ * log.info(CacheMetricsRegistry.getInstance().summary());
+ * </pre>
+ * Caches are registered on creation. A cache registered under an already used name replaces the previous one.
+ */
+public class CacheMetricsRegistry {
+    private static final CacheMetricsRegistry INSTANCE = new CacheMetricsRegistry();
+
+    private final Map<String, AdaptiveCache<?, ?>> caches = new ConcurrentHashMap<>();
+
+    protected CacheMetricsRegistry() {
+        //
+    }
+
+    public static CacheMetricsRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    public void register(@NonNull AdaptiveCache<?, ?> cache) {
+        caches.put(cache.getName(), cache);
+    }
+
+    /**
+     * Removes given cache from the registry, if it is the one registered under its name
+     */
+    public void unregister(@NonNull AdaptiveCache<?, ?> cache) {
+        caches.remove(cache.getName(), cache);
+    }
+
+    /**
+     * @return statistics of the cache registered under given name, or null if there's no such cache
+     */
+    public CacheStats getStats(@NonNull String name) {
+        AdaptiveCache<?, ?> cache = caches.get(name);
+        return cache == null ? null : cache.stats();
+    }
+
+    /**
+     * @return statistics of all registered caches, sorted by cache name
+     */
+    public Map<String, CacheStats> getAllStats() {
+        Map<String, CacheStats> ret = new TreeMap<>();
+        for (AdaptiveCache<?, ?> cache : caches.values())
+            ret.put(cache.getName(), cache.stats());
+        return ret;
+    }
+
+    /**
+     * @return human readable statistics of all registered caches, one line per cache
+     */
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        for (CacheStats stats : getAllStats().values())
+            sb.append(stats).append("\n");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.linalg.cache;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Point-in-time snapshot of {@link AdaptiveCache} counters
+ */
+@Value
+@Builder
+public class CacheStats {
+    String name;
+    long hitCount;
+    long missCount;
+    /**
+     * Entries removed to stay within the byte budget
+     */
+    long evictionCount;
+    /**
+     * Values that were never cached, because they are larger than the whole byte budget
+     */
+    long rejectionCount;
+    long entries;
+    long bytes;
+    long maximumBytes;
+
+    public long requestCount() {
+        return hitCount + missCount;
+    }
+
+    /**
+     * @return fraction of requests served from the cache, or 1.0 if there were no requests yet
+     */
+    public double hitRate() {
+        long requests = requestCount();
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: hits=%d, misses=%d, hitRate=%.3f, evictions=%d, rejections=%d, entries=%d, bytes=%d/%d",
+                        name, hitCount, missCount, hitRate(), evictionCount, rejectionCount, entries, bytes, maximumBytes);
+    }
+}
@@ -30,15 +30,24 @@ import org.nd4j.linalg.api.memory.enums.ResetPolicy;
 import org.nd4j.linalg.api.memory.enums.SpillPolicy;
 import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
 import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.dataset.api.iterator.IndexedDataSetIterator;
+import org.nd4j.linalg.dataset.api.iterator.SplittableDataSetIterator;
 import org.nd4j.linalg.dataset.callbacks.DataSetCallback;
 import org.nd4j.linalg.dataset.callbacks.DefaultCallback;
 import org.nd4j.linalg.factory.Nd4j;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * DataSetIterator prefetching minibatches of the underlying iterator in background.<br>
+ * By default a single prefetch thread is used. If building minibatches is too expensive for a single thread
+ * to keep up with the consumer, several producer threads may be used instead, see
+ * {@link #AsyncDataSetIterator(DataSetIterator, int, int, boolean)}.
+ */
 @Slf4j
 public class AsyncDataSetIterator implements DataSetIterator {
     protected DataSetIterator backedIterator;
@@ -57,6 +66,10 @@ public class AsyncDataSetIterator implements DataSetIterator {
 
     protected DataSetCallback callback;
 
+    // parallel prefetch mode only
+    private ParallelPrefetcher<DataSet> prefetcher;
+    protected int numProducers = 1;
+
     protected AsyncDataSetIterator() {
         //
     }
@@ -128,6 +141,81 @@ public class AsyncDataSetIterator implements DataSetIterator {
         thread.start();
     }
 
+    /**
+     * Create an Async iterator with several prefetch threads.<br>
+     * With more than one producer, the underlying iterator must implement {@link IndexedDataSetIterator} or
+     * {@link SplittableDataSetIterator}. Use {@link #getPrefetchStats()} to find out how many producers are required
+     * to keep up with the consumer.
+     *
+     * @param iterator      Underlying iterator to wrap and fetch asynchronously from
+     * @param queueSize     Number of minibatches prefetched ahead of the consumer
+     * @param numProducers  Number of prefetch threads
+     * @param preserveOrder If true, minibatches are returned in the order of the underlying iterator. Otherwise they
+     *                      are returned in order of completion
+     */
+    public AsyncDataSetIterator(DataSetIterator iterator, int queueSize, int numProducers, boolean preserveOrder) {
+        this(iterator, queueSize, numProducers, preserveOrder, true, new DefaultCallback(),
+                        Nd4j.getAffinityManager().getDeviceForCurrentThread());
+    }
+
+    public AsyncDataSetIterator(@NonNull DataSetIterator iterator, int queueSize, int numProducers,
+                                boolean preserveOrder, boolean useWorkspace, DataSetCallback callback, Integer deviceId) {
+        if (numProducers < 1)
+            throw new IllegalArgumentException("Number of producers must be positive, got " + numProducers);
+        if (numProducers > 1 && !(iterator instanceof IndexedDataSetIterator)
+                        && !(iterator instanceof SplittableDataSetIterator))
+            throw new IllegalArgumentException("Parallel prefetch requires IndexedDataSetIterator or "
+                            + "SplittableDataSetIterator, got " + iterator.getClass().getName());
+
+        if (queueSize < 2)
+            queueSize = 2;
+
+        this.deviceId = deviceId;
+        this.callback = callback;
+        this.useWorkspace = useWorkspace;
+        this.prefetchSize = queueSize;
+        this.backedIterator = iterator;
+        this.numProducers = numProducers;
+        this.workspaceId = "ADSI_ITER-" + java.util.UUID.randomUUID().toString();
+
+        if (iterator.resetSupported() && !iterator.hasNext())
+            this.backedIterator.reset();
+
+        this.prefetcher = new ParallelPrefetcher<>("ADSI prefetch thread", numProducers,
+                        Math.max(queueSize, numProducers), preserveOrder, useWorkspace, workspaceId, deviceId,
+                        callback == null ? null : ds -> callback.call(ds));
+        prefetcher.start(producerSources());
+    }
+
+    private List<ParallelPrefetcher.BatchSource<DataSet>> producerSources() {
+        List<ParallelPrefetcher.BatchSource<DataSet>> sources = new ArrayList<>(numProducers);
+        if (numProducers == 1) {
+            sources.add(ParallelPrefetcher.fromIterator(backedIterator));
+        } else if (backedIterator instanceof IndexedDataSetIterator) {
+            IndexedDataSetIterator indexed = (IndexedDataSetIterator) backedIterator;
+            int numBatches = indexed.numBatches();
+            for (int p = 0; p < numProducers; p++)
+                sources.add(ParallelPrefetcher.fromIndices(p, numProducers, numBatches, indexed::get));
+        } else {
+            List<DataSetIterator> splits = ((SplittableDataSetIterator) backedIterator).split(numProducers);
+            if (splits.size() != numProducers)
+                throw new IllegalStateException("Expected " + numProducers + " splits, got " + splits.size());
+            for (DataSetIterator split : splits)
+                sources.add(ParallelPrefetcher.fromIterator(split));
+        }
+        return sources;
+    }
+
+    /**
+     * Returns prefetch statistics, collected since creation of this iterator. Available in parallel prefetch mode only,
+     * see {@link #AsyncDataSetIterator(DataSetIterator, int, int, boolean)}
+     *
+     * @return prefetch statistics, or null if this iterator uses single prefetch thread
+     */
+    public PrefetchStats getPrefetchStats() {
+        return prefetcher == null ? null : prefetcher.stats();
+    }
+
     /**
      * Like the standard next method but allows a
      * customizable number of examples returned
@@ -198,6 +286,15 @@ public class AsyncDataSetIterator implements DataSetIterator {
      */
     @Override
     public void reset() {
+        if (prefetcher != null) {
+            prefetcher.stop();
+            backedIterator.reset();
+            prefetcher.start(producerSources());
+            hasDepleted.set(false);
+            nextElement = null;
+            return;
+        }
+
         buffer.clear();
 
         if (thread != null)
@@ -232,6 +329,11 @@ public class AsyncDataSetIterator implements DataSetIterator {
      * PLEASE NOTE: After shutdown() call, this instance can't be used anymore
      */
     public void shutdown() {
+        if (prefetcher != null) {
+            prefetcher.stop();
+            return;
+        }
+
         buffer.clear();
 
         if (thread != null)
@@ -308,8 +410,12 @@ public class AsyncDataSetIterator implements DataSetIterator {
             } else if (nextElement == terminator)
                 return false;
 
-
-            nextElement = buffer.take();
+            if (prefetcher != null) {
+                DataSet ds = prefetcher.take();
+                nextElement = ds == null ? terminator : ds;
+            } else {
+                nextElement = buffer.take();
+            }
 
             if (nextElement == terminator) {
                 hasDepleted.set(true);
@@ -30,15 +30,25 @@ import org.nd4j.linalg.api.memory.enums.ResetPolicy;
 import org.nd4j.linalg.api.memory.enums.SpillPolicy;
 import org.nd4j.linalg.dataset.api.MultiDataSet;
 import org.nd4j.linalg.dataset.api.MultiDataSetPreProcessor;
+import org.nd4j.linalg.dataset.api.iterator.IndexedMultiDataSetIterator;
 import org.nd4j.linalg.dataset.api.iterator.MultiDataSetIterator;
+import org.nd4j.linalg.dataset.api.iterator.SplittableMultiDataSetIterator;
 import org.nd4j.linalg.dataset.callbacks.DataSetCallback;
 import org.nd4j.linalg.dataset.callbacks.DefaultCallback;
 import org.nd4j.linalg.factory.Nd4j;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * MultiDataSetIterator prefetching minibatches of the underlying iterator in background.<br>
+ * By default a single prefetch thread is used. If building minibatches is too expensive for a single thread
+ * to keep up with the consumer, several producer threads may be used instead, see
+ * {@link #AsyncMultiDataSetIterator(MultiDataSetIterator, int, int, boolean)}.
+ */
 @Slf4j
 public class AsyncMultiDataSetIterator implements MultiDataSetIterator {
     protected MultiDataSetIterator backedIterator;
@@ -56,6 +66,10 @@ public class AsyncMultiDataSetIterator implements MultiDataSetIterator {
     protected Integer deviceId;
     protected AtomicBoolean hasDepleted = new AtomicBoolean(false);
 
+    // parallel prefetch mode only
+    private ParallelPrefetcher<MultiDataSet> prefetcher;
+    protected int numProducers = 1;
+
     protected AsyncMultiDataSetIterator() {
         //
     }
@@ -115,6 +129,83 @@ public class AsyncMultiDataSetIterator implements MultiDataSetIterator {
         thread.start();
     }
 
+    /**
+     * Create an Async iterator with several prefetch threads.<br>
+     * With more than one producer, the underlying iterator must implement {@link IndexedMultiDataSetIterator} or
+     * {@link SplittableMultiDataSetIterator}. Use {@link #getPrefetchStats()} to find out how many producers are
+     * required to keep up with the consumer.
+     *
+     * @param iterator      Underlying iterator to wrap and fetch asynchronously from
+     * @param queueSize     Number of minibatches prefetched ahead of the consumer
+     * @param numProducers  Number of prefetch threads
+     * @param preserveOrder If true, minibatches are returned in the order of the underlying iterator. Otherwise they
+     *                      are returned in order of completion
+     */
+    public AsyncMultiDataSetIterator(MultiDataSetIterator iterator, int queueSize, int numProducers,
+                                     boolean preserveOrder) {
+        this(iterator, queueSize, numProducers, preserveOrder, true, new DefaultCallback(),
+                        Nd4j.getAffinityManager().getDeviceForCurrentThread());
+    }
+
+    public AsyncMultiDataSetIterator(@NonNull MultiDataSetIterator iterator, int queueSize, int numProducers,
+                                     boolean preserveOrder, boolean useWorkspace, DataSetCallback callback,
+                                     Integer deviceId) {
+        if (numProducers < 1)
+            throw new IllegalArgumentException("Number of producers must be positive, got " + numProducers);
+        if (numProducers > 1 && !(iterator instanceof IndexedMultiDataSetIterator)
+                        && !(iterator instanceof SplittableMultiDataSetIterator))
+            throw new IllegalArgumentException("Parallel prefetch requires IndexedMultiDataSetIterator or "
+                            + "SplittableMultiDataSetIterator, got " + iterator.getClass().getName());
+
+        if (queueSize < 2)
+            queueSize = 2;
+
+        this.callback = callback;
+        this.backedIterator = iterator;
+        this.useWorkspaces = useWorkspace;
+        this.prefetchSize = queueSize;
+        this.numProducers = numProducers;
+        this.workspaceId = "AMDSI_ITER-" + java.util.UUID.randomUUID().toString();
+        this.deviceId = deviceId;
+
+        if (iterator.resetSupported() && !iterator.hasNext())
+            this.backedIterator.reset();
+
+        this.prefetcher = new ParallelPrefetcher<>("AMDSI prefetch thread", numProducers,
+                        Math.max(queueSize, numProducers), preserveOrder, useWorkspace, workspaceId, deviceId,
+                        callback == null ? null : mds -> callback.call(mds));
+        prefetcher.start(producerSources());
+    }
+
+    private List<ParallelPrefetcher.BatchSource<MultiDataSet>> producerSources() {
+        List<ParallelPrefetcher.BatchSource<MultiDataSet>> sources = new ArrayList<>(numProducers);
+        if (numProducers == 1) {
+            sources.add(ParallelPrefetcher.fromIterator(backedIterator));
+        } else if (backedIterator instanceof IndexedMultiDataSetIterator) {
+            IndexedMultiDataSetIterator indexed = (IndexedMultiDataSetIterator) backedIterator;
+            int numBatches = indexed.numBatches();
+            for (int p = 0; p < numProducers; p++)
+                sources.add(ParallelPrefetcher.fromIndices(p, numProducers, numBatches, indexed::get));
+        } else {
+            List<MultiDataSetIterator> splits = ((SplittableMultiDataSetIterator) backedIterator).split(numProducers);
+            if (splits.size() != numProducers)
+                throw new IllegalStateException("Expected " + numProducers + " splits, got " + splits.size());
+            for (MultiDataSetIterator split : splits)
+                sources.add(ParallelPrefetcher.fromIterator(split));
+        }
+        return sources;
+    }
+
+    /**
+     * Returns prefetch statistics, collected since creation of this iterator. Available in parallel prefetch mode only,
+     * see {@link #AsyncMultiDataSetIterator(MultiDataSetIterator, int, int, boolean)}
+     *
+     * @return prefetch statistics, or null if this iterator uses single prefetch thread
+     */
+    public PrefetchStats getPrefetchStats() {
+        return prefetcher == null ? null : prefetcher.stats();
+    }
+
     /**
      * Like the standard next method but allows a
      * customizable number of examples returned
@@ -176,6 +267,15 @@ public class AsyncMultiDataSetIterator implements MultiDataSetIterator {
      */
     @Override
     public void reset() {
+        if (prefetcher != null) {
+            prefetcher.stop();
+            backedIterator.reset();
+            prefetcher.start(producerSources());
+            hasDepleted.set(false);
+            nextElement = null;
+            return;
+        }
+
         buffer.clear();
 
 
@@ -212,6 +312,11 @@ public class AsyncMultiDataSetIterator implements MultiDataSetIterator {
      * PLEASE NOTE: After shutdown() call, this instance can't be used anymore
      */
     public void shutdown() {
+        if (prefetcher != null) {
+            prefetcher.stop();
+            return;
+        }
+
         buffer.clear();
 
 
@@ -252,8 +357,12 @@ public class AsyncMultiDataSetIterator implements MultiDataSetIterator {
             } else if (nextElement == terminator)
                 return false;
 
-
-            nextElement = buffer.take();
+            if (prefetcher != null) {
+                MultiDataSet mds = prefetcher.take();
+                nextElement = mds == null ? terminator : mds;
+            } else {
+                nextElement = buffer.take();
+            }
 
             if (nextElement == terminator) {
                 hasDepleted.set(true);
@@ -0,0 +1,156 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.linalg.dataset;
+
+import lombok.NonNull;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
+import org.nd4j.linalg.dataset.api.iterator.IndexedDataSetIterator;
+import org.nd4j.linalg.storage.ChunkedArrayStore;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * DataSetIterator reading minibatches of rows (dimension 0) from {@link ChunkedArrayStore} features and
+ * (optionally) labels. Only chunks covering the current minibatch are loaded, so the stores may be much larger
+ * than memory. For best performance, chunk shape along dimension 0 should be a multiple of the batch size.<br>
+ * Minibatches can be fetched by index, so this iterator may be prefetched by several {@link AsyncDataSetIterator}
+ * producer threads.
+ */
+public class ChunkedArrayStoreDataSetIterator implements IndexedDataSetIterator {
+    private final ChunkedArrayStore features;
+    private final ChunkedArrayStore labels;
+    private final int batchSize;
+    private long cursor = 0;
+    private DataSetPreProcessor preProcessor;
+
+    /**
+     * @param features store with features, examples along dimension 0
+     * @param labels   store with labels, same number of examples as features. May be null
+     */
+    public ChunkedArrayStoreDataSetIterator(@NonNull ChunkedArrayStore features, ChunkedArrayStore labels, int batchSize) {
+        if (batchSize <= 0)
+            throw new IllegalArgumentException("Batch size must be positive, got " + batchSize);
+        if (labels != null && labels.size(0) != features.size(0))
+            throw new IllegalArgumentException("Features and labels must have the same number of examples, got "
+                            + features.size(0) + " and " + labels.size(0));
+
+        this.features = features;
+        this.labels = labels;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public DataSet next(int num) {
+        if (!hasNext())
+            throw new NoSuchElementException("No next element");
+
+        long last = Math.min(features.size(0), cursor + num);
+        DataSet ret = rows(cursor, last);
+        cursor = last;
+        return ret;
+    }
+
+    @Override
+    public int numBatches() {
+        return (int) ((features.size(0) + batchSize - 1) / batchSize);
+    }
+
+    @Override
+    public DataSet get(int batchIndex) {
+        if (batchIndex < 0 || batchIndex >= numBatches())
+            throw new IllegalArgumentException("Batch index " + batchIndex + " is out of range [0, " + numBatches() + ")");
+
+        long first = (long) batchIndex * batchSize;
+        return rows(first, Math.min(features.size(0), first + batchSize));
+    }
+
+    private DataSet rows(long from, long to) {
+        INDArray f = features.getRows(from, to);
+        INDArray l = labels == null ? null : labels.getRows(from, to);
+
+        DataSet ret = new DataSet(f, l);
+        if (preProcessor != null)
+            preProcessor.preProcess(ret);
+        return ret;
+    }
+
+    @Override
+    public DataSet next() {
+        return next(batchSize);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return cursor < features.size(0);
+    }
+
+    @Override
+    public int inputColumns() {
+        return features.rank() > 1 ? (int) features.size(1) : 1;
+    }
+
+    @Override
+    public int totalOutcomes() {
+        return labels == null ? 0 : labels.rank() > 1 ? (int) labels.size(1) : 1;
+    }
+
+    @Override
+    public boolean resetSupported() {
+        return true;
+    }
+
+    @Override
+    public boolean asyncSupported() {
+        return true;
+    }
+
+    @Override
+    public void reset() {
+        cursor = 0;
+    }
+
+    @Override
+    public int batch() {
+        return batchSize;
+    }
+
+    @Override
+    public void setPreProcessor(DataSetPreProcessor preProcessor) {
+        this.preProcessor = preProcessor;
+    }
+
+    @Override
+    public DataSetPreProcessor getPreProcessor() {
+        return preProcessor;
+    }
+
+    @Override
+    public List<String> getLabels() {
+        return null;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Not supported");
+    }
+}
@@ -22,13 +22,13 @@ package org.nd4j.linalg.dataset;
 
 import lombok.NonNull;
 import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
-import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.dataset.api.iterator.IndexedDataSetIterator;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
 
-public class ExistingMiniBatchDataSetIterator implements DataSetIterator {
+public class ExistingMiniBatchDataSetIterator implements IndexedDataSetIterator {
 
     public static final String DEFAULT_PATTERN = "dataset-%d.bin";
 
@@ -120,11 +120,22 @@ public class ExistingMiniBatchDataSetIterator implements DataSetIterator {
 
     @Override
     public DataSet next() {
+        DataSet ret = get(currIdx);
+        currIdx++;
+        return ret;
+    }
+
+    @Override
+    public int numBatches() {
+        return totalBatches;
+    }
+
+    @Override
+    public DataSet get(int batchIndex) {
         try {
-            DataSet ret = read(currIdx);
+            DataSet ret = read(batchIndex);
             if (dataSetPreProcessor != null)
                 dataSetPreProcessor.preProcess(ret);
-            currIdx++;
 
             return ret;
         } catch (IOException e) {
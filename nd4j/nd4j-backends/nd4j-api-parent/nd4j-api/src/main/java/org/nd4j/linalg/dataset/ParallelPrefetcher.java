@@ -0,0 +1,371 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.linalg.dataset;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.nd4j.linalg.api.memory.MemoryWorkspace;
+import org.nd4j.linalg.api.memory.conf.WorkspaceConfiguration;
+import org.nd4j.linalg.api.memory.enums.AllocationPolicy;
+import org.nd4j.linalg.api.memory.enums.LearningPolicy;
+import org.nd4j.linalg.api.memory.enums.ResetPolicy;
+import org.nd4j.linalg.api.memory.enums.SpillPolicy;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Prefetch engine shared by {@link AsyncDataSetIterator} and {@link AsyncMultiDataSetIterator} in parallel mode.<br>
+ * Each producer thread pulls minibatches from its own {@link BatchSource}, building them in its own circular
+ * workspace. Producer {@code k} is expected to produce minibatches {@code k, k + numProducers, ...}, so with
+ * preserveOrder enabled minibatches are passed to the consumer through a reorder window of {@code capacity}
+ * minibatches, in the original order. Otherwise minibatches are passed in order of completion.
+ */
+@Slf4j
+class ParallelPrefetcher<T> {
+
+    /**
+     * Source of minibatches for a single producer thread
+     */
+    interface BatchSource<T> {
+        /**
+         * @return next minibatch, or null if this source is exhausted
+         */
+        T next() throws Exception;
+    }
+
+    private final String name;
+    private final int numProducers;
+    private final int capacity;
+    private final boolean preserveOrder;
+    private final WorkspaceConfiguration configuration;
+    private final String workspaceId;
+    private final int deviceId;
+    private final Consumer<T> callback;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Map<Long, T> pending = new HashMap<>();
+    private final ArrayDeque<T> queue = new ArrayDeque<>();
+    private boolean[] finished;
+    private int finishedCount;
+    private long nextSequence;
+
+    private final List<Thread> threads = new ArrayList<>();
+    private MemoryWorkspace[] workspaces;
+    private volatile boolean running;
+    private volatile RuntimeException throwable;
+
+    private final AtomicLong producedBatches = new AtomicLong();
+    private final AtomicLong produceNanos = new AtomicLong();
+    private long consumedBatches;
+    private long consumeIntervals;
+    private long consumeNanos;
+    private long waitNanos;
+    private long lastTake = -1;
+
+    /**
+     * @param name          prefix for producer thread names
+     * @param numProducers  number of producer threads
+     * @param capacity      maximum number of minibatches prefetched ahead of the consumer
+     * @param preserveOrder if true, minibatches are returned in sequence order
+     * @param useWorkspace  if true, each producer builds minibatches in its own circular workspace
+     * @param workspaceId   id of producer workspaces
+     * @param deviceId      device producers are attached to
+     * @param callback      optional callback, called for each minibatch on the producer thread
+     */
+    ParallelPrefetcher(@NonNull String name, int numProducers, int capacity, boolean preserveOrder,
+                    boolean useWorkspace, @NonNull String workspaceId, int deviceId, Consumer<T> callback) {
+        if (numProducers < 1)
+            throw new IllegalArgumentException("Number of producers must be positive, got " + numProducers);
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity must be positive, got " + capacity);
+
+        this.name = name;
+        this.numProducers = numProducers;
+        this.capacity = capacity;
+        this.preserveOrder = preserveOrder;
+        this.workspaceId = workspaceId;
+        this.deviceId = deviceId;
+        this.callback = callback;
+        this.configuration = !useWorkspace ? null : WorkspaceConfiguration.builder().minSize(10 * 1024L * 1024L)
+                        .overallocationLimit(capacity + 2).policyReset(ResetPolicy.ENDOFBUFFER_REACHED)
+                        .policyLearning(LearningPolicy.FIRST_LOOP).policyAllocation(AllocationPolicy.OVERALLOCATE)
+                        .policySpill(SpillPolicy.REALLOCATE).build();
+    }
+
+    /**
+     * Source returning elements of given iterator
+     */
+    static <T> BatchSource<T> fromIterator(@NonNull Iterator<T> iterator) {
+        return () -> iterator.hasNext() ? iterator.next() : null;
+    }
+
+    /**
+     * Source returning minibatches {@code first, first + step, ...} below {@code count}, fetched by index
+     */
+    static <T> BatchSource<T> fromIndices(int first, int step, int count, @NonNull IntFunction<T> getter) {
+        return new BatchSource<T>() {
+            private int next = first;
+
+            @Override
+            public T next() {
+                if (next >= count)
+                    return null;
+
+                T ret = getter.apply(next);
+                next += step;
+                return ret;
+            }
+        };
+    }
+
+    /**
+     * Starts producer threads, one per source
+     */
+    void start(@NonNull List<BatchSource<T>> sources) {
+        if (sources.size() != numProducers)
+            throw new IllegalArgumentException("Expected " + numProducers + " sources, got " + sources.size());
+        if (running)
+            throw new IllegalStateException("Prefetcher is already running");
+
+        pending.clear();
+        queue.clear();
+        finished = new boolean[numProducers];
+        finishedCount = 0;
+        nextSequence = 0;
+        throwable = null;
+        lastTake = -1;
+        workspaces = new MemoryWorkspace[numProducers];
+        threads.clear();
+        running = true;
+
+        for (int p = 0; p < numProducers; p++) {
+            final int producer = p;
+            final BatchSource<T> source = sources.get(p);
+            Thread thread = new Thread(() -> produce(producer, source));
+            thread.setDaemon(true);
+            thread.setName(name + "-" + p);
+            threads.add(thread);
+        }
+
+        for (Thread thread : threads)
+            thread.start();
+    }
+
+    private void produce(int producer, BatchSource<T> source) {
+        Nd4j.getAffinityManager().unsafeSetDevice(deviceId);
+        try {
+            MemoryWorkspace workspace = null;
+            if (configuration != null) {
+                workspace = Nd4j.getWorkspaceManager().getWorkspaceForCurrentThread(configuration, workspaceId);
+                workspaces[producer] = workspace;
+            }
+
+            long sequence = producer;
+            while (running) {
+                long time1 = System.nanoTime();
+                T batch;
+                if (workspace != null) {
+                    try (MemoryWorkspace ws = workspace.notifyScopeEntered()) {
+                        batch = next(source);
+                    }
+                } else {
+                    batch = next(source);
+                }
+
+                if (batch == null)
+                    break;
+
+                // we want to ensure underlying iterator finished minibatch creation
+                Nd4j.getExecutioner().commit();
+
+                produceNanos.addAndGet(System.nanoTime() - time1);
+                producedBatches.incrementAndGet();
+
+                put(sequence, batch);
+                sequence += numProducers;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable t) {
+            if (running) {
+                throwable = t instanceof RuntimeException ? (RuntimeException) t : new RuntimeException(t);
+                log.error("Prefetch thread {} failed", Thread.currentThread().getName(), t);
+            }
+        } finally {
+            lock.lock();
+            try {
+                finished[producer] = true;
+                finishedCount++;
+                notEmpty.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private T next(BatchSource<T> source) throws Exception {
+        T batch = source.next();
+        if (batch != null && callback != null)
+            callback.accept(batch);
+        return batch;
+    }
+
+    private void put(long sequence, T batch) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            if (preserveOrder) {
+                // the producer holding nextSequence never waits here, so the window always moves forward
+                while (running && sequence >= nextSequence + capacity)
+                    notFull.await();
+                pending.put(sequence, batch);
+            } else {
+                while (running && queue.size() >= capacity)
+                    notFull.await();
+                queue.add(batch);
+            }
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns next minibatch, waiting for producers if necessary
+     *
+     * @return next minibatch, or null if all sources are exhausted
+     */
+    T take() throws InterruptedException {
+        long time1 = System.nanoTime();
+        if (lastTake >= 0) {
+            consumeNanos += time1 - lastTake;
+            consumeIntervals++;
+        }
+
+        T batch = null;
+        lock.lockInterruptibly();
+        try {
+            while (true) {
+                if (throwable != null)
+                    throw throwable;
+
+                batch = preserveOrder ? pending.remove(nextSequence) : queue.poll();
+                if (batch != null) {
+                    if (preserveOrder)
+                        nextSequence++;
+                    notFull.signalAll();
+                    break;
+                }
+
+                if (preserveOrder && finished[(int) (nextSequence % numProducers)]) {
+                    if (!pending.isEmpty())
+                        log.warn("Producer {} finished before other producers, {} minibatches were dropped",
+                                        nextSequence % numProducers, pending.size());
+                    break;
+                } else if (!preserveOrder && finishedCount == numProducers) {
+                    break;
+                }
+
+                notEmpty.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        long time2 = System.nanoTime();
+        if (batch != null) {
+            waitNanos += time2 - time1;
+            consumedBatches++;
+            lastTake = time2;
+        } else {
+            lastTake = -1;
+        }
+        return batch;
+    }
+
+    /**
+     * Stops producer threads and destroys their workspaces. Minibatches returned before are invalid after this call
+     */
+    void stop() {
+        running = false;
+        lock.lock();
+        try {
+            notFull.signalAll();
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        for (Thread thread : threads)
+            thread.interrupt();
+
+        try {
+            for (Thread thread : threads)
+                thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        threads.clear();
+
+        lock.lock();
+        try {
+            pending.clear();
+            queue.clear();
+        } finally {
+            lock.unlock();
+        }
+
+        if (workspaces != null) {
+            for (MemoryWorkspace workspace : workspaces) {
+                if (workspace != null) {
+                    log.debug("Manually destroying prefetch workspace");
+                    workspace.destroyWorkspace(true);
+                }
+            }
+            workspaces = null;
+        }
+    }
+
+    PrefetchStats stats() {
+        long produced = producedBatches.get();
+        return PrefetchStats.builder()
+                        .numProducers(numProducers)
+                        .producedBatches(produced)
+                        .consumedBatches(consumedBatches)
+                        .producerMillisPerBatch(produced == 0 ? 0.0 : produceNanos.get() / 1e6 / produced)
+                        .consumerMillisPerBatch(consumeIntervals == 0 ? 0.0 : consumeNanos / 1e6 / consumeIntervals)
+                        .consumerWaitMillisPerBatch(consumedBatches == 0 ? 0.0 : waitNanos / 1e6 / consumedBatches)
+                        .build();
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.linalg.dataset;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Prefetch statistics of {@link AsyncDataSetIterator} / {@link AsyncMultiDataSetIterator} running in parallel
+ * prefetch mode. Use {@link #requiredProducers()} to find out how many producer threads are needed to keep
+ * the consumer (usually, the model being trained) busy.
+ */
+@Value
+@Builder
+public class PrefetchStats {
+    int numProducers;
+    long producedBatches;
+    long consumedBatches;
+    /**
+     * Average time, in milliseconds, a single producer thread spends building one minibatch
+     */
+    double producerMillisPerBatch;
+    /**
+     * Average time, in milliseconds, the consumer spends on one minibatch between two next() calls
+     */
+    double consumerMillisPerBatch;
+    /**
+     * Average time, in milliseconds, the consumer waits for the next minibatch
+     */
+    double consumerWaitMillisPerBatch;
+
+    /**
+     * @return fraction of consumer time spent waiting for minibatches. Values close to 0 mean producers keep up
+     */
+    public double waitFraction() {
+        double total = consumerWaitMillisPerBatch + consumerMillisPerBatch;
+        return total > 0 ? consumerWaitMillisPerBatch / total : 0.0;
+    }
+
+    /**
+     * @return number of producer threads required to build minibatches at least as fast as the consumer takes them
+     */
+    public int requiredProducers() {
+        if (producedBatches == 0 || consumerMillisPerBatch <= 0)
+            return numProducers;
+
+        return Math.max(1, (int) Math.ceil(producerMillisPerBatch / consumerMillisPerBatch));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("producers=%d, produced=%d, consumed=%d, producer ms/batch=%.3f, consumer ms/batch=%.3f, "
+                        + "wait ms/batch=%.3f, waitFraction=%.3f, requiredProducers=%d", numProducers, producedBatches,
+                        consumedBatches, producerMillisPerBatch, consumerMillisPerBatch, consumerWaitMillisPerBatch,
+                        waitFraction(), requiredProducers());
+    }
+}
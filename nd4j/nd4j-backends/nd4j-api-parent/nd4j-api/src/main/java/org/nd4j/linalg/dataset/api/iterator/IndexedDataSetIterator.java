@@ -0,0 +1,43 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.linalg.dataset.api.iterator;
+
+import org.nd4j.linalg.dataset.DataSet;
+
+/**
+ * DataSetIterator with random access to its minibatches. Such iterators may be consumed by several threads at once,
+ * for example by {@link org.nd4j.linalg.dataset.AsyncDataSetIterator} with more than one producer.
+ */
+public interface IndexedDataSetIterator extends DataSetIterator {
+
+    /**
+     * @return total number of minibatches
+     */
+    int numBatches();
+
+    /**
+     * Returns minibatch with given index, with preprocessor (if any) applied.
+     * PLEASE NOTE: this method can be called from different threads concurrently, and doesn't change iterator position
+     *
+     * @param batchIndex index of minibatch, in range [0, numBatches())
+     */
+    DataSet get(int batchIndex);
+}
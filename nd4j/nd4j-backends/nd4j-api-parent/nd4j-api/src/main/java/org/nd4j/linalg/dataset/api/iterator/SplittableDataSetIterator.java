@@ -0,0 +1,40 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.linalg.dataset.api.iterator;
+
+import java.util.List;
+
+/**
+ * DataSetIterator that can be split into independent iterators, to be consumed by several threads at once,
+ * for example by {@link org.nd4j.linalg.dataset.AsyncDataSetIterator} with more than one producer.
+ */
+public interface SplittableDataSetIterator extends DataSetIterator {
+
+    /**
+     * Splits remaining minibatches of this iterator into numSplits independent iterators.
+     * Split {@code k} must return minibatches {@code k, k + numSplits, k + 2 * numSplits, ...} of this iterator,
+     * so the original order can be restored by interleaving the splits.
+     *
+     * @param numSplits number of splits
+     * @return list of numSplits iterators, each one used from a single thread
+     */
+    List<DataSetIterator> split(int numSplits);
+}
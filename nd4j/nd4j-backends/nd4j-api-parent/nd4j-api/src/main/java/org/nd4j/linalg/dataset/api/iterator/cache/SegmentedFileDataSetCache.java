@@ -0,0 +1,442 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.linalg.dataset.api.iterator.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.compressors.lz4.BlockLZ4CompressorInputStream;
+import org.apache.commons.compress.compressors.lz4.BlockLZ4CompressorOutputStream;
+import org.apache.commons.io.IOUtils;
+import org.nd4j.linalg.dataset.DataSet;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * DataSetCache packing minibatches into large append-only segment files, instead of one file per minibatch
+ * as {@link InFileDataSetCache} does.<br>
+ * <br>
+ * - Each minibatch is compressed with a fast codec ({@link Codec#LZ4} by default) and appended to the current
+ *   segment. Once a segment grows above the segment size, a new one is started.<br>
+ * - Location of each minibatch is recorded in an append-only index file, so the cache can be reopened later.<br>
+ * - Segments are memory-mapped for reading.<br>
+ * - Reading a key schedules background read-ahead (I/O and decompression) of the keys that were put after it,
+ *   so sequential passes over the cache, as done by {@link org.nd4j.linalg.dataset.api.iterator.CachingDataSetIterator},
+ *   are not bound by disk latency.<br>
+ * <br>
+ * PLEASE NOTE: overwriting a key appends a new copy, space used by the old copy is not reclaimed.
+ */
+@Slf4j
+public class SegmentedFileDataSetCache implements DataSetCache, Closeable {
+    public static final long DEFAULT_SEGMENT_SIZE = 256L * 1024 * 1024;
+    public static final int DEFAULT_READ_AHEAD = 4;
+    public static final String INDEX_FILE = "segments.idx";
+
+    private static final int INDEX_MAGIC = 0x44534331;
+
+    public enum Codec {
+        /**
+         * No compression
+         */
+        NONE,
+        /**
+         * LZ4 block compression: fast, moderate compression ratio
+         */
+        LZ4,
+        /**
+         * Deflate at BEST_SPEED level: slower, but better compression ratio than LZ4
+         */
+        DEFLATE
+    }
+
+    @AllArgsConstructor
+    private static class Entry {
+        private final int segment;
+        private final long offset;
+        private final int length;
+        private final int rawLength;
+        private final Codec codec;
+    }
+
+    private final File cacheDirectory;
+    private final Codec codec;
+    private final long segmentSize;
+    private final int readAhead;
+
+    private final Map<String, Entry> index = new ConcurrentHashMap<>();
+    // keys in order of insertion, used for read-ahead
+    private final List<String> order = new ArrayList<>();
+    private final Map<String, Integer> positions = new HashMap<>();
+    private final Map<String, Future<byte[]>> prefetched = new ConcurrentHashMap<>();
+    private final Map<Integer, MappedByteBuffer> mappings = new HashMap<>();
+    private final ExecutorService executor;
+
+    private DataOutputStream indexStream;
+    private FileChannel segmentChannel;
+    private int currentSegment;
+
+    public SegmentedFileDataSetCache(File cacheDirectory) {
+        this(cacheDirectory, Codec.LZ4, DEFAULT_SEGMENT_SIZE, DEFAULT_READ_AHEAD);
+    }
+
+    public SegmentedFileDataSetCache(Path cacheDirectory) {
+        this(cacheDirectory.toFile());
+    }
+
+    public SegmentedFileDataSetCache(String cacheDirectory) {
+        this(new File(cacheDirectory));
+    }
+
+    /**
+     * @param cacheDirectory directory for segment and index files. Existing cache in this directory is reopened
+     * @param codec          codec used for new minibatches
+     * @param segmentSize    approximate maximum size of single segment file, in bytes
+     * @param readAhead      number of keys to read ahead in background. 0 disables read-ahead
+     */
+    public SegmentedFileDataSetCache(@NonNull File cacheDirectory, @NonNull Codec codec, long segmentSize, int readAhead) {
+        if (cacheDirectory.exists() && !cacheDirectory.isDirectory()) {
+            throw new IllegalArgumentException("can't use path " + cacheDirectory + " as file cache directory "
+                            + "because it already exists, but is not a directory");
+        }
+        if (segmentSize <= 0 || segmentSize > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Segment size must be in range (0, " + Integer.MAX_VALUE + "], got " + segmentSize);
+        if (readAhead < 0)
+            throw new IllegalArgumentException("Read-ahead must be non-negative, got " + readAhead);
+
+        this.cacheDirectory = cacheDirectory;
+        this.codec = codec;
+        this.segmentSize = segmentSize;
+        this.readAhead = readAhead;
+
+        loadIndex();
+
+        this.executor = readAhead == 0 ? null : Executors.newFixedThreadPool(Math.min(readAhead, 4), r -> {
+            Thread t = new Thread(r, "SegmentedFileDataSetCache read-ahead");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    private File segmentFile(int segment) {
+        return new File(cacheDirectory, String.format("segment-%05d.bin", segment));
+    }
+
+    private File namespaceFile(String namespace) {
+        String filename = String.format("%s-complete.txt", namespace);
+        return new File(cacheDirectory, filename);
+    }
+
+    private void loadIndex() {
+        File file = new File(cacheDirectory, INDEX_FILE);
+        if (!file.exists())
+            return;
+
+        List<Map.Entry<String, Entry>> entries = new ArrayList<>();
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (dis.readInt() != INDEX_MAGIC)
+                throw new IllegalStateException("File " + file + " is not a segment cache index");
+
+            while (true) {
+                String key;
+                try {
+                    key = dis.readUTF();
+                } catch (EOFException e) {
+                    break;
+                }
+                try {
+                    Entry entry = new Entry(dis.readInt(), dis.readLong(), dis.readInt(), dis.readInt(),
+                                    Codec.values()[dis.readByte()]);
+                    entries.add(new AbstractMap.SimpleEntry<>(key, entry));
+                } catch (EOFException e) {
+                    log.warn("Ignoring truncated record for key [{}] at the end of index {}", key, file);
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading segment cache index " + file, e);
+        }
+
+        for (Map.Entry<String, Entry> e : entries) {
+            index.put(e.getKey(), e.getValue());
+            addToOrder(e.getKey());
+            currentSegment = Math.max(currentSegment, e.getValue().segment);
+        }
+    }
+
+    private void addToOrder(String key) {
+        synchronized (order) {
+            if (!positions.containsKey(key)) {
+                positions.put(key, order.size());
+                order.add(key);
+            }
+        }
+    }
+
+    @Override
+    public boolean isComplete(String namespace) {
+        return namespaceFile(namespace).exists();
+    }
+
+    @Override
+    public void setComplete(String namespace, boolean value) {
+        File file = namespaceFile(namespace);
+        if (value) {
+            if (!file.exists()) {
+                file.getParentFile().mkdirs();
+                try {
+                    file.createNewFile();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        } else {
+            if (file.exists()) {
+                file.delete();
+            }
+        }
+    }
+
+    @Override
+    public DataSet get(String key) {
+        Entry entry = index.get(key);
+        if (entry == null)
+            return null;
+
+        byte[] raw;
+        Future<byte[]> future = prefetched.remove(key);
+        try {
+            raw = future != null ? future.get() : read(entry);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error reading key [" + key + "] from segment cache", e.getCause());
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading key [" + key + "] from segment cache", e);
+        }
+
+        scheduleReadAhead(key);
+
+        DataSet ds = new DataSet();
+        ds.load(new ByteArrayInputStream(raw));
+        return ds;
+    }
+
+    private void scheduleReadAhead(String key) {
+        if (executor == null)
+            return;
+
+        List<String> upcoming = new ArrayList<>(readAhead);
+        synchronized (order) {
+            Integer position = positions.get(key);
+            if (position == null)
+                return;
+            for (int i = position + 1; i < order.size() && upcoming.size() < readAhead; i++)
+                upcoming.add(order.get(i));
+        }
+
+        // keys read out of order are never consumed, don't let them pile up
+        if (prefetched.size() > 2 * readAhead) {
+            for (String k : new ArrayList<>(prefetched.keySet())) {
+                if (!upcoming.contains(k)) {
+                    Future<byte[]> f = prefetched.remove(k);
+                    if (f != null)
+                        f.cancel(false);
+                }
+            }
+        }
+
+        for (String k : upcoming) {
+            Entry entry = index.get(k);
+            if (entry != null && !prefetched.containsKey(k))
+                prefetched.put(k, executor.submit(() -> read(entry)));
+        }
+    }
+
+    /**
+     * Reads and decompresses serialized DataSet
+     */
+    private byte[] read(Entry entry) throws IOException {
+        ByteBuffer buffer = mapping(entry.segment, entry.offset + entry.length).duplicate();
+        buffer.position((int) entry.offset);
+        buffer.limit((int) (entry.offset + entry.length));
+
+        byte[] stored = new byte[entry.length];
+        buffer.get(stored);
+        if (entry.codec == Codec.NONE)
+            return stored;
+
+        InputStream is;
+        if (entry.codec == Codec.LZ4)
+            is = new BlockLZ4CompressorInputStream(new ByteArrayInputStream(stored));
+        else
+            is = new InflaterInputStream(new ByteArrayInputStream(stored));
+
+        byte[] raw = new byte[entry.rawLength];
+        try (InputStream in = is) {
+            IOUtils.readFully(in, raw);
+        }
+        return raw;
+    }
+
+    private synchronized MappedByteBuffer mapping(int segment, long requiredLength) throws IOException {
+        MappedByteBuffer buffer = mappings.get(segment);
+        if (buffer == null || buffer.capacity() < requiredLength) {
+            // segment might have grown since it was mapped last time
+            try (FileChannel channel = FileChannel.open(segmentFile(segment).toPath(), StandardOpenOption.READ)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            if (buffer.capacity() < requiredLength)
+                throw new IllegalStateException("Segment " + segmentFile(segment) + " is truncated: expected at least "
+                                + requiredLength + " bytes, got " + buffer.capacity());
+            mappings.put(segment, buffer);
+        }
+        return buffer;
+    }
+
+    @Override
+    public void put(String key, DataSet dataSet) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        dataSet.save(baos);
+        byte[] raw = baos.toByteArray();
+
+        try {
+            byte[] stored = compress(raw);
+
+            Entry entry;
+            synchronized (this) {
+                ensureWritable(stored.length);
+                long offset = segmentChannel.size();
+                ByteBuffer bb = ByteBuffer.wrap(stored);
+                while (bb.hasRemaining())
+                    segmentChannel.write(bb, offset + bb.position());
+
+                entry = new Entry(currentSegment, offset, stored.length, raw.length, codec);
+                indexStream.writeUTF(key);
+                indexStream.writeInt(entry.segment);
+                indexStream.writeLong(entry.offset);
+                indexStream.writeInt(entry.length);
+                indexStream.writeInt(entry.rawLength);
+                indexStream.writeByte(entry.codec.ordinal());
+                indexStream.flush();
+            }
+
+            Future<byte[]> stale = prefetched.remove(key);
+            if (stale != null)
+                stale.cancel(false);
+            index.put(key, entry);
+            addToOrder(key);
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing key [" + key + "] to segment cache", e);
+        }
+    }
+
+    private byte[] compress(byte[] raw) throws IOException {
+        if (codec == Codec.NONE)
+            return raw;
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(raw.length / 2 + 64);
+        if (codec == Codec.LZ4) {
+            try (OutputStream os = new BlockLZ4CompressorOutputStream(baos)) {
+                os.write(raw);
+            }
+        } else {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try (OutputStream os = new DeflaterOutputStream(baos, deflater)) {
+                os.write(raw);
+            } finally {
+                deflater.end();
+            }
+        }
+        return baos.toByteArray();
+    }
+
+    private void ensureWritable(int length) throws IOException {
+        if (indexStream == null) {
+            if (!cacheDirectory.exists() && !cacheDirectory.mkdirs())
+                throw new IllegalStateException("ERROR: cannot create cache directory: " + cacheDirectory);
+
+            File indexFile = new File(cacheDirectory, INDEX_FILE);
+            boolean exists = indexFile.exists();
+            indexStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile, true)));
+            if (!exists)
+                indexStream.writeInt(INDEX_MAGIC);
+        }
+
+        if (segmentChannel == null)
+            segmentChannel = openSegment(currentSegment);
+
+        // checked after opening, so that the last segment of a reopened cache doesn't grow past segmentSize either
+        while (segmentChannel.size() > 0 && segmentChannel.size() + length > segmentSize) {
+            segmentChannel.close();
+            segmentChannel = null;
+            currentSegment++;
+            segmentChannel = openSegment(currentSegment);
+        }
+    }
+
+    private FileChannel openSegment(int segment) throws IOException {
+        return FileChannel.open(segmentFile(segment).toPath(), StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.READ);
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return index.containsKey(key);
+    }
+
+    /**
+     * @return number of cached minibatches
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Stops read-ahead threads and closes segment and index files
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (executor != null)
+            executor.shutdownNow();
+        prefetched.clear();
+        mappings.clear();
+
+        if (segmentChannel != null) {
+            segmentChannel.close();
+            segmentChannel = null;
+        }
+        if (indexStream != null) {
+            indexStream.close();
+            indexStream = null;
+        }
+    }
+}
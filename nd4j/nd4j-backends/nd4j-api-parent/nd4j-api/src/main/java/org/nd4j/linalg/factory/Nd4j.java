@@ -40,6 +40,7 @@ import lombok.val;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.LineIterator;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.commons.lang3.ArrayUtils;
 import org.bytedeco.javacpp.*;
 import org.bytedeco.javacpp.indexer.*;
@@ -97,9 +98,11 @@ import org.nd4j.linalg.api.memory.BasicMemoryManager;
 import org.nd4j.linalg.api.memory.MemoryManager;
 import org.nd4j.linalg.api.memory.deallocation.DeallocatorService;
 import org.nd4j.common.primitives.Pair;
+import org.nd4j.linalg.storage.MappedNpyFile;
 import org.nd4j.linalg.string.NDArrayStrings;
 import org.nd4j.common.util.ArrayUtil;
 import org.nd4j.linalg.util.LongUtils;
+import org.nd4j.serde.npy.NpySerde;
 import org.nd4j.common.tools.PropertyParser;
 import org.nd4j.versioncheck.VersionCheck;
 
@@ -5931,6 +5934,9 @@ public class Nd4j {
 
     /**
      * Create an INDArray from a given Numpy .npy file.
+     * The whole file is loaded into memory: use {@link MappedNpyFile} for files larger than available memory.
+     * Same as for {@link #createNpyFromByteArray(byte[])} and {@link #createNpyFromInputStream(InputStream)},
+     * the file is parsed by {@link NpySerde#read(InputStream)}, so all of them accept the same data types.
      *
      * @param file the file to create the ndarray from
      * @return the created ndarray
@@ -5939,7 +5945,11 @@ public class Nd4j {
         if (!file.exists())
             throw new IllegalArgumentException("File [" + file.getAbsolutePath() + "] doesn't exist");
 
-        return INSTANCE.createFromNpyFile(file);
+        try (InputStream is = new BufferedInputStream(new FileInputStream(file))) {
+            return NpySerde.read(is);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read npy file [" + file.getAbsolutePath() + "]", e);
+        }
     }
 
     public static Map<String, INDArray> createFromNpzFile(File file) throws Exception{
@@ -5948,43 +5958,48 @@ public class Nd4j {
 
 
     /**
-     * Create a numpy array based on the passed in input stream
+     * Create a numpy array based on the passed in input stream.
+     * Data is streamed straight into the array buffer, see {@link NpySerde#read(InputStream)}
      * @param is the input stream to read
+     * @param lengthToRead number of bytes of the npy content in the stream
      * @return the loaded ndarray
      */
     @SuppressWarnings("unused")
     public static INDArray createNpyFromInputStream(@NonNull InputStream is,long lengthToRead) throws IOException {
-        byte[] content = IOUtils.toByteArray(is,lengthToRead);
-        return createNpyFromByteArray(content);
+        BoundedInputStream bounded = new BoundedInputStream(is, lengthToRead);
+        INDArray ret = NpySerde.read(bounded);
+        IOUtils.skip(bounded, Long.MAX_VALUE);
+        return ret;
     }
 
 
     /**
-     * Create a numpy array based on the passed in input stream
+     * Create a numpy array based on the passed in input stream.
+     * Data is streamed straight into the array buffer, see {@link NpySerde#read(InputStream)}
      * @param is the input stream to read
      * @return the loaded ndarray
      */
     @SuppressWarnings("unused")
     public static INDArray createNpyFromInputStream(@NonNull InputStream is) throws IOException {
-        byte[] content = IOUtils.toByteArray(is);
-        return createNpyFromByteArray(content);
+        return NpySerde.read(is);
     }
 
 
     /**
      * Create an {@link INDArray} from the given numpy input.<br>
      * The numpy input follows the format:
-     * https://docs.scipy.org/doc/numpy-1.14.0/neps/npy-format.html
+     * https://docs.scipy.org/doc/numpy-1.14.0/neps/npy-format.html<br>
+     * Parsed by {@link NpySerde#read(InputStream)}, same as {@link #createFromNpyFile(File)}
      *
      * @param input the input byte array with the npy format
      * @return the equivalent {@link INDArray}
      */
     public static INDArray createNpyFromByteArray(@NonNull byte[] input) {
-        ByteBuffer byteBuffer = ByteBuffer.allocateDirect(input.length);
-        byteBuffer.put(input);
-        ((Buffer) byteBuffer).rewind();
-        Pointer pointer = new Pointer(byteBuffer);
-        return createFromNpyPointer(pointer);
+        try {
+            return NpySerde.read(new ByteArrayInputStream(input));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid npy content", e);
+        }
     }
 
     /**
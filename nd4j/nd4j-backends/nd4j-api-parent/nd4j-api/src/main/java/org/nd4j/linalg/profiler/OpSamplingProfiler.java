@@ -0,0 +1,348 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.linalg.profiler;
+
+import lombok.extern.slf4j.Slf4j;
+import org.nd4j.common.config.ND4JSystemProperties;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.profiler.data.OpSampleStatistics;
+import org.nd4j.linalg.profiler.data.primitives.TimeHistogram;
+
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Sampling op profiler, with low enough overhead to be left enabled in production.<br>
+ * Unlike {@link ProfilerConfig#isCheckElapsedTime()} or {@link ProfilerConfig#isNativeStatistics()}, only 1 in N op
+ * executions (on average - the interval between samples is randomized, to avoid always sampling the same op of a
+ * repeated sequence of ops) is timed. For other ops, the only cost is decrementing a thread local counter.<br>
+ * Samples are recorded into per-thread {@link TimeHistogram}s (no locks and no contention between threads), keyed by op
+ * name, input shapes and data type. The hottest ops by total time, merged over all threads, are available using
+ * {@link #getHotOps(int)} and {@link #hotOpsReport(int)}, and can be logged periodically using
+ * {@link #startReporting(long, int)}.<br>
+ * <br>
+ * Enable using {@link org.nd4j.linalg.api.ops.executioner.OpExecutioner#setProfilingConfig(ProfilerConfig)} with
+ * {@link ProfilerConfig#getOpSamplingRate()} > 0, or from startup using the
+ * {@link ND4JSystemProperties#OP_SAMPLING_RATE} system property. Sampling 1 in {@link #DEFAULT_SAMPLING_RATE} ops keeps
+ * the overhead well below 1%, while still collecting thousands of samples per minute for a typical training job.
+ */
+@Slf4j
+public class OpSamplingProfiler {
+
+    public static final int DEFAULT_SAMPLING_RATE = 1000;
+    public static final int DEFAULT_TOP_K = 10;
+    /** Returned by {@link #sampleStart()} when the current op execution should not be timed */
+    public static final long NOT_SAMPLED = Long.MIN_VALUE;
+    /** Maximum number of distinct keys per thread; further input shapes are recorded under "*" for the op */
+    public static final int MAX_KEYS_PER_THREAD = 1024;
+
+    private static final OpSamplingProfiler INSTANCE = new OpSamplingProfiler();
+
+    private volatile int samplingRate;
+    //Incremented on reset: per-thread samples from older generations are discarded by the owning thread
+    private volatile int generation;
+    private final Queue<ThreadSamples> threads = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<ThreadSamples> threadSamples = ThreadLocal.withInitial(this::newThreadSamples);
+    private ScheduledExecutorService reporter;
+
+    protected OpSamplingProfiler() {
+        samplingRate = Math.max(0, Integer.parseInt(System.getProperty(ND4JSystemProperties.OP_SAMPLING_RATE, "0")));
+        long interval = Long.parseLong(System.getProperty(ND4JSystemProperties.OP_SAMPLING_REPORT_INTERVAL, "0"));
+        if (samplingRate > 0 && interval > 0) {
+            startReporting(interval,
+                    Integer.parseInt(System.getProperty(ND4JSystemProperties.OP_SAMPLING_TOP_K, String.valueOf(DEFAULT_TOP_K))));
+        }
+    }
+
+    public static OpSamplingProfiler getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return Average number of op executions per sample, or 0 if sampling is disabled
+     */
+    public int getSamplingRate() {
+        return samplingRate;
+    }
+
+    /**
+     * Set the sampling rate: on average, 1 in samplingRate op executions are timed
+     *
+     * @param samplingRate Average number of op executions per sample. 0 to disable sampling
+     */
+    public void setSamplingRate(int samplingRate) {
+        if (samplingRate < 0)
+            throw new IllegalArgumentException("Sampling rate must be >= 0, got " + samplingRate);
+        this.samplingRate = samplingRate;
+    }
+
+    public boolean isEnabled() {
+        return samplingRate > 0;
+    }
+
+    /**
+     * Called before each op execution
+     *
+     * @return Start time of the op execution if it should be timed, {@link #NOT_SAMPLED} otherwise
+     */
+    public long sampleStart() {
+        int rate = samplingRate;
+        if (rate <= 0)
+            return NOT_SAMPLED;
+
+        ThreadSamples ts = threadSamples.get();
+        if (ts.rate != rate) {
+            ts.rate = rate;
+            ts.countdown = nextInterval(rate);
+        }
+        if (--ts.countdown > 0)
+            return NOT_SAMPLED;
+        ts.countdown = nextInterval(rate);
+        return System.nanoTime();
+    }
+
+    private static int nextInterval(int rate) {
+        //Uniform in [1, 2 * rate - 1]: mean interval of rate executions
+        return rate == 1 ? 1 : 1 + ThreadLocalRandom.current().nextInt(2 * rate - 1);
+    }
+
+    /**
+     * Record a sampled op execution
+     *
+     * @param opName    Name of the op
+     * @param inputs    Op inputs, used for the input shapes and data type. May contain nulls
+     * @param startTime Start time, as returned by {@link #sampleStart()}
+     */
+    public void record(String opName, List<INDArray> inputs, long startTime) {
+        long time = System.nanoTime() - startTime;
+
+        StringBuilder shapes = new StringBuilder();
+        DataType dataType = null;
+        if (inputs != null) {
+            for (INDArray arr : inputs) {
+                if (arr == null)
+                    continue;
+                if (shapes.length() > 0)
+                    shapes.append(',');
+                shapes.append(Arrays.toString(arr.shape()));
+                if (dataType == null)
+                    dataType = arr.dataType();
+            }
+        }
+        record(opName, shapes.toString(), dataType, time);
+    }
+
+    /**
+     * Record a sampled op execution
+     *
+     * @param opName      Name of the op
+     * @param inputShapes Shapes of the op inputs
+     * @param dataType    Data type of the (first) op input. May be null
+     * @param time        Duration of the op execution, in nanoseconds
+     */
+    public void record(String opName, String inputShapes, DataType dataType, long time) {
+        ThreadSamples ts = threadSamples.get();
+        int gen = generation;
+        if (ts.generation != gen) {
+            ts.entries.clear();
+            ts.generation = gen;
+        }
+
+        String key = opName + '|' + inputShapes + '|' + dataType;
+        Entry e = ts.entries.get(key);
+        if (e == null) {
+            if (ts.entries.size() >= MAX_KEYS_PER_THREAD) {
+                inputShapes = "*";
+                key = opName + "|*|" + dataType;
+                e = ts.entries.get(key);
+            }
+            if (e == null) {
+                e = new Entry(opName, inputShapes, dataType);
+                ts.entries.put(key, e);
+            }
+        }
+        e.histogram.record(time);
+    }
+
+    /**
+     * Discard all samples recorded so far
+     */
+    public synchronized void reset() {
+        generation++;
+    }
+
+    /**
+     * Get the sampled ops with the highest total time, merged over all threads
+     *
+     * @param k Maximum number of ops to return
+     * @return Statistics for the top k ops, by decreasing total time
+     */
+    public List<OpSampleStatistics> getHotOps(int k) {
+        int gen = generation;
+        Map<String, Entry> keys = new HashMap<>();
+        Map<String, long[]> buckets = new HashMap<>();
+        Map<String, long[]> totals = new HashMap<>();   //count, total, max
+
+        Iterator<ThreadSamples> iter = threads.iterator();
+        while (iter.hasNext()) {
+            ThreadSamples ts = iter.next();
+            if (ts.generation != gen) {
+                if (ts.thread.get() == null || !ts.thread.get().isAlive())
+                    iter.remove();
+                continue;
+            }
+            for (Map.Entry<String, Entry> me : ts.entries.entrySet()) {
+                Entry e = me.getValue();
+                keys.putIfAbsent(me.getKey(), e);
+                e.histogram.addTo(buckets.computeIfAbsent(me.getKey(), x -> new long[TimeHistogram.NUM_BUCKETS]));
+                long[] t = totals.computeIfAbsent(me.getKey(), x -> new long[3]);
+                t[0] += e.histogram.getCount();
+                t[1] += e.histogram.getTotal();
+                t[2] = Math.max(t[2], e.histogram.getMax());
+            }
+        }
+
+        int rate = Math.max(1, samplingRate);
+        List<OpSampleStatistics> out = new ArrayList<>(keys.size());
+        for (Map.Entry<String, Entry> me : keys.entrySet()) {
+            long[] t = totals.get(me.getKey());
+            if (t[0] == 0)
+                continue;
+            long[] b = buckets.get(me.getKey());
+            Entry e = me.getValue();
+            out.add(OpSampleStatistics.builder()
+                    .opName(e.opName)
+                    .inputShapes(e.inputShapes)
+                    .dataType(e.dataType)
+                    .samples(t[0])
+                    .sampledTime(t[1])
+                    .estimatedTotalTime(t[1] * rate)
+                    .meanTime(t[1] / t[0])
+                    .p50Time(Math.min(t[2], TimeHistogram.percentile(b, 50)))
+                    .p99Time(Math.min(t[2], TimeHistogram.percentile(b, 99)))
+                    .maxTime(t[2])
+                    .build());
+        }
+        out.sort((a, b) -> Long.compare(b.getSampledTime(), a.getSampledTime()));
+        return out.size() > k ? new ArrayList<>(out.subList(0, k)) : out;
+    }
+
+    /**
+     * @return Table of the top k ops by total time, as per {@link #getHotOps(int)}. Times are in microseconds
+     */
+    public String hotOpsReport(int k) {
+        List<OpSampleStatistics> hotOps = getHotOps(Integer.MAX_VALUE);
+        long sampledTotal = 1;
+        for (OpSampleStatistics s : hotOps) {
+            sampledTotal += s.getSampledTime();
+        }
+        if (hotOps.size() > k)
+            hotOps = hotOps.subList(0, k);
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("Sampled op profile: top ").append(hotOps.size()).append(" ops by total time, sampling 1 in ")
+                .append(Math.max(1, samplingRate)).append(" op executions (times in microseconds)\n");
+        sb.append(String.format("%-24s %-8s %10s %14s %7s %10s %10s %10s %10s  %s%n", "Op", "DataType", "Samples",
+                "Est. Total", "%", "Mean", "p50", "p99", "Max", "Input Shapes"));
+        for (OpSampleStatistics s : hotOps) {
+            sb.append(String.format("%-24s %-8s %10d %14.1f %7.2f %10.1f %10.1f %10.1f %10.1f  %s%n", s.getOpName(),
+                    s.getDataType(), s.getSamples(), s.getEstimatedTotalTime() / 1e3,
+                    100.0 * s.getSampledTime() / sampledTotal, s.getMeanTime() / 1e3, s.getP50Time() / 1e3,
+                    s.getP99Time() / 1e3, s.getMaxTime() / 1e3, s.getInputShapes()));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Log the top k ops by total time (as per {@link #hotOpsReport(int)}) periodically, from a background thread.
+     * Replaces any previously started periodic reporting
+     *
+     * @param intervalMillis Interval between reports, in milliseconds
+     * @param k              Number of ops to report
+     */
+    public synchronized void startReporting(long intervalMillis, int k) {
+        if (intervalMillis <= 0)
+            throw new IllegalArgumentException("Reporting interval must be > 0, got " + intervalMillis);
+        stopReporting();
+        reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "OpSamplingProfiler-reporter");
+            t.setDaemon(true);
+            return t;
+        });
+        reporter.scheduleAtFixedRate(() -> {
+            try {
+                if (!getHotOps(1).isEmpty())
+                    log.info(hotOpsReport(k));
+            } catch (Throwable t) {
+                log.warn("Error reporting sampled op statistics", t);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop periodic reporting started with {@link #startReporting(long, int)}, if any
+     */
+    public synchronized void stopReporting() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+    }
+
+    public synchronized boolean isReporting() {
+        return reporter != null;
+    }
+
+    private ThreadSamples newThreadSamples() {
+        ThreadSamples ts = new ThreadSamples(Thread.currentThread(), generation);
+        threads.add(ts);
+        return ts;
+    }
+
+    private static class ThreadSamples {
+        private final WeakReference<Thread> thread;
+        //Written only by the owning thread
+        private volatile int generation;
+        private int rate;
+        private int countdown;
+        private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+        private ThreadSamples(Thread thread, int generation) {
+            this.thread = new WeakReference<>(thread);
+            this.generation = generation;
+        }
+    }
+
+    private static class Entry {
+        private final String opName;
+        private final String inputShapes;
+        private final DataType dataType;
+        private final TimeHistogram histogram = new TimeHistogram();
+
+        private Entry(String opName, String inputShapes, DataType dataType) {
+            this.opName = opName;
+            this.inputShapes = inputShapes;
+            this.dataType = dataType;
+        }
+    }
+}
@@ -47,4 +47,24 @@ public class ProfilerConfig {
      * PLEASE NOTE: everything will gets slower
      */
     @Builder.Default private boolean checkLocality = false;
+
+    /**
+     * If > 0, enables the {@link OpSamplingProfiler}: on average, 1 in opSamplingRate op executions are timed.
+     * Unlike {@link #checkElapsedTime}, the overhead is low enough to leave this enabled in production
+     * (see {@link OpSamplingProfiler#DEFAULT_SAMPLING_RATE}). 0 disables the sampler.<br>
+     * Default (-1) leaves the sampler as is, so sampling enabled via the
+     * {@link org.nd4j.common.config.ND4JSystemProperties#OP_SAMPLING_RATE} isn't turned off by unrelated profiler configs.
+     * Other opSampling* settings are applied only if opSamplingRate >= 0
+     */
+    @Builder.Default private int opSamplingRate = -1;
+
+    /**
+     * If > 0 (and sampling is enabled): log the hottest sampled ops every opSamplingReportInterval milliseconds
+     */
+    @Builder.Default private long opSamplingReportInterval = 0;
+
+    /**
+     * Number of ops to include in the periodic sampled op reports
+     */
+    @Builder.Default private int opSamplingTopK = OpSamplingProfiler.DEFAULT_TOP_K;
 }
@@ -0,0 +1,54 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.linalg.profiler.data;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.nd4j.linalg.api.buffer.DataType;
+
+/**
+ * Statistics for one op (op name, input shapes and data type) sampled by the
+ * {@link org.nd4j.linalg.profiler.OpSamplingProfiler}, merged over all threads. All times are in nanoseconds.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OpSampleStatistics {
+
+    private String opName;
+    /** Shapes of the op inputs, for example "[32, 784],[784, 100]" */
+    private String inputShapes;
+    private DataType dataType;
+
+    /** Number of sampled executions */
+    private long samples;
+    /** Total time of the sampled executions */
+    private long sampledTime;
+    /** Estimated total time of all executions: sampled time multiplied by the sampling rate */
+    private long estimatedTotalTime;
+    private long meanTime;
+    private long p50Time;
+    private long p99Time;
+    private long maxTime;
+}
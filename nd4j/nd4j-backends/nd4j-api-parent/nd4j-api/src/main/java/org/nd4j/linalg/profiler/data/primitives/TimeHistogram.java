@@ -0,0 +1,130 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.linalg.profiler.data.primitives;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-linear histogram of durations (in nanoseconds), in the style of HdrHistogram: each power of two range is split
+ * into {@link #SUB_BUCKETS} equal width buckets, so recorded values are accurate to within 12.5% over the whole range,
+ * with a fixed memory footprint. Values above {@link #MAX_VALUE} (about 36 minutes) are recorded as MAX_VALUE.<br>
+ * Single writer: only one thread may call {@link #record(long)}, without any locking or CAS, while any thread can read
+ * the histogram concurrently (for example, to merge the histograms of multiple threads using {@link #addTo(long[])})
+ */
+public class TimeHistogram {
+    public static final int SUB_BUCKET_BITS = 3;
+    public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    public static final long MAX_VALUE = (1L << 41) - 1;
+    public static final int NUM_BUCKETS = bucketIndex(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record the specified value. Must only be called by the thread owning this histogram
+     *
+     * @param value Duration in nanoseconds
+     */
+    public void record(long value) {
+        value = Math.max(0, Math.min(value, MAX_VALUE));
+        int idx = bucketIndex(value);
+        //Single writer: plain read + ordered write is enough, no need for (much more expensive) atomic increments
+        counts.lazySet(idx, counts.get(idx) + 1);
+        total.lazySet(total.get() + value);
+        if (value > max.get())
+            max.lazySet(value);
+        count.lazySet(count.get() + 1);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getTotal() {
+        return total.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Add the bucket counts of this histogram to the specified array
+     *
+     * @param bucketCounts Array of length {@link #NUM_BUCKETS}
+     */
+    public void addTo(long[] bucketCounts) {
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            bucketCounts[i] += counts.get(i);
+        }
+    }
+
+    /**
+     * @return Index of the bucket for the specified (non-negative) value
+     */
+    public static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return Highest value that is recorded in the specified bucket
+     */
+    public static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = index % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return ((SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS)) + width - 1;
+    }
+
+    /**
+     * Get the specified percentile from the bucket counts of one or more histograms
+     *
+     * @param bucketCounts Bucket counts, as per {@link #addTo(long[])}
+     * @param percentile   Percentile, 0 to 100
+     * @return Value at the percentile (upper bound of the bucket), or 0 if no values were recorded
+     */
+    public static long percentile(long[] bucketCounts, double percentile) {
+        long n = 0;
+        for (long c : bucketCounts) {
+            n += c;
+        }
+        if (n == 0)
+            return 0;
+
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * n));
+        long cumulative = 0;
+        for (int i = 0; i < bucketCounts.length; i++) {
+            cumulative += bucketCounts[i];
+            if (cumulative >= target)
+                return bucketUpperBound(i);
+        }
+        return MAX_VALUE;
+    }
+}
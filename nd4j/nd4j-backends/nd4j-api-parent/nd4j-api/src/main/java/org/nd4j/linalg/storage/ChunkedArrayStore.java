@@ -0,0 +1,401 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.linalg.storage;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.memory.MemoryWorkspace;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.cache.AdaptiveCache;
+import org.nd4j.linalg.cache.CacheMetricsRegistry;
+import org.nd4j.linalg.cache.CacheStats;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.INDArrayIndex;
+import org.nd4j.linalg.indexing.IntervalIndex;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+import org.nd4j.linalg.indexing.NDArrayIndexAll;
+import org.nd4j.linalg.indexing.PointIndex;
+import org.nd4j.serde.json.JsonMappers;
+import org.nd4j.serde.npy.NpySerde;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Chunked on-disk array store, similar to Zarr: the array is split into a regular grid of chunks, each chunk stored
+ * as a separate .npy file (named after its grid coordinates, e.g. {@code 3.0.npy}) next to {@value #METADATA_FILE}
+ * with shape, chunk shape and data type.<br>
+ * <br>
+ * Chunks are loaded lazily, only when a region overlapping them is requested, and kept in a byte-budgeted
+ * {@link AdaptiveCache}, so arrays much larger than memory can be read region by region:
+ * <pre>
+ * ChunkedArrayStore store = ChunkedArrayStore.open(new File("/data/features"));
+ * INDArray rows = store.getRows(100_000, 100_256);
+ * INDArray column = store.get(NDArrayIndex.all(), NDArrayIndex.point(3));
+ * </pre>
+ * Chunks that were never written read as zeros. Reads are thread safe, writes via {@link #put(long[], INDArray)}
+ * must not run concurrently with other reads or writes.
+ */
+@Slf4j
+public class ChunkedArrayStore implements Closeable {
+    public static final String METADATA_FILE = "store.json";
+    public static final long DEFAULT_CACHE_BYTES = 256L * 1024 * 1024;
+
+    /**
+     * Contents of {@value #METADATA_FILE}
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Metadata {
+        private int formatVersion;
+        private DataType dataType;
+        private long[] shape;
+        private long[] chunks;
+    }
+
+    @Getter
+    private final File directory;
+    private final Metadata metadata;
+    private final AdaptiveCache<String, INDArray> chunkCache;
+
+    protected ChunkedArrayStore(File directory, Metadata metadata, long cacheBytes) {
+        this.directory = directory;
+        this.metadata = metadata;
+        this.chunkCache = AdaptiveCache.<String, INDArray>builder()
+                .name("chunkedArrayStore:" + directory.getAbsolutePath())
+                .maximumBytes(cacheBytes)
+                .weigher(chunk -> Math.max(1, chunk.length() * chunk.dataType().width()))
+                .build();
+    }
+
+    /**
+     * Creates empty store in given directory
+     *
+     * @param shape      shape of the whole array
+     * @param chunkShape shape of a single chunk, same rank as shape
+     */
+    public static ChunkedArrayStore create(@NonNull File directory, @NonNull DataType dataType, @NonNull long[] shape,
+                    @NonNull long[] chunkShape) throws IOException {
+        if (shape.length == 0 || shape.length != chunkShape.length)
+            throw new IllegalArgumentException("Shape and chunk shape must have the same non-zero rank, got "
+                            + Arrays.toString(shape) + " and " + Arrays.toString(chunkShape));
+        for (int d = 0; d < shape.length; d++) {
+            if (shape[d] <= 0 || chunkShape[d] <= 0)
+                throw new IllegalArgumentException("Shape and chunk shape must be positive, got "
+                                + Arrays.toString(shape) + " and " + Arrays.toString(chunkShape));
+        }
+
+        File metadataFile = new File(directory, METADATA_FILE);
+        if (metadataFile.exists())
+            throw new IllegalStateException("Store already exists in [" + directory.getAbsolutePath() + "]");
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Unable to create directory [" + directory.getAbsolutePath() + "]");
+
+        Metadata metadata = new Metadata(1, dataType, shape.clone(), chunkShape.clone());
+        JsonMappers.getMapper().writeValue(metadataFile, metadata);
+        return new ChunkedArrayStore(directory, metadata, DEFAULT_CACHE_BYTES);
+    }
+
+    /**
+     * Creates store in given directory, holding a copy of given array
+     */
+    public static ChunkedArrayStore fromArray(@NonNull File directory, @NonNull INDArray array, @NonNull long[] chunkShape)
+                    throws IOException {
+        ChunkedArrayStore store = create(directory, array.dataType(), array.shape(), chunkShape);
+        store.put(new long[array.rank()], array);
+        return store;
+    }
+
+    public static ChunkedArrayStore open(@NonNull File directory) throws IOException {
+        return open(directory, DEFAULT_CACHE_BYTES);
+    }
+
+    /**
+     * Opens existing store
+     *
+     * @param cacheBytes memory budget for loaded chunks
+     */
+    public static ChunkedArrayStore open(@NonNull File directory, long cacheBytes) throws IOException {
+        File metadataFile = new File(directory, METADATA_FILE);
+        if (!metadataFile.isFile())
+            throw new IllegalArgumentException("No chunked array store found in [" + directory.getAbsolutePath() + "]");
+
+        Metadata metadata = JsonMappers.getMapper().readValue(metadataFile, Metadata.class);
+        return new ChunkedArrayStore(directory, metadata, cacheBytes);
+    }
+
+    public DataType dataType() {
+        return metadata.getDataType();
+    }
+
+    public long[] shape() {
+        return metadata.getShape().clone();
+    }
+
+    public long[] chunkShape() {
+        return metadata.getChunks().clone();
+    }
+
+    public int rank() {
+        return metadata.getShape().length;
+    }
+
+    public long size(int dimension) {
+        return metadata.getShape()[dimension];
+    }
+
+    /**
+     * Reads region [from, to) of the array. Only chunks overlapping the region are loaded.
+     * Returned array is always detached from workspaces
+     */
+    public INDArray get(@NonNull long[] from, @NonNull long[] to) {
+        checkRegion(from, to);
+
+        long[] regionShape = new long[rank()];
+        for (int d = 0; d < rank(); d++)
+            regionShape[d] = to[d] - from[d];
+
+        try (MemoryWorkspace ignored = Nd4j.getMemoryManager().scopeOutOfWorkspaces()) {
+            INDArray ret = Nd4j.create(dataType(), regionShape, 'c');
+            for (long[] chunk : overlappingChunks(from, to)) {
+                INDArray data = loadChunk(chunk, false);
+                if (data == null)
+                    continue;
+
+                INDArrayIndex[][] indices = intersection(chunk, from, to);
+                ret.get(indices[0]).assign(data.get(indices[1]));
+            }
+            return ret;
+        }
+    }
+
+    /**
+     * Reads rows [from, to) along dimension 0
+     */
+    public INDArray getRows(long from, long to) {
+        long[] regionFrom = new long[rank()];
+        long[] regionTo = shape();
+        regionFrom[0] = from;
+        regionTo[0] = to;
+        return get(regionFrom, regionTo);
+    }
+
+    /**
+     * Reads region of the array described by given indices. Supported are {@link NDArrayIndex#all()},
+     * {@link NDArrayIndex#point(long)} (dimension is removed from the result) and
+     * {@link NDArrayIndex#interval(long, long)} with unit stride. Missing trailing indices mean "all"
+     */
+    public INDArray get(@NonNull INDArrayIndex... indices) {
+        if (indices.length > rank())
+            throw new IllegalArgumentException("Got " + indices.length + " indices for array of rank " + rank());
+
+        long[] from = new long[rank()];
+        long[] to = shape();
+        List<Long> resultShape = new ArrayList<>();
+        for (int d = 0; d < rank(); d++) {
+            INDArrayIndex index = d < indices.length ? indices[d] : NDArrayIndex.all();
+            if (index instanceof NDArrayIndexAll) {
+                resultShape.add(to[d]);
+            } else if (index instanceof PointIndex) {
+                long point = index.offset() < 0 ? index.offset() + size(d) : index.offset();
+                from[d] = point;
+                to[d] = point + 1;
+            } else if (index instanceof IntervalIndex) {
+                IntervalIndex interval = (IntervalIndex) index;
+                if (interval.stride() != 1)
+                    throw new IllegalArgumentException("Only unit stride intervals are supported, got " + interval);
+                from[d] = interval.offset();
+                to[d] = interval.isInclusive() ? interval.end() + 1 : interval.end();
+                resultShape.add(to[d] - from[d]);
+            } else {
+                throw new IllegalArgumentException("Unsupported index type: " + index.getClass().getSimpleName());
+            }
+        }
+
+        INDArray region = get(from, to);
+        long[] shape = new long[resultShape.size()];
+        for (int i = 0; i < shape.length; i++)
+            shape[i] = resultShape.get(i);
+        return shape.length == rank() ? region : region.reshape(shape);
+    }
+
+    /**
+     * Writes given data into the array, starting at given offset. Chunks touched by the write are rewritten
+     */
+    public void put(@NonNull long[] offset, @NonNull INDArray data) throws IOException {
+        if (data.rank() != rank())
+            throw new IllegalArgumentException("Expected data of rank " + rank() + ", got " + data.rank());
+        if (data.dataType() != dataType())
+            data = data.castTo(dataType());
+
+        long[] to = new long[rank()];
+        for (int d = 0; d < rank(); d++)
+            to[d] = offset[d] + data.size(d);
+        checkRegion(offset, to);
+
+        for (long[] chunk : overlappingChunks(offset, to)) {
+            INDArray target = loadChunk(chunk, true);
+            INDArrayIndex[][] indices = intersection(chunk, offset, to);
+            target.get(indices[1]).assign(data.get(indices[0]));
+            writeChunk(chunk, target);
+        }
+    }
+
+    /**
+     * @return statistics of the chunk cache
+     */
+    public CacheStats cacheStats() {
+        return chunkCache.stats();
+    }
+
+    /**
+     * Drops all loaded chunks
+     */
+    @Override
+    public void close() {
+        chunkCache.invalidateAll();
+        CacheMetricsRegistry.getInstance().unregister(chunkCache);
+    }
+
+    private void checkRegion(long[] from, long[] to) {
+        if (from.length != rank() || to.length != rank())
+            throw new IllegalArgumentException("Expected region of rank " + rank() + ", got " + Arrays.toString(from)
+                            + " - " + Arrays.toString(to));
+        for (int d = 0; d < rank(); d++) {
+            if (from[d] < 0 || to[d] > size(d) || from[d] >= to[d])
+                throw new IllegalArgumentException("Invalid region " + Arrays.toString(from) + " - " + Arrays.toString(to)
+                                + " for array of shape " + Arrays.toString(metadata.getShape()));
+        }
+    }
+
+    /**
+     * Returns grid coordinates of all chunks overlapping region [from, to)
+     */
+    private List<long[]> overlappingChunks(long[] from, long[] to) {
+        long[] chunks = metadata.getChunks();
+        long[] first = new long[rank()];
+        long[] last = new long[rank()];
+        for (int d = 0; d < rank(); d++) {
+            first[d] = from[d] / chunks[d];
+            last[d] = (to[d] - 1) / chunks[d];
+        }
+
+        List<long[]> ret = new ArrayList<>();
+        long[] current = first.clone();
+        while (true) {
+            ret.add(current.clone());
+
+            int d = rank() - 1;
+            while (d >= 0 && current[d] == last[d]) {
+                current[d] = first[d];
+                d--;
+            }
+            if (d < 0)
+                return ret;
+            current[d]++;
+        }
+    }
+
+    /**
+     * Returns indices of the overlap between chunk and region [from, to): first relative to the region, second
+     * relative to the chunk
+     */
+    private INDArrayIndex[][] intersection(long[] chunk, long[] from, long[] to) {
+        long[] chunks = metadata.getChunks();
+        INDArrayIndex[][] ret = new INDArrayIndex[2][rank()];
+        for (int d = 0; d < rank(); d++) {
+            long chunkStart = chunk[d] * chunks[d];
+            long lo = Math.max(from[d], chunkStart);
+            long hi = Math.min(to[d], chunkStart + chunks[d]);
+            ret[0][d] = NDArrayIndex.interval(lo - from[d], hi - from[d]);
+            ret[1][d] = NDArrayIndex.interval(lo - chunkStart, hi - chunkStart);
+        }
+        return ret;
+    }
+
+    private File chunkFile(long[] chunk) {
+        StringBuilder sb = new StringBuilder();
+        for (int d = 0; d < chunk.length; d++) {
+            if (d > 0)
+                sb.append('.');
+            sb.append(chunk[d]);
+        }
+        return new File(directory, sb.append(".npy").toString());
+    }
+
+    /**
+     * Returns chunk at given grid coordinates. Edge chunks are stored cropped to the array shape
+     *
+     * @param create if true, missing chunk is created filled with zeros. Otherwise null is returned for missing chunks
+     */
+    private INDArray loadChunk(long[] chunk, boolean create) {
+        File file = chunkFile(chunk);
+        if (!create && !file.isFile())
+            return null;
+
+        return chunkCache.get(file.getName(), name -> {
+            // cached chunks outlive any workspace scope of the caller (i.e. cyclic workspace of AsyncDataSetIterator)
+            try (MemoryWorkspace ignored = Nd4j.getMemoryManager().scopeOutOfWorkspaces()) {
+                if (!file.isFile()) {
+                    long[] chunks = metadata.getChunks();
+                    long[] shape = new long[rank()];
+                    for (int d = 0; d < rank(); d++)
+                        shape[d] = Math.min(chunks[d], size(d) - chunk[d] * chunks[d]);
+                    return Nd4j.create(dataType(), shape, 'c');
+                }
+
+                try (InputStream is = new BufferedInputStream(new FileInputStream(file))) {
+                    return NpySerde.read(is);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to read chunk [" + file.getAbsolutePath() + "]", e);
+                }
+            }
+        });
+    }
+
+    private void writeChunk(long[] chunk, INDArray data) throws IOException {
+        File file = chunkFile(chunk);
+        File tmp = new File(directory, file.getName() + ".tmp");
+        try (OutputStream os = new BufferedOutputStream(new FileOutputStream(tmp))) {
+            NpySerde.write(data, os);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
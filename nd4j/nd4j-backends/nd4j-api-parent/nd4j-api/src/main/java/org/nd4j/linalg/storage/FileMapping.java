@@ -0,0 +1,112 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.linalg.storage;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.bytedeco.javacpp.BytePointer;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.memory.pointers.PagedPointer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.serde.npy.NpyHeader;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read-only memory mapping of a file: each array created via {@link #wrap(long, NpyHeader)} points straight into
+ * its own read-only mapped region. The file is opened for reading only, so read-only files and mounts are supported,
+ * and the file can't be modified through the arrays.<br>
+ * Mapped regions are released once the mapping is closed and its arrays are garbage collected, so the arrays must not
+ * be used after {@link #close()}.
+ */
+class FileMapping implements Closeable {
+    @Getter
+    private final File file;
+    @Getter
+    private final long length;
+    private FileChannel channel;
+    // mapped regions stay valid while referenced: keep them until close
+    private final List<MappedByteBuffer> regions = new ArrayList<>();
+
+    FileMapping(@NonNull File file) throws IOException {
+        if (!file.isFile())
+            throw new IllegalArgumentException("File [" + file.getAbsolutePath() + "] doesn't exist");
+        if (file.length() == 0)
+            throw new IllegalArgumentException("File [" + file.getAbsolutePath() + "] is empty");
+
+        this.file = file;
+        this.length = file.length();
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    }
+
+    /**
+     * Creates array backed by a read-only mapped region starting at given file offset. The buffer is marked constant:
+     * it is owned by the mapping, and in-place modifications aren't possible (the region is mapped without write access)
+     */
+    synchronized INDArray wrap(long offset, NpyHeader header) throws IOException {
+        if (channel == null)
+            throw new IllegalStateException("Mapping of [" + file.getAbsolutePath() + "] was already closed");
+        long bytes = header.dataLength();
+        if (offset + bytes > length)
+            throw new IllegalStateException("File [" + file.getAbsolutePath() + "] is truncated: expected "
+                            + (offset + bytes) + " bytes, got " + length);
+        if (bytes > Integer.MAX_VALUE)
+            throw new IllegalStateException("Array of " + bytes + " bytes in [" + file.getAbsolutePath() + "] exceeds "
+                            + "the 2 GB limit of read-only mappings: split it into several arrays, for example with "
+                            + "ChunkedArrayStore, or read it with NpySerde.read()");
+        if (bytes == 0)
+            return Nd4j.create(header.getDataType(), header.getShape(), header.order());
+
+        MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, offset, bytes);
+        regions.add(region);
+
+        long elements = header.length();
+        PagedPointer pointer = new PagedPointer(new BytePointer(region).address());
+        pointer.capacity(elements);
+        pointer.limit(elements);
+
+        DataBuffer buffer = Nd4j.createBuffer(pointer, elements, header.getDataType());
+        buffer.setConstant(true);
+        return Nd4j.create(buffer, header.getShape(), Nd4j.getStrides(header.getShape(), header.order()), 0, header.order());
+    }
+
+    @Override
+    public synchronized void close() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to close [" + file.getAbsolutePath() + "]", e);
+            } finally {
+                channel = null;
+                regions.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.linalg.storage;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.serde.npy.NpyHeader;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteOrder;
+
+/**
+ * Memory mapped numpy .npy file. Instead of reading the payload into memory, the data region of the file is mapped
+ * read-only and wrapped directly as a DataBuffer, so arrays larger than available RAM can be used, with pages loaded
+ * on demand. The file is only opened for reading, so files on read-only mounts can be mapped too:
+ * <pre>
+ * try (MappedNpyFile npy = MappedNpyFile.open(new File("features.npy"))) {
+ *     INDArray features = npy.getArray();
+ *     INDArray batch = features.get(NDArrayIndex.interval(0, 256), NDArrayIndex.all()).dup();
+ * }
+ * </pre>
+ * Please note:<br>
+ * - the array is read-only: its memory is mapped without write access, so in-place ops on it (or its views) crash
+ *   the process instead of modifying the file. Use {@link INDArray#dup()} to get a regular copy<br>
+ * - the array (and any views of it) must not be used after {@link #close()}, and this object must stay reachable
+ *   while the array is used<br>
+ * - only files in native byte order can be mapped, and the array data can't be larger than 2 GB
+ */
+public class MappedNpyFile implements Closeable {
+    private final FileMapping mapping;
+    @Getter
+    private final NpyHeader header;
+    @Getter
+    private final INDArray array;
+
+    protected MappedNpyFile(FileMapping mapping, NpyHeader header) throws IOException {
+        this.mapping = mapping;
+        this.header = header;
+        this.array = mapping.wrap(header.getDataOffset(), header);
+    }
+
+    /**
+     * Memory maps given .npy file
+     */
+    public static MappedNpyFile open(@NonNull File file) throws IOException {
+        NpyHeader header;
+        try (InputStream is = new BufferedInputStream(new FileInputStream(file))) {
+            header = NpyHeader.read(is);
+        }
+        checkByteOrder(header, file.getAbsolutePath());
+
+        FileMapping mapping = new FileMapping(file);
+        try {
+            return new MappedNpyFile(mapping, header);
+        } catch (IOException | RuntimeException e) {
+            mapping.close();
+            throw e;
+        }
+    }
+
+    public File getFile() {
+        return mapping.getFile();
+    }
+
+    /**
+     * Unmaps the file. The array must not be used afterwards
+     */
+    @Override
+    public void close() {
+        mapping.close();
+    }
+
+    static void checkByteOrder(NpyHeader header, String name) {
+        if (header.getDataType().width() > 1 && header.getByteOrder() != ByteOrder.nativeOrder())
+            throw new IllegalStateException("Array [" + name + "] is stored in " + header.getByteOrder()
+                            + " byte order and can't be memory mapped on this platform, use NpySerde.read() instead");
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.linalg.storage;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.serde.npy.NpyHeader;
+import org.nd4j.serde.npy.NpySerde;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Memory mapped numpy .npz archive.<br>
+ * Entries stored without compression ({@code numpy.savez}) are wrapped directly from the mapped file, same as
+ * {@link MappedNpyFile}. Compressed entries ({@code numpy.savez_compressed}) can't be mapped, so they are
+ * decompressed into regular arrays with {@link NpySerde}, one at a time.<br>
+ * Same restrictions as for {@link MappedNpyFile} apply: mapped arrays are read-only, up to 2 GB each, and must not be
+ * used after {@link #close()}. Please note that data of stored entries isn't guaranteed to be aligned.
+ */
+@Slf4j
+public class MappedNpzFile implements Closeable {
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50;
+    private static final int LOCAL_HEADER_LENGTH = 30;
+
+    private final FileMapping mapping;
+    private final Map<String, INDArray> arrays;
+
+    protected MappedNpzFile(FileMapping mapping, Map<String, INDArray> arrays) {
+        this.mapping = mapping;
+        this.arrays = Collections.unmodifiableMap(arrays);
+    }
+
+    /**
+     * Opens given .npz archive, mapping all stored entries
+     */
+    public static MappedNpzFile open(@NonNull File file) throws IOException {
+        FileMapping mapping = new FileMapping(file);
+        try {
+            return new MappedNpzFile(mapping, readEntries(file, mapping));
+        } catch (IOException | RuntimeException e) {
+            mapping.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return arrays by name, with ".npy" suffix removed, in archive order
+     */
+    public Map<String, INDArray> getArrays() {
+        return arrays;
+    }
+
+    public INDArray getArray(String name) {
+        return arrays.get(name);
+    }
+
+    public File getFile() {
+        return mapping.getFile();
+    }
+
+    @Override
+    public void close() {
+        mapping.close();
+    }
+
+    private static Map<String, INDArray> readEntries(File file, FileMapping mapping) throws IOException {
+        Map<String, INDArray> ret = new LinkedHashMap<>();
+        // sizes are taken from the central directory (via ZipFile), since local headers may not contain them
+        try (ZipFile zip = new ZipFile(file); RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            byte[] localHeader = new byte[LOCAL_HEADER_LENGTH];
+            long position = 0;
+            while (position + LOCAL_HEADER_LENGTH <= raf.length()) {
+                raf.seek(position);
+                raf.readFully(localHeader);
+                ByteBuffer bb = ByteBuffer.wrap(localHeader).order(ByteOrder.LITTLE_ENDIAN);
+                if (bb.getInt(0) != LOCAL_HEADER_SIGNATURE)
+                    break;
+
+                int flags = bb.getShort(6) & 0xffff;
+                int method = bb.getShort(8) & 0xffff;
+                int nameLength = bb.getShort(26) & 0xffff;
+                int extraLength = bb.getShort(28) & 0xffff;
+
+                byte[] nameBytes = new byte[nameLength];
+                raf.readFully(nameBytes);
+                String entryName = new String(nameBytes, StandardCharsets.UTF_8);
+                ZipEntry entry = zip.getEntry(entryName);
+                if (entry == null)
+                    throw new IOException("Malformed npz file [" + file.getAbsolutePath() + "]: entry " + entryName + " is missing in central directory");
+
+                String name = entryName.endsWith(".npy") ? entryName.substring(0, entryName.length() - 4) : entryName;
+                long dataStart = position + LOCAL_HEADER_LENGTH + nameLength + extraLength;
+
+                if (method == ZipEntry.STORED) {
+                    raf.seek(dataStart);
+                    NpyHeader header = NpyHeader.read(Channels.newInputStream(raf.getChannel()));
+                    MappedNpyFile.checkByteOrder(header, name);
+                    ret.put(name, mapping.wrap(dataStart + header.getDataOffset(), header));
+                } else {
+                    log.debug("Entry [{}] of [{}] is compressed, loading it into memory", name, file.getName());
+                    try (InputStream is = zip.getInputStream(entry)) {
+                        ret.put(name, NpySerde.read(is));
+                    }
+                }
+
+                position = dataStart + entry.getCompressedSize();
+                if ((flags & 0x08) != 0) {
+                    // data descriptor follows the data: optional signature, crc32 and sizes (8 bytes each for zip64)
+                    raf.seek(position);
+                    byte[] signature = new byte[4];
+                    raf.readFully(signature);
+                    if (ByteBuffer.wrap(signature).order(ByteOrder.LITTLE_ENDIAN).getInt() == DATA_DESCRIPTOR_SIGNATURE)
+                        position += 4;
+                    position += entry.getCompressedSize() >= 0xFFFFFFFFL || entry.getSize() >= 0xFFFFFFFFL ? 20 : 12;
+                }
+            }
+        }
+
+        if (ret.isEmpty())
+            throw new IOException("File [" + file.getAbsolutePath() + "] contains no arrays: not a npz file?");
+        return ret;
+    }
+}
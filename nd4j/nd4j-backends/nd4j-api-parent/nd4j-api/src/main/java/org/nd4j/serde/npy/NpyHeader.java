@@ -0,0 +1,263 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.serde.npy;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.shape.Shape;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Header of a numpy .npy file, see https://numpy.org/doc/stable/reference/generated/numpy.lib.format.html<br>
+ * Parsed in Java, so the data region of a file can be located (or memory mapped) without loading the payload.
+ */
+@Getter
+public class NpyHeader {
+    private static final byte[] MAGIC = {(byte) 0x93, 'N', 'U', 'M', 'P', 'Y'};
+    private static final int ALIGNMENT = 64;
+
+    private static final Pattern DESCR = Pattern.compile("'descr'\\s*:\\s*'([<>|=])([a-zA-Z])(\\d+)'");
+    private static final Pattern FORTRAN_ORDER = Pattern.compile("'fortran_order'\\s*:\\s*(True|False)");
+    private static final Pattern SHAPE = Pattern.compile("'shape'\\s*:\\s*\\(([^)]*)\\)");
+
+    private final DataType dataType;
+    private final long[] shape;
+    private final boolean fortranOrder;
+    private final ByteOrder byteOrder;
+    /**
+     * Total size of the header (magic, version, length and dictionary), i.e. offset of the data region
+     */
+    private final long dataOffset;
+
+    protected NpyHeader(DataType dataType, long[] shape, boolean fortranOrder, ByteOrder byteOrder, long dataOffset) {
+        this.dataType = dataType;
+        this.shape = shape;
+        this.fortranOrder = fortranOrder;
+        this.byteOrder = byteOrder;
+        this.dataOffset = dataOffset;
+    }
+
+    /**
+     * Creates header for array of given type and shape, stored in native byte order
+     */
+    public NpyHeader(@NonNull DataType dataType, @NonNull long[] shape, boolean fortranOrder) {
+        this.dataType = dataType;
+        this.shape = shape;
+        this.fortranOrder = fortranOrder;
+        this.byteOrder = ByteOrder.nativeOrder();
+        this.dataOffset = toBytes().length;
+    }
+
+    /**
+     * @return 'c' or 'f'
+     */
+    public char order() {
+        return fortranOrder ? 'f' : 'c';
+    }
+
+    /**
+     * @return number of elements in the array
+     */
+    public long length() {
+        return Shape.lengthOf(shape);
+    }
+
+    /**
+     * @return size of the data region in bytes
+     */
+    public long dataLength() {
+        return length() * dataType.width();
+    }
+
+    /**
+     * Reads header from given stream. Exactly {@link #getDataOffset()} bytes are consumed, so the stream is left
+     * positioned at the first data byte
+     */
+    public static NpyHeader read(@NonNull InputStream is) throws IOException {
+        DataInputStream dis = new DataInputStream(is);
+        byte[] magic = new byte[MAGIC.length];
+        dis.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC))
+            throw new IOException("Not a npy file: invalid magic string");
+
+        int major = dis.readUnsignedByte();
+        dis.readUnsignedByte();
+
+        long headerLength;
+        int prefixLength;
+        if (major == 1) {
+            byte[] len = new byte[2];
+            dis.readFully(len);
+            headerLength = ByteBuffer.wrap(len).order(ByteOrder.LITTLE_ENDIAN).getShort() & 0xffff;
+            prefixLength = 10;
+        } else if (major == 2 || major == 3) {
+            byte[] len = new byte[4];
+            dis.readFully(len);
+            headerLength = ByteBuffer.wrap(len).order(ByteOrder.LITTLE_ENDIAN).getInt() & 0xffffffffL;
+            prefixLength = 12;
+        } else {
+            throw new IOException("Unsupported npy format version: " + major);
+        }
+
+        byte[] dict = new byte[(int) headerLength];
+        dis.readFully(dict);
+        return parse(new String(dict, major == 3 ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1),
+                        prefixLength + headerLength);
+    }
+
+    protected static NpyHeader parse(String dict, long dataOffset) throws IOException {
+        Matcher descr = DESCR.matcher(dict);
+        Matcher fortran = FORTRAN_ORDER.matcher(dict);
+        Matcher shapeMatcher = SHAPE.matcher(dict);
+        if (!descr.find() || !fortran.find() || !shapeMatcher.find())
+            throw new IOException("Malformed npy header: " + dict.trim());
+
+        ByteOrder byteOrder;
+        switch (descr.group(1)) {
+            case "<":
+                byteOrder = ByteOrder.LITTLE_ENDIAN;
+                break;
+            case ">":
+                byteOrder = ByteOrder.BIG_ENDIAN;
+                break;
+            default:
+                byteOrder = ByteOrder.nativeOrder();
+        }
+
+        DataType dataType = dataTypeFor(descr.group(2).charAt(0), Integer.parseInt(descr.group(3)));
+
+        String shapeStr = shapeMatcher.group(1).replace(" ", "");
+        String[] dims = shapeStr.isEmpty() ? new String[0] : shapeStr.split(",");
+        long[] shape = new long[dims.length];
+        for (int i = 0; i < dims.length; i++)
+            shape[i] = Long.parseLong(dims[i].replace("L", ""));
+
+        return new NpyHeader(dataType, shape, "True".equals(fortran.group(1)), byteOrder, dataOffset);
+    }
+
+    /**
+     * Serializes this header, padded so the data region starts at a 64 bytes boundary
+     */
+    public byte[] toBytes() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{'descr': '").append(byteOrderChar()).append(typeChar(dataType)).append(dataType.width())
+                .append("', 'fortran_order': ").append(fortranOrder ? "True" : "False").append(", 'shape': (");
+        for (int i = 0; i < shape.length; i++) {
+            sb.append(shape[i]);
+            if (i < shape.length - 1 || shape.length == 1)
+                sb.append(",");
+            if (i < shape.length - 1)
+                sb.append(" ");
+        }
+        sb.append("), }");
+
+        boolean v2 = sb.length() + 11 > 65535;
+        int prefixLength = v2 ? 12 : 10;
+        int total = prefixLength + sb.length() + 1;
+        int padded = (total + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+        for (int i = total; i < padded; i++)
+            sb.append(' ');
+        sb.append('\n');
+
+        byte[] dict = sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+        ByteBuffer bb = ByteBuffer.allocate(prefixLength + dict.length).order(ByteOrder.LITTLE_ENDIAN);
+        bb.put(MAGIC);
+        bb.put((byte) (v2 ? 2 : 1));
+        bb.put((byte) 0);
+        if (v2)
+            bb.putInt(dict.length);
+        else
+            bb.putShort((short) dict.length);
+        bb.put(dict);
+        return bb.array();
+    }
+
+    private char byteOrderChar() {
+        if (dataType.width() == 1)
+            return '|';
+        return byteOrder == ByteOrder.LITTLE_ENDIAN ? '<' : '>';
+    }
+
+    private static char typeChar(DataType dataType) {
+        switch (dataType) {
+            case DOUBLE:
+            case FLOAT:
+            case HALF:
+                return 'f';
+            case LONG:
+            case INT:
+            case SHORT:
+            case BYTE:
+                return 'i';
+            case UBYTE:
+            case UINT16:
+            case UINT32:
+            case UINT64:
+                return 'u';
+            case BOOL:
+                return 'b';
+            default:
+                throw new IllegalArgumentException("Data type " + dataType + " has no npy equivalent");
+        }
+    }
+
+    private static DataType dataTypeFor(char type, int width) throws IOException {
+        switch (type) {
+            case 'f':
+                if (width == 8) return DataType.DOUBLE;
+                if (width == 4) return DataType.FLOAT;
+                if (width == 2) return DataType.HALF;
+                break;
+            case 'i':
+                if (width == 8) return DataType.LONG;
+                if (width == 4) return DataType.INT;
+                if (width == 2) return DataType.SHORT;
+                if (width == 1) return DataType.BYTE;
+                break;
+            case 'u':
+                if (width == 8) return DataType.UINT64;
+                if (width == 4) return DataType.UINT32;
+                if (width == 2) return DataType.UINT16;
+                if (width == 1) return DataType.UBYTE;
+                break;
+            case 'b':
+                if (width == 1) return DataType.BOOL;
+                break;
+        }
+        throw new IOException("Unsupported npy data type: " + type + width);
+    }
+
+    @Override
+    public String toString() {
+        return "NpyHeader{dataType=" + dataType + ", shape=" + Arrays.toString(shape) + ", order=" + order()
+                        + ", byteOrder=" + byteOrder + ", dataOffset=" + dataOffset + "}";
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.serde.npy;
+
+import lombok.NonNull;
+import org.bytedeco.javacpp.BytePointer;
+import org.nd4j.linalg.api.concurrency.AffinityManager;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.api.shape.Shape;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteOrder;
+
+/**
+ * Streaming reader/writer for numpy .npy format.<br>
+ * Payload is copied straight between the stream and the array buffer in 1 MB blocks, so peak memory use is the size of
+ * the array itself. Used by {@link Nd4j#createFromNpyFile(java.io.File)}, {@link Nd4j#createNpyFromByteArray(byte[])}
+ * and {@link Nd4j#createNpyFromInputStream(InputStream)}, so all of them accept the same data types: float16/32/64,
+ * signed and unsigned integers of 8 to 64 bits and bool, in either byte order and either C or Fortran order.
+ */
+public class NpySerde {
+    private static final int BLOCK_SIZE = 1 << 20;
+
+    private NpySerde() {
+    }
+
+    /**
+     * Reads array in .npy format from given stream. Stream is left positioned right after the array data
+     */
+    public static INDArray read(@NonNull InputStream is) throws IOException {
+        NpyHeader header = NpyHeader.read(is);
+        INDArray ret = Nd4j.create(header.getDataType(), header.getShape(), header.order());
+
+        long bytes = header.dataLength();
+        if (bytes == 0)
+            return ret;
+
+        int swapWidth = header.getByteOrder() == ByteOrder.nativeOrder() ? 1 : header.getDataType().width();
+        BytePointer target = new BytePointer(ret.data().addressPointer());
+        target.capacity(bytes);
+        target.limit(bytes);
+
+        DataInputStream dis = new DataInputStream(is);
+        byte[] block = new byte[(int) Math.min(BLOCK_SIZE, bytes)];
+        long position = 0;
+        while (position < bytes) {
+            int length = (int) Math.min(block.length, bytes - position);
+            dis.readFully(block, 0, length);
+            if (swapWidth > 1)
+                swapBytes(block, length, swapWidth);
+
+            target.position(position).put(block, 0, length);
+            position += length;
+        }
+
+        Nd4j.getAffinityManager().tagLocation(ret, AffinityManager.Location.HOST);
+        return ret;
+    }
+
+    /**
+     * Writes given array to the stream in .npy format, using native byte order
+     *
+     * @return number of bytes written
+     */
+    public static long write(@NonNull INDArray array, @NonNull OutputStream os) throws IOException {
+        if (array.isView() || array.data().length() != array.length() || !Shape.hasDefaultStridesForShape(array))
+            array = array.dup(array.ordering());
+
+        Nd4j.getAffinityManager().ensureLocation(array, AffinityManager.Location.HOST);
+
+        NpyHeader header = new NpyHeader(array.dataType(), array.shape(), array.ordering() == 'f');
+        byte[] headerBytes = header.toBytes();
+        os.write(headerBytes);
+
+        long bytes = header.dataLength();
+        if (bytes > 0) {
+            BytePointer source = new BytePointer(array.data().addressPointer());
+            source.capacity(bytes);
+            source.limit(bytes);
+
+            byte[] block = new byte[(int) Math.min(BLOCK_SIZE, bytes)];
+            long position = 0;
+            while (position < bytes) {
+                int length = (int) Math.min(block.length, bytes - position);
+                source.position(position).get(block, 0, length);
+                os.write(block, 0, length);
+                position += length;
+            }
+        }
+
+        return headerBytes.length + bytes;
+    }
+
+    private static void swapBytes(byte[] block, int length, int width) {
+        for (int e = 0; e < length; e += width) {
+            for (int i = 0; i < width / 2; i++) {
+                byte tmp = block[e + i];
+                block[e + i] = block[e + width - 1 - i];
+                block[e + width - 1 - i] = tmp;
+            }
+        }
+    }
+}
@@ -215,6 +215,7 @@ open module nd4j.api {
     exports org.nd4j.linalg.profiler.data;
     exports org.nd4j.linalg.profiler.data.primitives;
     exports org.nd4j.linalg.schedule;
+    exports org.nd4j.linalg.storage;
     exports org.nd4j.linalg.string;
     exports org.nd4j.linalg.util;
     exports org.nd4j.linalg.workspace;
@@ -223,6 +224,7 @@ open module nd4j.api {
     exports org.nd4j.serde.binary;
     exports org.nd4j.serde.jackson.shaded;
     exports org.nd4j.serde.json;
+    exports org.nd4j.serde.npy;
     exports org.nd4j.systeminfo;
     exports org.nd4j.versioncheck;
     exports org.nd4j.weightinit;
@@ -22,8 +22,12 @@ package org.nd4j.linalg.cpu.nativecpu;
 
 import lombok.NonNull;
 import lombok.val;
+import org.nd4j.common.config.ND4JSystemProperties;
 import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.memory.AllocationsTracker;
+import org.nd4j.linalg.api.memory.enums.AllocationKind;
 import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.cache.AdaptiveCache;
 import org.nd4j.linalg.cache.ConstantHandler;
 import org.nd4j.linalg.cache.TADManager;
 import org.nd4j.linalg.cache.TadDescriptor;
@@ -32,13 +36,18 @@ import org.nd4j.common.primitives.Pair;
 import org.nd4j.nativeblas.NativeOps;
 
 import java.util.Arrays;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
 
 public class CpuTADManager implements TADManager {
-    private Map<TadDescriptor, Pair<DataBuffer, DataBuffer>> cache = new ConcurrentHashMap<>();
-    private AtomicLong bytes = new AtomicLong(0);
+    public static final String CACHE_NAME = "tad";
+    public static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+
+    // TAD buffers are owned by native TAD cache, so evicted entries only need accounting
+    private final AdaptiveCache<TadDescriptor, Pair<DataBuffer, DataBuffer>> cache = AdaptiveCache.<TadDescriptor, Pair<DataBuffer, DataBuffer>>builder()
+            .name(CACHE_NAME)
+            .maximumBytes(Long.parseLong(System.getProperty(ND4JSystemProperties.TAD_CACHE_MAX_BYTES, String.valueOf(DEFAULT_MAX_BYTES))))
+            .weigher(CpuTADManager::weigh)
+            .removalListener((descriptor, pack, cause) -> AllocationsTracker.getInstance().markReleased(AllocationKind.CONSTANT, 0, weigh(pack)))
+            .build();
 
     public CpuTADManager() {
         //
@@ -52,7 +61,7 @@ public class CpuTADManager implements TADManager {
      */
     @Override
     public void purgeBuffers() {
-        cache = new ConcurrentHashMap<>();
+        cache.invalidateAll();
     }
 
     @Override
@@ -63,16 +72,21 @@ public class CpuTADManager implements TADManager {
         if (dimension == null)
             dimension = new long[] {Integer.MAX_VALUE};
 
-        val pack = Nd4j.getExecutioner().tadShapeInfoAndOffsets(array, dimension);
-
-        // now we need to copy this buffer to either device global memory or device cache
-
-        return new Pair<>(pack.getTadShapeInfo(), pack.getTadOffsets());
-
+        final long[] dimensions = dimension;
+        return cache.get(new TadDescriptor(array, dimensions), d -> {
+            val pack = Nd4j.getExecutioner().tadShapeInfoAndOffsets(array, dimensions);
+            Pair<DataBuffer, DataBuffer> ret = new Pair<>(pack.getTadShapeInfo(), pack.getTadOffsets());
+            AllocationsTracker.getInstance().markAllocated(AllocationKind.CONSTANT, 0, weigh(ret));
+            return ret;
+        });
     }
 
     @Override
     public long getCachedBytes() {
-        return bytes.get();
+        return cache.weightedSize();
+    }
+
+    private static long weigh(Pair<DataBuffer, DataBuffer> pack) {
+        return Math.max(1, (pack.getFirst().length() + pack.getSecond().length()) * 8);
     }
 }
@@ -21,25 +21,30 @@
 package org.nd4j.linalg.cpu.nativecpu;
 
 import lombok.extern.slf4j.Slf4j;
+import org.nd4j.common.config.ND4JSystemProperties;
 import org.nd4j.linalg.api.buffer.DataType;
-import org.nd4j.linalg.api.memory.AllocationsTracker;
-import org.nd4j.linalg.api.memory.enums.AllocationKind;
 import org.nd4j.linalg.api.shape.LongShapeDescriptor;
 import org.nd4j.linalg.api.shape.options.ArrayOptionsHelper;
 import org.nd4j.common.primitives.Pair;
 import org.nd4j.linalg.api.buffer.DataBuffer;
 import org.nd4j.linalg.api.ndarray.BaseShapeInfoProvider;
-import org.nd4j.linalg.api.shape.ShapeDescriptor;
-
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import org.nd4j.linalg.cache.AdaptiveCache;
+import org.nd4j.linalg.cpu.nativecpu.cache.CachedBuffers;
 
 @Slf4j
 public class DirectShapeInfoProvider extends BaseShapeInfoProvider {
-    private Map<LongShapeDescriptor, Pair<DataBuffer, long[]>> longCache = new ConcurrentHashMap<>();
-    private AtomicInteger counter = new AtomicInteger(0);
-    private static final int MAX_ENTRIES = 1000;
+    public static final String CACHE_NAME = "shapeInfo";
+    public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+
+    private final AdaptiveCache<LongShapeDescriptor, Pair<DataBuffer, long[]>> longCache = AdaptiveCache.<LongShapeDescriptor, Pair<DataBuffer, long[]>>builder()
+            .name(CACHE_NAME)
+            .maximumBytes(Long.parseLong(System.getProperty(ND4JSystemProperties.SHAPE_INFO_CACHE_MAX_BYTES, String.valueOf(DEFAULT_MAX_BYTES))))
+            .weigher(DirectShapeInfoProvider::weigh)
+            .removalListener((descriptor, buffer, cause) -> {
+                bytes.addAndGet(-weigh(buffer));
+                CachedBuffers.release(buffer.getFirst(), weigh(buffer));
+            })
+            .build();
 
     public Pair<DataBuffer, long[]> createShapeInformation(long[] shape, long[] stride,  long elementWiseStride, char order, DataType dataType) {
         long extras = 0;
@@ -54,31 +59,24 @@ public class DirectShapeInfoProvider extends BaseShapeInfoProvider {
         if (elementWiseStride < 0)
             elementWiseStride = 0;
 
+        final long ews = elementWiseStride;
         LongShapeDescriptor descriptor = new LongShapeDescriptor(shape, stride, 0, elementWiseStride, order, extras);
-        if (!longCache.containsKey(descriptor)) {
-            if (counter.get() < MAX_ENTRIES) {
-                synchronized (this) {
-                    if (!longCache.containsKey(descriptor)) {
-                        counter.incrementAndGet();
-                        Pair<DataBuffer, long[]> buffer = super.createShapeInformation(shape, stride, elementWiseStride, order, extras);
-                        buffer.getFirst().setConstant(true);
-                        longCache.put(descriptor, buffer);
-
-                        bytes.addAndGet(buffer.getFirst().length() * 8 * 2);
-                        AllocationsTracker.getInstance().markAllocated(AllocationKind.CONSTANT,0, buffer.getFirst().length() * 8 * 2);
-                        return buffer;
-                    } else
-                        return longCache.get(descriptor);
-                }
-            } else {
-                return super.createShapeInformation(shape, stride, elementWiseStride, order, extras);
-            }
-        }
+        return longCache.get(descriptor, d -> {
+            Pair<DataBuffer, long[]> buffer = super.createShapeInformation(shape, stride, ews, order, extras);
+            buffer.getFirst().setConstant(true);
 
-        return longCache.get(descriptor);
+            bytes.addAndGet(weigh(buffer));
+            CachedBuffers.markCached(weigh(buffer));
+            return buffer;
+        });
     }
 
     @Override
     public void purgeCache() {
+        longCache.invalidateAll();
+    }
+
+    private static long weigh(Pair<DataBuffer, long[]> buffer) {
+        return buffer.getFirst().length() * 8 * 2;
     }
 }
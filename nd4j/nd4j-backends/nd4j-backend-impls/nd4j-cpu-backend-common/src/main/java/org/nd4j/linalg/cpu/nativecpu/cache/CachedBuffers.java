@@ -0,0 +1,61 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.linalg.cpu.nativecpu.cache;
+
+import lombok.NonNull;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.memory.AllocationsTracker;
+import org.nd4j.linalg.api.memory.enums.AllocationKind;
+import org.nd4j.linalg.factory.Nd4j;
+
+/**
+ * Helper for buffers leaving {@link org.nd4j.linalg.cache.AdaptiveCache} instances.<br>
+ * Evicted buffers may still be referenced by arrays created earlier, so they are never freed here. Instead, constant
+ * buffers are unmarked and registered with DeallocatorService again, so memory is released once the buffer
+ * becomes unreachable, same as for any other buffer.
+ */
+public class CachedBuffers {
+
+    private CachedBuffers() {
+    }
+
+    /**
+     * Marks given number of bytes as allocated for cached constants
+     */
+    public static void markCached(long bytes) {
+        AllocationsTracker.getInstance().markAllocated(AllocationKind.CONSTANT, 0, bytes);
+    }
+
+    /**
+     * Hands buffer removed from cache back to regular memory management
+     *
+     * @param buffer evicted buffer
+     * @param bytes number of bytes previously reported via {@link #markCached(long)}
+     */
+    public static void release(@NonNull DataBuffer buffer, long bytes) {
+        if (buffer.isConstant()) {
+            buffer.setConstant(false);
+            Nd4j.getDeallocatorService().pickObject(buffer);
+        }
+
+        AllocationsTracker.getInstance().markReleased(AllocationKind.CONSTANT, 0, bytes);
+    }
+}
@@ -20,135 +20,73 @@
 
 package org.nd4j.linalg.cpu.nativecpu.cache;
 
+import org.nd4j.common.config.ND4JSystemProperties;
 import org.nd4j.linalg.api.buffer.DataBuffer;
 import org.nd4j.linalg.api.buffer.DataType;
-import org.nd4j.linalg.api.memory.AllocationsTracker;
-import org.nd4j.linalg.api.memory.enums.AllocationKind;
+import org.nd4j.linalg.cache.AdaptiveCache;
 import org.nd4j.linalg.cache.ArrayDescriptor;
 import org.nd4j.linalg.cache.BasicConstantHandler;
 import org.nd4j.linalg.factory.Nd4j;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
-
+/**
+ * Constant buffers cache, bounded by {@link ND4JSystemProperties#CONSTANT_CACHE_MAX_BYTES} bytes.
+ * Rarely used constants are evicted first, see {@link AdaptiveCache}
+ */
 public class ConstantBuffersCache extends BasicConstantHandler {
-    protected Map<ArrayDescriptor, DataBuffer> buffersCache = new ConcurrentHashMap<>();
-    private AtomicInteger counter = new AtomicInteger(0);
-    private AtomicLong bytes = new AtomicLong(0);
-    private static final int MAX_ENTRIES = 1000;
+    public static final String CACHE_NAME = "constantBuffers";
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    protected final AdaptiveCache<ArrayDescriptor, DataBuffer> buffersCache = AdaptiveCache.<ArrayDescriptor, DataBuffer>builder()
+            .name(CACHE_NAME)
+            .maximumBytes(Long.parseLong(System.getProperty(ND4JSystemProperties.CONSTANT_CACHE_MAX_BYTES, String.valueOf(DEFAULT_MAX_BYTES))))
+            .weigher(ConstantBuffersCache::weigh)
+            .removalListener((descriptor, buffer, cause) -> CachedBuffers.release(buffer, weigh(buffer)))
+            .build();
 
     /**
      * This method removes all cached constants
      */
     @Override
     public void purgeConstants() {
-        buffersCache = new ConcurrentHashMap<>();
+        buffersCache.invalidateAll();
     }
 
     @Override
     public DataBuffer getConstantBuffer(int[] array, DataType dataType) {
-        ArrayDescriptor descriptor = new ArrayDescriptor(array, dataType);
-
-        if (!buffersCache.containsKey(descriptor)) {
-            DataBuffer buffer = Nd4j.createTypedBufferDetached(array, dataType);
-
-            if (counter.get() < MAX_ENTRIES) {
-                counter.incrementAndGet();
-                buffersCache.put(descriptor, buffer);
-
-                bytes.addAndGet(array.length * Nd4j.sizeOfDataType(dataType));
-                AllocationsTracker.getInstance().markAllocated(AllocationKind.CONSTANT, 0, array.length * Nd4j.sizeOfDataType(dataType));
-            }
-            return buffer;
-        }
-
-        return buffersCache.get(descriptor);
+        return buffersCache.get(new ArrayDescriptor(array, dataType), d -> cached(Nd4j.createTypedBufferDetached(array, dataType)));
     }
 
     @Override
     public DataBuffer getConstantBuffer(boolean[] array, DataType dataType) {
-        ArrayDescriptor descriptor = new ArrayDescriptor(array, dataType);
-
-        if (!buffersCache.containsKey(descriptor)) {
-            DataBuffer buffer = Nd4j.createTypedBufferDetached(array, dataType);
-
-            if (counter.get() < MAX_ENTRIES) {
-                counter.incrementAndGet();
-                buffersCache.put(descriptor, buffer);
-
-                bytes.addAndGet(array.length * Nd4j.sizeOfDataType(dataType));
-                AllocationsTracker.getInstance().markAllocated(AllocationKind.CONSTANT, 0, array.length * Nd4j.sizeOfDataType(dataType));
-            }
-            return buffer;
-        }
-
-        return buffersCache.get(descriptor);
+        return buffersCache.get(new ArrayDescriptor(array, dataType), d -> cached(Nd4j.createTypedBufferDetached(array, dataType)));
     }
 
     @Override
     public DataBuffer getConstantBuffer(double[] array, DataType dataType) {
-        ArrayDescriptor descriptor = new ArrayDescriptor(array, dataType);
-
-        if (!buffersCache.containsKey(descriptor)) {
-            DataBuffer buffer = Nd4j.createTypedBufferDetached(array, dataType);
-
-            if (counter.get() < MAX_ENTRIES) {
-                counter.incrementAndGet();
-                buffersCache.put(descriptor, buffer);
-
-                bytes.addAndGet(array.length * Nd4j.sizeOfDataType(dataType));
-                AllocationsTracker.getInstance().markAllocated(AllocationKind.CONSTANT, 0, array.length * Nd4j.sizeOfDataType(dataType));
-            }
-            return buffer;
-        }
-
-        return buffersCache.get(descriptor);
+        return buffersCache.get(new ArrayDescriptor(array, dataType), d -> cached(Nd4j.createTypedBufferDetached(array, dataType)));
     }
 
     @Override
     public DataBuffer getConstantBuffer(float[] array, DataType dataType) {
-        ArrayDescriptor descriptor = new ArrayDescriptor(array, dataType);
-
-        if (!buffersCache.containsKey(descriptor)) {
-            DataBuffer buffer = Nd4j.createTypedBufferDetached(array, dataType);
-
-            if (counter.get() < MAX_ENTRIES) {
-                counter.incrementAndGet();
-                buffersCache.put(descriptor, buffer);
-
-                bytes.addAndGet(array.length * Nd4j.sizeOfDataType(dataType));
-                AllocationsTracker.getInstance().markAllocated(AllocationKind.CONSTANT, 0, array.length * Nd4j.sizeOfDataType(dataType));
-            }
-            return buffer;
-        }
-
-        return buffersCache.get(descriptor);
+        return buffersCache.get(new ArrayDescriptor(array, dataType), d -> cached(Nd4j.createTypedBufferDetached(array, dataType)));
     }
 
     @Override
     public DataBuffer getConstantBuffer(long[] array, DataType dataType) {
-        ArrayDescriptor descriptor = new ArrayDescriptor(array, dataType);
-
-        if (!buffersCache.containsKey(descriptor)) {
-            DataBuffer buffer = Nd4j.createTypedBufferDetached(array,dataType);
-
-            if (counter.get() < MAX_ENTRIES) {
-                counter.incrementAndGet();
-                buffersCache.put(descriptor, buffer);
-
-                bytes.addAndGet(array.length * Nd4j.sizeOfDataType(dataType));
-                AllocationsTracker.getInstance().markAllocated(AllocationKind.CONSTANT, 0, array.length * Nd4j.sizeOfDataType(dataType));
-            }
-            return buffer;
-        }
-
-        return buffersCache.get(descriptor);
+        return buffersCache.get(new ArrayDescriptor(array, dataType), d -> cached(Nd4j.createTypedBufferDetached(array, dataType)));
     }
 
     @Override
     public long getCachedBytes() {
-        return bytes.get();
+        return buffersCache.weightedSize();
+    }
+
+    private static DataBuffer cached(DataBuffer buffer) {
+        CachedBuffers.markCached(weigh(buffer));
+        return buffer;
+    }
+
+    private static long weigh(DataBuffer buffer) {
+        return Math.max(1, buffer.length() * buffer.getElementSize());
     }
 }
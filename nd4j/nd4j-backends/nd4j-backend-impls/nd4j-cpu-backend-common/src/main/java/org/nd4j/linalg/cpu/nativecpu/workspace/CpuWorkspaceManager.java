@@ -41,11 +41,11 @@ public class CpuWorkspaceManager extends BasicWorkspaceManager {
     }
 
     protected MemoryWorkspace newWorkspace(WorkspaceConfiguration configuration, String id) {
-        return Nd4j.getWorkspaceManager().getDebugMode() == DebugMode.BYPASS_EVERYTHING ? new DummyWorkspace() : new CpuWorkspace(configuration, id);
+        return Nd4j.getWorkspaceManager().getDebugMode() == DebugMode.BYPASS_EVERYTHING ? new DummyWorkspace() : new CpuWorkspace(configurationFor(configuration, id), id);
     }
 
     protected MemoryWorkspace newWorkspace(WorkspaceConfiguration configuration, String id, int deviceId) {
-        return Nd4j.getWorkspaceManager().getDebugMode() == DebugMode.BYPASS_EVERYTHING ? new DummyWorkspace() : new CpuWorkspace(configuration, id, deviceId);
+        return Nd4j.getWorkspaceManager().getDebugMode() == DebugMode.BYPASS_EVERYTHING ? new DummyWorkspace() : new CpuWorkspace(configurationFor(configuration, id), id, deviceId);
     }
 
     @Override
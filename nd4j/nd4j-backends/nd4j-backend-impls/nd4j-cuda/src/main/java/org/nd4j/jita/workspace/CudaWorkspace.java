@@ -223,9 +223,11 @@ public class CudaWorkspace extends Nd4jWorkspace {
 
                 if (!trimmer) {
                     spilledAllocationsSize.addAndGet(requiredMemory);
+                    recordMissedAllocation(false);
                     AllocationsTracker.getInstance().getTracker(id).allocateSpilled(type,kind,numElements,requiredMemory);
                 } else {
                     pinnedAllocationsSize.addAndGet(requiredMemory);
+                    recordMissedAllocation(true);
                     AllocationsTracker.getInstance().getTracker(id).allocatePinned(type,kind,numElements,requiredMemory);
                 }
                 if (isDebug.get()) {
@@ -42,11 +42,11 @@ public class CudaWorkspaceManager extends BasicWorkspaceManager {
     }
 
     protected MemoryWorkspace newWorkspace(WorkspaceConfiguration configuration, String id) {
-        return Nd4j.getWorkspaceManager().getDebugMode() == DebugMode.BYPASS_EVERYTHING ? new DummyWorkspace() : new CudaWorkspace(configuration, id);
+        return Nd4j.getWorkspaceManager().getDebugMode() == DebugMode.BYPASS_EVERYTHING ? new DummyWorkspace() : new CudaWorkspace(configurationFor(configuration, id), id);
     }
 
     protected MemoryWorkspace newWorkspace(WorkspaceConfiguration configuration, String id, int deviceId) {
-        return Nd4j.getWorkspaceManager().getDebugMode() == DebugMode.BYPASS_EVERYTHING ? new DummyWorkspace() : new CudaWorkspace(configuration, id, deviceId);
+        return Nd4j.getWorkspaceManager().getDebugMode() == DebugMode.BYPASS_EVERYTHING ? new DummyWorkspace() : new CudaWorkspace(configurationFor(configuration, id), id, deviceId);
     }
 
     @Override
@@ -287,6 +287,45 @@ public class ND4JSystemProperties {
      */
     public final static String ND4J_EVENT_LOG_POINT_OF_ORIGIN_PATTERNS = "org.nd4j.linalg.profiler.pointoforigin.patterns";
 
+    /**
+     * Applicability: nd4j-native backend<br>
+     * Description: Byte budget of the constant buffers cache. Less frequently used constants are evicted once
+     * the budget is exceeded. Default: 64 MB
+     */
+    public final static String CONSTANT_CACHE_MAX_BYTES = "org.nd4j.linalg.cache.constant.maxbytes";
+
+    /**
+     * Applicability: nd4j-native backend<br>
+     * Description: Byte budget of the shape info buffers cache. Default: 16 MB
+     */
+    public final static String SHAPE_INFO_CACHE_MAX_BYTES = "org.nd4j.linalg.cache.shapeinfo.maxbytes";
+
+    /**
+     * Applicability: nd4j-native backend<br>
+     * Description: Byte budget of the TAD (tensor along dimension) shape info and offsets cache. Default: 32 MB
+     */
+    public final static String TAD_CACHE_MAX_BYTES = "org.nd4j.linalg.cache.tad.maxbytes";
+
+    /**
+     * Applicability: all backends<br>
+     * Description: Enable the sampling op profiler (OpSamplingProfiler) from startup: on average, 1 in N op executions
+     * are timed. Default: 0 (disabled)
+     */
+    public final static String OP_SAMPLING_RATE = "org.nd4j.linalg.profiler.opsampling.rate";
+
+    /**
+     * Applicability: all backends<br>
+     * Description: Interval in milliseconds for logging the hottest ops sampled by the sampling op profiler, when it
+     * is enabled using {@link #OP_SAMPLING_RATE}. Default: 0 (no periodic logging)
+     */
+    public final static String OP_SAMPLING_REPORT_INTERVAL = "org.nd4j.linalg.profiler.opsampling.reportinterval";
+
+    /**
+     * Applicability: all backends<br>
+     * Description: Number of ops to log for each periodic sampling op profiler report. Default: 10
+     */
+    public final static String OP_SAMPLING_TOP_K = "org.nd4j.linalg.profiler.opsampling.topk";
+
     private ND4JSystemProperties() {
     }
 }
@@ -0,0 +1,144 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.onnxruntime.runner;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.bytedeco.onnxruntime.IoBinding;
+import org.bytedeco.onnxruntime.Session;
+import org.bytedeco.onnxruntime.Value;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.onnxruntime.util.ONNXUtils;
+
+import java.io.Closeable;
+import java.util.*;
+
+/**
+ * Pre-bound inputs and outputs of an {@link OnnxRuntimeRunner} session.<br>
+ * Onnx runtime values are created once over the buffers of the bound arrays, and reused for every call of
+ * {@link #exec()}: inputs are read from, and outputs are written directly to, the bound {@link INDArray}s.
+ * Unlike {@link OnnxRuntimeRunner#exec(Map)} nothing is allocated or converted per call,
+ * which matters for small inputs at high request rates.<br>
+ * Shapes are fixed at binding time. Instances are not thread safe: use one binding per thread, or
+ * {@link OnnxRuntimeRunner#execBound(Map, Map)} which pools bindings.
+ *
+ * @see OnnxRuntimeRunner#bind(Map, Map)
+ */
+public class OnnxRuntimeIoBinding implements Closeable {
+
+    private final OnnxRuntimeRunner runner;
+    private final IoBinding ioBinding;
+    /**
+     * Bound input arrays, by input name
+     */
+    @Getter
+    private final Map<String, INDArray> inputs;
+    /**
+     * Bound output arrays, by output name. Their content is overwritten by each call of {@link #exec()}
+     */
+    @Getter
+    private final Map<String, INDArray> outputs;
+    //keep the native values alive while bound
+    private final List<Value> values = new ArrayList<>();
+
+    protected OnnxRuntimeIoBinding(@NonNull OnnxRuntimeRunner runner, Map<String, INDArray> inputs, Map<String, INDArray> outputs) {
+        Session session = runner.getSession();
+        if(session == null)
+            throw new IllegalStateException("Unable to bind inputs and outputs: runner has no session");
+
+        this.runner = runner;
+        this.ioBinding = new IoBinding(session);
+
+        Map<String, INDArray> boundInputs = new LinkedHashMap<>();
+        List<String> inputNames = runner.getInputNames();
+        for(int i = 0; i < inputNames.size(); i++) {
+            String name = inputNames.get(i);
+            INDArray arr = inputs == null ? null : inputs.get(name);
+            if(arr == null)
+                arr = ONNXUtils.createArrayForTypeInfo(session.GetInputTypeInfo(i), name);
+            ioBinding.BindInput(name, createValue(name, arr));
+            boundInputs.put(name, arr);
+        }
+
+        Map<String, INDArray> boundOutputs = new LinkedHashMap<>();
+        List<String> outputNames = runner.getOutputNames();
+        for(int i = 0; i < outputNames.size(); i++) {
+            String name = outputNames.get(i);
+            INDArray arr = outputs == null ? null : outputs.get(name);
+            if(arr == null)
+                arr = ONNXUtils.createArrayForTypeInfo(session.GetOutputTypeInfo(i), name);
+            ioBinding.BindOutput(name, createValue(name, arr));
+            boundOutputs.put(name, arr);
+        }
+
+        this.inputs = Collections.unmodifiableMap(boundInputs);
+        this.outputs = Collections.unmodifiableMap(boundOutputs);
+    }
+
+    private Value createValue(String name, INDArray arr) {
+        //Values point directly at the array buffer: views and 'f' ordered arrays would be read incorrectly
+        if(arr.isView() || arr.ordering() != 'c')
+            throw new IllegalArgumentException("Array bound to " + name + " must be a 'c' ordered array that is not a view, use dup('c') first");
+        Value value = ONNXUtils.getTensor(arr, runner.getMemoryInfo());
+        values.add(value);
+        return value;
+    }
+
+    /**
+     * Runs the session over the current content of the bound input arrays
+     * @return the bound output arrays, holding the results until the next call
+     */
+    public Map<String, INDArray> exec() {
+        runner.getSession().Run(runner.getRunOptions(), ioBinding);
+        return outputs;
+    }
+
+    /**
+     * Copies the given arrays to the bound inputs, then runs the session.
+     * Arrays that are the bound input arrays themselves are not copied.
+     * @param input the input arrays, with the same shapes as the bound ones
+     * @return the bound output arrays, holding the results until the next call
+     */
+    public Map<String, INDArray> exec(@NonNull Map<String, INDArray> input) {
+        for(Map.Entry<String, INDArray> e : input.entrySet()) {
+            INDArray bound = inputs.get(e.getKey());
+            if(bound == null)
+                throw new IllegalArgumentException("No input named " + e.getKey() + " is bound, inputs are " + inputs.keySet());
+            if(bound != e.getValue()) {
+                if(!Arrays.equals(bound.shape(), e.getValue().shape()))
+                    throw new IllegalArgumentException("Input " + e.getKey() + " has shape " + Arrays.toString(e.getValue().shape())
+                            + ", bound shape is " + Arrays.toString(bound.shape()));
+                bound.assign(e.getValue());
+            }
+        }
+        return exec();
+    }
+
+    @Override
+    public void close() {
+        ioBinding.ClearBoundInputs();
+        ioBinding.ClearBoundOutputs();
+        ioBinding.close();
+        for(Value v : values)
+            v.close();
+        values.clear();
+    }
+}
@@ -19,6 +19,7 @@
  */
 package org.nd4j.onnxruntime.runner;
 
+import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
@@ -29,6 +30,7 @@ import org.bytedeco.onnxruntime.*;
 import org.nd4j.autodiff.samediff.config.SDValue;
 import org.nd4j.common.base.Preconditions;
 import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.memory.MemoryWorkspace;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.onnxruntime.runner.enums.ONNXType;
@@ -38,6 +40,7 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import static org.bytedeco.onnxruntime.global.onnxruntime.*;
 import static org.nd4j.onnxruntime.util.ONNXUtils.*;
@@ -58,6 +61,25 @@ public class OnnxRuntimeRunner implements Closeable  {
     private List<Onnx.TensorProto> initializers = new ArrayList<>();
     @Getter
     private List<Onnx.ValueInfoProto> inputs = new ArrayList<>();
+    @Getter
+    private List<String> inputNames = new ArrayList<>();
+    @Getter
+    private List<String> outputNames = new ArrayList<>();
+    //names are resolved once: looking them up through the allocator on every call is not free
+    private PointerPointer<BytePointer> inputNodeNames;
+    private PointerPointer<BytePointer> outputNodeNames;
+    private final List<BytePointer> namePointers = new ArrayList<>();
+    public static final int DEFAULT_MAX_POOLED_SHAPES = 16;
+    //idle bindings used by execBound, by input shapes. Access ordered: least recently used shapes are evicted first
+    @Getter(AccessLevel.NONE)
+    private final LinkedHashMap<String, Queue<OnnxRuntimeIoBinding>> bindingPool = new LinkedHashMap<>(16, 0.75f, true);
+    /**
+     * Maximal number of distinct input shapes execBound keeps bindings for
+     */
+    private int maxPooledShapes = DEFAULT_MAX_POOLED_SHAPES;
+    @Getter(AccessLevel.NONE)
+    private volatile Boolean outputShapesDefined;
+
     @Builder
     public OnnxRuntimeRunner(String modelUri) {
         if(env == null) {
@@ -92,6 +114,23 @@ public class OnnxRuntimeRunner implements Closeable  {
                 inputs.add(modelProto.getGraph().getInput(i));
             }
 
+            long numInputNodes = session.GetInputCount();
+            inputNodeNames = new PointerPointer<>(numInputNodes);
+            for(long i = 0; i < numInputNodes; i++) {
+                BytePointer inputName = session.GetInputNameAllocated(i, allocator);
+                inputNodeNames.put(i, inputName);
+                namePointers.add(inputName);
+                inputNames.add(inputName.getString());
+            }
+
+            long numOutputNodes = session.GetOutputCount();
+            outputNodeNames = new PointerPointer<>(numOutputNodes);
+            for(long i = 0; i < numOutputNodes; i++) {
+                BytePointer outputName = session.GetOutputNameAllocated(i, allocator);
+                outputNodeNames.put(i, outputName);
+                namePointers.add(outputName);
+                outputNames.add(outputName.getString());
+            }
 
         }
         runOptions = new RunOptions();
@@ -102,8 +141,33 @@ public class OnnxRuntimeRunner implements Closeable  {
 
 
 
+    /**
+     * Sets maximal number of distinct input shapes {@link #execBound(Map, Map)} keeps bindings for.
+     * Idle bindings of least recently used shapes are closed once the limit is exceeded.
+     * @param maxPooledShapes the limit, must be positive
+     */
+    public void setMaxPooledShapes(int maxPooledShapes) {
+        Preconditions.checkArgument(maxPooledShapes > 0, "Max pooled shapes must be positive, got %s", maxPooledShapes);
+        this.maxPooledShapes = maxPooledShapes;
+    }
+
+    /**
+     * @return number of distinct input shapes {@link #execBound(Map, Map)} currently keeps bindings for
+     */
+    public int numPooledShapes() {
+        synchronized (bindingPool) {
+            return bindingPool.size();
+        }
+    }
+
     @Override
     public void close() {
+        synchronized (bindingPool) {
+            for(Queue<OnnxRuntimeIoBinding> queue : bindingPool.values())
+                closeIdle(queue);
+            bindingPool.clear();
+        }
+
         if(session != null) {
             session.close();
         }
@@ -199,18 +263,13 @@ public class OnnxRuntimeRunner implements Closeable  {
      * @return a map of the names of the ndarrays
      */
     public Map<String,INDArray> exec(Map<String,INDArray> input) {
-        long numInputNodes = session.GetInputCount();
-        long numOutputNodes = session.GetOutputCount();
-
-        PointerPointer<BytePointer> inputNodeNames = new PointerPointer<>(numInputNodes);
-        PointerPointer<BytePointer> outputNodeNames = new PointerPointer<>(numOutputNodes);
+        long numInputNodes = inputNames.size();
+        long numOutputNodes = outputNames.size();
 
         Value inputVal = new Value(numInputNodes);
 
         for (int i = 0; i < numInputNodes; i++) {
-            BytePointer inputName = session.GetInputNameAllocated(i, allocator);
-            inputNodeNames.put(i, inputName);
-            INDArray arr = input.get(inputName.getString());
+            INDArray arr = input.get(inputNames.get(i));
             Value inputTensor = getTensor(arr, memoryInfo);
             Preconditions.checkState(inputTensor.IsTensor(),"Input must be a tensor.");
             inputVal.position(i).put(inputTensor);
@@ -219,13 +278,6 @@ public class OnnxRuntimeRunner implements Closeable  {
         //reset position after iterating
         inputVal.position(0);
 
-
-
-        for (long i = 0; i < numOutputNodes; i++) {
-            BytePointer outputName = session.GetOutputNameAllocated(i, allocator);
-            outputNodeNames.put(i, outputName);
-        }
-
         ValueVector outputVector = session.Run(
                 runOptions,
                 inputNodeNames,
@@ -252,9 +304,9 @@ public class OnnxRuntimeRunner implements Closeable  {
                     if(longPointer != null) {
                         long[] shape = new long[(int) longPointer.capacity()];
                         longPointer.get(shape);
-                        ret.put((outputNodeNames.get(BytePointer.class, i)).getString(), Nd4j.create(buffer).reshape(shape));
+                        ret.put(outputNames.get(i), Nd4j.create(buffer).reshape(shape));
                     } else {
-                        ret.put((outputNodeNames.get(BytePointer.class, i)).getString(), Nd4j.create(buffer));
+                        ret.put(outputNames.get(i), Nd4j.create(buffer));
 
                     }
                     break;
@@ -275,4 +327,153 @@ public class OnnxRuntimeRunner implements Closeable  {
     }
 
 
+    /**
+     * Creates an {@link OnnxRuntimeIoBinding} over the given arrays.
+     * Inputs and outputs that are not specified are allocated from the
+     * shapes declared by the model, which must then be fully defined.
+     * Specified arrays are used directly (no copy) and must be 'c' ordered and not views.
+     * The returned binding is not thread safe, and must be closed before this runner.
+     * @param inputs the input arrays by name, may be null
+     * @param outputs the preallocated output arrays by name, may be null
+     * @return the binding
+     */
+    public OnnxRuntimeIoBinding bind(Map<String,INDArray> inputs, Map<String,INDArray> outputs) {
+        return new OnnxRuntimeIoBinding(this, inputs, outputs);
+    }
+
+    /**
+     * Thread safe execution through pooled {@link OnnxRuntimeIoBinding}s.
+     * The onnx runtime session itself supports concurrent runs: each calling thread
+     * borrows an idle binding for the shapes of the given inputs (creating one if none is idle),
+     * copies the inputs into it and runs the session. Bindings are returned to the pool after
+     * each call, so in steady state no native values or output arrays are allocated.<br>
+     * Bindings are kept for up to {@link #getMaxPooledShapes()} distinct input shapes.
+     * If the model declares outputs with dynamic dimensions (i.e. batch size), output shapes are taken
+     * from an unbound run for the first call with new input shapes, so output shapes must be defined by
+     * input shapes only.
+     * @param input the input arrays by name
+     * @param outputs preallocated arrays that the outputs are copied into. If null,
+     *                copies of the outputs are returned instead
+     * @return the outputs
+     */
+    public Map<String,INDArray> execBound(Map<String,INDArray> input, Map<String,INDArray> outputs) {
+        StringBuilder sb = new StringBuilder();
+        for(String name : inputNames) {
+            INDArray arr = input.get(name);
+            Preconditions.checkState(arr != null, "No array specified for input %s", name);
+            sb.append(name).append(arr.dataType()).append(Arrays.toString(arr.shape()));
+        }
+        if(outputs != null) {
+            for(Map.Entry<String,INDArray> e : outputs.entrySet())
+                sb.append(e.getKey()).append(e.getValue().dataType()).append(Arrays.toString(e.getValue().shape()));
+        }
+
+        String key = sb.toString();
+        Queue<OnnxRuntimeIoBinding> queue = pooledBindings(key);
+        OnnxRuntimeIoBinding binding = queue.poll();
+        Map<String,INDArray> firstResult = null;
+        if(binding == null) {
+            if(outputs == null && !outputShapesDefined()) {
+                //output shapes can't be derived from the model: learn them from a regular run
+                firstResult = exec(input);
+            }
+
+            //pooled arrays outlive this call: they must not be attached to the caller's workspace
+            try(MemoryWorkspace ws = Nd4j.getWorkspaceManager().scopeOutOfWorkspaces()) {
+                //the binding owns its arrays: caller arrays may be reused for something else after this call
+                Map<String,INDArray> boundInputs = new LinkedHashMap<>();
+                for(String name : inputNames) {
+                    INDArray arr = input.get(name);
+                    boundInputs.put(name, Nd4j.createUninitializedDetached(arr.dataType(), arr.shape()));
+                }
+                Map<String,INDArray> source = outputs != null ? outputs : firstResult;
+                Map<String,INDArray> boundOutputs = null;
+                if(source != null) {
+                    boundOutputs = new LinkedHashMap<>();
+                    for(Map.Entry<String,INDArray> e : source.entrySet())
+                        boundOutputs.put(e.getKey(), Nd4j.createUninitializedDetached(e.getValue().dataType(), e.getValue().shape()));
+                }
+                binding = bind(boundInputs, boundOutputs);
+            }
+
+            if(firstResult != null) {
+                release(key, queue, binding);
+                return firstResult;
+            }
+        }
+
+        try {
+            Map<String,INDArray> result = binding.exec(input);
+            if(outputs != null) {
+                for(Map.Entry<String,INDArray> e : outputs.entrySet())
+                    e.getValue().assign(result.get(e.getKey()));
+                return outputs;
+            }
+
+            Map<String,INDArray> ret = new LinkedHashMap<>();
+            for(Map.Entry<String,INDArray> e : result.entrySet())
+                ret.put(e.getKey(), e.getValue().dup());
+            return ret;
+        } finally {
+            release(key, queue, binding);
+        }
+    }
+
+    /**
+     * Returns the queue of idle bindings for the given key, evicting least recently used keys over the limit
+     */
+    private Queue<OnnxRuntimeIoBinding> pooledBindings(String key) {
+        List<Queue<OnnxRuntimeIoBinding>> evicted = new ArrayList<>();
+        Queue<OnnxRuntimeIoBinding> queue;
+        synchronized (bindingPool) {
+            queue = bindingPool.computeIfAbsent(key, k -> new ConcurrentLinkedQueue<>());
+            Iterator<Queue<OnnxRuntimeIoBinding>> iterator = bindingPool.values().iterator();
+            while(bindingPool.size() > maxPooledShapes && iterator.hasNext()) {
+                Queue<OnnxRuntimeIoBinding> eldest = iterator.next();
+                if(eldest != queue) {
+                    evicted.add(eldest);
+                    iterator.remove();
+                }
+            }
+        }
+
+        for(Queue<OnnxRuntimeIoBinding> q : evicted)
+            closeIdle(q);
+        return queue;
+    }
+
+    private void release(String key, Queue<OnnxRuntimeIoBinding> queue, OnnxRuntimeIoBinding binding) {
+        queue.offer(binding);
+        boolean pooled;
+        synchronized (bindingPool) {
+            pooled = bindingPool.get(key) == queue;
+        }
+        //shape was evicted while the binding was in use
+        if(!pooled)
+            closeIdle(queue);
+    }
+
+    private static void closeIdle(Queue<OnnxRuntimeIoBinding> queue) {
+        OnnxRuntimeIoBinding binding;
+        while((binding = queue.poll()) != null)
+            binding.close();
+    }
+
+    private boolean outputShapesDefined() {
+        if(outputShapesDefined == null) {
+            boolean defined = true;
+            for(int i = 0; i < outputNames.size() && defined; i++) {
+                ConstTensorTypeAndShapeInfo info = session.GetOutputTypeInfo(i).GetTensorTypeAndShapeInfo();
+                long[] shape = new long[(int) info.GetDimensionsCount()];
+                info.GetDimensions(shape, shape.length);
+                for(long dim : shape) {
+                    if(dim < 0)
+                        defined = false;
+                }
+            }
+            outputShapesDefined = defined;
+        }
+        return outputShapesDefined;
+    }
+
 }
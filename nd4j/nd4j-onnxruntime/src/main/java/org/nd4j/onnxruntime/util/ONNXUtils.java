@@ -32,6 +32,7 @@ import org.nd4j.onnxruntime.runner.enums.ONNXType;
 import org.nd4j.shade.guava.primitives.Longs;
 import org.slf4j.Logger;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -121,6 +122,27 @@ public class ONNXUtils {
         return Nd4j.create(type,shape);
     }
 
+    /**
+     * Returns a zeroed array matching the tensor type and shape of the given
+     * session input or output type info.
+     * All dimensions must be known: dynamic (-1) dimensions are rejected.
+     * @param typeInfo the type info from {@link Session#GetInputTypeInfo(long)}
+     *                 or {@link Session#GetOutputTypeInfo(long)}
+     * @param name the name of the input or output, for error messages
+     * @return the allocated array
+     */
+    public static INDArray createArrayForTypeInfo(TypeInfo typeInfo, String name) {
+        ConstTensorTypeAndShapeInfo tensorInfo = typeInfo.GetTensorTypeAndShapeInfo();
+        long[] shape = new long[(int) tensorInfo.GetDimensionsCount()];
+        tensorInfo.GetDimensions(shape, shape.length);
+        for(long dim : shape) {
+            if(dim < 0)
+                throw new IllegalStateException("Unable to allocate array for " + name + ": shape " + Arrays.toString(shape) + " has dynamic dimensions. Please provide a preallocated array instead.");
+        }
+
+        return Nd4j.create(dataTypeForOnnxType(tensorInfo.GetElementType()), shape);
+    }
+
     /**
      *
      * @param expected
@@ -138,7 +160,7 @@ public class ONNXUtils {
      * @return
      */
     public static DataType dataTypeForOnnxType(int dataType) {
-        if(dataType == dataType) {
+        if(dataType == ONNX_TENSOR_ELEMENT_DATA_TYPE_FLOAT) {
             return FLOAT;
         } else if(dataType == ONNX_TENSOR_ELEMENT_DATA_TYPE_INT8) {
             return INT8;
@@ -214,7 +236,7 @@ public class ONNXUtils {
      * @return
      */
     public static INDArray getArray(Value value) {
-        DataType dataType = dataTypeForOnnxType(value.GetTypeInfo().GetONNXType());
+        DataType dataType = dataTypeForOnnxType(value.GetTensorTypeAndShapeInfo().GetElementType());
         LongPointer shape = value.GetTensorTypeAndShapeInfo().GetShape();
         long[] shapeConvert;
         if(shape != null) {
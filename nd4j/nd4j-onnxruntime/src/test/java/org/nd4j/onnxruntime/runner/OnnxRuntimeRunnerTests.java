@@ -19,20 +19,27 @@
  */
 package org.nd4j.onnxruntime.runner;
 
+import onnx.Onnx;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.nd4j.common.io.ClassPathResource;
 import org.nd4j.common.tests.tags.NativeTag;
 import org.nd4j.common.tests.tags.TagNames;
+import org.nd4j.linalg.api.buffer.DataType;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
 
 import java.io.File;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 @Tag(TagNames.FILE_IO)
 @Tag(TagNames.DL4J_OLD_API)
@@ -59,4 +66,129 @@ public class OnnxRuntimeRunnerTests {
         assertEquals(2.0,z.sumNumber().doubleValue(),1e-1);
     }
 
+    @Test
+    @Disabled
+    public void testIoBinding() throws Exception {
+        File f = new ClassPathResource("add.onnx").getFile();
+        try(OnnxRuntimeRunner onnxRuntimeRunner = OnnxRuntimeRunner.builder()
+                .modelUri(f.getAbsolutePath())
+                .build()) {
+            Map<String,INDArray> inputs = new LinkedHashMap<>();
+            inputs.put("x",Nd4j.scalar(1.0f).reshape(1,1));
+            inputs.put("y",Nd4j.scalar(2.0f).reshape(1,1));
+            Map<String,INDArray> outputs = new LinkedHashMap<>();
+            INDArray z = Nd4j.create(DataType.FLOAT,1,1);
+            outputs.put("z",z);
+
+            try(OnnxRuntimeIoBinding binding = onnxRuntimeRunner.bind(inputs,outputs)) {
+                //outputs are written directly to the preallocated array
+                binding.exec();
+                assertEquals(3.0,z.sumNumber().doubleValue(),1e-3);
+
+                //bound inputs can be updated in place between calls
+                inputs.get("x").assign(5.0);
+                assertSame(z,binding.exec().get("z"));
+                assertEquals(7.0,z.sumNumber().doubleValue(),1e-3);
+
+                Map<String,INDArray> newInputs = new LinkedHashMap<>();
+                newInputs.put("x",Nd4j.scalar(10.0f).reshape(1,1));
+                newInputs.put("y",Nd4j.scalar(20.0f).reshape(1,1));
+                assertEquals(30.0,binding.exec(newInputs).get("z").sumNumber().doubleValue(),1e-3);
+            }
+        }
+    }
+
+    @Test
+    @Disabled
+    public void testExecBoundConcurrent() throws Exception {
+        File f = new ClassPathResource("add.onnx").getFile();
+        try(OnnxRuntimeRunner onnxRuntimeRunner = OnnxRuntimeRunner.builder()
+                .modelUri(f.getAbsolutePath())
+                .build()) {
+            int numThreads = 4;
+            ExecutorService executorService = Executors.newFixedThreadPool(numThreads);
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for(int t = 0; t < numThreads; t++) {
+                final float base = t;
+                futures.add(executorService.submit(() -> {
+                    INDArray out = Nd4j.create(DataType.FLOAT,1,1);
+                    Map<String,INDArray> outputs = Collections.singletonMap("z",out);
+                    for(int i = 0; i < 1000; i++) {
+                        Map<String,INDArray> inputs = new LinkedHashMap<>();
+                        inputs.put("x",Nd4j.scalar(base).reshape(1,1));
+                        inputs.put("y",Nd4j.scalar((float) i).reshape(1,1));
+                        onnxRuntimeRunner.execBound(inputs,outputs);
+                        if(Math.abs(out.getDouble(0) - (base + i)) > 1e-3)
+                            return false;
+                    }
+                    return true;
+                }));
+            }
+
+            for(Future<Boolean> future : futures)
+                assertTrue(future.get());
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void testExecBoundDynamicBatch(@TempDir Path testDir) throws Exception {
+        File f = testDir.resolve("add_dynamic.onnx").toFile();
+        Files.write(f.toPath(), dynamicBatchAddModel().toByteArray());
+
+        try(OnnxRuntimeRunner onnxRuntimeRunner = OnnxRuntimeRunner.builder()
+                .modelUri(f.getAbsolutePath())
+                .build()) {
+            onnxRuntimeRunner.setMaxPooledShapes(2);
+            for(int repeat = 0; repeat < 2; repeat++) {
+                for(int batch = 1; batch <= 4; batch++) {
+                    INDArray x = Nd4j.rand(DataType.FLOAT, batch, 2);
+                    INDArray y = Nd4j.rand(DataType.FLOAT, batch, 2);
+                    Map<String,INDArray> inputs = new LinkedHashMap<>();
+                    inputs.put("x",x);
+                    inputs.put("y",y);
+
+                    //outputs are not provided, and can't be allocated from the model: batch size is dynamic
+                    INDArray z = onnxRuntimeRunner.execBound(inputs,null).get("z");
+                    assertArrayEquals(new long[]{batch, 2}, z.shape());
+                    assertEquals(x.add(y), z);
+
+                    //second call with the same shapes runs through the pooled binding
+                    assertEquals(x.add(y), onnxRuntimeRunner.execBound(inputs,null).get("z"));
+                    assertTrue(onnxRuntimeRunner.numPooledShapes() <= 2);
+                }
+            }
+        }
+    }
+
+    /**
+     * z = x + y, with inputs and output of shape [N, 2]
+     */
+    private static Onnx.ModelProto dynamicBatchAddModel() {
+        Onnx.ValueInfoProto.Builder[] values = new Onnx.ValueInfoProto.Builder[3];
+        String[] names = {"x", "y", "z"};
+        for(int i = 0; i < names.length; i++) {
+            values[i] = Onnx.ValueInfoProto.newBuilder().setName(names[i])
+                    .setType(Onnx.TypeProto.newBuilder().setTensorType(Onnx.TypeProto.Tensor.newBuilder()
+                            .setElemType(Onnx.TensorProto.DataType.FLOAT_VALUE)
+                            .setShape(Onnx.TensorShapeProto.newBuilder()
+                                    .addDim(Onnx.TensorShapeProto.Dimension.newBuilder().setDimParam("N"))
+                                    .addDim(Onnx.TensorShapeProto.Dimension.newBuilder().setDimValue(2)))));
+        }
+
+        Onnx.GraphProto graph = Onnx.GraphProto.newBuilder()
+                .setName("add_dynamic")
+                .addNode(Onnx.NodeProto.newBuilder().setOpType("Add").addInput("x").addInput("y").addOutput("z"))
+                .addInput(values[0])
+                .addInput(values[1])
+                .addOutput(values[2])
+                .build();
+
+        return Onnx.ModelProto.newBuilder()
+                .setIrVersion(7)
+                .addOpsetImport(Onnx.OperatorSetIdProto.newBuilder().setVersion(12))
+                .setGraph(graph)
+                .build();
+    }
+
 }
@@ -64,6 +64,8 @@ public class GraphRunner implements Closeable {
     private TF_SessionOptions options;
     //a status object used
     private TF_Status status;
+    //false when the session belongs to another runner, see GraphRunner(GraphRunner)
+    private boolean ownsSession = true;
     @Getter
     @Setter
     @Singular
@@ -174,6 +176,36 @@ public class GraphRunner implements Closeable {
 
 
 
+    /**
+     * Creates a runner over the graph already loaded by the given runner.
+     * The graph (and the memory of its constants) is shared, while the new runner gets its own
+     * session and status, so both can run concurrently. For saved models the variables live in the session,
+     * which is then shared as well: tensorflow sessions support concurrent runs.
+     * Closing either runner does not affect the graph used by the other one.
+     * @param shared the runner to share the graph with
+     */
+    protected GraphRunner(@NonNull GraphRunner shared) {
+        Preconditions.checkState(shared.graph != null && shared.session != null, "Runner to share graph with is not initialized");
+        this.graph = shared.graph;
+        this.sessionOptionsConfigProto = shared.sessionOptionsConfigProto;
+        this.savedModelConfig = shared.savedModelConfig;
+        this.inputOrder = shared.inputOrder;
+        this.outputOrder = shared.outputOrder;
+        this.inputDataTypes = shared.inputDataTypes == null ? null : new LinkedHashMap<>(shared.inputDataTypes);
+        this.outputDataTypes = shared.outputDataTypes;
+        initOptionsIfNeeded();
+
+        if(savedModelConfig != null) {
+            this.session = shared.session;
+            this.ownsSession = false;
+        } else {
+            this.session = TF_NewSession(graph, options, status);
+            if (TF_GetCode(status) != TF_OK) {
+                throw new IllegalStateException("ERROR: Unable to open session " + TF_Message(status).getString());
+            }
+        }
+    }
+
     /**
      * Cast inputs from the original data type
      * to the target resulting input data type.
@@ -649,7 +681,7 @@ public class GraphRunner implements Closeable {
 
     @Override
     public void close() {
-        if(session != null && status != null) {
+        if(session != null && status != null && ownsSession) {
             TF_CloseSession(session, status);
             TF_DeleteSession(session,status);
         }
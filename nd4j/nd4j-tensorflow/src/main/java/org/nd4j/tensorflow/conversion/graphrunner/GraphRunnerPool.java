@@ -0,0 +1,422 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.tensorflow.conversion.graphrunner;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.bytedeco.tensorflow.TF_Tensor;
+import org.nd4j.common.base.Preconditions;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.memory.MemoryWorkspace;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.INDArrayIndex;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+import org.nd4j.tensorflow.conversion.TensorDataType;
+import org.nd4j.tensorflow.conversion.TensorflowConversion;
+
+import java.io.Closeable;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.bytedeco.tensorflow.global.tensorflow.TF_DeleteTensor;
+
+/**
+ * A bounded pool of {@link GraphRunner} sessions over one loaded graph, for concurrent callers.<br>
+ * Instead of every thread creating its own runner (each holding a full copy of the graph), all sessions
+ * share the graph of the given prototype runner, see {@link GraphRunner#GraphRunner(GraphRunner)}.<br>
+ * <br>
+ * Two execution modes:<br>
+ * - maxBatchSize &lt;= 1: each {@link #run(Map)} borrows an idle session, blocking while all {@code numSessions} are busy<br>
+ * - maxBatchSize &gt; 1: requests are queued, and each session thread coalesces concurrent requests with compatible
+ *   inputs (same names, data types and shapes apart from dimension 0) into a single batched run of up to
+ *   maxBatchSize examples, waiting at most maxBatchDelayMicros for more requests to arrive.
+ *   Inputs are concatenated along dimension 0 and outputs are split back along dimension 0: this assumes the
+ *   graph treats dimension 0 as an independent batch dimension. Outputs without a matching dimension 0 (such as scalars)
+ *   are returned whole to every request of the batch.<br>
+ * <br>
+ * Each session keeps the tensorflow tensor wrappers of its inputs, up to maxCachedInputs of them (least recently used
+ * ones are released first): when a run has the same input shapes as a previous one, the data is copied into the
+ * existing buffer rather than wrapping a new tensor. String inputs are never cached.
+ * Outputs are always copied out of tensorflow memory, which is released after each run.
+ */
+@Slf4j
+public class GraphRunnerPool implements Closeable {
+
+    public static final int DEFAULT_MAX_CACHED_INPUTS = 16;
+
+    @Getter
+    private final int numSessions;
+    @Getter
+    private final int maxBatchSize;
+    @Getter
+    private final long maxBatchDelayMicros;
+    @Getter
+    private final int maxCachedInputs;
+    private final List<Session> sessions = new ArrayList<>();
+    private final BlockingQueue<Session> idle;
+    private final BlockingQueue<Request> requests = new LinkedBlockingQueue<>();
+    private final List<Thread> batchThreads = new ArrayList<>();
+    private volatile boolean closed;
+
+    /**
+     * @param graphRunner the prototype runner: its graph, input/output names and data types are used by all sessions.
+     *                    It becomes the first session of the pool and is closed with it
+     * @param numSessions the number of sessions, that is the maximum number of concurrent runs. Defaults to 1
+     * @param maxBatchSize the maximum number of examples (sum of input dimension 0) coalesced in a single run.
+     *                     Defaults to 1: no batching
+     * @param maxBatchDelayMicros how long to wait for more requests before running an incomplete batch. Defaults to 1000
+     * @param maxCachedInputs the maximum number of input tensors (one per input name, data type and shape) kept by each
+     *                        session between runs. 0 disables caching. Defaults to {@link #DEFAULT_MAX_CACHED_INPUTS}
+     */
+    @Builder
+    public GraphRunnerPool(@NonNull GraphRunner graphRunner, Integer numSessions, Integer maxBatchSize, Long maxBatchDelayMicros,
+                           Integer maxCachedInputs) {
+        this.numSessions = numSessions == null ? 1 : numSessions;
+        this.maxBatchSize = maxBatchSize == null ? 1 : maxBatchSize;
+        this.maxBatchDelayMicros = maxBatchDelayMicros == null ? 1000 : maxBatchDelayMicros;
+        this.maxCachedInputs = maxCachedInputs == null ? DEFAULT_MAX_CACHED_INPUTS : maxCachedInputs;
+        Preconditions.checkState(this.numSessions > 0, "Number of sessions must be positive, got %s", this.numSessions);
+        Preconditions.checkState(this.maxBatchDelayMicros >= 0, "Maximum batch delay must not be negative, got %s", this.maxBatchDelayMicros);
+        Preconditions.checkState(this.maxCachedInputs >= 0, "Maximum number of cached inputs must not be negative, got %s", this.maxCachedInputs);
+
+        this.idle = new ArrayBlockingQueue<>(this.numSessions);
+        sessions.add(new Session(graphRunner, this.maxCachedInputs));
+        for(int i = 1; i < this.numSessions; i++) {
+            sessions.add(new Session(new GraphRunner(graphRunner), this.maxCachedInputs));
+        }
+        idle.addAll(sessions);
+
+        if(this.maxBatchSize > 1) {
+            for(int i = 0; i < this.numSessions; i++) {
+                Session session = idle.poll();
+                Thread t = new Thread(() -> batchLoop(session), "GraphRunnerPool-" + i);
+                t.setDaemon(true);
+                t.start();
+                batchThreads.add(t);
+            }
+        }
+    }
+
+    /**
+     * Runs the graph with the given inputs, blocking until the outputs are available.
+     * Thread safe.
+     * @param inputs the inputs by name
+     * @return the outputs by name
+     */
+    public Map<String,INDArray> run(@NonNull Map<String,INDArray> inputs) {
+        if(maxBatchSize <= 1) {
+            Session session = acquire();
+            try {
+                return session.run(inputs);
+            } finally {
+                idle.offer(session);
+            }
+        }
+
+        try {
+            return runAsync(inputs).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for graph outputs", e);
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IllegalStateException("Unable to run graph", e.getCause());
+        }
+    }
+
+    /**
+     * Asynchronous version of {@link #run(Map)}.
+     * Without batching (maxBatchSize &lt;= 1) this runs on the calling thread and returns a completed future.
+     * @param inputs the inputs by name
+     * @return the future outputs by name
+     */
+    public CompletableFuture<Map<String,INDArray>> runAsync(@NonNull Map<String,INDArray> inputs) {
+        if(closed)
+            throw new IllegalStateException("GraphRunnerPool is closed");
+
+        if(maxBatchSize <= 1) {
+            CompletableFuture<Map<String,INDArray>> ret = new CompletableFuture<>();
+            try {
+                ret.complete(run(inputs));
+            } catch (RuntimeException e) {
+                ret.completeExceptionally(e);
+            }
+            return ret;
+        }
+
+        Request request = new Request(inputs);
+        requests.add(request);
+        if(closed && requests.remove(request))
+            request.future.completeExceptionally(new IllegalStateException("GraphRunnerPool is closed"));
+        return request.future;
+    }
+
+    private Session acquire() {
+        if(closed)
+            throw new IllegalStateException("GraphRunnerPool is closed");
+        try {
+            return idle.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a graph session", e);
+        }
+    }
+
+    private void batchLoop(Session session) {
+        Request leftover = null;
+        while(!closed) {
+            List<Request> batch = new ArrayList<>();
+            try {
+                Request first = leftover != null ? leftover : requests.take();
+                leftover = null;
+                batch.add(first);
+                long rows = first.rows;
+                long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(maxBatchDelayMicros);
+                while(rows < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Request next = remaining > 0 ? requests.poll(remaining, TimeUnit.NANOSECONDS) : requests.poll();
+                    if(next == null)
+                        break;
+                    if(!next.signature.equals(first.signature) || rows + next.rows > maxBatchSize) {
+                        //run it first in the next batch, keeps requests in order
+                        leftover = next;
+                        break;
+                    }
+                    batch.add(next);
+                    rows += next.rows;
+                }
+            } catch (InterruptedException e) {
+                //closing
+                for(Request r : batch)
+                    r.future.completeExceptionally(new IllegalStateException("GraphRunnerPool is closed"));
+                break;
+            }
+
+            try {
+                runBatch(session, batch);
+            } catch (Throwable t) {
+                for(Request r : batch)
+                    r.future.completeExceptionally(t);
+            }
+        }
+
+        if(leftover != null)
+            leftover.future.completeExceptionally(new IllegalStateException("GraphRunnerPool is closed"));
+    }
+
+    private void runBatch(Session session, List<Request> batch) {
+        if(batch.size() == 1) {
+            Request r = batch.get(0);
+            r.future.complete(session.run(r.inputs));
+            return;
+        }
+
+        Map<String,INDArray> inputs = new LinkedHashMap<>();
+        long totalRows = 0;
+        for(Request r : batch)
+            totalRows += r.rows;
+        for(String name : batch.get(0).inputs.keySet()) {
+            INDArray[] arrays = new INDArray[batch.size()];
+            for(int i = 0; i < arrays.length; i++)
+                arrays[i] = batch.get(i).inputs.get(name);
+            inputs.put(name, Nd4j.concat(0, arrays));
+        }
+
+        Map<String,INDArray> outputs = session.run(inputs);
+
+        List<Map<String,INDArray>> results = new ArrayList<>(batch.size());
+        for(int i = 0; i < batch.size(); i++)
+            results.add(new LinkedHashMap<>());
+        for(Map.Entry<String,INDArray> e : outputs.entrySet()) {
+            INDArray out = e.getValue();
+            boolean split = out.rank() > 0 && out.size(0) == totalRows;
+            long start = 0;
+            for(int i = 0; i < batch.size(); i++) {
+                long rows = batch.get(i).rows;
+                if(split) {
+                    INDArrayIndex[] indices = new INDArrayIndex[out.rank()];
+                    indices[0] = NDArrayIndex.interval(start, start + rows);
+                    for(int d = 1; d < indices.length; d++)
+                        indices[d] = NDArrayIndex.all();
+                    results.get(i).put(e.getKey(), out.get(indices).dup());
+                } else {
+                    results.get(i).put(e.getKey(), out);
+                }
+                start += rows;
+            }
+        }
+
+        for(int i = 0; i < batch.size(); i++)
+            batch.get(i).future.complete(results.get(i));
+    }
+
+    @Override
+    public void close() {
+        if(closed)
+            return;
+        closed = true;
+        for(Thread t : batchThreads)
+            t.interrupt();
+        for(Thread t : batchThreads) {
+            try {
+                t.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        Request r;
+        while((r = requests.poll()) != null)
+            r.future.completeExceptionally(new IllegalStateException("GraphRunnerPool is closed"));
+
+        //close the session sharing runners first, the prototype last
+        for(int i = sessions.size() - 1; i >= 0; i--)
+            sessions.get(i).close();
+    }
+
+    private static class Request {
+        private final Map<String,INDArray> inputs;
+        private final long rows;
+        private final String signature;
+        private final CompletableFuture<Map<String,INDArray>> future = new CompletableFuture<>();
+
+        private Request(Map<String,INDArray> inputs) {
+            Preconditions.checkState(!inputs.isEmpty(), "No inputs specified");
+            this.inputs = inputs;
+            StringBuilder sb = new StringBuilder();
+            long rows = -1;
+            for(Map.Entry<String,INDArray> e : inputs.entrySet()) {
+                INDArray arr = e.getValue();
+                Preconditions.checkState(arr.rank() > 0, "Input %s is a scalar: batched inputs need a batch dimension", e.getKey());
+                if(rows < 0)
+                    rows = arr.size(0);
+                Preconditions.checkState(arr.size(0) == rows, "All inputs must have the same size for dimension 0, got %s for input %s", arr.size(0), e.getKey());
+                long[] shape = arr.shape();
+                sb.append(e.getKey()).append(':').append(arr.dataType()).append(Arrays.toString(Arrays.copyOfRange(shape, 1, shape.length))).append(';');
+            }
+            this.rows = rows;
+            this.signature = sb.toString();
+        }
+    }
+
+    /**
+     * One runner with its cached input tensors, only used by one thread at a time
+     */
+    private static class Session {
+        private final GraphRunner runner;
+        private final TensorflowConversion conversion = TensorflowConversion.getInstance();
+        private final int maxCachedInputs;
+        //tensors to release once the current run is done: evicted cache entries may still be inputs of this run
+        private final List<TF_Tensor> released = new ArrayList<>();
+        private final Map<String,CachedInput> cache = new LinkedHashMap<String,CachedInput>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String,CachedInput> eldest) {
+                if(size() > maxCachedInputs) {
+                    released.add(eldest.getValue().tensor);
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        private Session(GraphRunner runner, int maxCachedInputs) {
+            this.runner = runner;
+            this.maxCachedInputs = maxCachedInputs;
+        }
+
+        private Map<String,INDArray> run(Map<String,INDArray> inputs) {
+            Map<String,TF_Tensor> outputs;
+            try {
+                Map<String,TF_Tensor> tensors = new LinkedHashMap<>();
+                for(Map.Entry<String,INDArray> e : inputs.entrySet())
+                    tensors.put(e.getKey(), tensorFor(e.getKey(), e.getValue()));
+                outputs = runner.runTfTensor(tensors);
+            } finally {
+                for(TF_Tensor t : released)
+                    TF_DeleteTensor(t);
+                released.clear();
+            }
+
+            Map<String,INDArray> ret = new LinkedHashMap<>();
+            try(MemoryWorkspace ws = Nd4j.getMemoryManager().scopeOutOfWorkspaces()) {
+                for(Map.Entry<String,TF_Tensor> e : outputs.entrySet()) {
+                    //output memory belongs to tensorflow: copy it, then release the tensor
+                    ret.put(e.getKey(), conversion.ndArrayFromTensor(e.getValue()).dup());
+                    TF_DeleteTensor(e.getValue());
+                }
+            }
+            return ret;
+        }
+
+        private TF_Tensor tensorFor(String name, INDArray arr) {
+            DataType dataType = arr.dataType();
+            //inputs that will be recast are released by GraphRunner.recastInputs, they can't be reused
+            Map<String,TensorDataType> expected = runner.getInputDataTypes();
+            TensorDataType expectedType = expected == null ? null : expected.get(name);
+            if(expectedType != null && expectedType != TensorDataType.fromNd4jType(dataType))
+                return conversion.tensorFromNDArray(arr);
+            //string tensors can't be refilled in place: used for this run only
+            if(dataType == DataType.UTF8) {
+                TF_Tensor tensor = conversion.tensorFromNDArray(arr);
+                released.add(tensor);
+                return tensor;
+            }
+
+            String key = name + dataType + Arrays.toString(arr.shape());
+            CachedInput cached = cache.get(key);
+            if(cached == null) {
+                INDArray buffer;
+                try(MemoryWorkspace ws = Nd4j.getMemoryManager().scopeOutOfWorkspaces()) {
+                    buffer = Nd4j.createUninitialized(dataType, arr.shape());
+                }
+                cached = new CachedInput(buffer, conversion.tensorFromNDArray(buffer));
+                cache.put(key, cached);
+            }
+            cached.buffer.assign(arr);
+            return cached.tensor;
+        }
+
+        private void close() {
+            for(CachedInput c : cache.values())
+                TF_DeleteTensor(c.tensor);
+            cache.clear();
+            for(TF_Tensor t : released)
+                TF_DeleteTensor(t);
+            released.clear();
+            runner.close();
+        }
+    }
+
+    private static class CachedInput {
+        private final INDArray buffer;
+        private final TF_Tensor tensor;
+
+        private CachedInput(INDArray buffer, TF_Tensor tensor) {
+            this.buffer = buffer;
+            this.tensor = tensor;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.datavec.local.transforms.transform;
+
+import lombok.extern.slf4j.Slf4j;
+import org.datavec.api.transform.MathOp;
+import org.datavec.api.transform.TransformProcess;
+import org.datavec.api.transform.condition.ConditionOp;
+import org.datavec.api.transform.condition.column.DoubleColumnCondition;
+import org.datavec.api.transform.condition.column.IntegerColumnCondition;
+import org.datavec.api.transform.condition.column.StringColumnCondition;
+import org.datavec.api.transform.filter.ConditionFilter;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.transform.transform.doubletransform.MinMaxNormalizer;
+import org.datavec.api.transform.transform.doubletransform.StandardizeNormalizer;
+import org.datavec.api.writable.*;
+import org.datavec.arrow.ArrowConverter;
+import org.datavec.arrow.recordreader.ArrowWritableRecordBatch;
+import org.datavec.local.transforms.ColumnarTransformExecutor;
+import org.datavec.local.transforms.LocalTransformExecutor;
+import org.apache.arrow.memory.RootAllocator;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.nd4j.common.tests.tags.TagNames;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+@Tag(TagNames.FILE_IO)
+@Tag(TagNames.JAVA_ONLY)
+public class ColumnarExecutionTest {
+
+    private static final Schema SCHEMA = new Schema.Builder()
+            .addColumnDouble("d0")
+            .addColumnDouble("d1")
+            .addColumnInteger("i0")
+            .addColumnLong("l0")
+            .addColumnCategorical("cat", "a", "b", "c")
+            .addColumnString("str")
+            .build();
+
+    @Test
+    public void testSameResultsAsLocalExecutor() {
+        TransformProcess tp = new TransformProcess.Builder(SCHEMA)
+                .doubleMathOp("d0", MathOp.Multiply, 2.0)
+                .doubleMathOp("d1", MathOp.ReverseSubtract, 1.0)
+                .integerMathOp("i0", MathOp.Modulus, 7)
+                .longMathOp("l0", MathOp.Add, 10)
+                .filter(new ConditionFilter(new DoubleColumnCondition("d0", ConditionOp.LessThan, 0.2)))
+                .transform(new MinMaxNormalizer("d1", -1, 1))
+                .transform(new StandardizeNormalizer("i0", 3, 2))
+                .categoricalToInteger("cat")
+                .filter(new ConditionFilter(new IntegerColumnCondition("cat", ConditionOp.Equal, 1)))
+                //No column kernels for these: executed row-wise
+                .filter(new ConditionFilter(new StringColumnCondition("str", ConditionOp.Equal, "s3")))
+                .appendStringColumnTransform("str", "_x")
+                .removeColumns("d1")
+                .renameColumn("l0", "long")
+                .reorderColumns("long", "d0")
+                .build();
+
+        List<List<Writable>> data = randomData(5000, 12345);
+        List<List<Writable>> expected = LocalTransformExecutor.execute(data, tp);
+        for (int batchSize : new int[] {1, 100, ColumnarTransformExecutor.DEFAULT_BATCH_SIZE}) {
+            List<List<Writable>> actual = ColumnarTransformExecutor.execute(data, tp, batchSize);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++)
+                assertEquals(new ArrayList<>(expected.get(i)), actual.get(i), "batchSize=" + batchSize + ", record " + i);
+        }
+    }
+
+    @Test
+    public void testArrowInput() {
+        TransformProcess tp = new TransformProcess.Builder(SCHEMA)
+                .doubleMathOp("d0", MathOp.Add, 1.0)
+                .filter(new ConditionFilter(new DoubleColumnCondition("d1", ConditionOp.GreaterThan, 0.5)))
+                .categoricalToInteger("cat")
+                .build();
+
+        List<List<Writable>> data = randomData(1000, 42);
+        ArrowWritableRecordBatch input = ArrowConverter.toArrowWritables(
+                ArrowConverter.toArrowColumns(new RootAllocator(Long.MAX_VALUE), SCHEMA, data), SCHEMA);
+
+        ArrowWritableRecordBatch out = ColumnarTransformExecutor.execute(input, tp);
+        List<List<Writable>> expected = LocalTransformExecutor.execute(data, tp);
+        assertEquals(tp.getFinalSchema(), out.getSchema());
+        assertEquals(expected.size(), out.size());
+        for (int i = 0; i < expected.size(); i++)
+            assertEquals(new ArrayList<>(expected.get(i)), new ArrayList<>(out.get(i)));
+    }
+
+    /**
+     * Benchmark: numeric TransformProcess over 10M records (integration tests), compared to LocalTransformExecutor
+     */
+    @Test
+    public void testBenchmark() {
+        Schema schema = new Schema.Builder().addColumnsDouble("x%d", 0, 3).addColumnInteger("label").build();
+        TransformProcess tp = new TransformProcess.Builder(schema)
+                .doubleMathOp("x0", MathOp.Subtract, 0.5)
+                .doubleMathOp("x1", MathOp.Multiply, 3.0)
+                .transform(new StandardizeNormalizer("x2", 0.5, 0.29))
+                .transform(new MinMaxNormalizer("x3", 0, 1, -1, 1))
+                .filter(new ConditionFilter(new DoubleColumnCondition("x0", ConditionOp.LessThan, -0.4)))
+                .integerMathOp("label", MathOp.Modulus, 3)
+                .build();
+
+        int numRecords = Boolean.parseBoolean(System.getenv("DL4J_INTEGRATION_TESTS")) ? 10_000_000 : 200_000;
+        Random r = new Random(12345);
+        List<List<Writable>> data = new ArrayList<>(numRecords);
+        for (int i = 0; i < numRecords; i++) {
+            data.add(Arrays.asList(new DoubleWritable(r.nextDouble()), new DoubleWritable(r.nextDouble()),
+                    new DoubleWritable(r.nextDouble()), new DoubleWritable(r.nextDouble()), new IntWritable(r.nextInt(10))));
+        }
+
+        long t0 = System.nanoTime();
+        List<List<Writable>> rowWise = LocalTransformExecutor.execute(data, tp);
+        long t1 = System.nanoTime();
+        List<List<Writable>> columnar = ColumnarTransformExecutor.execute(data, tp);
+        long t2 = System.nanoTime();
+
+        assertEquals(rowWise.size(), columnar.size());
+        log.info("{} records: LocalTransformExecutor {} ms, ColumnarTransformExecutor {} ms", numRecords,
+                (t1 - t0) / 1000000, (t2 - t1) / 1000000);
+    }
+
+    private static List<List<Writable>> randomData(int n, long seed) {
+        Random r = new Random(seed);
+        String[] states = {"a", "b", "c"};
+        List<List<Writable>> data = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            data.add(Arrays.asList(new DoubleWritable(r.nextDouble()), new DoubleWritable(r.nextDouble() * 2 - 1),
+                    new IntWritable(r.nextInt(100) - 50), new LongWritable(r.nextLong() % 1000),
+                    new Text(states[r.nextInt(3)]), new Text("s" + r.nextInt(5))));
+        }
+        return data;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.datavec.local.transforms.transform.join;
+
+import org.datavec.api.transform.join.Join;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.writable.*;
+import org.datavec.local.transforms.LocalTransformExecutor;
+import org.datavec.local.transforms.join.HashJoinExecutor;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.nd4j.common.tests.tags.TagNames;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag(TagNames.FILE_IO)
+@Tag(TagNames.JAVA_ONLY)
+public class TestHashJoin {
+
+    @TempDir
+    public Path testDir;
+
+    @Test
+    public void testSameResultsAsCoGroupJoin() {
+        Schema customers = new Schema.Builder().addColumnLong("customerID").addColumnString("customerName").build();
+        Schema purchases = new Schema.Builder().addColumnLong("purchaseID").addColumnLong("customerID")
+                .addColumnDouble("amount").build();
+
+        Random r = new Random(12345);
+        List<List<Writable>> customerList = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            //Some duplicate keys, and some customers without purchases
+            long id = r.nextInt(300);
+            customerList.add(Arrays.asList(new LongWritable(id), new Text("Customer" + id)));
+        }
+        List<List<Writable>> purchaseList = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            purchaseList.add(Arrays.asList(new LongWritable(i), new LongWritable(r.nextInt(400)),
+                    new DoubleWritable(r.nextDouble())));
+        }
+
+        HashJoinExecutor inMemory = new HashJoinExecutor.Builder().numThreads(4).chunkSize(100).build();
+        HashJoinExecutor spilling = new HashJoinExecutor.Builder().numThreads(4).chunkSize(100)
+                .memoryBudgetBytes(1024).spillDirectory(testDir.toFile()).build();
+
+        for (Join.JoinType type : Join.JoinType.values()) {
+            //Build side is the smaller one: check both orders
+            for (boolean customersLeft : new boolean[] {true, false}) {
+                Join.Builder builder = new Join.Builder(type).setJoinColumns("customerID");
+                Join join = customersLeft ? builder.setSchemas(customers, purchases).build()
+                        : builder.setSchemas(purchases, customers).build();
+                List<List<Writable>> left = customersLeft ? customerList : purchaseList;
+                List<List<Writable>> right = customersLeft ? purchaseList : customerList;
+
+                List<String> expected = sorted(LocalTransformExecutor.executeJoin(join, left, right));
+                assertFalse(expected.isEmpty());
+                assertEquals(expected, sorted(LocalTransformExecutor.executeJoin(join, left, right, inMemory)),
+                        type + ", customersLeft=" + customersLeft);
+                assertEquals(expected, sorted(spilling.execute(join, left, right)),
+                        type + ", customersLeft=" + customersLeft + ", spilling");
+            }
+        }
+
+        File[] leftover = testDir.toFile().listFiles();
+        assertEquals(0, leftover == null ? 0 : leftover.length, "Spilled partitions should be deleted");
+    }
+
+    @Test
+    public void testMultipleKeyColumns() {
+        Schema first = new Schema.Builder().addColumnString("a").addColumnInteger("b").addColumnDouble("x").build();
+        Schema second = new Schema.Builder().addColumnString("a").addColumnInteger("b").addColumnDouble("y").build();
+
+        List<List<Writable>> firstList = new ArrayList<>();
+        List<List<Writable>> secondList = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            firstList.add(Arrays.asList(new Text("k" + (i % 5)), new IntWritable(i % 7), new DoubleWritable(i)));
+            secondList.add(Arrays.asList(new Text("k" + (i % 6)), new IntWritable(i % 7), new DoubleWritable(-i)));
+        }
+
+        HashJoinExecutor executor = new HashJoinExecutor.Builder().numThreads(1).numPartitions(3)
+                .spillDirectory(testDir.toFile()).build();
+        for (Join.JoinType type : Join.JoinType.values()) {
+            Join join = new Join.Builder(type).setJoinColumns("a", "b").setSchemas(first, second).build();
+            assertEquals(sorted(LocalTransformExecutor.executeJoin(join, firstList, secondList)),
+                    sorted(executor.execute(join, firstList, secondList)), type.toString());
+        }
+    }
+
+    private static List<String> sorted(List<List<Writable>> records) {
+        List<String> ret = new ArrayList<>(records.size());
+        for (List<Writable> r : records)
+            ret.add(r.toString());
+        Collections.sort(ret);
+        return ret;
+    }
+}
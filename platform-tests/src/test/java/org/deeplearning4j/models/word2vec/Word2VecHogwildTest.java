@@ -0,0 +1,196 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.models.word2vec;
+
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.models.embeddings.learning.ElementsLearningAlgorithm;
+import org.deeplearning4j.models.embeddings.learning.impl.elements.CBOW;
+import org.deeplearning4j.models.embeddings.learning.impl.elements.SkipGram;
+import org.deeplearning4j.models.embeddings.loader.VectorsConfiguration;
+import org.deeplearning4j.models.sequencevectors.SequenceVectors;
+import org.deeplearning4j.models.sequencevectors.enums.ListenerEvent;
+import org.deeplearning4j.models.sequencevectors.interfaces.VectorsListener;
+import org.deeplearning4j.text.sentenceiterator.CollectionSentenceIterator;
+import org.deeplearning4j.text.tokenization.tokenizerfactory.DefaultTokenizerFactory;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.nd4j.common.tests.tags.NativeTag;
+import org.nd4j.common.tests.tags.TagNames;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+@Tag(TagNames.FILE_IO)
+@NativeTag
+public class Word2VecHogwildTest extends BaseDL4JTest {
+
+    @Override
+    public long getTimeoutMilliseconds() {
+        return isIntegrationTests() ? 600000 : 240000;
+    }
+
+    @Test
+    public void testHogwildConfigurationSerialization() {
+        VectorsConfiguration configuration = new VectorsConfiguration();
+        assertFalse(configuration.isHogwild());
+
+        configuration.setHogwild(true);
+        VectorsConfiguration restored = VectorsConfiguration.fromJson(configuration.toJson());
+        assertTrue(restored.isHogwild());
+        assertEquals(configuration, restored);
+    }
+
+    @Test
+    public void testHogwildSkipGram() {
+        List<String> corpus = syntheticCorpus(5000, 500, 12);
+        Word2Vec vec = fit(corpus, new SkipGram<VocabWord>(), 4, true);
+
+        assertTrue(vec.getConfiguration().isHogwild());
+        assertValidVectors(vec);
+    }
+
+    @Test
+    public void testHogwildCBOW() {
+        List<String> corpus = syntheticCorpus(5000, 500, 12);
+        Word2Vec vec = fit(corpus, new CBOW<VocabWord>(), 4, true);
+
+        assertValidVectors(vec);
+    }
+
+    @Test
+    public void testHogwildLineEvents() {
+        List<String> corpus = syntheticCorpus(5000, 500, 12);
+        ConcurrentLinkedQueue<Long> lines = new ConcurrentLinkedQueue<>();
+        VectorsListener<VocabWord> listener = new VectorsListener<VocabWord>() {
+            @Override
+            public boolean validateEvent(ListenerEvent event, long argument) {
+                return event == ListenerEvent.LINE && argument % 100 == 0;
+            }
+
+            @Override
+            public void processEvent(ListenerEvent event, SequenceVectors<VocabWord> sequenceVectors, long argument) {
+                lines.add(argument);
+            }
+        };
+
+        fit(corpus, new SkipGram<VocabWord>(), 4, true, Collections.singletonList(listener));
+
+        // counters are published in batches, but listeners still see every line, same as without hogwild
+        List<Long> expected = new ArrayList<>();
+        for (long line = 100; line <= corpus.size(); line += 100)
+            expected.add(line);
+        List<Long> actual = new ArrayList<>(lines);
+        Collections.sort(actual);
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * Throughput harness: reports words/sec/thread for default and hogwild training over a synthetic corpus
+     */
+    @Test
+    public void testHogwildThroughput() {
+        List<String> corpus = syntheticCorpus(isIntegrationTests() ? 200000 : 20000, 5000, 20);
+        long totalWords = (long) corpus.size() * 20;
+
+        int maxThreads = Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors()));
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            for (boolean hogwild : new boolean[] {false, true}) {
+                long time1 = System.nanoTime();
+                Word2Vec vec = fit(corpus, new SkipGram<VocabWord>(), threads, hogwild);
+                long time2 = System.nanoTime();
+
+                assertValidVectors(vec);
+
+                double seconds = (time2 - time1) / 1e9;
+                log.info("Threads: [{}]; hogwild: [{}]; words/sec: [{}]; words/sec/thread: [{}]", threads, hogwild,
+                        String.format("%.0f", totalWords / seconds),
+                        String.format("%.0f", totalWords / seconds / threads));
+            }
+        }
+    }
+
+    private static Word2Vec fit(List<String> corpus, ElementsLearningAlgorithm<VocabWord> algorithm, int threads,
+                    boolean hogwild) {
+        return fit(corpus, algorithm, threads, hogwild, Collections.emptyList());
+    }
+
+    private static Word2Vec fit(List<String> corpus, ElementsLearningAlgorithm<VocabWord> algorithm, int threads,
+                    boolean hogwild, List<VectorsListener<VocabWord>> listeners) {
+        Word2Vec vec = new Word2Vec.Builder()
+                .minWordFrequency(1)
+                .epochs(1)
+                .iterations(1)
+                .layerSize(100)
+                .windowSize(5)
+                .negativeSample(5)
+                .useHierarchicSoftmax(false)
+                .learningRate(0.025)
+                .minLearningRate(0.0001)
+                .seed(42)
+                .workers(threads)
+                .vectorCalcThreads(threads)
+                .elementsLearningAlgorithm(algorithm)
+                .useHogwild(hogwild)
+                .iterate(new CollectionSentenceIterator(corpus))
+                .tokenizerFactory(new DefaultTokenizerFactory())
+                .setVectorsListeners(listeners)
+                .build();
+
+        vec.fit();
+        return vec;
+    }
+
+    private static void assertValidVectors(Word2Vec vec) {
+        assertTrue(vec.getVocab().numWords() > 0);
+        INDArray vector = vec.getWordVectorMatrix("w0");
+        assertNotNull(vector);
+        assertFalse(vector.isNaN().any());
+        assertFalse(vector.isInfinite().any());
+    }
+
+    /**
+     * Builds sentences with zipf-like word frequencies, so the vocabulary has both hot and rare words
+     */
+    private static List<String> syntheticCorpus(int sentences, int vocabSize, int sentenceLength) {
+        Random rng = new Random(119);
+        List<String> corpus = new ArrayList<>(sentences);
+        StringBuilder builder = new StringBuilder();
+        for (int s = 0; s < sentences; s++) {
+            builder.setLength(0);
+            for (int w = 0; w < sentenceLength; w++) {
+                int id = (int) Math.floor(Math.pow(vocabSize, rng.nextDouble())) - 1;
+                if (w > 0)
+                    builder.append(' ');
+                builder.append('w').append(id);
+            }
+            corpus.add(builder.toString());
+        }
+        return corpus;
+    }
+}
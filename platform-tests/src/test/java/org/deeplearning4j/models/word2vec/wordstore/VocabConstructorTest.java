@@ -470,4 +470,83 @@ public class VocabConstructorTest extends BaseDL4JTest {
 
         constructor.buildJointVocabulary(false, true);
     }
+
+    @Test
+    public void testShardedBuilderMatchesDefault() throws Exception {
+        File inputFile = Resources.asFile("big/raw_sentences.txt");
+
+        VocabCache<VocabWord> expected = new AbstractCache.Builder<VocabWord>().build();
+        VocabCache<VocabWord> actual = new AbstractCache.Builder<VocabWord>().build();
+
+        for (VocabCache<VocabWord> cache : Arrays.asList(expected, actual)) {
+            SentenceTransformer transformer = new SentenceTransformer.Builder()
+                    .vocabCache(cache)
+                    .iterator(new BasicLineIterator(inputFile)).tokenizerFactory(t).build();
+
+            AbstractSequenceIterator<VocabWord> sequenceIterator =
+                    new AbstractSequenceIterator.Builder<>(transformer).build();
+
+            VocabConstructor<VocabWord> constructor = new VocabConstructor.Builder<VocabWord>()
+                    .addSource(sequenceIterator, 5)
+                    .enableShardedBuilder(cache == actual)
+                    .setWorkers(4)
+                    .setTargetVocabCache(cache).build();
+
+            constructor.buildJointVocabulary(false, true);
+        }
+
+        assertEquals(242, actual.numWords());
+        assertEquals(expected.totalWordOccurrences(), actual.totalWordOccurrences());
+        assertEquals(expected.totalNumberOfDocs(), actual.totalNumberOfDocs());
+        for (String word : expected.words()) {
+            assertEquals(expected.wordFrequency(word), actual.wordFrequency(word));
+            assertEquals(expected.docAppearedIn(word), actual.docAppearedIn(word));
+        }
+    }
+
+    @Test
+    public void testShardedBuilderScaling() {
+        Random random = new Random(119);
+        List<Sequence<VocabWord>> corpus = new ArrayList<>();
+        for (int s = 0; s < 20000; s++) {
+            Sequence<VocabWord> sequence = new Sequence<>();
+            for (int e = 0; e < 50; e++) {
+                // zipf-like distribution, so there's a long tail of rare words
+                int id = (int) Math.floor(Math.exp(random.nextDouble() * Math.log(200000)));
+                sequence.addElement(new VocabWord(1.0, "w" + id));
+            }
+            corpus.add(sequence);
+        }
+
+        long expectedWords = -1;
+        for (int workers : new int[] {1, 2, 4}) {
+            AbstractCache<VocabWord> cache = new AbstractCache.Builder<VocabWord>().build();
+            VocabConstructor<VocabWord> constructor = new VocabConstructor.Builder<VocabWord>()
+                    .addSource(new AbstractSequenceIterator.Builder<>(corpus).build(), 1)
+                    .enableShardedBuilder(true)
+                    .setWorkers(workers)
+                    .setTargetVocabCache(cache).build();
+
+            constructor.buildJointVocabulary(false, false);
+            log.info("Workers: [{}]; Tokens/sec: [{}]", workers, String.format("%.2f", constructor.getTokensPerSecond()));
+
+            if (expectedWords < 0)
+                expectedWords = cache.numWords();
+            assertEquals(expectedWords, cache.numWords());
+            assertEquals(20000 * 50, cache.totalWordOccurrences());
+        }
+
+        // pruned shards keep frequent words, but drop part of the long tail
+        AbstractCache<VocabWord> pruned = new AbstractCache.Builder<VocabWord>().build();
+        new VocabConstructor.Builder<VocabWord>()
+                .addSource(new AbstractSequenceIterator.Builder<>(corpus).build(), 1)
+                .enableShardedBuilder(true)
+                .setWorkers(2)
+                .setShardLimit(10000)
+                .setTargetVocabCache(pruned).build()
+                .buildJointVocabulary(false, false);
+
+        assertTrue(pruned.numWords() < expectedWords);
+        assertTrue(pruned.containsWord("w1"));
+    }
 }
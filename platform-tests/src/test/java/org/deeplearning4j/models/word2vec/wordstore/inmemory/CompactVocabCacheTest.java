@@ -0,0 +1,162 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.deeplearning4j.models.word2vec.wordstore.inmemory;
+
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.models.word2vec.Huffman;
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+public class CompactVocabCacheTest extends BaseDL4JTest {
+
+    @Test
+    public void testNumWords() {
+        CompactVocabCache cache = new CompactVocabCache.Builder().build();
+
+        cache.addToken(new VocabWord(1.0, "word"));
+        cache.addToken(new VocabWord(1.0, "test"));
+        cache.addToken(new VocabWord(1.0, "test"));
+
+        assertEquals(2, cache.numWords());
+        assertEquals(2, cache.wordFrequency("test"));
+        assertTrue(cache.containsWord("word"));
+        assertFalse(cache.containsWord("tester"));
+    }
+
+    @Test
+    public void testHuffmanMatchesAbstractCache() {
+        AbstractCache<VocabWord> reference = new AbstractCache.Builder<VocabWord>().build();
+        CompactVocabCache cache = new CompactVocabCache.Builder().initialCapacity(4).build();
+
+        for (int i = 0; i < 100; i++) {
+            reference.addToken(new VocabWord(i + 1, "word_" + i));
+            cache.addToken(new VocabWord(i + 1, "word_" + i));
+        }
+
+        val refHuffman = new Huffman(reference.vocabWords());
+        refHuffman.build();
+        refHuffman.applyIndexes(reference);
+
+        val huffman = new Huffman(cache.vocabWords());
+        huffman.build();
+        huffman.applyIndexes(cache);
+
+        for (int i = 0; i < 100; i++) {
+            String label = reference.wordAtIndex(i);
+            assertEquals(label, cache.wordAtIndex(i));
+
+            VocabWord expected = reference.wordFor(label);
+            VocabWord actual = cache.wordFor(label);
+            assertEquals(expected.getIndex(), actual.getIndex());
+            assertEquals(expected.getCodeLength(), actual.getCodeLength());
+            for (int e = 0; e < expected.getCodeLength(); e++) {
+                assertEquals(expected.getCodes().get(e), actual.getCodes().get(e));
+                assertEquals(expected.getPoints().get(e), actual.getPoints().get(e));
+            }
+        }
+    }
+
+    @Test
+    public void testRemoval() {
+        CompactVocabCache cache = new CompactVocabCache.Builder().build();
+
+        for (int i = 0; i < 1000; i++)
+            cache.addToken(new VocabWord(1.0, "word_" + i));
+
+        assertEquals(1000, cache.numWords());
+        assertEquals(1000, cache.totalWordOccurrences());
+
+        for (int i = 0; i < 1000; i += 2)
+            cache.removeElement("word_" + i);
+
+        assertEquals(500, cache.numWords());
+        assertEquals(500, cache.totalWordOccurrences());
+
+        for (int i = 0; i < 1000; i++)
+            assertEquals(i % 2 == 1, cache.containsWord("word_" + i));
+
+        assertThrows(IllegalStateException.class, () -> cache.removeElement("word_0"));
+    }
+
+    @Test
+    public void testWriteThroughViews() {
+        CompactVocabCache cache = new CompactVocabCache.Builder().build();
+        cache.addToken(new VocabWord(1.0, "word"));
+
+        VocabWord view = cache.wordFor("word");
+        view.increaseElementFrequency(4);
+        view.incrementSequencesCount(3);
+        view.setSpecial(true);
+        view.markAsLabel(true);
+
+        VocabWord other = cache.wordFor(view.getStorageId());
+        assertEquals(5.0, other.getElementFrequency(), 1e-5);
+        assertEquals(3, other.getSequencesCount());
+        assertTrue(other.isSpecial());
+        assertTrue(other.isLabel());
+        assertEquals(view, other);
+
+        VocabWord detached = ((CompactVocabCache.CompactVocabWord) other).detach();
+        assertEquals("word", detached.getLabel());
+        assertEquals(5.0, detached.getElementFrequency(), 1e-5);
+    }
+
+    @Test
+    public void testLabels() {
+        CompactVocabCache cache = new CompactVocabCache.Builder().build();
+
+        cache.addToken(new VocabWord(1.0, "word"));
+        cache.addToken(new VocabWord(2.0, "тест"));
+        cache.addToken(new VocabWord(3.0, "tester"));
+
+        Collection<String> collection = cache.words();
+        assertEquals(3, collection.size());
+
+        assertTrue(collection.contains("word"));
+        assertTrue(collection.contains("тест"));
+        assertTrue(collection.contains("tester"));
+        assertEquals(2, cache.wordFrequency("тест"));
+    }
+
+    @Test
+    public void testMemoryFootprint() {
+        CompactVocabCache cache = new CompactVocabCache.Builder().initialCapacity(100000).build();
+        for (int i = 0; i < 100000; i++)
+            cache.addToken(new VocabWord(i + 1, "word_" + i));
+
+        val huffman = new Huffman(cache.vocabWords());
+        huffman.build();
+        huffman.applyIndexes(cache);
+
+        long compact = cache.memoryFootprint();
+        long abstractCache = CompactVocabCache.estimateAbstractCacheFootprint(cache);
+        log.info("CompactVocabCache: {} bytes; AbstractCache estimate: {} bytes", compact, abstractCache);
+
+        assertTrue(compact * 2 < abstractCache);
+    }
+}
@@ -27,10 +27,17 @@ import org.deeplearning4j.datasets.iterator.impl.IrisDataSetIterator;
 import org.deeplearning4j.nn.api.OptimizationAlgorithm;
 import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
 import org.deeplearning4j.nn.conf.layers.OutputLayer;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.deeplearning4j.ui.model.stats.J7StatsListener;
 import org.deeplearning4j.ui.model.stats.StatsListener;
+import org.deeplearning4j.ui.model.stats.api.Histogram;
+import org.deeplearning4j.ui.model.stats.api.StatsReport;
+import org.deeplearning4j.ui.model.stats.api.StatsType;
+import org.deeplearning4j.ui.model.stats.api.StatsUpdateConfiguration;
+import org.deeplearning4j.ui.model.stats.impl.DefaultStatsUpdateConfiguration;
+import org.deeplearning4j.ui.model.storage.InMemoryStatsStorage;
 import org.deeplearning4j.ui.model.storage.mapdb.MapDBStatsStorage;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
@@ -43,7 +50,9 @@ import org.nd4j.linalg.lossfunctions.LossFunctions;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 @Tag(TagNames.FILE_IO)
 @Tag(TagNames.UI)
 @Tag(TagNames.DIST_SYSTEMS)
@@ -103,4 +112,88 @@ public class TestStatsListener extends BaseDL4JTest {
 
     }
 
+    @Test
+    public void testListenerAsyncSampled() {
+        DataSet ds = new IrisDataSetIterator(150, 150).next();
+
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .list()
+                .layer(new DenseLayer.Builder().nIn(4).nOut(50).activation(Activation.TANH).build())
+                .layer(new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT)
+                        .activation(Activation.SOFTMAX).nIn(50).nOut(3).build())
+                .build();
+
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+
+        StatsStorage ss = new InMemoryStatsStorage();
+        StatsUpdateConfiguration updateConfig = new DefaultStatsUpdateConfiguration.Builder()
+                .reportingFrequency(1)
+                .collectAsync(true)
+                .histogramSampleSize(64)
+                .build();
+        StatsListener listener = new StatsListener(ss, null, updateConfig, null, null);
+        net.setListeners(listener);
+
+        for (int i = 0; i < 5; i++) {
+            net.fit(ds);
+        }
+        listener.awaitPendingReports();
+
+        String sessionID = ss.listSessionIDs().get(0);
+        String workerID = ss.listWorkerIDsForSession(sessionID).get(0);
+        List<Persistable> updates = ss.getAllUpdatesAfter(sessionID, StatsListener.TYPE_ID, workerID, 0);
+        assertEquals(5, updates.size());
+
+        for (Persistable p : updates) {
+            StatsReport r = (StatsReport) p;
+            for (StatsType t : new StatsType[] {StatsType.Parameters, StatsType.Gradients, StatsType.Updates}) {
+                assertEquals(net.paramTable().keySet(), r.getMean(t).keySet());
+                assertEquals(net.paramTable().keySet(), r.getStdev(t).keySet());
+                assertEquals(net.paramTable().keySet(), r.getHistograms(t).keySet());
+            }
+
+            //Sampled histogram (200 weights, 64 samples): counts scaled to the full length
+            Histogram h = r.getHistograms(StatsType.Parameters).get("0_W");
+            int total = 0;
+            for (int c : h.getBinCounts())
+                total += c;
+            assertEquals(200, total, 10);
+
+            assertTrue(r.getStdev(StatsType.Parameters).get("0_W") > 0);
+        }
+    }
+
+    @Test
+    public void testAsyncThreadStoppedAtEpochEnd() throws Exception {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .list()
+                .layer(new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT)
+                        .activation(Activation.SOFTMAX).nIn(4).nOut(3).build())
+                .build();
+
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+
+        StatsStorage ss = new InMemoryStatsStorage();
+        StatsUpdateConfiguration updateConfig = new DefaultStatsUpdateConfiguration.Builder()
+                .reportingFrequency(1)
+                .collectAsync(true)
+                .build();
+        net.setListeners(new StatsListener(ss, null, updateConfig, null, null));
+
+        net.fit(new IrisDataSetIterator(50, 150));
+
+        String sessionID = ss.listSessionIDs().get(0);
+        String workerID = ss.listWorkerIDsForSession(sessionID).get(0);
+        assertEquals(3, ss.getAllUpdatesAfter(sessionID, StatsListener.TYPE_ID, workerID, 0).size());
+
+        //All reports were handled at the end of the epoch, so the collection thread must be gone
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if ("StatsListener stats collection".equals(t.getName())) {
+                t.join(10000);
+                assertFalse(t.isAlive());
+            }
+        }
+    }
 }
@@ -35,6 +35,7 @@ import org.deeplearning4j.ui.model.stats.impl.java.JavaStatsInitializationReport
 import org.deeplearning4j.ui.model.stats.impl.java.JavaStatsReport;
 import org.deeplearning4j.ui.model.storage.InMemoryStatsStorage;
 import org.deeplearning4j.ui.model.storage.mapdb.MapDBStatsStorage;
+import org.deeplearning4j.ui.model.storage.segment.SegmentStatsStorage;
 import org.deeplearning4j.ui.model.storage.sqlite.J7FileStatsStorage;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Tag;
@@ -363,6 +364,92 @@ public class TestStatsStorage extends BaseDL4JTest {
         }
     }
 
+    @Test
+    public void testSegmentStatsStorage(@TempDir Path testDir) throws IOException {
+        File dir = new File(testDir.toFile(), "segments");
+        StatsStorage ss = new SegmentStatsStorage(dir);
+
+        CountingListener l = new CountingListener();
+        ss.registerStatsStorageListener(l);
+        assertNull(ss.getLatestUpdate("sid0", "tid0", "wid0"));
+
+        ss.putStaticInfo(getInitReport(0, 0, 0, false));
+        ss.putUpdate(getReport(0, 0, 0, 12346, false));
+        ss.putUpdate(getReport(0, 0, 0, 12345, false));     //Out of order
+        ss.putUpdate(getReport(0, 0, 1, 12345, false));
+        ss.putStaticInfo(getInitReport(100, 200, 300, false));
+        ss.putUpdate(getReport(100, 200, 300, 12346, false));
+
+        assertEquals(2, l.getCountNewSession());
+        assertEquals(3, l.getCountNewWorkerId());
+        assertEquals(2, l.getCountStaticInfo());
+        assertEquals(4, l.getCountUpdate());
+
+        for (int i = 0; i < 2; i++) {
+            assertEquals(getInitReport(0, 0, 0, false), ss.getStaticInfo("sid0", "tid0", "wid0"));
+            assertEquals(new HashSet<>(Arrays.asList("sid0", "sid100")), new HashSet<>(ss.listSessionIDs()));
+            assertEquals(Collections.singletonList("tid200"), ss.listTypeIDsForSession("sid100"));
+            assertEquals(3, ss.getNumUpdateRecordsFor("sid0"));
+            assertArrayEquals(new long[] {12345, 12346}, ss.getAllUpdateTimes("sid0", "tid0", "wid0"));
+            assertEquals(getReport(0, 0, 0, 12346, false), ss.getLatestUpdate("sid0", "tid0", "wid0"));
+            assertEquals(getReport(0, 0, 0, 12345, false), ss.getUpdate("sid0", "tid0", "wid0", 12345));
+            assertEquals(Arrays.asList(getReport(0, 0, 0, 12345, false), getReport(0, 0, 0, 12346, false)),
+                    ss.getAllUpdatesAfter("sid0", "tid0", "wid0", 0));
+            assertEquals(Collections.singletonList(getReport(0, 0, 0, 12346, false)),
+                    ss.getAllUpdatesAfter("sid0", "tid0", "wid0", 12345));
+            assertEquals(2, ss.getLatestUpdateAllWorkers("sid0", "tid0").size());
+            assertEquals(Collections.singletonList(getReport(100, 200, 300, 12346, false)),
+                    ss.getUpdates("sid100", "tid200", "wid300", new long[] {12345, 12346}));
+
+            //Close and re-open
+            ss.close();
+            assertTrue(ss.isClosed());
+            ss = new SegmentStatsStorage(dir);
+        }
+        ss.close();
+    }
+
+    @Test
+    public void testSegmentStatsStorageDownsampling(@TempDir Path testDir) throws IOException {
+        File dir = new File(testDir.toFile(), "segments");
+        int n = 10000;
+        StatsStorage ss = new SegmentStatsStorage.Builder(dir).segmentSizeBytes(64 * 1024).writeBufferBytes(4096).build();
+        StatsStorage reference = new InMemoryStatsStorage();
+        for (StatsStorage s : new StatsStorage[] {ss, reference}) {
+            s.putStaticInfo(getInitReport(0, 0, 0, false));
+            for (int i = 0; i < n; i++)
+                s.putUpdate(getReport(0, 0, 0, 1000 + i, false));
+        }
+
+        assertTrue(dir.listFiles().length > 1, "Expected multiple segments");
+
+        for (int maxPoints : new int[] {100, 512, 20000}) {
+            List<Persistable> sampled = ss.getUpdatesDownsampled("sid0", "tid0", "wid0", 0, maxPoints);
+            assertTrue(sampled.size() <= maxPoints + 1);
+            assertTrue(sampled.size() >= Math.min(n, maxPoints / 2));
+            assertEquals(getReport(0, 0, 0, 1000 + n - 1, false), sampled.get(sampled.size() - 1));
+            for (int i = 1; i < sampled.size(); i++)
+                assertTrue(sampled.get(i).getTimeStamp() > sampled.get(i - 1).getTimeStamp());
+
+            //Default (subsampling) implementation, as used for other storage implementations
+            List<Persistable> refSampled = reference.getUpdatesDownsampled("sid0", "tid0", "wid0", 0, maxPoints);
+            assertTrue(refSampled.size() <= 2 * maxPoints + 1);
+            assertEquals(getReport(0, 0, 0, 1000 + n - 1, false), refSampled.get(refSampled.size() - 1));
+        }
+
+        //Fixed bucket boundaries: the same updates are returned after more updates are added (same rollup level)
+        List<Persistable> before = ss.getUpdatesDownsampled("sid0", "tid0", "wid0", 0, 1000);
+        ss.putUpdate(getReport(0, 0, 0, 1000 + n, false));
+        List<Persistable> after = ss.getUpdatesDownsampled("sid0", "tid0", "wid0", 0, 1000);
+        assertEquals(before.subList(0, before.size() - 1), after.subList(0, before.size() - 1));
+
+        ss.close();
+        ss = new SegmentStatsStorage(dir);
+        assertEquals(n + 1, ss.getNumUpdateRecordsFor("sid0", "tid0", "wid0"));
+        assertEquals(after, ss.getUpdatesDownsampled("sid0", "tid0", "wid0", 0, 1000));
+        ss.close();
+    }
+
     private static StatsInitializationReport getInitReport(int idNumber, int tid, int wid, boolean useJ7Storage) {
         StatsInitializationReport rep;
         if (useJ7Storage) {
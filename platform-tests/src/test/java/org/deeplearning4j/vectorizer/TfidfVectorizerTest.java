@@ -23,7 +23,9 @@ package org.deeplearning4j.vectorizer;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.bagofwords.vectorizer.CsrMatrix;
 import org.deeplearning4j.bagofwords.vectorizer.TfidfVectorizer;
+import org.deeplearning4j.iterator.SparseTextDataSetIterator;
 import org.deeplearning4j.models.word2vec.VocabWord;
 import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
 import org.deeplearning4j.text.documentiterator.LabelAwareIterator;
@@ -48,6 +50,7 @@ import org.nd4j.common.util.SerializationUtils;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.dataset.DataSet;
 import org.nd4j.linalg.exception.ND4JIllegalStateException;
+import org.nd4j.linalg.factory.Nd4j;
 
 import java.io.File;
 import java.nio.file.Files;
@@ -185,6 +188,74 @@ public class TfidfVectorizerTest extends BaseDL4JTest {
         assertEquals("cat", labels.get(1));
     }
 
+    @Test()
+    public void testSparseTransformMatchesDense() {
+        TfidfVectorizer vectorizer = sparseCorpusVectorizer();
+
+        for (String text : new String[] {"This is 3 file.", "file file file 1", "nothing known here"}) {
+            INDArray dense = vectorizer.transform(text);
+            CsrMatrix sparse = vectorizer.transformSparse(text);
+
+            assertEquals(1, sparse.getRows());
+            assertEquals(dense.length(), sparse.getColumns());
+            assertEquals(dense, sparse.toDense().castTo(dense.dataType()));
+            for (int i = 0; i < sparse.getColumns(); i++)
+                assertEquals(dense.getDouble(i), sparse.get(0, i), 1e-5);
+        }
+
+        CsrMatrix batch = vectorizer.transformSparseDocuments(Arrays.asList("This is 3 file.", "file file file 1"));
+        assertEquals(2, batch.getRows());
+        assertEquals(vectorizer.transformSparse("file file file 1").toDense(), batch.getRows(1, 2).toDense());
+    }
+
+    @Test()
+    public void testSparseDenseGather() {
+        TfidfVectorizer vectorizer = sparseCorpusVectorizer();
+        int vocabSize = vectorizer.getVocabCache().numWords();
+
+        List<LabelledDocument> documents = new ArrayList<>();
+        for (String[] pair : new String[][] {{"This is 1 file.", "A"}, {"This is 2 file.", "B"}, {"This is 3 file.", "A"}}) {
+            LabelledDocument document = new LabelledDocument();
+            document.setContent(pair[0]);
+            document.addLabel(pair[1]);
+            documents.add(document);
+        }
+
+        INDArray weights = Nd4j.rand(vocabSize, 8);
+        INDArray bias = Nd4j.rand(1, 8);
+
+        SparseTextDataSetIterator sparseIterator = new SparseTextDataSetIterator.Builder().vectorizer(vectorizer)
+                .sentenceProvider(new SimpleLabelAwareIterator(documents), Arrays.asList("A", "B"))
+                .minibatchSize(2).build();
+
+        SparseTextDataSetIterator.CsrBatch batch = sparseIterator.nextSparse();
+        assertEquals(2, batch.getFeatures().getRows());
+        assertArrayEquals(new long[] {2, 2}, batch.getLabels().shape());
+
+        SparseTextDataSetIterator gatherIterator = new SparseTextDataSetIterator.Builder().vectorizer(vectorizer)
+                .sentenceProvider(new SimpleLabelAwareIterator(documents), Arrays.asList("A", "B"))
+                .minibatchSize(2).embeddingWeights(weights).embeddingBias(bias).build();
+
+        assertEquals(8, gatherIterator.inputColumns());
+        DataSet ds = gatherIterator.next();
+        INDArray expected = batch.getFeatures().toDense().castTo(weights.dataType()).mmul(weights).addiRowVector(bias);
+        assertEquals(expected, ds.getFeatures());
+        assertEquals(batch.getLabels(), ds.getLabels());
+
+        DataSet last = gatherIterator.next();
+        assertEquals(1, last.numExamples());
+        assertFalse(gatherIterator.hasNext());
+    }
+
+    private static TfidfVectorizer sparseCorpusVectorizer() {
+        List<String> corpus = Arrays.asList("This is 1 file.", "This is 2 file.", "This is 3 file.");
+        TfidfVectorizer vectorizer = new TfidfVectorizer.Builder().setMinWordFrequency(1)
+                .setStopWords(new ArrayList<String>()).setTokenizerFactory(new DefaultTokenizerFactory())
+                .setIterator(new CollectionSentenceIterator(corpus)).allowParallelTokenization(false).build();
+        vectorizer.fit();
+        return vectorizer;
+    }
+
     @Test()
     @Timeout(10000L)
     public void testParallelFlag1() throws Exception {
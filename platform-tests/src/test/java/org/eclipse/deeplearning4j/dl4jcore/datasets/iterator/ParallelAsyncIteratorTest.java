@@ -0,0 +1,299 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.eclipse.deeplearning4j.dl4jcore.datasets.iterator;
+
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.datasets.iterator.ExistingDataSetIterator;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.nd4j.common.tests.tags.NativeTag;
+import org.nd4j.linalg.dataset.AsyncDataSetIterator;
+import org.nd4j.linalg.dataset.AsyncMultiDataSetIterator;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.PrefetchStats;
+import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
+import org.nd4j.linalg.dataset.api.MultiDataSet;
+import org.nd4j.linalg.dataset.api.MultiDataSetPreProcessor;
+import org.nd4j.linalg.dataset.api.iterator.IndexedDataSetIterator;
+import org.nd4j.linalg.dataset.api.iterator.MultiDataSetIterator;
+import org.nd4j.linalg.dataset.api.iterator.SplittableMultiDataSetIterator;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+@DisplayName("Parallel Async Iterator Test")
+@NativeTag
+class ParallelAsyncIteratorTest extends BaseDL4JTest {
+
+    private static final int NUM_BATCHES = 50;
+
+    @Test
+    @DisplayName("Test Ordered Parallel Prefetch")
+    void testOrdered() {
+        for (int producers : new int[] {1, 2, 4}) {
+            AsyncDataSetIterator iterator = new AsyncDataSetIterator(new SlowIndexedIterator(NUM_BATCHES, 2), 4,
+                            producers, true);
+            for (int epoch = 0; epoch < 2; epoch++) {
+                int cnt = 0;
+                while (iterator.hasNext()) {
+                    DataSet ds = iterator.next();
+                    assertEquals(cnt, ds.getFeatures().getInt(0), "Failed with producers: " + producers);
+                    cnt++;
+                }
+                assertEquals(NUM_BATCHES, cnt);
+                iterator.reset();
+            }
+
+            PrefetchStats stats = iterator.getPrefetchStats();
+            assertEquals(producers, stats.getNumProducers());
+            assertEquals(2 * NUM_BATCHES, stats.getConsumedBatches());
+            iterator.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Test Unordered Parallel Prefetch")
+    void testUnordered() {
+        AsyncDataSetIterator iterator = new AsyncDataSetIterator(new SlowIndexedIterator(NUM_BATCHES, 2), 4, 4, false);
+        Set<Integer> seen = new HashSet<>();
+        while (iterator.hasNext())
+            assertTrue(seen.add(iterator.next().getFeatures().getInt(0)));
+
+        assertEquals(NUM_BATCHES, seen.size());
+        iterator.shutdown();
+    }
+
+    @Test
+    @DisplayName("Test Splittable Multi Data Set Iterator")
+    void testSplittableMulti() {
+        AsyncMultiDataSetIterator iterator = new AsyncMultiDataSetIterator(new SplittableMultiIterator(0, 1, NUM_BATCHES),
+                        4, 3, true);
+        int cnt = 0;
+        while (iterator.hasNext()) {
+            MultiDataSet mds = iterator.next();
+            assertEquals(cnt, mds.getFeatures(0).getInt(0));
+            cnt++;
+        }
+        assertEquals(NUM_BATCHES, cnt);
+        iterator.shutdown();
+    }
+
+    @Test
+    @DisplayName("Test Required Producers")
+    void testRequiredProducers() {
+        // producer is much slower than consumer, so more producers are required
+        AsyncDataSetIterator iterator = new AsyncDataSetIterator(new SlowIndexedIterator(20, 20), 4, 1, true);
+        while (iterator.hasNext())
+            iterator.next();
+
+        PrefetchStats stats = iterator.getPrefetchStats();
+        log.info("Prefetch stats: {}", stats);
+        assertEquals(20, stats.getProducedBatches());
+        assertTrue(stats.getProducerMillisPerBatch() >= 20.0);
+        assertTrue(stats.requiredProducers() > 1);
+        assertTrue(stats.waitFraction() > 0.5);
+        iterator.shutdown();
+    }
+
+    @Test
+    @DisplayName("Test Parallel Prefetch Requires Indexed Or Splittable Iterator")
+    void testRequiresIndexedIterator() {
+        List<DataSet> list = new ArrayList<>();
+        list.add(new DataSet(Nd4j.create(1, 1), Nd4j.create(1, 1)));
+        assertThrows(IllegalArgumentException.class,
+                        () -> new AsyncDataSetIterator(new ExistingDataSetIterator(list), 4, 2, true));
+    }
+
+    @Test
+    @DisplayName("Test Producer Exception")
+    void testProducerException() {
+        SlowIndexedIterator base = new SlowIndexedIterator(NUM_BATCHES, 0);
+        base.failAt = 17;
+        AsyncDataSetIterator iterator = new AsyncDataSetIterator(base, 4, 3, true);
+        assertThrows(RuntimeException.class, () -> {
+            while (iterator.hasNext())
+                iterator.next();
+        });
+        iterator.shutdown();
+    }
+
+    private static class SlowIndexedIterator implements IndexedDataSetIterator {
+        private final int numBatches;
+        private final long delay;
+        private int cursor;
+        private int failAt = -1;
+
+        private SlowIndexedIterator(int numBatches, long delay) {
+            this.numBatches = numBatches;
+            this.delay = delay;
+        }
+
+        @Override
+        public int numBatches() {
+            return numBatches;
+        }
+
+        @Override
+        public DataSet get(int batchIndex) {
+            if (batchIndex == failAt)
+                throw new IllegalStateException("Failed at " + batchIndex);
+
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new DataSet(Nd4j.createFromArray(new int[] {batchIndex}).reshape(1, 1), Nd4j.create(1, 1));
+        }
+
+        @Override
+        public DataSet next(int num) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int inputColumns() {
+            return 1;
+        }
+
+        @Override
+        public int totalOutcomes() {
+            return 1;
+        }
+
+        @Override
+        public boolean resetSupported() {
+            return true;
+        }
+
+        @Override
+        public boolean asyncSupported() {
+            return true;
+        }
+
+        @Override
+        public void reset() {
+            cursor = 0;
+        }
+
+        @Override
+        public int batch() {
+            return 1;
+        }
+
+        @Override
+        public void setPreProcessor(DataSetPreProcessor preProcessor) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public DataSetPreProcessor getPreProcessor() {
+            return null;
+        }
+
+        @Override
+        public List<String> getLabels() {
+            return null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return cursor < numBatches;
+        }
+
+        @Override
+        public DataSet next() {
+            return get(cursor++);
+        }
+    }
+
+    private static class SplittableMultiIterator implements SplittableMultiDataSetIterator {
+        private final int first;
+        private final int step;
+        private final int count;
+        private int cursor;
+
+        private SplittableMultiIterator(int first, int step, int count) {
+            this.first = first;
+            this.step = step;
+            this.count = count;
+            this.cursor = first;
+        }
+
+        @Override
+        public List<MultiDataSetIterator> split(int numSplits) {
+            List<MultiDataSetIterator> ret = new ArrayList<>();
+            for (int i = 0; i < numSplits; i++)
+                ret.add(new SplittableMultiIterator(first + i * step, step * numSplits, count));
+            return ret;
+        }
+
+        @Override
+        public MultiDataSet next(int num) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setPreProcessor(MultiDataSetPreProcessor preProcessor) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public MultiDataSetPreProcessor getPreProcessor() {
+            return null;
+        }
+
+        @Override
+        public boolean resetSupported() {
+            return true;
+        }
+
+        @Override
+        public boolean asyncSupported() {
+            return true;
+        }
+
+        @Override
+        public void reset() {
+            cursor = first;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return cursor < count;
+        }
+
+        @Override
+        public MultiDataSet next() {
+            int idx = cursor;
+            cursor += step;
+            return new org.nd4j.linalg.dataset.MultiDataSet(Nd4j.createFromArray(new int[] {idx}).reshape(1, 1),
+                            Nd4j.create(1, 1));
+        }
+    }
+}
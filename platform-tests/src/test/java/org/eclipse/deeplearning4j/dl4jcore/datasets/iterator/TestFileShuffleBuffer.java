@@ -0,0 +1,166 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.eclipse.deeplearning4j.dl4jcore.datasets.iterator;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.datasets.iterator.file.FileDataSetIterator;
+import org.deeplearning4j.datasets.iterator.file.ShuffleBufferConfig;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.nd4j.common.tests.tags.NativeTag;
+import org.nd4j.common.tests.tags.TagNames;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@NativeTag
+@Tag(TagNames.FILE_IO)
+@Tag(TagNames.NDARRAY_ETL)
+public class TestFileShuffleBuffer extends BaseDL4JTest {
+    private static final int NUM_FILES = 10;
+    private static final int PER_FILE = 10;
+    private static final int BATCH_SIZE = 16;
+
+    private static final ShuffleBufferConfig CONFIG = ShuffleBufferConfig.builder().bufferSize(25).openFiles(3)
+            .loaderThreads(2).seed(42).build();
+
+    @Test
+    public void testShuffleBuffer(@TempDir Path folder) throws Exception {
+        File f = writeFiles(folder);
+
+        FileDataSetIterator iter = new FileDataSetIterator(f, BATCH_SIZE);
+        iter.setShuffleBuffer(CONFIG);
+        List<Double> epoch1 = collect(iter);
+        iter.reset();
+        List<Double> epoch2 = collect(iter);
+
+        assertEquals(NUM_FILES * PER_FILE, epoch1.size());
+        assertEquals(NUM_FILES * PER_FILE, new HashSet<>(epoch1).size());
+        assertEquals(new HashSet<>(epoch1), new HashSet<>(epoch2));
+        //Different epochs have different order
+        assertNotEquals(epoch1, epoch2);
+
+        //Examples of single file are not returned together anymore
+        int sameFileNeighbours = 0;
+        for (int i = 1; i < epoch1.size(); i++) {
+            if ((int) (epoch1.get(i) / PER_FILE) == (int) (epoch1.get(i - 1) / PER_FILE))
+                sameFileNeighbours++;
+        }
+        assertTrue(sameFileNeighbours < epoch1.size() / 2, "Too many neighbours from the same file: " + sameFileNeighbours);
+    }
+
+    @Test
+    public void testShuffleBufferDeterminism(@TempDir Path folder) throws Exception {
+        File f = writeFiles(folder);
+
+        //Same seed, same epoch: same order
+        FileDataSetIterator iter = new FileDataSetIterator(f, BATCH_SIZE);
+        iter.setShuffleBuffer(CONFIG);
+        FileDataSetIterator iter2 = new FileDataSetIterator(f, BATCH_SIZE);
+        iter2.setShuffleBuffer(CONFIG);
+        assertEquals(collect(iter), collect(iter2));
+    }
+
+    @Test
+    public void testShuffleBufferShards(@TempDir Path folder) throws Exception {
+        File f = writeFiles(folder);
+
+        //Shards are disjoint and cover all examples
+        Set<Double> all = new HashSet<>();
+        int total = 0;
+        for (int shard = 0; shard < 3; shard++) {
+            FileDataSetIterator sharded = new FileDataSetIterator(f, BATCH_SIZE);
+            sharded.setShuffleBuffer(ShuffleBufferConfig.builder().bufferSize(25).openFiles(3).seed(42)
+                    .numShards(3).shardIndex(shard).build());
+            List<Double> values = collect(sharded);
+            total += values.size();
+            all.addAll(values);
+        }
+        assertEquals(NUM_FILES * PER_FILE, total);
+        assertEquals(NUM_FILES * PER_FILE, all.size());
+    }
+
+    @Test
+    public void testShuffleBufferShardsListingOrder(@TempDir Path folder) throws Exception {
+        File dirA = new File(folder.toFile(), "a");
+        File dirB = new File(folder.toFile(), "b");
+        writeFiles(dirA, 0, NUM_FILES / 2);
+        writeFiles(dirB, NUM_FILES / 2, NUM_FILES);
+
+        //Workers listing the same files in different order still get disjoint shards covering all examples
+        File[][] listings = {{dirA, dirB}, {dirB, dirA}};
+        Set<Double> all = new HashSet<>();
+        int total = 0;
+        for (int shard = 0; shard < 3; shard++) {
+            FileDataSetIterator sharded = new FileDataSetIterator(listings[shard % 2], true, new Random(shard), BATCH_SIZE,
+                    (String[]) null);
+            sharded.setShuffleBuffer(ShuffleBufferConfig.builder().bufferSize(25).openFiles(3).seed(42)
+                    .numShards(3).shardIndex(shard).build());
+            List<Double> values = collect(sharded);
+            total += values.size();
+            all.addAll(values);
+        }
+        assertEquals(NUM_FILES * PER_FILE, total);
+        assertEquals(NUM_FILES * PER_FILE, all.size());
+
+        //Same seed: same example order, whatever the listing order
+        FileDataSetIterator iter = new FileDataSetIterator(listings[0], true, new Random(), BATCH_SIZE, (String[]) null);
+        iter.setShuffleBuffer(CONFIG);
+        FileDataSetIterator iter2 = new FileDataSetIterator(listings[1], true, new Random(), BATCH_SIZE, (String[]) null);
+        iter2.setShuffleBuffer(CONFIG);
+        assertEquals(collect(iter), collect(iter2));
+    }
+
+    private static File writeFiles(Path folder) throws Exception {
+        return writeFiles(folder.toFile(), 0, NUM_FILES);
+    }
+
+    private static File writeFiles(File f, int firstFile, int endFile) throws Exception {
+        f.mkdirs();
+        for (int i = firstFile; i < endFile; i++) {
+            int first = i * PER_FILE;
+            DataSet ds = new DataSet(Nd4j.linspace(first, first + PER_FILE - 1, PER_FILE).reshape(PER_FILE, 1),
+                    Nd4j.linspace(first, first + PER_FILE - 1, PER_FILE).reshape(PER_FILE, 1));
+            ds.save(new File(f, "d" + i + ".bin"));
+        }
+        return f;
+    }
+
+    private static List<Double> collect(DataSetIterator iter) {
+        List<Double> out = new ArrayList<>();
+        while (iter.hasNext()) {
+            DataSet ds = iter.next();
+            assertTrue(ds.numExamples() <= BATCH_SIZE);
+            for (int i = 0; i < ds.numExamples(); i++) {
+                assertEquals(ds.getFeatures().getDouble(i, 0), ds.getLabels().getDouble(i, 0), 0.0);
+                out.add(ds.getFeatures().getDouble(i, 0));
+            }
+        }
+        return out;
+    }
+}
@@ -345,6 +345,59 @@ public class GradientCheckTestsComputationGraph extends BaseDL4JTest {
         }
     }
 
+    @Test
+    public void testBasicIrisWithElementWiseNodeActivation() {
+
+        ElementWiseVertex.Op[] ops = {ElementWiseVertex.Op.Add,
+                ElementWiseVertex.Op.Subtract, ElementWiseVertex.Op.Product, ElementWiseVertex.Op.Average, ElementWiseVertex.Op.Max};
+
+        for (ElementWiseVertex.Op op : ops) {
+
+            Nd4j.getRandom().setSeed(12345);
+            ComputationGraphConfiguration conf = new NeuralNetConfiguration.Builder().seed(12345)
+                    .dataType(DataType.DOUBLE)
+                    .optimizationAlgo(OptimizationAlgorithm.STOCHASTIC_GRADIENT_DESCENT)
+                    .dist(new NormalDistribution(0, 1))
+                    .updater(new NoOp()).graphBuilder().addInputs("input")
+                    .addLayer("l1", new DenseLayer.Builder().nIn(4).nOut(5).activation(Activation.TANH).build(),
+                            "input")
+                    .addLayer("l2", new DenseLayer.Builder().nIn(4).nOut(5).activation(Activation.SIGMOID)
+                            .build(), "input")
+                    .addVertex("elementwise", new ElementWiseVertex(op, Activation.TANH.getActivationFunction()), "l1", "l2")
+                    .addLayer("outputLayer",
+                            new OutputLayer.Builder().lossFunction(LossFunctions.LossFunction.MCXENT)
+                                    .activation(Activation.SOFTMAX).nIn(5).nOut(3).build(),
+                            "elementwise")
+                    .setOutputs("outputLayer").build();
+
+            ComputationGraph graph = new ComputationGraph(conf);
+            graph.init();
+
+            Nd4j.getRandom().setSeed(12345);
+            long nParams = graph.numParams();
+            INDArray newParams = Nd4j.rand(new long[]{1, nParams});
+            graph.setParams(newParams);
+
+            DataSet ds = new IrisDataSetIterator(150, 150).next();
+            INDArray min = ds.getFeatures().min(0);
+            INDArray max = ds.getFeatures().max(0);
+            ds.getFeatures().subiRowVector(min).diviRowVector(max.sub(min));
+            INDArray input = ds.getFeatures();
+            INDArray labels = ds.getLabels();
+
+            if (PRINT_RESULTS) {
+                System.out.println("testBasicIrisWithElementWiseNodeActivation(op=" + op + ")");
+            }
+
+            boolean gradOK = GradientCheckUtil.checkGradients(new GradientCheckUtil.GraphConfig().net(graph).inputs(new INDArray[]{input})
+                    .labels(new INDArray[]{labels}));
+
+            String msg = "testBasicIrisWithElementWiseNodeActivation(op=" + op + ")";
+            assertTrue(gradOK, msg);
+            TestUtils.testModelSerialization(graph);
+        }
+    }
+
     @Test
     public void testBasicIrisWithElementWiseNodeInputSizeGreaterThanTwo() {
 
@@ -0,0 +1,211 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+package org.eclipse.deeplearning4j.dl4jcore.nn.graph;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.nn.conf.BackpropType;
+import org.deeplearning4j.nn.conf.CacheMode;
+import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.graph.ElementWiseVertex;
+import org.deeplearning4j.nn.conf.graph.MergeVertex;
+import org.deeplearning4j.nn.conf.inputs.InputType;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.conf.memory.MemoryType;
+import org.deeplearning4j.nn.conf.memory.MemoryUseMode;
+import org.deeplearning4j.nn.conf.memory.NetworkMemoryReport;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.weights.WeightInit;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.nd4j.common.tests.tags.NativeTag;
+import org.nd4j.common.tests.tags.TagNames;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.MultiDataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.learning.config.Adam;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@NativeTag
+@Tag(TagNames.DL4J_OLD_API)
+public class TestActivationCheckpointing extends BaseDL4JTest {
+
+    /**
+     * in -> d0 -> ... -> d7 -> merge(d2, d7) -> out, with add(d3, d5) -> d6
+     */
+    private static ComputationGraphConfiguration.GraphBuilder graph(double dropOut) {
+        NeuralNetConfiguration.Builder b = new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .dataType(DataType.DOUBLE)
+                .updater(new Adam(1e-2))
+                .weightInit(WeightInit.XAVIER)
+                .activation(Activation.TANH);
+        if (dropOut > 0) {
+            b.dropOut(dropOut);
+        }
+
+        return b.graphBuilder()
+                .addInputs("in")
+                .addLayer("d0", new DenseLayer.Builder().nIn(10).nOut(16).build(), "in")
+                .addLayer("d1", new DenseLayer.Builder().nIn(16).nOut(16).build(), "d0")
+                .addLayer("d2", new DenseLayer.Builder().nIn(16).nOut(16).build(), "d1")
+                .addLayer("d3", new DenseLayer.Builder().nIn(16).nOut(16).build(), "d2")
+                .addLayer("d4", new DenseLayer.Builder().nIn(16).nOut(16).build(), "d3")
+                .addLayer("d5", new DenseLayer.Builder().nIn(16).nOut(16).build(), "d4")
+                .addVertex("add", new ElementWiseVertex(ElementWiseVertex.Op.Add), "d3", "d5")
+                .addLayer("d6", new DenseLayer.Builder().nIn(16).nOut(16).build(), "add")
+                .addLayer("d7", new DenseLayer.Builder().nIn(16).nOut(16).build(), "d6")
+                .addVertex("merge", new MergeVertex(), "d2", "d7")
+                .addLayer("out", new OutputLayer.Builder().nIn(32).nOut(3).activation(Activation.SOFTMAX)
+                        .lossFunction(LossFunctions.LossFunction.MCXENT).build(), "merge")
+                .setOutputs("out");
+    }
+
+    @Test
+    public void testSegments() {
+        ComputationGraphConfiguration none = graph(0).build();
+        assertFalse(none.isActivationCheckpointing());
+        assertTrue(none.activationCheckpointSegments().isEmpty());
+
+        ComputationGraphConfiguration every2 = graph(0).activationCheckpointing(2).build();
+        assertEquals(Arrays.asList(
+                Arrays.asList("d0", "d1"),
+                Arrays.asList("d2", "d3"),
+                Arrays.asList("d4", "d5"),
+                Arrays.asList("add", "d6", "d7")),
+                every2.activationCheckpointSegments());   //Last segment (merge, out) contains the output: not recomputed
+
+        ComputationGraphConfiguration named = graph(0).activationCheckpoints("d2", "add").build();
+        assertEquals(Arrays.asList(
+                Arrays.asList("d0", "d1", "d2"),
+                Arrays.asList("d3", "d4", "d5", "add")),
+                named.activationCheckpointSegments());
+    }
+
+    @Test
+    public void testConfigurationSerde() {
+        ComputationGraphConfiguration conf = graph(0.8).activationCheckpointing(3).activationCheckpoints("add").build();
+        assertTrue(conf.isActivationCheckpointing());
+        assertEquals(3, conf.getActivationCheckpointInterval());
+        assertEquals(Collections.singletonList("add"), conf.getActivationCheckpoints());
+
+        assertEquals(conf, ComputationGraphConfiguration.fromJson(conf.toJson()));
+        assertEquals(conf, ComputationGraphConfiguration.fromYaml(conf.toYaml()));
+        assertEquals(conf, conf.clone());
+        assertNotEquals(graph(0.8).build(), conf);
+    }
+
+    @Test
+    public void testInvalidConfiguration() {
+        assertThrows(IllegalStateException.class, () -> graph(0).activationCheckpoints("nonExistent").build());
+        assertThrows(IllegalStateException.class, () -> graph(0).activationCheckpointing(2)
+                .backpropType(BackpropType.TruncatedBPTT).build());
+        assertThrows(IllegalArgumentException.class, () -> graph(0).activationCheckpointing(-1));
+    }
+
+    @Test
+    public void testGradientsMatch() {
+        for (ComputationGraphConfiguration.GraphBuilder checkpointed : Arrays.asList(
+                graph(0.7).activationCheckpointing(2),
+                graph(0.7).activationCheckpointing(1),
+                graph(0.7).activationCheckpoints("d2", "add"))) {
+            for (CacheMode cm : new CacheMode[]{CacheMode.NONE, CacheMode.DEVICE}) {
+                ComputationGraph net = new ComputationGraph(graph(0.7).build());
+                net.init();
+                ComputationGraphConfiguration conf = checkpointed.build();
+                conf.setCacheMode(cm);
+                ComputationGraph netCheckpointed = new ComputationGraph(conf);
+                netCheckpointed.init(net.params().dup(), false);
+
+                Nd4j.getRandom().setSeed(12345);
+                INDArray f = Nd4j.rand(DataType.DOUBLE, 8, 10);
+                INDArray l = Nd4j.zeros(DataType.DOUBLE, 8, 3);
+                for (int i = 0; i < 8; i++) {
+                    l.putScalar(i, i % 3, 1.0);
+                }
+                MultiDataSet mds = new MultiDataSet(f, l);
+
+                for (ComputationGraph cg : Arrays.asList(net, netCheckpointed)) {
+                    cg.setInputs(f);
+                    cg.setLabels(l);
+                }
+
+                //Dropout masks must be identical when recomputing, and RNG must continue from the same state afterwards
+                Nd4j.getRandom().setSeed(42);
+                net.computeGradientAndScore();
+                double next = Nd4j.getRandom().nextDouble();
+                Nd4j.getRandom().setSeed(42);
+                netCheckpointed.computeGradientAndScore();
+                assertEquals(next, Nd4j.getRandom().nextDouble(), 0.0);
+
+                assertEquals(net.score(), netCheckpointed.score(), 1e-10);
+                assertEquals(net.gradient().gradient(), netCheckpointed.gradient().gradient());
+
+                Nd4j.getRandom().setSeed(42);
+                for (int i = 0; i < 3; i++) {
+                    net.fit(mds);
+                }
+                Nd4j.getRandom().setSeed(42);
+                for (int i = 0; i < 3; i++) {
+                    netCheckpointed.fit(mds);
+                }
+                assertEquals(net.params(), netCheckpointed.params());
+            }
+        }
+    }
+
+    @Test
+    public void testMemoryReport() {
+        InputType it = InputType.feedForward(10);
+        NetworkMemoryReport standard = graph(0).build().getMemoryReport(it);
+        NetworkMemoryReport checkpointed = graph(0).activationCheckpointing(2).build().getMemoryReport(it);
+
+        assertTrue(standard.getActivationCheckpointSegments().isEmpty());
+        assertEquals(4, checkpointed.getActivationCheckpointSegments().size());
+        List<String> retained = checkpointed.getActivationCheckpoints();
+        assertTrue(retained.containsAll(Arrays.asList("d1", "d2", "d3", "d5", "d7")));
+        assertFalse(retained.contains("d0"));
+        assertFalse(retained.contains("d4"));
+
+        int mb = 32;
+        long stdTrain = standard.getMemoryBytes(MemoryType.ACTIVATIONS, mb, MemoryUseMode.TRAINING, CacheMode.NONE, DataType.FLOAT);
+        long cpTrain = checkpointed.getMemoryBytes(MemoryType.ACTIVATIONS, mb, MemoryUseMode.TRAINING, CacheMode.NONE, DataType.FLOAT);
+        assertTrue(cpTrain < stdTrain, cpTrain + " vs. " + stdTrain);
+        assertTrue(checkpointed.getTotalMemoryBytes(mb, MemoryUseMode.TRAINING, CacheMode.NONE, DataType.FLOAT)
+                < standard.getTotalMemoryBytes(mb, MemoryUseMode.TRAINING, CacheMode.NONE, DataType.FLOAT));
+
+        //Inference isn't affected
+        assertEquals(standard.getTotalMemoryBytes(mb, MemoryUseMode.INFERENCE, CacheMode.NONE, DataType.FLOAT),
+                checkpointed.getTotalMemoryBytes(mb, MemoryUseMode.INFERENCE, CacheMode.NONE, DataType.FLOAT));
+
+        String str = checkpointed.toString();
+        assertTrue(str.contains("Activation Checkpointing"), str);
+        assertFalse(standard.toString().contains("Activation Checkpointing"));
+    }
+}
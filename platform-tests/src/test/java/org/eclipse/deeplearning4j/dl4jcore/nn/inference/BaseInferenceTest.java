@@ -0,0 +1,48 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.eclipse.deeplearning4j.dl4jcore.nn.inference;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+/**
+ * Shared setup of inference optimization tests: longer timeouts for zoo model checks, and forward pass timing
+ */
+public abstract class BaseInferenceTest extends BaseDL4JTest {
+
+    @Override
+    public long getTimeoutMilliseconds() {
+        return isIntegrationTests() ? 600000 : 240000;
+    }
+
+    /**
+     * @return Total time in milliseconds of the given number of inference forward passes, after one warmup pass
+     */
+    protected static long time(ComputationGraph net, INDArray input, int iterations) {
+        //Warmup
+        net.outputSingle(input);
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < iterations; i++)
+            net.outputSingle(input);
+        return System.currentTimeMillis() - start;
+    }
+}
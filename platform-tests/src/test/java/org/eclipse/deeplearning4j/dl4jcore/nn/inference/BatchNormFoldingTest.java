@@ -0,0 +1,215 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.eclipse.deeplearning4j.dl4jcore.nn.inference;
+
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.api.Layer;
+import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
+import org.deeplearning4j.nn.conf.ConvolutionMode;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.graph.ElementWiseVertex;
+import org.deeplearning4j.nn.conf.inputs.InputType;
+import org.deeplearning4j.nn.conf.layers.*;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.inference.BatchNormFolding;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.params.BatchNormalizationParamInitializer;
+import org.deeplearning4j.zoo.ZooModel;
+import org.deeplearning4j.zoo.model.Darknet19;
+import org.deeplearning4j.zoo.model.ResNet50;
+import org.deeplearning4j.zoo.model.VGG16;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.nd4j.common.tests.tags.NativeTag;
+import org.nd4j.common.tests.tags.TagNames;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.learning.config.Adam;
+import org.nd4j.linalg.learning.config.NoOp;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+@NativeTag
+@Tag(TagNames.DL4J_OLD_API)
+public class BatchNormFoldingTest extends BaseInferenceTest {
+
+    @Test
+    public void testFoldMultiLayerNetwork() {
+        for (boolean useLogStd : new boolean[] {false, true}) {
+            MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                    .dataType(DataType.DOUBLE)
+                    .seed(12345)
+                    .updater(new Adam(1e-3))
+                    .l2(1e-4)
+                    .list()
+                    .layer(new ConvolutionLayer.Builder(3, 3).nOut(6).activation(Activation.IDENTITY).build())
+                    .layer(new BatchNormalization.Builder().useLogStd(useLogStd).activation(Activation.RELU).build())
+                    .layer(new ConvolutionLayer.Builder(3, 3).nOut(8).hasBias(false).activation(Activation.IDENTITY).build())
+                    .layer(new BatchNormalization.Builder().useLogStd(useLogStd).activation(Activation.IDENTITY).build())
+                    .layer(new SubsamplingLayer.Builder(2, 2).build())
+                    .layer(new DenseLayer.Builder().nOut(10).activation(Activation.IDENTITY).build())
+                    .layer(new BatchNormalization.Builder().useLogStd(useLogStd).activation(Activation.TANH).build())
+                    //Not foldable: preceding layer has non-identity activation
+                    .layer(new DenseLayer.Builder().nOut(10).activation(Activation.RELU).build())
+                    .layer(new BatchNormalization.Builder().useLogStd(useLogStd).build())
+                    .layer(new OutputLayer.Builder().nOut(4).activation(Activation.SOFTMAX)
+                            .lossFunction(LossFunctions.LossFunction.MCXENT).build())
+                    .setInputType(InputType.convolutional(12, 12, 2))
+                    .build();
+
+            MultiLayerNetwork net = new MultiLayerNetwork(conf);
+            net.init();
+            randomizeBatchNorm(net.getLayers());
+            INDArray paramsBefore = net.params().dup();
+
+            MultiLayerNetwork folded = BatchNormFolding.fold(net);
+
+            assertEquals(paramsBefore, net.params(), "Original network must not be modified");
+            assertEquals(net.getnLayers() - 3, folded.getnLayers());
+            assertEquals(1, countBatchNorm(folded.getLayers()));
+            assertTrue(folded.getLayer(0).conf().getLayer() instanceof ConvolutionLayer);
+            assertTrue(((ConvolutionLayer) folded.getLayer(1).conf().getLayer()).hasBias());
+            assertTrue(((BaseLayer) folded.getLayer(0).conf().getLayer()).getIUpdater() instanceof NoOp);
+
+            INDArray input = Nd4j.rand(DataType.DOUBLE, 5, 2, 12, 12);
+            INDArray expected = net.output(input);
+            INDArray actual = folded.output(input);
+            assertTrue(expected.equalsWithEps(actual, 1e-8), "useLogStd=" + useLogStd);
+        }
+    }
+
+    @Test
+    public void testFoldComputationGraph() {
+        ComputationGraphConfiguration conf = new NeuralNetConfiguration.Builder()
+                .dataType(DataType.DOUBLE)
+                .seed(12345)
+                .convolutionMode(ConvolutionMode.Same)
+                .graphBuilder()
+                .addInputs("in")
+                .addLayer("conv0", new ConvolutionLayer.Builder(3, 3).nOut(4).activation(Activation.IDENTITY).build(), "in")
+                .addLayer("bn0", new BatchNormalization.Builder().activation(Activation.RELU).build(), "conv0")
+                .addLayer("conv1", new ConvolutionLayer.Builder(3, 3).nOut(4).activation(Activation.IDENTITY).build(), "bn0")
+                .addLayer("bn1", new BatchNormalization.Builder().build(), "conv1")
+                //Not foldable: conv2 output is also used by the residual connection
+                .addLayer("conv2", new ConvolutionLayer.Builder(1, 1).nOut(4).activation(Activation.IDENTITY).build(), "bn0")
+                .addLayer("bn2", new BatchNormalization.Builder().build(), "conv2")
+                .addVertex("add", new ElementWiseVertex(ElementWiseVertex.Op.Add), "bn1", "bn2", "conv2")
+                .addLayer("conv3", new ConvolutionLayer.Builder(3, 3).nOut(4).activation(Activation.IDENTITY).build(), "add")
+                .addLayer("bn3", new BatchNormalization.Builder().activation(Activation.SIGMOID).build(), "conv3")
+                .addLayer("pool", new GlobalPoolingLayer.Builder().build(), "bn3")
+                .addLayer("out", new OutputLayer.Builder().nOut(3).activation(Activation.SOFTMAX)
+                        .lossFunction(LossFunctions.LossFunction.MCXENT).build(), "pool")
+                .setOutputs("out")
+                .setInputTypes(InputType.convolutional(10, 10, 3))
+                .build();
+
+        ComputationGraph net = new ComputationGraph(conf);
+        net.init();
+        randomizeBatchNorm(net.getLayers());
+
+        ComputationGraph folded = BatchNormFolding.fold(net);
+
+        assertEquals(net.getNumLayers() - 3, folded.getNumLayers());
+        assertNull(folded.getLayer("bn0"));
+        assertNull(folded.getLayer("bn1"));
+        assertNotNull(folded.getLayer("bn2"));
+        assertNull(folded.getLayer("bn3"));
+        assertEquals("conv1", folded.getConfiguration().getVertexInputs().get("add").get(0));
+
+        INDArray input = Nd4j.rand(DataType.DOUBLE, 4, 3, 10, 10);
+        INDArray expected = net.outputSingle(input);
+        INDArray actual = folded.outputSingle(input);
+        assertTrue(expected.equalsWithEps(actual, 1e-8));
+    }
+
+    /**
+     * Inference benchmark: reports forward pass time before and after folding for zoo models.
+     * Note that VGG16 has no batch normalization layers, so nothing is folded there (expected speedup: none)
+     */
+    @Test
+    @Tag(TagNames.LONG_TEST)
+    @Tag(TagNames.LARGE_RESOURCES)
+    public void testFoldZooModelsBenchmark() {
+        int size = isIntegrationTests() ? 224 : 64;
+        int iterations = isIntegrationTests() ? 20 : 3;
+        int minibatch = 8;
+
+        ZooModel[] models = {
+                ResNet50.builder().numClasses(10).inputShape(new int[] {3, size, size}).build(),
+                Darknet19.builder().numClasses(10).inputShape(new int[] {3, size, size}).build(),
+                VGG16.builder().numClasses(10).inputShape(new int[] {3, size, size}).build()
+        };
+
+        for (ZooModel model : models) {
+            ComputationGraph net = (ComputationGraph) model.init();
+            randomizeBatchNorm(net.getLayers());
+            ComputationGraph folded = BatchNormFolding.fold(net);
+
+            INDArray input = Nd4j.rand(DataType.FLOAT, minibatch, 3, size, size);
+            INDArray expected = net.outputSingle(input);
+            INDArray actual = folded.outputSingle(input);
+            assertTrue(expected.equalsWithEps(actual, 1e-3), model.getClass().getSimpleName());
+
+            long original = time(net, input, iterations);
+            long foldedTime = time(folded, input, iterations);
+            log.info("{}: BatchNormalization layers {} -> {}; forward pass: {} ms -> {} ms per minibatch of {} ({}x)",
+                    model.getClass().getSimpleName(), countBatchNorm(net.getLayers()), countBatchNorm(folded.getLayers()),
+                    original / iterations, foldedTime / iterations, minibatch,
+                    String.format("%.2f", original / (double) Math.max(1, foldedTime)));
+        }
+    }
+
+    /**
+     * Sets non-trivial inference statistics and gamma/beta, so the folding is actually tested
+     */
+    private static void randomizeBatchNorm(Layer[] layers) {
+        for (Layer l : layers) {
+            if (!(l instanceof org.deeplearning4j.nn.layers.normalization.BatchNormalization))
+                continue;
+            INDArray mean = l.getParam(BatchNormalizationParamInitializer.GLOBAL_MEAN);
+            mean.assign(Nd4j.randn(mean.dataType(), mean.shape()));
+            INDArray var = l.getParam(BatchNormalizationParamInitializer.GLOBAL_VAR);
+            if (var != null)
+                var.assign(Nd4j.rand(var.dataType(), var.shape()).addi(0.5));
+            INDArray log10s = l.getParam(BatchNormalizationParamInitializer.GLOBAL_LOG_STD);
+            if (log10s != null)
+                log10s.assign(Nd4j.rand(log10s.dataType(), log10s.shape()).subi(0.5));
+            INDArray gamma = l.getParam(BatchNormalizationParamInitializer.GAMMA);
+            gamma.assign(Nd4j.rand(gamma.dataType(), gamma.shape()).addi(0.5));
+            INDArray beta = l.getParam(BatchNormalizationParamInitializer.BETA);
+            beta.assign(Nd4j.randn(beta.dataType(), beta.shape()));
+        }
+    }
+
+    private static int countBatchNorm(Layer[] layers) {
+        int count = 0;
+        for (Layer l : layers) {
+            if (l.conf().getLayer() instanceof BatchNormalization)
+                count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.eclipse.deeplearning4j.dl4jcore.nn.inference;
+
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.conf.CacheMode;
+import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
+import org.deeplearning4j.nn.conf.ConvolutionMode;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.graph.ElementWiseVertex;
+import org.deeplearning4j.nn.conf.inputs.InputType;
+import org.deeplearning4j.nn.conf.layers.*;
+import org.deeplearning4j.nn.conf.memory.MemoryUseMode;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.inference.BatchNormFolding;
+import org.deeplearning4j.nn.inference.GraphFusion;
+import org.deeplearning4j.zoo.ZooModel;
+import org.deeplearning4j.zoo.model.ResNet50;
+import org.deeplearning4j.zoo.model.Xception;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.nd4j.common.tests.tags.NativeTag;
+import org.nd4j.common.tests.tags.TagNames;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.activations.impl.ActivationReLU;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+@NativeTag
+@Tag(TagNames.DL4J_OLD_API)
+public class GraphFusionTest extends BaseInferenceTest {
+
+    @Test
+    public void testFuseActivations() {
+        ComputationGraphConfiguration conf = new NeuralNetConfiguration.Builder()
+                .dataType(DataType.DOUBLE)
+                .seed(12345)
+                .convolutionMode(ConvolutionMode.Same)
+                .graphBuilder()
+                .addInputs("in")
+                .addLayer("conv0", new ConvolutionLayer.Builder(3, 3).nOut(4).activation(Activation.IDENTITY).build(), "in")
+                .addLayer("act0", new ActivationLayer(Activation.RELU), "conv0")
+                .addLayer("sep1", new SeparableConvolution2D.Builder(3, 3).nOut(4).activation(Activation.IDENTITY).build(), "act0")
+                .addLayer("act1", new ActivationLayer(Activation.TANH), "sep1")
+                //Not fused: conv2 output is also used by "add"
+                .addLayer("conv2", new ConvolutionLayer.Builder(1, 1).nOut(4).activation(Activation.IDENTITY).build(), "act0")
+                .addLayer("act2", new ActivationLayer(Activation.RELU), "conv2")
+                .addVertex("add", new ElementWiseVertex(ElementWiseVertex.Op.Add), "act1", "act2", "conv2")
+                .addLayer("act3", new ActivationLayer(Activation.RELU), "add")
+                //Not fused: conv4 already has an activation function
+                .addLayer("conv4", new ConvolutionLayer.Builder(3, 3).nOut(4).activation(Activation.SIGMOID).build(), "act3")
+                .addLayer("act4", new ActivationLayer(Activation.RELU), "conv4")
+                .addLayer("pool", new GlobalPoolingLayer.Builder().build(), "act4")
+                .addLayer("out", new OutputLayer.Builder().nOut(3).activation(Activation.SOFTMAX)
+                        .lossFunction(LossFunctions.LossFunction.MCXENT).build(), "pool")
+                .setOutputs("out")
+                .setInputTypes(InputType.convolutional(10, 10, 3))
+                .build();
+
+        ComputationGraph net = new ComputationGraph(conf);
+        net.init();
+
+        ComputationGraph fused = GraphFusion.fuse(net);
+
+        assertEquals(net.getVertices().length - 3, fused.getVertices().length);
+        assertNull(fused.getVertex("act0"));
+        assertNull(fused.getVertex("act1"));
+        assertNotNull(fused.getVertex("act2"));
+        assertNull(fused.getVertex("act3"));
+        assertNotNull(fused.getVertex("act4"));
+        assertEquals(Arrays.asList("sep1", "act2", "conv2"), fused.getConfiguration().getVertexInputs().get("add"));
+        ElementWiseVertex add = (ElementWiseVertex) fused.getConfiguration().getVertices().get("add");
+        assertTrue(add.getActivationFn() instanceof ActivationReLU);
+
+        INDArray input = Nd4j.rand(DataType.DOUBLE, 4, 3, 10, 10);
+        assertTrue(net.outputSingle(input).equalsWithEps(fused.outputSingle(input), 1e-10));
+
+        //Fused configuration must survive JSON round trip
+        ComputationGraphConfiguration fromJson = ComputationGraphConfiguration.fromJson(fused.getConfiguration().toJson());
+        assertEquals(fused.getConfiguration(), fromJson);
+    }
+
+    @Test
+    public void testMergeElementWiseChains() {
+        ComputationGraphConfiguration conf = new NeuralNetConfiguration.Builder()
+                .dataType(DataType.DOUBLE)
+                .seed(12345)
+                .graphBuilder()
+                .addInputs("in")
+                .addLayer("d0", new DenseLayer.Builder().nIn(5).nOut(5).activation(Activation.TANH).build(), "in")
+                .addLayer("d1", new DenseLayer.Builder().nIn(5).nOut(5).activation(Activation.TANH).build(), "in")
+                .addLayer("d2", new DenseLayer.Builder().nIn(5).nOut(5).activation(Activation.TANH).build(), "in")
+                .addLayer("d3", new DenseLayer.Builder().nIn(5).nOut(5).activation(Activation.TANH).build(), "in")
+                .addVertex("add0", new ElementWiseVertex(ElementWiseVertex.Op.Add), "d0", "d1")
+                .addVertex("add1", new ElementWiseVertex(ElementWiseVertex.Op.Add), "add0", "d2")
+                .addVertex("add2", new ElementWiseVertex(ElementWiseVertex.Op.Add), "d3", "add1")
+                //Not merged: average isn't associative
+                .addVertex("avg0", new ElementWiseVertex(ElementWiseVertex.Op.Average), "d1", "d2")
+                .addVertex("avg1", new ElementWiseVertex(ElementWiseVertex.Op.Average), "avg0", "add2")
+                .addLayer("out", new OutputLayer.Builder().nIn(5).nOut(3).activation(Activation.SOFTMAX)
+                        .lossFunction(LossFunctions.LossFunction.MCXENT).build(), "avg1")
+                .setOutputs("out")
+                .build();
+
+        ComputationGraph net = new ComputationGraph(conf);
+        net.init();
+
+        ComputationGraph fused = GraphFusion.fuse(net);
+
+        assertNull(fused.getVertex("add0"));
+        assertNull(fused.getVertex("add1"));
+        assertEquals(Arrays.asList("d3", "d0", "d1", "d2"), fused.getConfiguration().getVertexInputs().get("add2"));
+        assertNotNull(fused.getVertex("avg0"));
+
+        INDArray input = Nd4j.rand(DataType.DOUBLE, 6, 5);
+        assertTrue(net.outputSingle(input).equalsWithEps(fused.outputSingle(input), 1e-10));
+    }
+
+    /**
+     * Inference benchmark: reports forward pass time and inference memory estimate for the original network, after
+     * batch normalization folding, and after folding + graph fusion
+     */
+    @Test
+    @Tag(TagNames.LONG_TEST)
+    @Tag(TagNames.LARGE_RESOURCES)
+    public void testFusionZooModelsBenchmark() {
+        int size = isIntegrationTests() ? 224 : 96;
+        int iterations = isIntegrationTests() ? 20 : 3;
+        int minibatch = 8;
+
+        ZooModel[] models = {
+                ResNet50.builder().numClasses(10).inputShape(new int[] {3, size, size}).build(),
+                Xception.builder().numClasses(10).inputShape(new int[] {3, size, size}).build()
+        };
+
+        for (ZooModel model : models) {
+            ComputationGraph net = (ComputationGraph) model.init();
+            ComputationGraph folded = BatchNormFolding.fold(net);
+            ComputationGraph fused = GraphFusion.fuse(folded);
+
+            INDArray input = Nd4j.rand(DataType.FLOAT, minibatch, 3, size, size);
+            INDArray expected = net.outputSingle(input);
+            assertTrue(expected.equalsWithEps(fused.outputSingle(input), 1e-3), model.getClass().getSimpleName());
+
+            InputType inputType = InputType.convolutional(size, size, 3);
+            for (ComputationGraph cg : new ComputationGraph[] {net, folded, fused}) {
+                long bytes = cg.getConfiguration().getMemoryReport(inputType)
+                        .getTotalMemoryBytes(minibatch, MemoryUseMode.INFERENCE, CacheMode.NONE, DataType.FLOAT);
+                log.info("{}: vertices: {}; forward pass: {} ms per minibatch of {}; inference memory estimate: {} MB",
+                        model.getClass().getSimpleName(), cg.getVertices().length, time(cg, input, iterations) / iterations,
+                        minibatch, bytes / (1024 * 1024));
+            }
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.eclipse.deeplearning4j.dl4jcore.nn.inference;
+
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.datasets.iterator.impl.IrisDataSetIterator;
+import org.deeplearning4j.datasets.iterator.utilty.ListDataSetIterator;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.inputs.InputType;
+import org.deeplearning4j.nn.conf.layers.*;
+import org.deeplearning4j.nn.inference.Int8Quantizer;
+import org.deeplearning4j.nn.inference.QuantizationReport;
+import org.deeplearning4j.nn.inference.QuantizedLayer;
+import org.deeplearning4j.nn.inference.QuantizedNetwork;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.params.DefaultParamInitializer;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.nd4j.common.tests.tags.NativeTag;
+import org.nd4j.common.tests.tags.TagNames;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.learning.config.Adam;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+@NativeTag
+@Tag(TagNames.DL4J_OLD_API)
+public class Int8QuantizerTest extends BaseInferenceTest {
+
+    @Test
+    public void testQuantizeDenseNetwork() {
+        MultiLayerNetwork net = irisNetwork();
+        DataSetIterator iter = new IrisDataSetIterator(50, 150);
+        INDArray paramsBefore = net.params().dup();
+
+        QuantizedNetwork quantized = new Int8Quantizer.Builder()
+                .calibrationData(iter)
+                .maxAccuracyLoss(0.05)
+                .build()
+                .quantize(net);
+
+        assertEquals(paramsBefore, net.params(), "Original network must not be modified");
+        QuantizationReport report = quantized.getReport();
+        assertNotNull(report);
+        assertEquals(3, report.getLayers().size());
+        assertEquals(QuantizationReport.Status.UNSUPPORTED, report.getLayers().get(2).getStatus());
+        assertTrue(report.getOriginalAccuracy() - report.getQuantizedAccuracy() <= 0.05);
+        assertTrue(quantized.numQuantizedLayers() > 0);
+        assertTrue(report.getQuantizedSizeBytes() < report.getOriginalSizeBytes());
+
+        //Float layers of the quantized network still match the original
+        iter.reset();
+        DataSet ds = iter.next();
+        INDArray expected = net.output(ds.getFeatures());
+        INDArray actual = quantized.output(ds.getFeatures());
+        assertArrayEquals(expected.shape(), actual.shape());
+        assertTrue(expected.equalsWithEps(actual, 0.05));
+    }
+
+    @Test
+    public void testQuantizeConvolutionNetwork() {
+        for (QuantizedLayer.Kernel kernel : QuantizedLayer.Kernel.values()) {
+            if (kernel == QuantizedLayer.Kernel.INT8_GEMM && !QuantizedLayer.isInt8GemmSupported())
+                continue;
+
+            MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                    .seed(12345)
+                    .list()
+                    .layer(new ConvolutionLayer.Builder(3, 3).nOut(8).activation(Activation.RELU).build())
+                    .layer(new SubsamplingLayer.Builder(2, 2).stride(2, 2).build())
+                    .layer(new DenseLayer.Builder().nOut(16).activation(Activation.RELU).build())
+                    .layer(new OutputLayer.Builder().nOut(3).activation(Activation.SOFTMAX)
+                            .lossFunction(LossFunctions.LossFunction.MCXENT).build())
+                    .setInputType(InputType.convolutional(10, 10, 2))
+                    .build();
+            MultiLayerNetwork net = new MultiLayerNetwork(conf);
+            net.init();
+
+            DataSetIterator iter = syntheticData(2, 10, 10, 3);
+            QuantizedNetwork quantized = new Int8Quantizer.Builder()
+                    .calibrationData(iter)
+                    .maxAccuracyLoss(1.0)
+                    .kernel(kernel)
+                    .build()
+                    .quantize(net);
+
+            assertEquals(kernel, quantized.getReport().getKernel());
+            assertEquals(2, quantized.numQuantizedLayers());
+            assertNotNull(quantized.getQuantizedLayers()[0]);
+            assertNotNull(quantized.getQuantizedLayers()[2]);
+
+            //Per-channel INT8 quantization: activations stay close to floating point ones
+            iter.reset();
+            INDArray features = iter.next().getFeatures();
+            INDArray expected = net.feedForwardToLayer(0, features, false).get(1);
+            INDArray actual = quantized.getQuantizedLayers()[0].activate(features);
+            assertArrayEquals(expected.shape(), actual.shape());
+            double relError = expected.sub(actual).norm2Number().doubleValue() / expected.norm2Number().doubleValue();
+            assertTrue(relError < 0.05, kernel + ": relative error " + relError);
+
+            assertArrayEquals(net.output(features).shape(), quantized.output(features).shape());
+        }
+    }
+
+    @Test
+    public void testFallbackWhenAccuracyLost() {
+        //Iris data with an extra input feature that is always zero
+        DataSet iris = new IrisDataSetIterator(150, 150).next();
+        iris.setFeatures(Nd4j.hstack(iris.getFeatures(), Nd4j.zeros(iris.getFeatures().dataType(), 150, 1)));
+        List<DataSet> data = iris.asList();
+
+        for (QuantizedLayer.Kernel kernel : QuantizedLayer.Kernel.values()) {
+            if (kernel == QuantizedLayer.Kernel.INT8_GEMM && !QuantizedLayer.isInt8GemmSupported())
+                continue;
+
+            MultiLayerNetwork net = irisNetwork(5, new ListDataSetIterator<>(data, 50));
+            //Huge weights for the zero feature don't change floating point outputs, but the per-channel scales of layer 0
+            //become so large that all its other weights round to zero: accuracy drops with both kernels
+            net.getLayer(0).getParam(DefaultParamInitializer.WEIGHT_KEY).getRow(4).assign(1e6);
+
+            QuantizedNetwork quantized = new Int8Quantizer.Builder()
+                    .calibrationData(new ListDataSetIterator<>(data, 50))
+                    .maxAccuracyLoss(0.0)
+                    .kernel(kernel)
+                    .build()
+                    .quantize(net);
+
+            QuantizationReport report = quantized.getReport();
+            QuantizationReport.LayerReport first = report.getLayers().get(0);
+            assertEquals(QuantizationReport.Status.FALLBACK, first.getStatus(), kernel.toString());
+            assertTrue(first.getAccuracyLoss() > 0.2, kernel + ": accuracy loss " + first.getAccuracyLoss());
+            assertNull(quantized.getQuantizedLayers()[0]);
+            assertTrue(report.getOriginalAccuracy() - report.getQuantizedAccuracy() <= 0.0);
+            for (QuantizationReport.LayerReport l : report.getLayers()) {
+                if (l.getStatus() == QuantizationReport.Status.FALLBACK)
+                    assertNull(quantized.getQuantizedLayers()[l.getIndex()]);
+            }
+
+            //Layer 0 runs in floating point: outputs stay close to the original network
+            INDArray features = iris.getFeatures();
+            INDArray expected = net.output(features);
+            assertTrue(expected.equalsWithEps(quantized.output(features), 0.05));
+        }
+    }
+
+    @Test
+    public void testBuilderValidation() {
+        assertThrows(IllegalStateException.class, () -> new Int8Quantizer.Builder().build());
+        assertThrows(IllegalStateException.class, () -> new Int8Quantizer.Builder()
+                .calibrationData(new IrisDataSetIterator(50, 150)).maxAccuracyLoss(-1).build());
+    }
+
+    private static MultiLayerNetwork irisNetwork() {
+        return irisNetwork(4, new IrisDataSetIterator(50, 150));
+    }
+
+    private static MultiLayerNetwork irisNetwork(int nIn, DataSetIterator trainData) {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .updater(new Adam(1e-2))
+                .list()
+                .layer(new DenseLayer.Builder().nIn(nIn).nOut(32).activation(Activation.RELU).build())
+                .layer(new DenseLayer.Builder().nOut(32).activation(Activation.RELU).build())
+                .layer(new OutputLayer.Builder().nOut(3).activation(Activation.SOFTMAX)
+                        .lossFunction(LossFunctions.LossFunction.MCXENT).build())
+                .setInputType(InputType.feedForward(nIn))
+                .build();
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+        net.fit(trainData, 30);
+        return net;
+    }
+
+    private static DataSetIterator syntheticData(int channels, int height, int width, int nOut) {
+        Nd4j.getRandom().setSeed(12345);
+        INDArray labels = Nd4j.create(DataType.FLOAT, 32, nOut);
+        for (int i = 0; i < 32; i++)
+            labels.putScalar(i, i % nOut, 1.0);
+        List<DataSet> list = new DataSet(Nd4j.rand(DataType.FLOAT, 32, channels, height, width), labels).asList();
+        return new ListDataSetIterator<>(list, 8);
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.eclipse.deeplearning4j.dl4jcore.nn.updater;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.nn.api.Model;
+import org.deeplearning4j.nn.conf.BackpropType;
+import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.graph.MergeVertex;
+import org.deeplearning4j.nn.conf.layers.BatchNormalization;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.LSTM;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.conf.layers.RnnOutputLayer;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.params.BatchNormalizationParamInitializer;
+import org.deeplearning4j.nn.weights.WeightInit;
+import org.deeplearning4j.optimize.api.BaseTrainingListener;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.nd4j.common.tests.tags.NativeTag;
+import org.nd4j.common.tests.tags.TagNames;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.MultiDataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.learning.config.Sgd;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@NativeTag
+@Tag(TagNames.DL4J_OLD_API)
+public class TestGradientAccumulation extends BaseDL4JTest {
+
+    private static NeuralNetConfiguration.Builder base() {
+        return new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .dataType(DataType.DOUBLE)
+                .updater(new Sgd(0.1))
+                .weightInit(WeightInit.XAVIER)
+                .activation(Activation.TANH);
+    }
+
+    private static MultiLayerConfiguration mlnConf(int microBatches) {
+        return base()
+                .list()
+                .layer(new DenseLayer.Builder().nIn(5).nOut(8).build())
+                .layer(new DenseLayer.Builder().nIn(8).nOut(8).build())
+                .layer(new OutputLayer.Builder().nIn(8).nOut(3).activation(Activation.SOFTMAX)
+                        .lossFunction(LossFunctions.LossFunction.MCXENT).build())
+                .gradientAccumulation(microBatches)
+                .build();
+    }
+
+    private static ComputationGraphConfiguration graphConf(int microBatches) {
+        return base()
+                .graphBuilder()
+                .addInputs("in1", "in2")
+                .addLayer("d1", new DenseLayer.Builder().nIn(5).nOut(8).build(), "in1")
+                .addLayer("d2", new DenseLayer.Builder().nIn(4).nOut(8).build(), "in2")
+                .addVertex("merge", new MergeVertex(), "d1", "d2")
+                .addLayer("out1", new OutputLayer.Builder().nIn(16).nOut(3).activation(Activation.SOFTMAX)
+                        .lossFunction(LossFunctions.LossFunction.MCXENT).build(), "merge")
+                .addLayer("out2", new OutputLayer.Builder().nIn(16).nOut(2).activation(Activation.IDENTITY)
+                        .lossFunction(LossFunctions.LossFunction.MSE).build(), "merge")
+                .setOutputs("out1", "out2")
+                .gradientAccumulation(microBatches)
+                .build();
+    }
+
+    @Test
+    public void testConfiguration() {
+        MultiLayerConfiguration mlc = mlnConf(4);
+        assertEquals(4, mlc.getMicroBatches());
+        assertEquals(1, mlnConf(1).getMicroBatches());
+        assertEquals(mlc, MultiLayerConfiguration.fromJson(mlc.toJson()));
+        assertEquals(mlc, mlc.clone());
+
+        ComputationGraphConfiguration cgc = graphConf(3);
+        assertEquals(3, cgc.getMicroBatches());
+        assertEquals(cgc, ComputationGraphConfiguration.fromJson(cgc.toJson()));
+        assertEquals(cgc, cgc.clone());
+
+        assertThrows(IllegalArgumentException.class, () -> base().list().gradientAccumulation(0));
+        assertThrows(IllegalArgumentException.class, () -> base().graphBuilder().gradientAccumulation(0));
+
+        assertThrows(IllegalStateException.class, () -> base()
+                .list()
+                .layer(new LSTM.Builder().nIn(3).nOut(4).build())
+                .layer(new RnnOutputLayer.Builder().nIn(4).nOut(2).build())
+                .backpropType(BackpropType.TruncatedBPTT).tBPTTLength(5)
+                .gradientAccumulation(2)
+                .build());
+    }
+
+    @Test
+    public void testMultiLayerNetwork() {
+        DataSet ds = new DataSet(Nd4j.rand(DataType.DOUBLE, 10, 5), oneHot(10, 3));
+
+        for (int microBatches : new int[]{2, 3, 10, 16}) {
+            MultiLayerNetwork full = new MultiLayerNetwork(mlnConf(1));
+            full.init();
+            MultiLayerNetwork accumulated = new MultiLayerNetwork(mlnConf(microBatches));
+            accumulated.init();
+            assertEquals(full.params(), accumulated.params());
+
+            AtomicInteger iterations = countIterations(accumulated);
+            for (int i = 0; i < 3; i++) {
+                full.fit(ds);
+                accumulated.fit(ds);
+
+                String msg = "microBatches=" + microBatches + ", iteration " + i;
+                assertEquals(full.score(), accumulated.score(), 1e-10, msg);
+                assertTrue(full.params().equalsWithEps(accumulated.params(), 1e-10), msg);
+            }
+            assertEquals(3, iterations.get());
+            assertEquals(3, accumulated.getIterationCount());
+
+            //Full minibatch should be restored after fitting
+            accumulated.setInput(ds.getFeatures());
+            accumulated.setLabels(ds.getLabels());
+            accumulated.computeGradientAndScore();
+            double score = accumulated.score();
+            assertEquals(10, accumulated.batchSize());
+            assertEquals(accumulated.score(ds), score, 1e-10);
+        }
+    }
+
+    @Test
+    public void testMultiLayerNetworkMasking() {
+        MultiLayerConfiguration[] confs = new MultiLayerConfiguration[2];
+        for (int i = 0; i < confs.length; i++) {
+            confs[i] = base()
+                    .list()
+                    .layer(new LSTM.Builder().nIn(3).nOut(6).build())
+                    .layer(new RnnOutputLayer.Builder().nIn(6).nOut(2).activation(Activation.SOFTMAX)
+                            .lossFunction(LossFunctions.LossFunction.MCXENT).build())
+                    .gradientAccumulation(i == 0 ? 1 : 3)
+                    .build();
+        }
+
+        int mb = 6;
+        int tsLength = 5;
+        INDArray features = Nd4j.rand(DataType.DOUBLE, mb, 3, tsLength);
+        INDArray labels = Nd4j.create(DataType.DOUBLE, mb, 2, tsLength);
+        INDArray mask = Nd4j.ones(DataType.DOUBLE, mb, tsLength);
+        for (int i = 0; i < mb; i++) {
+            for (int j = 0; j < tsLength; j++) {
+                labels.putScalar(i, (i + j) % 2, j, 1.0);
+                if (j >= tsLength - i % 3) {
+                    mask.putScalar(i, j, 0.0);
+                }
+            }
+        }
+        DataSet ds = new DataSet(features, labels, mask, mask);
+
+        MultiLayerNetwork full = new MultiLayerNetwork(confs[0]);
+        full.init();
+        MultiLayerNetwork accumulated = new MultiLayerNetwork(confs[1]);
+        accumulated.init();
+
+        for (int i = 0; i < 3; i++) {
+            full.fit(ds);
+            accumulated.fit(ds);
+            assertEquals(full.score(), accumulated.score(), 1e-10);
+            assertTrue(full.params().equalsWithEps(accumulated.params(), 1e-10));
+        }
+    }
+
+    @Test
+    public void testComputationGraph() {
+        MultiDataSet mds = new MultiDataSet(
+                new INDArray[]{Nd4j.rand(DataType.DOUBLE, 9, 5), Nd4j.rand(DataType.DOUBLE, 9, 4)},
+                new INDArray[]{oneHot(9, 3), Nd4j.rand(DataType.DOUBLE, 9, 2)});
+
+        for (int microBatches : new int[]{2, 4, 9}) {
+            ComputationGraph full = new ComputationGraph(graphConf(1));
+            full.init();
+            ComputationGraph accumulated = new ComputationGraph(graphConf(microBatches));
+            accumulated.init();
+            assertEquals(full.params(), accumulated.params());
+
+            AtomicInteger iterations = countIterations(accumulated);
+            for (int i = 0; i < 3; i++) {
+                full.fit(mds);
+                accumulated.fit(mds);
+
+                String msg = "microBatches=" + microBatches + ", iteration " + i;
+                assertEquals(full.score(), accumulated.score(), 1e-10, msg);
+                assertTrue(full.params().equalsWithEps(accumulated.params(), 1e-10), msg);
+            }
+            assertEquals(3, iterations.get());
+            assertEquals(3, accumulated.getIterationCount());
+        }
+    }
+
+    @Test
+    public void testBatchNormalizationStatistics() {
+        //Batch norm as the first layer: the average of the (equal size) micro-batch means is the full minibatch mean,
+        // hence the global mean estimate should be identical
+        MultiLayerConfiguration[] confs = new MultiLayerConfiguration[2];
+        for (int i = 0; i < confs.length; i++) {
+            confs[i] = base()
+                    .list()
+                    .layer(new BatchNormalization.Builder().nOut(5).build())
+                    .layer(new DenseLayer.Builder().nIn(5).nOut(8).build())
+                    .layer(new OutputLayer.Builder().nIn(8).nOut(3).activation(Activation.SOFTMAX)
+                            .lossFunction(LossFunctions.LossFunction.MCXENT).build())
+                    .gradientAccumulation(i == 0 ? 1 : 3)
+                    .build();
+        }
+        MultiLayerNetwork full = new MultiLayerNetwork(confs[0]);
+        full.init();
+        MultiLayerNetwork accumulated = new MultiLayerNetwork(confs[1]);
+        accumulated.init();
+
+        DataSet ds = new DataSet(Nd4j.rand(DataType.DOUBLE, 12, 5).addi(2.0), oneHot(12, 3));
+        for (int i = 0; i < 3; i++) {
+            full.fit(ds);
+            accumulated.fit(ds);
+        }
+
+        INDArray expMean = full.getLayer(0).getParam(BatchNormalizationParamInitializer.GLOBAL_MEAN);
+        INDArray actMean = accumulated.getLayer(0).getParam(BatchNormalizationParamInitializer.GLOBAL_MEAN);
+        assertTrue(expMean.equalsWithEps(actMean, 1e-10), expMean + " vs. " + actMean);
+    }
+
+    private static INDArray oneHot(int minibatch, int nOut) {
+        INDArray labels = Nd4j.create(DataType.DOUBLE, minibatch, nOut);
+        for (int i = 0; i < minibatch; i++) {
+            labels.putScalar(i, i % nOut, 1.0);
+        }
+        return labels;
+    }
+
+    private static AtomicInteger countIterations(Model model) {
+        AtomicInteger count = new AtomicInteger();
+        model.addListeners(new BaseTrainingListener() {
+            @Override
+            public void iterationDone(Model model, int iteration, int epoch) {
+                count.incrementAndGet();
+            }
+        });
+        return count;
+    }
+}
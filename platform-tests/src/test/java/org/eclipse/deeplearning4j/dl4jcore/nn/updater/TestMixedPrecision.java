@@ -0,0 +1,244 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.eclipse.deeplearning4j.dl4jcore.nn.updater;
+
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
+import org.deeplearning4j.nn.conf.DynamicLossScaler;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.updater.BaseMultiLayerUpdater;
+import org.deeplearning4j.zoo.model.LeNet;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.nd4j.common.tests.tags.NativeTag;
+import org.nd4j.common.tests.tags.TagNames;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.learning.config.Adam;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+@NativeTag
+@Tag(TagNames.DL4J_OLD_API)
+public class TestMixedPrecision extends BaseDL4JTest {
+
+    @Override
+    public long getTimeoutMilliseconds() {
+        return isIntegrationTests() ? 600000 : 180000;
+    }
+
+    @Test
+    public void testLossScalerUpdate() {
+        DynamicLossScaler scaler = new DynamicLossScaler.Builder()
+                .initialScale(1024).growthInterval(3).minScale(256).maxScale(2048).build();
+
+        scaler.update(false);
+        scaler.update(false);
+        assertEquals(1024, scaler.getScale(), 0.0);
+        scaler.update(false);
+        assertEquals(2048, scaler.getScale(), 0.0);
+        for (int i = 0; i < 3; i++)
+            scaler.update(false);
+        assertEquals(2048, scaler.getScale(), 0.0);    //Bounded by max scale
+
+        scaler.update(true);
+        assertEquals(1024, scaler.getScale(), 0.0);
+        assertEquals(0, scaler.getGoodSteps());
+        scaler.update(true);
+        scaler.update(true);
+        scaler.update(true);
+        assertEquals(256, scaler.getScale(), 0.0);     //Bounded by min scale
+        assertEquals(4, scaler.getSkippedSteps());
+
+        assertThrows(IllegalStateException.class, () -> new DynamicLossScaler.Builder().backoffFactor(2.0).build());
+        assertThrows(IllegalStateException.class, () -> new DynamicLossScaler.Builder().initialScale(0.5).build());
+    }
+
+    @Test
+    public void testConfiguration() {
+        assertThrows(IllegalStateException.class, () -> new NeuralNetConfiguration.Builder()
+                .dataType(DataType.FLOAT)
+                .mixedPrecision()
+                .list()
+                .layer(new OutputLayer.Builder().nIn(4).nOut(3).activation(Activation.SOFTMAX).build())
+                .build());
+
+        MultiLayerConfiguration conf = mlnConf(DataType.HALF, true);
+        assertNotNull(conf.getLossScaler());
+        assertEquals(conf, MultiLayerConfiguration.fromJson(conf.toJson()));
+        assertEquals(conf.getLossScaler(), conf.clone().getLossScaler());
+        assertNotSame(conf.getLossScaler(), conf.clone().getLossScaler());
+
+        ComputationGraphConfiguration cgConf = cgConf(DataType.BFLOAT16);
+        assertNotNull(cgConf.getLossScaler());
+        assertEquals(cgConf, ComputationGraphConfiguration.fromJson(cgConf.toJson()));
+    }
+
+    @Test
+    public void testMixedPrecisionMultiLayerNetwork() {
+        MultiLayerNetwork net = new MultiLayerNetwork(mlnConf(DataType.HALF, true));
+        net.init();
+        DataSet ds = data(DataType.HALF);
+
+        net.fit(ds);
+        double scoreBefore = net.score();
+
+        BaseMultiLayerUpdater<?> updater = (BaseMultiLayerUpdater<?>) net.getUpdater();
+        assertTrue(updater.isMixedPrecision());
+        assertEquals(DataType.HALF, net.params().dataType());
+        assertEquals(DataType.FLOAT, updater.getMasterParams().dataType());
+        assertEquals(DataType.FLOAT, updater.getStateViewArray().dataType());
+        assertEquals(net.params().castTo(DataType.FLOAT), updater.getMasterParams());
+
+        for (int i = 0; i < 50; i++)
+            net.fit(ds);
+        assertTrue(net.score() < scoreBefore, "Score did not decrease: " + scoreBefore + " -> " + net.score());
+        assertEquals(net.params().castTo(DataType.FLOAT), updater.getMasterParams());
+
+        //External parameter changes are copied to the master parameters
+        INDArray newParams = Nd4j.rand(DataType.HALF, net.params().shape());
+        net.setParams(newParams);
+        assertEquals(newParams.castTo(DataType.FLOAT), updater.getMasterParams());
+    }
+
+    @Test
+    public void testOverflowSkipsStep() {
+        MultiLayerConfiguration conf = mlnConf(DataType.HALF, false);
+        conf.setLossScaler(new DynamicLossScaler.Builder().initialScale(1e30).maxScale(1e30).build());
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+        INDArray paramsBefore = net.params().dup();
+
+        //Scaled gradients overflow HALF range: step must be skipped, and scale reduced
+        net.fit(data(DataType.HALF));
+        assertEquals(paramsBefore, net.params());
+        assertEquals(1, conf.getLossScaler().getSkippedSteps());
+        assertEquals(5e29, conf.getLossScaler().getScale(), 1e20);
+    }
+
+    @Test
+    public void testMixedPrecisionComputationGraph() {
+        ComputationGraph net = new ComputationGraph(cgConf(DataType.HALF));
+        net.init();
+        DataSet ds = data(DataType.HALF);
+
+        net.fit(ds);
+        double scoreBefore = net.score();
+        for (int i = 0; i < 50; i++)
+            net.fit(ds);
+        assertTrue(net.score() < scoreBefore, "Score did not decrease: " + scoreBefore + " -> " + net.score());
+
+        BaseMultiLayerUpdater<?> updater = net.getUpdater();
+        assertTrue(updater.isMixedPrecision());
+        assertEquals(DataType.FLOAT, updater.getStateViewArray().dataType());
+        assertEquals(net.params().castTo(DataType.FLOAT), updater.getMasterParams());
+    }
+
+    /**
+     * Throughput and convergence report: zoo LeNet trained in FP32, HALF without loss scaling and HALF mixed precision
+     */
+    @Test
+    public void testZooModelReport() {
+        int minibatch = 32;
+        int iterations = isIntegrationTests() ? 200 : 20;
+
+        Nd4j.getRandom().setSeed(12345);
+        INDArray features = Nd4j.rand(DataType.FLOAT, minibatch, 784);
+        INDArray labels = Nd4j.zeros(DataType.FLOAT, minibatch, 10);
+        for (int i = 0; i < minibatch; i++)
+            labels.putScalar(i, i % 10, 1.0);
+
+        for (String mode : new String[] {"FP32", "HALF", "HALF mixed precision"}) {
+            MultiLayerConfiguration conf = LeNet.builder().numClasses(10).build().conf();
+            DataType dataType = mode.equals("FP32") ? DataType.FLOAT : DataType.HALF;
+            conf.setDataType(dataType);
+            if (mode.endsWith("mixed precision"))
+                conf.setLossScaler(new DynamicLossScaler());
+            MultiLayerNetwork net = new MultiLayerNetwork(conf);
+            net.init();
+
+            DataSet ds = new DataSet(features.castTo(dataType), labels.castTo(dataType));
+            net.fit(ds);
+            double initialScore = net.score();
+
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++)
+                net.fit(ds);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            if (conf.getLossScaler() != null)
+                assertTrue(Double.isFinite(net.score()), mode + ": score is not finite");
+            log.info("{}: {} examples/sec; score {} -> {}; loss scale: {}, skipped steps: {}", mode,
+                    String.format("%.1f", iterations * minibatch / seconds), initialScore, net.score(),
+                    conf.getLossScaler() == null ? "-" : conf.getLossScaler().getScale(),
+                    conf.getLossScaler() == null ? "-" : conf.getLossScaler().getSkippedSteps());
+        }
+    }
+
+    private static MultiLayerConfiguration mlnConf(DataType dataType, boolean mixedPrecision) {
+        NeuralNetConfiguration.Builder builder = new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .dataType(dataType)
+                .updater(new Adam(1e-2));
+        if (mixedPrecision)
+            builder.mixedPrecision();
+        return builder.list()
+                .layer(new DenseLayer.Builder().nIn(4).nOut(16).activation(Activation.TANH).build())
+                .layer(new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(16).nOut(3)
+                        .activation(Activation.SOFTMAX).build())
+                .build();
+    }
+
+    private static ComputationGraphConfiguration cgConf(DataType dataType) {
+        return new NeuralNetConfiguration.Builder()
+                .seed(12345)
+                .dataType(dataType)
+                .updater(new Adam(1e-2))
+                .mixedPrecision()
+                .graphBuilder()
+                .addInputs("in")
+                .addLayer("dense", new DenseLayer.Builder().nIn(4).nOut(16).activation(Activation.TANH).build(), "in")
+                .addLayer("out", new OutputLayer.Builder(LossFunctions.LossFunction.MCXENT).nIn(16).nOut(3)
+                        .activation(Activation.SOFTMAX).build(), "dense")
+                .setOutputs("out")
+                .build();
+    }
+
+    private static DataSet data(DataType dataType) {
+        Nd4j.getRandom().setSeed(12345);
+        INDArray features = Nd4j.rand(DataType.FLOAT, 30, 4);
+        INDArray labels = Nd4j.zeros(DataType.FLOAT, 30, 3);
+        for (int i = 0; i < 30; i++)
+            labels.putScalar(i, i % 3, 1.0);
+        return new DataSet(features.castTo(dataType), labels.castTo(dataType));
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.eclipse.deeplearning4j.dl4jcore.optimizer.listener;
+
+import org.deeplearning4j.BaseDL4JTest;
+import org.deeplearning4j.datasets.iterator.impl.IrisDataSetIterator;
+import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.optimize.api.SpanListener;
+import org.deeplearning4j.optimize.listeners.TimelineListener;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.nd4j.autodiff.listeners.profiler.ProfilingListener;
+import org.nd4j.common.tests.tags.NativeTag;
+import org.nd4j.common.tests.tags.TagNames;
+import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+import org.nd4j.shade.jackson.core.type.TypeReference;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@NativeTag
+@Tag(TagNames.DL4J_OLD_API)
+public class TestTimelineListener extends BaseDL4JTest {
+
+    @Test
+    public void testTimelineMultiLayerNetwork(@TempDir Path tempDir) throws Exception {
+        MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
+                .list()
+                .layer(new DenseLayer.Builder().name("dense").nIn(4).nOut(5).activation(Activation.TANH).build())
+                .layer(new OutputLayer.Builder().name("out").nIn(5).nOut(3).activation(Activation.SOFTMAX)
+                        .lossFunction(LossFunctions.LossFunction.MCXENT).build())
+                .build();
+
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+
+        File f = new File(tempDir.toFile(), "timeline.json");
+        TimelineListener listener = TimelineListener.builder(f).build();
+        net.setListeners(listener);
+        net.fit(new IrisDataSetIterator(50, 150), 2);
+        listener.close();
+
+        List<Map<String, Object>> events = read(f);
+        Map<String, Set<String>> namesByType = namesByType(events);
+        for (SpanListener.Type t : SpanListener.Type.values())
+            assertTrue(namesByType.containsKey(t.name()), "No spans of type " + t);
+
+        assertEquals(new HashSet<>(Arrays.asList("dense", "out")), namesByType.get("FORWARD"));
+        assertEquals(new HashSet<>(Arrays.asList("dense", "out")), namesByType.get("BACKWARD"));
+        assertEquals(6, countType(events, "ITERATION"));
+        assertEquals(0, listener.getDroppedSpans());
+    }
+
+    @Test
+    public void testTimelineFrequency(@TempDir Path tempDir) throws Exception {
+        ComputationGraphConfiguration conf = new NeuralNetConfiguration.Builder()
+                .graphBuilder()
+                .addInputs("in")
+                .addLayer("dense", new DenseLayer.Builder().nIn(4).nOut(5).activation(Activation.TANH).build(), "in")
+                .addLayer("out", new OutputLayer.Builder().nIn(5).nOut(3).activation(Activation.SOFTMAX)
+                        .lossFunction(LossFunctions.LossFunction.MCXENT).build(), "dense")
+                .setOutputs("out")
+                .build();
+
+        ComputationGraph net = new ComputationGraph(conf);
+        net.init();
+
+        File f = new File(tempDir.toFile(), "timeline.json");
+        TimelineListener listener = TimelineListener.builder(f)
+                .warmup(2)
+                .frequency(3)
+                .maxIterations(3)
+                .types(SpanListener.Type.FORWARD, SpanListener.Type.ITERATION)
+                .build();
+        net.setListeners(listener);
+        net.fit(new IrisDataSetIterator(10, 150), 1);
+        listener.close();
+
+        List<Map<String, Object>> events = read(f);
+        Map<String, Set<String>> namesByType = namesByType(events);
+        assertEquals(new HashSet<>(Arrays.asList("FORWARD", "ITERATION")), namesByType.keySet());
+        assertEquals(new HashSet<>(Arrays.asList("dense", "out")), namesByType.get("FORWARD"));
+
+        //Iterations 2, 5 and 8 out of 15 should be recorded
+        Set<Object> iterations = new TreeSet<>();
+        for (Map<String, Object> e : events) {
+            if ("X".equals(e.get("ph")))
+                iterations.add(((Map<?, ?>) e.get("args")).get("iteration"));
+        }
+        assertEquals(new TreeSet<>(Arrays.asList(2, 5, 8)), iterations);
+        assertEquals(3, countType(events, "ITERATION"));
+    }
+
+    private static List<Map<String, Object>> read(File f) throws Exception {
+        return ProfilingListener.jsonMapper().readValue(f, new TypeReference<List<Map<String, Object>>>() {});
+    }
+
+    private static Map<String, Set<String>> namesByType(List<Map<String, Object>> events) {
+        Map<String, Set<String>> out = new HashMap<>();
+        for (Map<String, Object> e : events) {
+            if (!"X".equals(e.get("ph")))
+                continue;
+            String type = (String) e.get("cat");
+            out.computeIfAbsent(type, k -> new HashSet<>()).add((String) e.get("name"));
+        }
+        return out;
+    }
+
+    private static int countType(List<Map<String, Object>> events, String type) {
+        int count = 0;
+        for (Map<String, Object> e : events) {
+            if ("X".equals(e.get("ph")) && type.equals(e.get("cat")))
+                count++;
+        }
+        return count;
+    }
+}
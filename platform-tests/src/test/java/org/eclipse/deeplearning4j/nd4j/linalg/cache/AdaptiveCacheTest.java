@@ -0,0 +1,242 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.eclipse.deeplearning4j.nd4j.linalg.cache;
+
+import org.junit.jupiter.api.Test;
+import org.nd4j.common.tests.BaseND4JTest;
+import org.nd4j.linalg.cache.AdaptiveCache;
+import org.nd4j.linalg.cache.CacheMetricsRegistry;
+import org.nd4j.linalg.cache.CacheStats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdaptiveCacheTest extends BaseND4JTest {
+
+    private static AdaptiveCache<Integer, long[]> cache(String name, long maximumBytes,
+                    AdaptiveCache.RemovalListener<Integer, long[]> listener) {
+        return AdaptiveCache.<Integer, long[]>builder()
+                .name(name)
+                .maximumBytes(maximumBytes)
+                .weigher(v -> v.length * 8L)
+                .removalListener(listener)
+                .build();
+    }
+
+    @Test
+    public void testHitsMissesAndBudget() {
+        AtomicInteger evicted = new AtomicInteger();
+        AdaptiveCache<Integer, long[]> cache = cache("testHitsMissesAndBudget", 800,
+                        (k, v, cause) -> evicted.incrementAndGet());
+
+        for (int i = 0; i < 10; i++)
+            cache.get(i, k -> new long[10]);
+
+        // each value weighs 80 bytes, so the budget holds exactly 10 of them
+        assertEquals(10, cache.size());
+        assertEquals(800, cache.weightedSize());
+        assertEquals(0, evicted.get());
+
+        for (int i = 0; i < 10; i++)
+            assertNotNull(cache.getIfPresent(i));
+
+        cache.get(100, k -> new long[10]);
+        assertEquals(10, cache.size());
+        assertTrue(cache.weightedSize() <= 800);
+        assertEquals(1, evicted.get());
+
+        CacheStats stats = cache.stats();
+        assertEquals(10, stats.getHitCount());
+        assertEquals(11, stats.getMissCount());
+        assertEquals(1, stats.getEvictionCount());
+        assertEquals(10, stats.getEntries());
+        assertEquals(800, stats.getMaximumBytes());
+    }
+
+    @Test
+    public void testFrequentKeysSurviveScan() {
+        AdaptiveCache<Integer, long[]> cache = cache("testFrequentKeysSurviveScan", 100 * 8 * 8, null);
+
+        // 50 hot keys, requested repeatedly
+        for (int r = 0; r < 5; r++) {
+            for (int i = 0; i < 50; i++)
+                cache.get(i, k -> new long[8]);
+        }
+
+        // scan over one-off keys, 10x more than the cache is able to hold
+        for (int i = 1000; i < 2000; i++)
+            cache.get(i, k -> new long[8]);
+
+        int survived = 0;
+        for (int i = 0; i < 50; i++) {
+            if (cache.getIfPresent(i) != null)
+                survived++;
+        }
+
+        // plain LRU would keep none of them
+        assertTrue(survived >= 45, "Only " + survived + " of 50 hot keys survived the scan");
+        assertTrue(cache.weightedSize() <= cache.getMaximumBytes());
+    }
+
+    @Test
+    public void testOversizedValueIsRejected() {
+        List<AdaptiveCache.RemovalCause> causes = new ArrayList<>();
+        AdaptiveCache<Integer, long[]> cache = cache("testOversizedValueIsRejected", 100,
+                        (k, v, cause) -> causes.add(cause));
+
+        long[] value = cache.get(1, k -> new long[100]);
+        assertNotNull(value);
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.stats().getRejectionCount());
+        assertEquals(1, causes.size());
+        assertEquals(AdaptiveCache.RemovalCause.REJECTED, causes.get(0));
+    }
+
+    @Test
+    public void testInvalidateAll() {
+        Map<Integer, AdaptiveCache.RemovalCause> removed = new ConcurrentHashMap<>();
+        AdaptiveCache<Integer, long[]> cache = cache("testInvalidateAll", 8000,
+                        (k, v, cause) -> removed.put(k, cause));
+
+        for (int i = 0; i < 20; i++)
+            cache.get(i, k -> new long[4]);
+
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weightedSize());
+        assertEquals(20, removed.size());
+        for (AdaptiveCache.RemovalCause cause : removed.values())
+            assertEquals(AdaptiveCache.RemovalCause.EXPLICIT, cause);
+
+        assertNull(cache.getIfPresent(0));
+    }
+
+    @Test
+    public void testMetricsRegistry() {
+        AdaptiveCache<Integer, long[]> cache = cache("testMetricsRegistry", 1000, null);
+        cache.get(1, k -> new long[1]);
+        cache.get(1, k -> new long[1]);
+
+        CacheStats stats = CacheMetricsRegistry.getInstance().getStats("testMetricsRegistry");
+        assertNotNull(stats);
+        assertEquals(1, stats.getHitCount());
+        assertEquals(1, stats.getMissCount());
+        assertEquals(0.5, stats.hitRate(), 1e-9);
+        assertTrue(CacheMetricsRegistry.getInstance().getAllStats().containsKey("testMetricsRegistry"));
+
+        CacheMetricsRegistry.getInstance().unregister(cache);
+        assertNull(CacheMetricsRegistry.getInstance().getStats("testMetricsRegistry"));
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        AtomicInteger loaded = new AtomicInteger();
+        AtomicInteger removed = new AtomicInteger();
+        AdaptiveCache<Integer, long[]> cache = cache("testConcurrentAccess", 64 * 80,
+                        (k, v, cause) -> removed.incrementAndGet());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                final int seed = t;
+                futures.add(executor.submit(() -> {
+                    Random rng = new Random(seed);
+                    for (int i = 0; i < 20000; i++) {
+                        int key = rng.nextBoolean() ? rng.nextInt(32) : rng.nextInt(2000);
+                        long[] value = cache.get(key, k -> {
+                            loaded.incrementAndGet();
+                            return new long[10];
+                        });
+                        assertNotNull(value);
+                    }
+                }));
+            }
+
+            // rethrows assertion failures of worker threads
+            for (Future<?> f : futures)
+                f.get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(cache.weightedSize() <= cache.getMaximumBytes());
+        // every loaded value is either cached, or was passed to removal listener
+        assertEquals(loaded.get(), cache.size() + removed.get());
+        assertEquals(80000, cache.stats().requestCount());
+    }
+
+    @Test
+    public void testSlowLoadDoesNotBlockOtherKeys() throws Exception {
+        AdaptiveCache<Integer, long[]> cache = cache("testSlowLoadDoesNotBlockOtherKeys", 64 * 80, null);
+        cache.get(1, k -> new long[10]);
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loaded = new AtomicInteger();
+        Function<Integer, long[]> slowLoader = k -> {
+            loaded.incrementAndGet();
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return new long[10];
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            Future<long[]> first = executor.submit(() -> cache.get(2, slowLoader));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            Future<long[]> second = executor.submit(() -> cache.get(2, slowLoader));
+
+            // hits and loads of other keys go on while key 2 is being loaded
+            assertNotNull(executor.submit(() -> cache.get(1, k -> new long[10])).get(10, TimeUnit.SECONDS));
+            assertNotNull(executor.submit(() -> cache.get(3, k -> new long[10])).get(10, TimeUnit.SECONDS));
+
+            release.countDown();
+            assertSame(first.get(10, TimeUnit.SECONDS), second.get(10, TimeUnit.SECONDS));
+            assertEquals(1, loaded.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testBuilderValidation() {
+        assertThrows(IllegalStateException.class, () -> AdaptiveCache.<Integer, long[]>builder()
+                .name("invalid").weigher(v -> 1).build());
+        assertThrows(IllegalStateException.class, () -> AdaptiveCache.<Integer, long[]>builder()
+                .maximumBytes(100).weigher(v -> 1).build());
+        assertThrows(IllegalStateException.class, () -> AdaptiveCache.<Integer, long[]>builder()
+                .name("invalid").maximumBytes(100).build());
+        assertThrows(IllegalStateException.class, () -> AdaptiveCache.<Integer, long[]>builder()
+                .name("invalid").maximumBytes(100).weigher(v -> 1).windowFraction(1.5).build());
+    }
+}
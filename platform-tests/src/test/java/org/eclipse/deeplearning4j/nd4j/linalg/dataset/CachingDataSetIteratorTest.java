@@ -38,6 +38,7 @@ import org.nd4j.linalg.dataset.api.iterator.SamplingDataSetIterator;
 import org.nd4j.linalg.dataset.api.iterator.cache.DataSetCache;
 import org.nd4j.linalg.dataset.api.iterator.cache.InFileDataSetCache;
 import org.nd4j.linalg.dataset.api.iterator.cache.InMemoryDataSetCache;
+import org.nd4j.linalg.dataset.api.iterator.cache.SegmentedFileDataSetCache;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.factory.Nd4jBackend;
 
@@ -76,6 +77,82 @@ public class CachingDataSetIteratorTest extends BaseNd4jTestWithBackends {
         FileUtils.deleteDirectory(cacheDir.toFile());
     }
 
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testSegmentedFile(Nd4jBackend backend) throws IOException {
+        for (SegmentedFileDataSetCache.Codec codec : SegmentedFileDataSetCache.Codec.values()) {
+            Path cacheDir = Files.createTempDirectory("nd4j-data-set-cache-test");
+            // small segments, so minibatches are spread over several segment files
+            try (SegmentedFileDataSetCache cache = new SegmentedFileDataSetCache(cacheDir.toFile(), codec, 8192, 2)) {
+                runDataSetTest(cache);
+            }
+
+            assertTrue(cacheDir.resolve("segment-00001.bin").toFile().exists(), "Failed for codec " + codec);
+            FileUtils.deleteDirectory(cacheDir.toFile());
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testSegmentedFileReopen(Nd4jBackend backend) throws IOException {
+        Path cacheDir = Files.createTempDirectory("nd4j-data-set-cache-test");
+        DataSet first = new DataSet(Nd4j.rand(20, 10), Nd4j.rand(20, 3));
+        DataSet second = new DataSet(Nd4j.rand(5, 10), Nd4j.rand(5, 3));
+
+        try (SegmentedFileDataSetCache cache = new SegmentedFileDataSetCache(cacheDir)) {
+            cache.put("first", first);
+            cache.put("second", new DataSet(Nd4j.zeros(1, 10), Nd4j.zeros(1, 3)));
+            // overwritten key must return the latest value
+            cache.put("second", second);
+            cache.setComplete("ns", true);
+        }
+
+        try (SegmentedFileDataSetCache cache = new SegmentedFileDataSetCache(cacheDir)) {
+            assertTrue(cache.isComplete("ns"));
+            assertEquals(2, cache.size());
+            assertTrue(cache.contains("first"));
+            assertFalse(cache.contains("third"));
+            assertNull(cache.get("third"));
+
+            assertEquals(first, cache.get("first"));
+            assertEquals(second, cache.get("second"));
+
+            DataSet third = new DataSet(Nd4j.rand(7, 10), Nd4j.rand(7, 3));
+            cache.put("third", third);
+            assertEquals(third, cache.get("third"));
+            assertEquals(first, cache.get("first"));
+        }
+
+        FileUtils.deleteDirectory(cacheDir.toFile());
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testSegmentedFileReopenRollsOver(Nd4jBackend backend) throws IOException {
+        Path cacheDir = Files.createTempDirectory("nd4j-data-set-cache-test");
+        DataSet first = new DataSet(Nd4j.rand(40, 10), Nd4j.rand(40, 3));
+        DataSet second = new DataSet(Nd4j.rand(40, 10), Nd4j.rand(40, 3));
+
+        try (SegmentedFileDataSetCache cache = new SegmentedFileDataSetCache(cacheDir.toFile(),
+                        SegmentedFileDataSetCache.Codec.NONE, 1 << 20, 2)) {
+            cache.put("first", first);
+        }
+        long firstSize = cacheDir.resolve("segment-00000.bin").toFile().length();
+        assertTrue(firstSize > 0);
+
+        // reopened with segments that can't hold another entry of the same size
+        try (SegmentedFileDataSetCache cache = new SegmentedFileDataSetCache(cacheDir.toFile(),
+                        SegmentedFileDataSetCache.Codec.NONE, firstSize + firstSize / 2, 2)) {
+            cache.put("second", second);
+            assertEquals(first, cache.get("first"));
+            assertEquals(second, cache.get("second"));
+        }
+
+        assertEquals(firstSize, cacheDir.resolve("segment-00000.bin").toFile().length());
+        assertTrue(cacheDir.resolve("segment-00001.bin").toFile().exists());
+        FileUtils.deleteDirectory(cacheDir.toFile());
+    }
+
     private void runDataSetTest(DataSetCache cache) {
         int rows = 500;
         int inputColumns = 100;
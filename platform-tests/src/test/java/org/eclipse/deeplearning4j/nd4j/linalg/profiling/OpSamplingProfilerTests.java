@@ -0,0 +1,195 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.eclipse.deeplearning4j.nd4j.linalg.profiling;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.nd4j.common.tests.tags.NativeTag;
+import org.nd4j.linalg.BaseNd4jTestWithBackends;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.factory.Nd4jBackend;
+import org.nd4j.linalg.profiler.OpSamplingProfiler;
+import org.nd4j.linalg.profiler.ProfilerConfig;
+import org.nd4j.linalg.profiler.data.OpSampleStatistics;
+import org.nd4j.linalg.profiler.data.primitives.TimeHistogram;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+@NativeTag
+@Execution(ExecutionMode.SAME_THREAD)
+public class OpSamplingProfilerTests extends BaseNd4jTestWithBackends {
+
+    @BeforeEach
+    public void setUp() {
+        OpSamplingProfiler.getInstance().reset();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        Nd4j.getExecutioner().setProfilingConfig(ProfilerConfig.builder().opSamplingRate(0).build());
+        OpSamplingProfiler.getInstance().reset();
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testHistogram(Nd4jBackend backend) {
+        for (int i = 1; i < TimeHistogram.NUM_BUCKETS; i++) {
+            long lower = TimeHistogram.bucketUpperBound(i - 1) + 1;
+            long upper = TimeHistogram.bucketUpperBound(i);
+            assertEquals(i, TimeHistogram.bucketIndex(lower));
+            assertEquals(i, TimeHistogram.bucketIndex(upper));
+            //Relative error of the recorded value is bounded by the bucket width
+            assertTrue(upper - lower <= Math.max(1, upper / TimeHistogram.SUB_BUCKETS));
+        }
+
+        TimeHistogram h = new TimeHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            h.record(i * 1000L);
+        }
+        long[] buckets = new long[TimeHistogram.NUM_BUCKETS];
+        h.addTo(buckets);
+        assertEquals(1000, h.getCount());
+        assertEquals(500500000L, h.getTotal());
+        assertEquals(1000000L, h.getMax());
+        assertEquals(500000, TimeHistogram.percentile(buckets, 50), 500000 / TimeHistogram.SUB_BUCKETS);
+        assertEquals(990000, TimeHistogram.percentile(buckets, 99), 990000 / TimeHistogram.SUB_BUCKETS);
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testSampleAllOps(Nd4jBackend backend) {
+        Nd4j.getExecutioner().setProfilingConfig(ProfilerConfig.builder().opSamplingRate(1).build());
+        assertTrue(OpSamplingProfiler.getInstance().isEnabled());
+
+        INDArray a = Nd4j.rand(DataType.FLOAT, 4, 5);
+        INDArray b = Nd4j.rand(DataType.FLOAT, 5, 3);
+        for (int i = 0; i < 10; i++) {
+            a.mmul(b);
+        }
+
+        OpSampleStatistics matmul = null;
+        for (OpSampleStatistics s : OpSamplingProfiler.getInstance().getHotOps(Integer.MAX_VALUE)) {
+            if ("matmul".equals(s.getOpName()) && "[4, 5],[5, 3]".equals(s.getInputShapes())) {
+                matmul = s;
+            }
+        }
+        assertNotNull(matmul);
+        assertEquals(10, matmul.getSamples());
+        assertEquals(DataType.FLOAT, matmul.getDataType());
+        assertTrue(matmul.getSampledTime() > 0);
+        assertEquals(matmul.getSampledTime(), matmul.getEstimatedTotalTime());
+        assertTrue(matmul.getMaxTime() >= matmul.getP99Time() && matmul.getP99Time() >= matmul.getP50Time());
+
+        String report = OpSamplingProfiler.getInstance().hotOpsReport(5);
+        log.info(report);
+        assertTrue(report.contains("matmul"));
+
+        //Disabled: nothing further is recorded
+        Nd4j.getExecutioner().setProfilingConfig(ProfilerConfig.builder().opSamplingRate(0).build());
+        OpSamplingProfiler.getInstance().reset();
+        a.mmul(b);
+        assertTrue(OpSamplingProfiler.getInstance().getHotOps(10).isEmpty());
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testSamplingRate(Nd4jBackend backend) {
+        Nd4j.getExecutioner().setProfilingConfig(ProfilerConfig.builder().opSamplingRate(10).build());
+
+        INDArray arr = Nd4j.create(DataType.FLOAT, 10);
+        int n = 10000;
+        for (int i = 0; i < n; i++) {
+            arr.addi(1.0);
+        }
+
+        long samples = 0;
+        for (OpSampleStatistics s : OpSamplingProfiler.getInstance().getHotOps(Integer.MAX_VALUE)) {
+            samples += s.getSamples();
+        }
+        //Randomized sampling intervals: expect about n / 10 samples
+        assertTrue(samples > n / 10 * 0.7 && samples < n / 10 * 1.3, "Samples: " + samples);
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testPeriodicReporting(Nd4jBackend backend) {
+        Nd4j.getExecutioner().setProfilingConfig(ProfilerConfig.builder()
+                .opSamplingRate(OpSamplingProfiler.DEFAULT_SAMPLING_RATE)
+                .opSamplingReportInterval(60000)
+                .build());
+        assertTrue(OpSamplingProfiler.getInstance().isReporting());
+
+        //Config without sampling settings keeps the sampler as is
+        Nd4j.getExecutioner().setProfilingConfig(ProfilerConfig.builder().checkForNAN(true).build());
+        assertTrue(OpSamplingProfiler.getInstance().isEnabled());
+        assertTrue(OpSamplingProfiler.getInstance().isReporting());
+        Nd4j.getExecutioner().setProfilingConfig(ProfilerConfig.builder().build());
+        assertEquals(OpSamplingProfiler.DEFAULT_SAMPLING_RATE, OpSamplingProfiler.getInstance().getSamplingRate());
+
+        Nd4j.getExecutioner().setProfilingConfig(ProfilerConfig.builder().opSamplingRate(0).build());
+        assertFalse(OpSamplingProfiler.getInstance().isEnabled());
+        assertFalse(OpSamplingProfiler.getInstance().isReporting());
+    }
+
+    /**
+     * Reports the overhead of sampling at the default rate, for small ops where it is most visible
+     */
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testOverhead(Nd4jBackend backend) {
+        INDArray arr = Nd4j.create(DataType.FLOAT, 100);
+        int n = 200000;
+
+        long[] times = new long[2];
+        for (int repeat = 0; repeat < 3; repeat++) {
+            for (int enabled = 0; enabled < 2; enabled++) {
+                Nd4j.getExecutioner().setProfilingConfig(ProfilerConfig.builder()
+                        .opSamplingRate(enabled == 1 ? OpSamplingProfiler.DEFAULT_SAMPLING_RATE : 0).build());
+                long start = System.nanoTime();
+                for (int i = 0; i < n; i++) {
+                    arr.addi(1.0);
+                }
+                times[enabled] = System.nanoTime() - start;
+            }
+        }
+
+        List<OpSampleStatistics> hotOps = OpSamplingProfiler.getInstance().getHotOps(1);
+        assertFalse(hotOps.isEmpty());
+        log.info("Disabled: {} ns/op, sampling 1 in {}: {} ns/op ({}% overhead)", times[0] / n,
+                OpSamplingProfiler.DEFAULT_SAMPLING_RATE, times[1] / n,
+                String.format("%.2f", 100.0 * (times[1] - times[0]) / times[0]));
+    }
+
+    @Override
+    public char ordering() {
+        return 'c';
+    }
+}
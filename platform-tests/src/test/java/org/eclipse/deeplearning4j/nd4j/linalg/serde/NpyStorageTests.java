@@ -0,0 +1,340 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.eclipse.deeplearning4j.nd4j.linalg.serde;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.bytedeco.javacpp.Pointer;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.nd4j.common.io.ClassPathResource;
+import org.nd4j.common.tests.tags.TagNames;
+import org.nd4j.linalg.BaseNd4jTestWithBackends;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.AsyncDataSetIterator;
+import org.nd4j.linalg.dataset.ChunkedArrayStoreDataSetIterator;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.factory.Nd4jBackend;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+import org.nd4j.linalg.storage.ChunkedArrayStore;
+import org.nd4j.linalg.storage.MappedNpyFile;
+import org.nd4j.linalg.storage.MappedNpzFile;
+import org.nd4j.serde.npy.NpyHeader;
+import org.nd4j.serde.npy.NpySerde;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+@Tag(TagNames.FILE_IO)
+@Tag(TagNames.NDARRAY_SERDE)
+public class NpyStorageTests extends BaseNd4jTestWithBackends {
+
+    @TempDir
+    Path testDir;
+
+    /**
+     * Reads npy content with the native libnd4j parser
+     */
+    private static INDArray nativeNpy(byte[] content) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(content.length);
+        buffer.put(content);
+        ((Buffer) buffer).rewind();
+        return Nd4j.createFromNpyPointer(new Pointer(buffer));
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testHeaderRoundTrip(Nd4jBackend backend) throws Exception {
+        NpyHeader header = new NpyHeader(DataType.FLOAT, new long[] {3, 4, 5}, false);
+        byte[] bytes = header.toBytes();
+        assertEquals(0, bytes.length % 64);
+        assertEquals(bytes.length, header.getDataOffset());
+
+        NpyHeader restored = NpyHeader.read(new ByteArrayInputStream(bytes));
+        assertEquals(DataType.FLOAT, restored.getDataType());
+        assertArrayEquals(new long[] {3, 4, 5}, restored.getShape());
+        assertEquals('c', restored.order());
+        assertEquals(bytes.length, restored.getDataOffset());
+
+        NpyHeader vector = NpyHeader.read(new ByteArrayInputStream(new NpyHeader(DataType.LONG, new long[] {7}, true).toBytes()));
+        assertArrayEquals(new long[] {7}, vector.getShape());
+        assertEquals('f', vector.order());
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testStreamingMatchesNativeLoader(Nd4jBackend backend) throws Exception {
+        File dir = testDir.resolve("numpy").toFile();
+        assertTrue(dir.mkdirs());
+        new ClassPathResource("numpy_arrays/").copyDirectory(dir);
+
+        int count = 0;
+        for (File f : dir.listFiles()) {
+            if (!f.getName().endsWith(".npy"))
+                continue;
+
+            INDArray expected = nativeNpy(FileUtils.readFileToByteArray(f));
+            assertEquals(expected, Nd4j.createFromNpyFile(f), "Failed on file " + f.getName());
+            assertEquals(expected, Nd4j.createNpyFromByteArray(FileUtils.readFileToByteArray(f)), "Failed on file " + f.getName());
+            try (InputStream is = new FileInputStream(f)) {
+                assertEquals(expected, Nd4j.createNpyFromInputStream(is), "Failed on file " + f.getName());
+            }
+            try (InputStream is = new FileInputStream(f)) {
+                assertEquals(expected, Nd4j.createNpyFromInputStream(is, f.length()), "Failed on file " + f.getName());
+            }
+            count++;
+        }
+        assertTrue(count > 0);
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testSerdeRoundTrip(Nd4jBackend backend) throws Exception {
+        List<INDArray> arrays = new ArrayList<>();
+        arrays.add(Nd4j.rand(DataType.FLOAT, 5, 7));
+        arrays.add(Nd4j.rand(DataType.DOUBLE, 'f', 4, 3, 2));
+        arrays.add(Nd4j.arange(20).castTo(DataType.INT).reshape(4, 5));
+        arrays.add(Nd4j.rand(DataType.FLOAT, 10, 10).get(NDArrayIndex.interval(2, 6), NDArrayIndex.interval(3, 9)));
+        arrays.add(Nd4j.createFromArray(true, false, true));
+
+        for (INDArray arr : arrays) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            long written = NpySerde.write(arr, baos);
+            assertEquals(baos.size(), written);
+
+            INDArray restored = NpySerde.read(new ByteArrayInputStream(baos.toByteArray()));
+            assertEquals(arr, restored);
+            // also readable by the native numpy loader
+            assertEquals(arr, nativeNpy(baos.toByteArray()));
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testMappedNpy(Nd4jBackend backend) throws Exception {
+        INDArray arr = Nd4j.rand(DataType.FLOAT, 100, 32);
+        File file = testDir.resolve("mapped.npy").toFile();
+        try (OutputStream os = new FileOutputStream(file)) {
+            NpySerde.write(arr, os);
+        }
+
+        try (MappedNpyFile npy = MappedNpyFile.open(file)) {
+            INDArray mapped = npy.getArray();
+            assertEquals(arr, mapped);
+            assertTrue(mapped.data().isConstant());
+            assertEquals(arr.get(NDArrayIndex.interval(10, 20), NDArrayIndex.all()),
+                            mapped.get(NDArrayIndex.interval(10, 20), NDArrayIndex.all()).dup());
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testMappedNpyReadOnlyFile(Nd4jBackend backend) throws Exception {
+        INDArray arr = Nd4j.rand(DataType.FLOAT, 20, 8);
+        File file = testDir.resolve("readonly.npy").toFile();
+        try (OutputStream os = new FileOutputStream(file)) {
+            NpySerde.write(arr, os);
+        }
+        byte[] content = FileUtils.readFileToByteArray(file);
+        assertTrue(file.setWritable(false));
+
+        try (MappedNpyFile npy = MappedNpyFile.open(file)) {
+            INDArray copy = npy.getArray().dup();
+            assertEquals(arr, copy);
+            copy.addi(1.0);
+        }
+        // copies are detached from the file
+        assertArrayEquals(content, FileUtils.readFileToByteArray(file));
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testMappedNpz(Nd4jBackend backend) throws Exception {
+        INDArray first = Nd4j.rand(DataType.DOUBLE, 6, 3);
+        INDArray second = Nd4j.arange(12).castTo(DataType.LONG).reshape(3, 4);
+
+        File file = testDir.resolve("arrays.npz").toFile();
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(file))) {
+            writeEntry(zos, "first.npy", first, ZipEntry.STORED);
+            writeEntry(zos, "second.npy", second, ZipEntry.DEFLATED);
+        }
+
+        try (MappedNpzFile npz = MappedNpzFile.open(file)) {
+            Map<String, INDArray> arrays = npz.getArrays();
+            assertEquals(2, arrays.size());
+            assertEquals(first, arrays.get("first"));
+            assertEquals(second, arrays.get("second"));
+            assertTrue(arrays.get("first").data().isConstant());
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testChunkedArrayStore(Nd4jBackend backend) throws Exception {
+        INDArray arr = Nd4j.rand(DataType.FLOAT, 23, 10);
+        File dir = testDir.resolve("store").toFile();
+
+        // chunk shape doesn't divide array shape, so edge chunks are cropped
+        ChunkedArrayStore store = ChunkedArrayStore.fromArray(dir, arr, new long[] {8, 4});
+        assertEquals(3 * 3, dir.listFiles((d, name) -> name.endsWith(".npy")).length);
+        store.close();
+
+        store = ChunkedArrayStore.open(dir, 1024);
+        assertArrayEquals(new long[] {23, 10}, store.shape());
+        assertEquals(arr, store.get(new long[] {0, 0}, new long[] {23, 10}));
+        assertEquals(arr.get(NDArrayIndex.interval(5, 17), NDArrayIndex.interval(3, 9)),
+                        store.get(new long[] {5, 3}, new long[] {17, 9}));
+        assertEquals(arr.get(NDArrayIndex.interval(20, 23), NDArrayIndex.all()), store.getRows(20, 23));
+        assertEquals(arr.getColumn(7), store.get(NDArrayIndex.all(), NDArrayIndex.point(7)));
+        assertTrue(store.cacheStats().getMissCount() > 0);
+
+        INDArray patch = Nd4j.ones(DataType.FLOAT, 4, 4);
+        store.put(new long[] {6, 2}, patch);
+        arr.get(NDArrayIndex.interval(6, 10), NDArrayIndex.interval(2, 6)).assign(patch);
+        assertEquals(arr, store.get(new long[] {0, 0}, new long[] {23, 10}));
+        store.close();
+
+        // reopen, so chunks are read from disk again
+        store = ChunkedArrayStore.open(dir);
+        assertEquals(arr, store.getRows(0, 23));
+        store.close();
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testChunkedArrayStoreMissingChunks(Nd4jBackend backend) throws Exception {
+        File dir = testDir.resolve("sparse-store").toFile();
+        ChunkedArrayStore store = ChunkedArrayStore.create(dir, DataType.DOUBLE, new long[] {100, 100}, new long[] {10, 10});
+        store.put(new long[] {50, 50}, Nd4j.ones(DataType.DOUBLE, 1, 1));
+
+        assertEquals(1, dir.listFiles((d, name) -> name.endsWith(".npy")).length);
+        INDArray region = store.get(new long[] {45, 45}, new long[] {55, 55});
+        assertEquals(1.0, region.sumNumber().doubleValue(), 1e-9);
+        assertEquals(1.0, region.getDouble(5, 5), 1e-9);
+        store.close();
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testChunkedStoreIterator(Nd4jBackend backend) throws Exception {
+        INDArray features = Nd4j.rand(DataType.FLOAT, 50, 6);
+        INDArray labels = Nd4j.rand(DataType.FLOAT, 50, 2);
+        ChunkedArrayStore fStore = ChunkedArrayStore.fromArray(testDir.resolve("f").toFile(), features, new long[] {16, 6});
+        ChunkedArrayStore lStore = ChunkedArrayStore.fromArray(testDir.resolve("l").toFile(), labels, new long[] {16, 2});
+
+        ChunkedArrayStoreDataSetIterator iter = new ChunkedArrayStoreDataSetIterator(fStore, lStore, 16);
+        assertEquals(6, iter.inputColumns());
+        assertEquals(2, iter.totalOutcomes());
+
+        for (int epoch = 0; epoch < 2; epoch++) {
+            List<DataSet> batches = new ArrayList<>();
+            while (iter.hasNext())
+                batches.add(iter.next());
+
+            assertEquals(4, batches.size());
+            assertEquals(2, batches.get(3).numExamples());
+            DataSet merged = DataSet.merge(batches);
+            assertEquals(features, merged.getFeatures());
+            assertEquals(labels, merged.getLabels());
+            iter.reset();
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testChunkedStoreIteratorAsync(Nd4jBackend backend) throws Exception {
+        INDArray features = Nd4j.rand(DataType.FLOAT, 400, 6);
+        INDArray labels = Nd4j.rand(DataType.FLOAT, 400, 2);
+        ChunkedArrayStore fStore = ChunkedArrayStore.fromArray(testDir.resolve("af").toFile(), features, new long[] {16, 6});
+        ChunkedArrayStore lStore = ChunkedArrayStore.fromArray(testDir.resolve("al").toFile(), labels, new long[] {16, 2});
+
+        // batches are produced within cyclic workspaces, cached chunks must survive many workspace cycles
+        for (int producers : new int[] {1, 3}) {
+            AsyncDataSetIterator async = producers == 1
+                            ? new AsyncDataSetIterator(new ChunkedArrayStoreDataSetIterator(fStore, lStore, 8), 2, true)
+                            : new AsyncDataSetIterator(new ChunkedArrayStoreDataSetIterator(fStore, lStore, 8), 2, producers, true);
+            for (int epoch = 0; epoch < 3; epoch++) {
+                long row = 0;
+                while (async.hasNext()) {
+                    DataSet ds = async.next();
+                    long last = row + ds.numExamples();
+                    assertEquals(features.get(NDArrayIndex.interval(row, last), NDArrayIndex.all()), ds.getFeatures());
+                    assertEquals(labels.get(NDArrayIndex.interval(row, last), NDArrayIndex.all()), ds.getLabels());
+                    row = last;
+                }
+                assertEquals(400, row);
+                async.reset();
+            }
+            async.shutdown();
+        }
+
+        // chunks cached while iterating are still intact
+        assertEquals(features, fStore.getRows(0, 400));
+        assertEquals(labels, lStore.getRows(0, 400));
+        fStore.close();
+        lStore.close();
+    }
+
+    private static void writeEntry(ZipOutputStream zos, String name, INDArray arr, int method) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        NpySerde.write(arr, baos);
+        byte[] bytes = baos.toByteArray();
+
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(method);
+        if (method == ZipEntry.STORED) {
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            entry.setSize(bytes.length);
+            entry.setCompressedSize(bytes.length);
+            entry.setCrc(crc.getValue());
+        }
+        zos.putNextEntry(entry);
+        zos.write(bytes);
+        zos.closeEntry();
+    }
+
+    @Override
+    public char ordering() {
+        return 'c';
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.eclipse.deeplearning4j.nd4j.linalg.workspace;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.nd4j.common.tests.tags.NativeTag;
+import org.nd4j.common.tests.tags.TagNames;
+import org.nd4j.linalg.BaseNd4jTestWithBackends;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.memory.MemoryWorkspace;
+import org.nd4j.linalg.api.memory.WorkspaceSizingAdvisor;
+import org.nd4j.linalg.api.memory.WorkspaceTelemetry;
+import org.nd4j.linalg.api.memory.conf.WorkspaceConfiguration;
+import org.nd4j.linalg.api.memory.enums.AllocationPolicy;
+import org.nd4j.linalg.api.memory.enums.LearningPolicy;
+import org.nd4j.linalg.api.memory.enums.ResetPolicy;
+import org.nd4j.linalg.api.memory.enums.SpillPolicy;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.factory.Nd4jBackend;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+@Tag(TagNames.WORKSPACES)
+@NativeTag
+@Execution(ExecutionMode.SAME_THREAD)
+public class WorkspaceTelemetryTests extends BaseNd4jTestWithBackends {
+
+    private static final String WS_ID = "WS_TELEMETRY";
+
+    // deliberately too small: every cycle below needs 8000+ bytes
+    private static final WorkspaceConfiguration undersizedConfig = WorkspaceConfiguration.builder()
+            .initialSize(1024).overallocationLimit(0.0).policyAllocation(AllocationPolicy.OVERALLOCATE)
+            .policyLearning(LearningPolicy.FIRST_LOOP).policySpill(SpillPolicy.EXTERNAL).build();
+
+    private static final WorkspaceConfiguration circularConfig = WorkspaceConfiguration.builder()
+            .initialSize(0).policyAllocation(AllocationPolicy.STRICT).policySpill(SpillPolicy.REALLOCATE)
+            .policyLearning(LearningPolicy.FIRST_LOOP).policyReset(ResetPolicy.ENDOFBUFFER_REACHED).build();
+
+    @AfterEach
+    public void shutdown() {
+        Nd4j.getMemoryManager().setCurrentWorkspace(null);
+        Nd4j.getWorkspaceManager().destroyAllWorkspacesForCurrentThread();
+        Nd4j.getWorkspaceManager().clearSizingRecommendations();
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testSpillTelemetry(Nd4jBackend backend) {
+        runCycles(3);
+
+        WorkspaceTelemetry telemetry = find(Nd4j.getWorkspaceManager().getWorkspaceTelemetryForCurrentThread(), WS_ID,
+                Thread.currentThread().getId());
+        assertNotNull(telemetry);
+        log.info("Telemetry: {}", telemetry);
+
+        assertEquals(3, telemetry.getCycles());
+        assertEquals(3, telemetry.getSpilledAllocations());
+        assertEquals(3, telemetry.getMissedAllocations());
+        assertEquals(0, telemetry.getPinnedAllocations());
+        assertEquals(1024, telemetry.getCurrentSize());
+        assertTrue(telemetry.getPeakCycleAllocations() >= 1000 * 8);
+        assertTrue(telemetry.getMaxSpilledSize() >= 1000 * 8);
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testTelemetryFromOtherThread(Nd4jBackend backend) throws Exception {
+        AtomicLong threadId = new AtomicLong();
+        Thread thread = new Thread(() -> {
+            threadId.set(Thread.currentThread().getId());
+            runCycles(2);
+        });
+        thread.start();
+        thread.join();
+
+        WorkspaceTelemetry telemetry = find(Nd4j.getWorkspaceManager().getWorkspaceTelemetry(), WS_ID, threadId.get());
+        assertNotNull(telemetry);
+        assertEquals(2, telemetry.getCycles());
+        assertEquals(2, telemetry.getSpilledAllocations());
+
+        assertNull(find(Nd4j.getWorkspaceManager().getWorkspaceTelemetryForCurrentThread(), WS_ID, threadId.get()));
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testRecommendAndApply(Nd4jBackend backend) {
+        runCycles(3);
+
+        Map<String, WorkspaceSizingAdvisor.Recommendation> recommendations =
+                new WorkspaceSizingAdvisor().recommendAndApply(Nd4j.getWorkspaceManager());
+
+        WorkspaceSizingAdvisor.Recommendation recommendation = recommendations.get(WS_ID);
+        assertNotNull(recommendation);
+        assertEquals(3, recommendation.getMissedAllocations());
+        assertTrue(recommendation.getInitialSize() >= recommendation.getPeakCycleAllocations());
+        assertEquals(0, recommendation.getInitialSize() % 8);
+        assertTrue(Nd4j.getWorkspaceManager().getSizingRecommendations().containsKey(WS_ID));
+
+        // next run: same id and configuration, but the workspace is now big enough
+        Nd4j.getWorkspaceManager().destroyAllWorkspacesForCurrentThread();
+        runCycles(3);
+
+        WorkspaceTelemetry telemetry = find(Nd4j.getWorkspaceManager().getWorkspaceTelemetryForCurrentThread(), WS_ID,
+                Thread.currentThread().getId());
+        assertNotNull(telemetry);
+        assertEquals(0, telemetry.getMissedAllocations());
+        assertTrue(telemetry.getCurrentSize() >= recommendation.getPeakCycleAllocations());
+        assertEquals(1024, undersizedConfig.getInitialSize());
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.nd4j.linalg.BaseNd4jTestWithBackends#configs")
+    public void testCircularRecommendationIsStable(Nd4jBackend backend) {
+        runCycles(circularConfig, 3);
+
+        MemoryWorkspace workspace = Nd4j.getWorkspaceManager().getWorkspaceForCurrentThread(WS_ID);
+        WorkspaceTelemetry telemetry = find(Nd4j.getWorkspaceManager().getWorkspaceTelemetryForCurrentThread(), WS_ID,
+                Thread.currentThread().getId());
+        assertNotNull(telemetry);
+
+        // initialization adds a margin to maxCycle of circular workspaces, telemetry has to report the real peak
+        assertTrue(telemetry.getPeakCycleAllocations() >= 1000 * 8);
+        assertTrue(telemetry.getPeakCycleAllocations() < workspace.getMaxCycleAllocations());
+
+        WorkspaceSizingAdvisor advisor = new WorkspaceSizingAdvisor();
+        WorkspaceSizingAdvisor.Recommendation first = advisor.recommendAndApply(Nd4j.getWorkspaceManager()).get(WS_ID);
+        assertNotNull(first);
+
+        // next run starts from the recommended size, and must lead to the same recommendation
+        Nd4j.getWorkspaceManager().destroyAllWorkspacesForCurrentThread();
+        runCycles(circularConfig, 3);
+
+        WorkspaceSizingAdvisor.Recommendation second = advisor.recommendAndApply(Nd4j.getWorkspaceManager()).get(WS_ID);
+        assertNotNull(second);
+        assertEquals(first.getPeakCycleAllocations(), second.getPeakCycleAllocations());
+        assertEquals(first.getInitialSize(), second.getInitialSize());
+    }
+
+    private static void runCycles(int cycles) {
+        runCycles(undersizedConfig, cycles);
+    }
+
+    private static void runCycles(WorkspaceConfiguration configuration, int cycles) {
+        for (int i = 0; i < cycles; i++) {
+            try (MemoryWorkspace ws = Nd4j.getWorkspaceManager().getAndActivateWorkspace(configuration, WS_ID)) {
+                Nd4j.create(DataType.DOUBLE, 1000);
+            }
+        }
+    }
+
+    private static WorkspaceTelemetry find(List<WorkspaceTelemetry> telemetry, String id, long threadId) {
+        for (WorkspaceTelemetry t : telemetry) {
+            if (t.getWorkspaceId().equals(id) && t.getThreadId() == threadId)
+                return t;
+        }
+        return null;
+    }
+
+    @Override
+    public char ordering() {
+        return 'c';
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.python4j;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.nd4j.common.tests.tags.NativeTag;
+import org.nd4j.common.tests.tags.TagNames;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+import org.nd4j.python4j.numpy.NumpyArray;
+import org.nd4j.python4j.numpy.PythonWorkerPool;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+@NotThreadSafe
+@Tag(TagNames.FILE_IO)
+@NativeTag
+@Tag(TagNames.PYTHON)
+public class PythonWorkerPoolTest {
+
+    private static final String CPU_BOUND_CODE = "s = 0\nfor i in range(n):\n    s += i * i\nout = x * 2.0 + s % 7";
+
+    @Test
+    public void testArraysAndValues() {
+        try (PythonWorkerPool pool = PythonWorkerPool.builder().numWorkers(2).sharedMemoryBytes(1024).build()) {
+            assertEquals(2, pool.getNumWorkers());
+
+            //Input is a view, output is larger than the initial shared memory
+            INDArray x = Nd4j.linspace(DataType.FLOAT, 1, 1000, 1).reshape(10, 100).get(NDArrayIndex.interval(2, 6), NDArrayIndex.all());
+            PythonVariable<INDArray> out = new PythonVariable<>("out", NumpyArray.INSTANCE);
+            PythonVariable<Long> count = new PythonVariable<>("count", PythonTypes.INT);
+            PythonVariable<String> msg = new PythonVariable<>("msg", PythonTypes.STR);
+
+            pool.exec("import numpy as np\nout = np.tile(x * factor, (3, 1))\ncount = int(x.size)\nmsg = name.upper()",
+                    Arrays.asList(new PythonVariable<>("x", NumpyArray.INSTANCE, x),
+                            new PythonVariable<>("factor", PythonTypes.FLOAT, 2.0),
+                            new PythonVariable<>("name", PythonTypes.STR, "worker")),
+                    Arrays.asList(out, count, msg));
+
+            INDArray expected = Nd4j.concat(0, x.mul(2), x.mul(2), x.mul(2));
+            assertEquals(expected, out.getValue());
+            assertEquals(400L, count.getValue());
+            assertEquals("WORKER", msg.getValue());
+
+            PythonVariable<INDArray> ints = new PythonVariable<>("ints", NumpyArray.INSTANCE);
+            pool.exec("import numpy as np\nints = np.arange(6, dtype=np.int64).reshape(2, 3)", null, Collections.singletonList(ints));
+            assertEquals(Nd4j.createFromArray(new long[][]{{0, 1, 2}, {3, 4, 5}}), ints.getValue());
+        }
+    }
+
+    @Test
+    public void testErrorsAndRecovery() {
+        try (PythonWorkerPool pool = PythonWorkerPool.builder().numWorkers(1).build()) {
+            PythonException e = assertThrows(PythonException.class, () -> pool.exec("raise ValueError('boom')", null, null));
+            assertTrue(e.getMessage().contains("ValueError: boom"), e.getMessage());
+
+            //Worker process dies, next call restarts it
+            assertThrows(PythonException.class, () -> pool.exec("import os\nos._exit(1)", null, null));
+            PythonVariable<Long> y = new PythonVariable<>("y", PythonTypes.INT);
+            pool.exec("y = 40 + 2", null, Collections.singletonList(y));
+            assertEquals(42L, y.getValue());
+        }
+    }
+
+    /**
+     * Throughput of the same CPU bound code, executed from several Java threads via the in-process interpreter
+     * (serialized by the GIL) and via the worker pool
+     */
+    @Test
+    public void testThroughputBenchmark() throws Exception {
+        int threads = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+        int callsPerThread = 20;
+        long n = 200000;
+        INDArray x = Nd4j.rand(DataType.FLOAT, 256, 256);
+
+        ExecutorService exec = Executors.newFixedThreadPool(threads);
+        try (PythonWorkerPool pool = PythonWorkerPool.builder().numWorkers(threads).setupCode("import numpy as np").build()) {
+            //Warm up both paths
+            runGil(x, n);
+            runPool(pool, x, n);
+
+            long gilTime = time(exec, threads, callsPerThread, () -> runGil(x, n));
+            long poolTime = time(exec, threads, callsPerThread, () -> runPool(pool, x, n));
+
+            int calls = threads * callsPerThread;
+            log.info("Threads: [{}]; GIL calls/sec: [{}]; worker pool calls/sec: [{}]", threads,
+                    String.format("%.1f", calls / (gilTime / 1e9)), String.format("%.1f", calls / (poolTime / 1e9)));
+        } finally {
+            exec.shutdownNow();
+        }
+    }
+
+    private static INDArray runGil(INDArray x, long n) {
+        try (PythonGIL gil = PythonGIL.lock()) {
+            try (PythonGC gc = PythonGC.watch()) {
+                PythonVariable<INDArray> out = new PythonVariable<>("out", NumpyArray.INSTANCE);
+                PythonExecutioner.exec(CPU_BOUND_CODE, Arrays.asList(new PythonVariable<>("x", NumpyArray.INSTANCE, x),
+                        new PythonVariable<>("n", PythonTypes.INT, n)), Collections.singletonList(out));
+                return out.getValue().dup();
+            }
+        }
+    }
+
+    private static INDArray runPool(PythonWorkerPool pool, INDArray x, long n) {
+        PythonVariable<INDArray> out = new PythonVariable<>("out", NumpyArray.INSTANCE);
+        pool.exec(CPU_BOUND_CODE, Arrays.asList(new PythonVariable<>("x", NumpyArray.INSTANCE, x),
+                new PythonVariable<>("n", PythonTypes.INT, n)), Collections.singletonList(out));
+        return out.getValue();
+    }
+
+    private static long time(ExecutorService exec, int threads, int callsPerThread, Runnable call) throws Exception {
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(exec.submit(() -> {
+                for (int i = 0; i < callsPerThread; i++)
+                    call.run();
+            }));
+        }
+        for (Future<?> f : futures)
+            f.get(10, TimeUnit.MINUTES);
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.tensorflow.conversion;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.nd4j.common.io.ClassPathResource;
+import org.nd4j.common.tests.tags.NativeTag;
+import org.nd4j.common.tests.tags.TagNames;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.tensorflow.conversion.graphrunner.GraphRunner;
+import org.nd4j.tensorflow.conversion.graphrunner.GraphRunnerPool;
+
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag(TagNames.FILE_IO)
+@NativeTag
+public class GraphRunnerPoolTest {
+
+    private static GraphRunner castGraphRunner() throws Exception {
+        byte[] graph;
+        try(InputStream is = new ClassPathResource("cast_graph/cast_float32_float64.pb").getInputStream()) {
+            graph = IOUtils.toByteArray(is);
+        }
+        return GraphRunner.builder()
+                .graphBytes(graph)
+                .inputNames(Collections.singletonList("input"))
+                .outputNames(Collections.singletonList("cast_output"))
+                .build();
+    }
+
+    @Test
+    public void testPooledSessions() throws Exception {
+        try(GraphRunnerPool pool = GraphRunnerPool.builder()
+                .graphRunner(castGraphRunner())
+                .numSessions(2)
+                .build()) {
+            for(int i = 0; i < 10; i++) {
+                //same shape every time: input tensors are reused
+                INDArray in = Nd4j.rand(DataType.FLOAT, 3, 4);
+                INDArray out = pool.run(Collections.singletonMap("input", in)).get("cast_output");
+                assertEquals(DataType.DOUBLE, out.dataType());
+                assertEquals(in.castTo(DataType.DOUBLE), out);
+            }
+        }
+    }
+
+    @Test
+    public void testBoundedInputCache() throws Exception {
+        for(int maxCached : new int[]{0, 2}) {
+            try(GraphRunnerPool pool = GraphRunnerPool.builder()
+                    .graphRunner(castGraphRunner())
+                    .maxCachedInputs(maxCached)
+                    .build()) {
+                assertEquals(maxCached, pool.getMaxCachedInputs());
+                //more distinct shapes than cached tensors: least recently used ones are released and recreated
+                for(int i = 0; i < 20; i++) {
+                    INDArray in = Nd4j.rand(DataType.FLOAT, 1 + i % 5, 4);
+                    assertEquals(in.castTo(DataType.DOUBLE), pool.run(Collections.singletonMap("input", in)).get("cast_output"));
+                }
+            }
+        }
+
+        try(GraphRunner runner = castGraphRunner()) {
+            assertThrows(IllegalStateException.class, () -> GraphRunnerPool.builder()
+                    .graphRunner(runner)
+                    .maxCachedInputs(-1)
+                    .build());
+        }
+    }
+
+    @Test
+    public void testBatchedRequests() throws Exception {
+        try(GraphRunnerPool pool = GraphRunnerPool.builder()
+                .graphRunner(castGraphRunner())
+                .numSessions(2)
+                .maxBatchSize(16)
+                .maxBatchDelayMicros(5000L)
+                .build()) {
+            List<INDArray> inputs = new ArrayList<>();
+            List<CompletableFuture<Map<String,INDArray>>> futures = new ArrayList<>();
+            for(int i = 0; i < 100; i++) {
+                INDArray in = Nd4j.rand(DataType.FLOAT, 1, 5);
+                inputs.add(in);
+                futures.add(pool.runAsync(Collections.singletonMap("input", in)));
+            }
+
+            for(int i = 0; i < inputs.size(); i++) {
+                INDArray out = futures.get(i).get().get("cast_output");
+                assertArrayEquals(new long[]{1, 5}, out.shape());
+                assertEquals(inputs.get(i).castTo(DataType.DOUBLE), out);
+            }
+
+            //incompatible shapes are not coalesced
+            INDArray other = Nd4j.rand(DataType.FLOAT, 2, 3);
+            assertEquals(other.castTo(DataType.DOUBLE), pool.run(Collections.singletonMap("input", other)).get("cast_output"));
+        }
+    }
+}
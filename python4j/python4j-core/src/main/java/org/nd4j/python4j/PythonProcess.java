@@ -29,6 +29,14 @@ import java.nio.charset.StandardCharsets;
 
 public class PythonProcess {
     private static String pythonExecutable = Loader.load(org.bytedeco.cpython.python.class);
+
+    /**
+     * @return path to the python executable bundled with the javacpp cpython presets
+     */
+    public static String getPythonExecutable() {
+        return pythonExecutable;
+    }
+
     public static String runAndReturn(String... arguments)throws IOException, InterruptedException{
         String[] allArgs = new String[arguments.length + 1];
         for (int i = 0; i < arguments.length; i++){
@@ -0,0 +1,606 @@
+/*
+ *  ******************************************************************************
+ *  *
+ *  *
+ *  * This program and the accompanying materials are made available under the
+ *  * terms of the Apache License, Version 2.0 which is available at
+ *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *
+ *  *  See the NOTICE file distributed with this work for additional
+ *  *  information regarding copyright ownership.
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  * License for the specific language governing permissions and limitations
+ *  * under the License.
+ *  *
+ *  * SPDX-License-Identifier: Apache-2.0
+ *  *****************************************************************************
+ */
+
+package org.nd4j.python4j.numpy;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.bytedeco.cpython.global.python;
+import org.bytedeco.javacpp.Loader;
+import org.bytedeco.numpy.global.numpy;
+import org.nd4j.common.io.ClassPathResource;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.memory.MemoryWorkspace;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.python4j.PythonException;
+import org.nd4j.python4j.PythonProcess;
+import org.nd4j.python4j.PythonVariable;
+import org.nd4j.shade.jackson.databind.ObjectMapper;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of local Python worker processes, as an alternative to executing code in the embedded interpreter.<br>
+ * Code executed via {@link org.nd4j.python4j.PythonExecutioner} is serialized by the process-wide {@link org.nd4j.python4j.PythonGIL},
+ * so CPU bound python code does not scale with the number of Java threads. Here each worker is a separate python process
+ * with its own GIL, and calls from different threads are dispatched to idle workers.<br>
+ * <br>
+ * Arguments and results are passed as {@link PythonVariable}s, same as {@link org.nd4j.python4j.PythonExecutioner#exec(String, List, List)}:
+ * - {@link INDArray} values (and outputs of {@link NumpyArray} type) are transferred through a memory mapped file owned by each worker,
+ *   and are visible in python as numpy arrays backed by that file. Nothing is pickled or copied through pipes.<br>
+ * - str, int, float, bool, list and dict values are sent as json.<br>
+ * <br>
+ * Input arrays are only valid for the duration of the call: python code must copy them if they have to be kept in globals.
+ * Globals otherwise persist between calls executed by the same worker, but there is no affinity between calls and workers.
+ * Use {@link Builder#setupCode(String)} for imports and other state every worker needs.
+ */
+@Slf4j
+public class PythonWorkerPool implements Closeable {
+    public static final String WORKER_RESOURCE = "org/nd4j/python4j/numpy/pythonworker.py";
+    private static final int ALIGNMENT = 64;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final int numWorkers;
+    private final long sharedMemoryBytes;
+    private final String setupCode;
+    private final File workDir;
+    private final File workerScript;
+    private final BlockingQueue<Worker> idle;
+    private final Set<Worker> workers = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger workerCounter = new AtomicInteger();
+    private final ExecutorService executor;
+    private volatile boolean closed;
+
+    protected PythonWorkerPool(Builder builder) {
+        this.numWorkers = builder.numWorkers;
+        this.sharedMemoryBytes = builder.sharedMemoryBytes;
+        this.setupCode = builder.setupCode;
+        this.idle = new ArrayBlockingQueue<>(numWorkers);
+        try {
+            this.workDir = Files.createTempDirectory(builder.tempDir.toPath(), "python4j-workers").toFile();
+            this.workerScript = new File(workDir, "pythonworker.py");
+            ClassPathResource resource = new ClassPathResource(WORKER_RESOURCE);
+            if (!resource.exists()) {
+                throw new IllegalStateException("Unable to find class path resource for python worker: " + WORKER_RESOURCE);
+            }
+            try (InputStream is = resource.getInputStream()) {
+                FileUtils.copyInputStreamToFile(is, workerScript);
+            }
+        } catch (IOException e) {
+            throw new PythonException("Unable to create python worker directory", e);
+        }
+
+        try {
+            for (int i = 0; i < numWorkers; i++) {
+                idle.add(startWorker());
+            }
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+
+        this.executor = Executors.newFixedThreadPool(numWorkers, r -> {
+            Thread t = new Thread(r, "PythonWorkerPool-dispatch");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return number of python processes in this pool
+     */
+    public int getNumWorkers() {
+        return numWorkers;
+    }
+
+    /**
+     * Executes code on the next idle worker, blocking until one is available.
+     * Values of the output variables are set from the python globals of the same name after execution.
+     *
+     * @param code    python code
+     * @param inputs  input variables, may be null
+     * @param outputs output variables, may be null
+     * @throws PythonException if the python code fails, or the worker process dies
+     */
+    public void exec(@NonNull String code, List<PythonVariable> inputs, List<PythonVariable> outputs) {
+        Worker worker = acquire();
+        try {
+            worker.exec(code, inputs == null ? Collections.<PythonVariable>emptyList() : inputs,
+                    outputs == null ? Collections.<PythonVariable>emptyList() : outputs);
+        } finally {
+            release(worker);
+        }
+    }
+
+    /**
+     * Asynchronous version of {@link #exec(String, List, List)}
+     *
+     * @return future, completed with the output variables
+     */
+    public Future<List<PythonVariable>> submit(@NonNull String code, List<PythonVariable> inputs, List<PythonVariable> outputs) {
+        if (closed) {
+            throw new IllegalStateException("PythonWorkerPool is closed");
+        }
+        return executor.submit(() -> {
+            exec(code, inputs, outputs);
+            return outputs;
+        });
+    }
+
+    private Worker acquire() {
+        if (closed) {
+            throw new IllegalStateException("PythonWorkerPool is closed");
+        }
+        Worker worker;
+        try {
+            worker = idle.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PythonException("Interrupted while waiting for python worker", e);
+        }
+
+        if (closed) {
+            //Pool was closed while we were waiting
+            idle.offer(worker);
+            throw new IllegalStateException("PythonWorkerPool is closed");
+        }
+        if (worker.broken) {
+            //Worker process died during previous call, or could not be restarted
+            log.warn("Python worker {} is not available, restarting", worker.id);
+            worker.destroy();
+            try {
+                worker = startWorker();
+            } catch (RuntimeException e) {
+                idle.offer(new Worker(-1));
+                throw e;
+            }
+        }
+        return worker;
+    }
+
+    private void release(Worker worker) {
+        if (closed) {
+            worker.destroy();
+        }
+        idle.offer(worker);
+    }
+
+    private Worker startWorker() {
+        Worker worker = new Worker(workerCounter.getAndIncrement());
+        workers.add(worker);
+        worker.start();
+        if (setupCode != null) {
+            worker.exec(setupCode, Collections.<PythonVariable>emptyList(), Collections.<PythonVariable>emptyList());
+        }
+        return worker;
+    }
+
+    private static String pythonPath() {
+        Set<String> paths = new LinkedHashSet<>();
+        try {
+            for (File f : python.cachePackages())
+                paths.add(f.getAbsolutePath());
+            for (File f : numpy.cachePackages())
+                paths.add(f.getAbsolutePath());
+        } catch (IOException e) {
+            throw new PythonException("Unable to extract python packages", e);
+        }
+        String existing = System.getenv("PYTHONPATH");
+        if (existing != null && !existing.isEmpty())
+            paths.add(existing);
+        return String.join(File.pathSeparator, paths);
+    }
+
+    /**
+     * Native libraries of the javacpp presets (openblas for numpy, etc.) are not on the system library path,
+     * so the directories they were extracted to are passed to the worker processes
+     */
+    private static String libraryPath(String existing) {
+        Loader.load(numpy.class);
+        Set<String> paths = new LinkedHashSet<>();
+        for (String lib : Loader.getLoadedLibraries().values()) {
+            if (lib != null) {
+                File parent = new File(lib).getParentFile();
+                if (parent != null)
+                    paths.add(parent.getAbsolutePath());
+            }
+        }
+        if (existing != null && !existing.isEmpty())
+            paths.add(existing);
+        return String.join(File.pathSeparator, paths);
+    }
+
+    private static String libraryPathVariable() {
+        String os = System.getProperty("os.name").toLowerCase();
+        if (os.startsWith("windows"))
+            return "PATH";
+        if (os.startsWith("mac"))
+            return "DYLD_LIBRARY_PATH";
+        return "LD_LIBRARY_PATH";
+    }
+
+    /**
+     * Stops all worker processes and deletes their shared memory files. Calls waiting for a worker fail.
+     */
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        if (executor != null)
+            executor.shutdownNow();
+
+        for (Worker w : workers) {
+            w.destroy();
+        }
+        //Wake up threads blocked in acquire()
+        for (int i = idle.size(); i < numWorkers; i++) {
+            idle.offer(new Worker(-1));
+        }
+        FileUtils.deleteQuietly(workDir);
+    }
+
+    protected static String numpyDType(DataType dataType) {
+        switch (dataType) {
+            case DOUBLE:
+                return "<f8";
+            case FLOAT:
+                return "<f4";
+            case HALF:
+                return "<f2";
+            case LONG:
+                return "<i8";
+            case INT:
+                return "<i4";
+            case SHORT:
+                return "<i2";
+            case BYTE:
+                return "|i1";
+            case UINT64:
+                return "<u8";
+            case UINT32:
+                return "<u4";
+            case UINT16:
+                return "<u2";
+            case UBYTE:
+                return "|u1";
+            case BOOL:
+                return "|b1";
+            default:
+                throw new PythonException("Unsupported array data type for python worker: " + dataType);
+        }
+    }
+
+    protected static DataType fromNumpyDType(String dtype) {
+        if (dtype.startsWith(">")) {
+            throw new PythonException("Big endian arrays are not supported: " + dtype);
+        }
+        switch (dtype.substring(1)) {
+            case "f8":
+                return DataType.DOUBLE;
+            case "f4":
+                return DataType.FLOAT;
+            case "f2":
+                return DataType.HALF;
+            case "i8":
+                return DataType.LONG;
+            case "i4":
+                return DataType.INT;
+            case "i2":
+                return DataType.SHORT;
+            case "i1":
+                return DataType.BYTE;
+            case "u8":
+                return DataType.UINT64;
+            case "u4":
+                return DataType.UINT32;
+            case "u2":
+                return DataType.UINT16;
+            case "u1":
+                return DataType.UBYTE;
+            case "b1":
+                return DataType.BOOL;
+            default:
+                throw new PythonException("Unsupported numpy data type: " + dtype);
+        }
+    }
+
+    private static long align(long offset) {
+        return (offset + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    /**
+     * Single python process, with its pipes and memory mapped file
+     */
+    private class Worker {
+        private final int id;
+        private Process process;
+        private DataOutputStream toWorker;
+        private DataInputStream fromWorker;
+        private File shmFile;
+        private RandomAccessFile shmRaf;
+        private MappedByteBuffer shm;
+        private long shmSize;
+        private volatile boolean broken;
+
+        private Worker(int id) {
+            this.id = id;
+            this.broken = id < 0;
+        }
+
+        private void start() {
+            try {
+                shmFile = new File(workDir, "worker-" + id + ".shm");
+                shmRaf = new RandomAccessFile(shmFile, "rw");
+                map(sharedMemoryBytes);
+
+                ProcessBuilder pb = new ProcessBuilder(PythonProcess.getPythonExecutable(), "-u", workerScript.getAbsolutePath());
+                pb.environment().put("PYTHONPATH", pythonPath());
+                String libraryPathVariable = libraryPathVariable();
+                pb.environment().put(libraryPathVariable, libraryPath(System.getenv(libraryPathVariable)));
+                pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+                process = pb.start();
+                toWorker = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+                fromWorker = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+            } catch (IOException e) {
+                destroy();
+                throw new PythonException("Unable to start python worker", e);
+            }
+        }
+
+        private void map(long size) throws IOException {
+            if (size > Integer.MAX_VALUE) {
+                throw new PythonException("Shared memory of python worker is limited to 2GB, requested " + size + " bytes");
+            }
+            if (shmRaf.length() < size)
+                shmRaf.setLength(size);
+            shm = shmRaf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            shm.order(ByteOrder.nativeOrder());
+            shmSize = size;
+        }
+
+        private void exec(String code, List<PythonVariable> inputs, List<PythonVariable> outputs) {
+            if (broken) {
+                throw new PythonException("Python worker is not available");
+            }
+
+            try {
+                //Lay out input arrays first, so the file can be grown once before writing
+                Map<PythonVariable, INDArray> arrays = new IdentityHashMap<>();
+                long required = 0;
+                for (PythonVariable v : inputs) {
+                    if (v.getValue() instanceof INDArray) {
+                        INDArray arr = (INDArray) v.getValue();
+                        if (arr.isView() || arr.ordering() != 'c')
+                            arr = arr.dup('c');
+                        arrays.put(v, arr);
+                        required = align(required + arr.length() * arr.dataType().width());
+                    }
+                }
+                if (required > shmSize)
+                    map(Math.max(required, shmSize * 2));
+
+                List<Map<String, Object>> inputDescriptors = new ArrayList<>(inputs.size());
+                long offset = 0;
+                for (PythonVariable v : inputs) {
+                    Map<String, Object> desc = new LinkedHashMap<>();
+                    desc.put("name", v.getName());
+                    INDArray arr = arrays.get(v);
+                    if (arr != null) {
+                        long bytes = arr.length() * arr.dataType().width();
+                        if (bytes > 0) {
+                            ByteBuffer src = arr.data().asNio().duplicate();
+                            src.position(0).limit((int) bytes);
+                            ByteBuffer dst = shm.duplicate();
+                            dst.position((int) offset);
+                            dst.put(src);
+                        }
+                        desc.put("kind", "array");
+                        desc.put("dtype", numpyDType(arr.dataType()));
+                        desc.put("shape", arr.shape());
+                        desc.put("offset", offset);
+                        offset = align(offset + bytes);
+                    } else {
+                        desc.put("kind", "value");
+                        desc.put("value", jsonValue(v));
+                    }
+                    inputDescriptors.add(desc);
+                }
+
+                List<Map<String, Object>> outputDescriptors = new ArrayList<>(outputs.size());
+                for (PythonVariable v : outputs) {
+                    Map<String, Object> desc = new LinkedHashMap<>();
+                    desc.put("name", v.getName());
+                    desc.put("kind", v.getType() instanceof NumpyArray ? "array" : "value");
+                    outputDescriptors.add(desc);
+                }
+
+                Map<String, Object> request = new LinkedHashMap<>();
+                request.put("op", "exec");
+                request.put("code", code);
+                request.put("shm", shmFile.getAbsolutePath());
+                request.put("shmSize", shmSize);
+                request.put("inputs", inputDescriptors);
+                request.put("outputs", outputDescriptors);
+                request.put("outputOffset", offset);
+
+                Map<String, Object> response = call(request);
+                if (response.containsKey("error")) {
+                    log.debug("Python worker {} traceback:\n{}", id, response.get("traceback"));
+                    throw new PythonException((String) response.get("error"));
+                }
+
+                long newSize = ((Number) response.get("shmSize")).longValue();
+                if (newSize > shmSize)
+                    map(newSize);
+
+                List<Map<String, Object>> results = (List<Map<String, Object>>) response.get("outputs");
+                for (int i = 0; i < outputs.size(); i++) {
+                    Map<String, Object> desc = results.get(i);
+                    if ("array".equals(desc.get("kind"))) {
+                        outputs.get(i).setValue(readArray(desc));
+                    } else {
+                        outputs.get(i).setValue(desc.get("value"));
+                    }
+                }
+            } catch (IOException e) {
+                broken = true;
+                throw new PythonException("Communication with python worker " + id + " failed", e);
+            }
+        }
+
+        private Object jsonValue(PythonVariable v) {
+            switch (v.getType().getName()) {
+                case "str":
+                case "int":
+                case "float":
+                case "bool":
+                case "list":
+                case "dict":
+                    return v.getValue();
+                default:
+                    throw new PythonException("Variable " + v.getName() + " of type " + v.getType().getName()
+                            + " can not be passed to python worker, only INDArray, str, int, float, bool, list and dict are supported");
+            }
+        }
+
+        private INDArray readArray(Map<String, Object> desc) {
+            DataType dataType = fromNumpyDType((String) desc.get("dtype"));
+            List<Number> shapeList = (List<Number>) desc.get("shape");
+            long[] shape = new long[shapeList.size()];
+            for (int i = 0; i < shape.length; i++)
+                shape[i] = shapeList.get(i).longValue();
+            long offset = ((Number) desc.get("offset")).longValue();
+
+            INDArray ret;
+            try (MemoryWorkspace ws = Nd4j.getMemoryManager().scopeOutOfWorkspaces()) {
+                ret = Nd4j.create(dataType, shape);
+            }
+            long bytes = ret.length() * dataType.width();
+            if (bytes > 0) {
+                ByteBuffer src = shm.duplicate();
+                src.position((int) offset).limit((int) (offset + bytes));
+                ByteBuffer dst = ret.data().asNio().duplicate();
+                dst.position(0);
+                dst.put(src);
+            }
+            return ret;
+        }
+
+        private Map<String, Object> call(Map<String, Object> request) throws IOException {
+            byte[] bytes = MAPPER.writeValueAsBytes(request);
+            toWorker.writeInt(bytes.length);
+            toWorker.write(bytes);
+            toWorker.flush();
+
+            int length = fromWorker.readInt();
+            byte[] response = new byte[length];
+            fromWorker.readFully(response);
+            return MAPPER.readValue(new String(response, StandardCharsets.UTF_8), Map.class);
+        }
+
+        private void destroy() {
+            broken = true;
+            if (process != null) {
+                try {
+                    //Worker exits on end of input
+                    toWorker.close();
+                } catch (IOException e) {
+                    //Worker already gone
+                }
+                process.destroy();
+                process = null;
+            }
+            if (shmRaf != null) {
+                try {
+                    shmRaf.close();
+                } catch (IOException e) {
+                    log.debug("Unable to close shared memory file of python worker {}", id, e);
+                }
+                shmRaf = null;
+            }
+            shm = null;
+            workers.remove(this);
+        }
+    }
+
+    public static class Builder {
+        private int numWorkers = Runtime.getRuntime().availableProcessors();
+        private long sharedMemoryBytes = 16L * 1024 * 1024;
+        private String setupCode;
+        private File tempDir = new File(System.getProperty("java.io.tmpdir"));
+
+        /**
+         * Number of python processes. Defaults to the number of available processors
+         */
+        public Builder numWorkers(int numWorkers) {
+            this.numWorkers = numWorkers;
+            return this;
+        }
+
+        /**
+         * Initial size of the memory mapped file of each worker. Files grow as required by inputs or outputs. Default: 16MB
+         */
+        public Builder sharedMemoryBytes(long sharedMemoryBytes) {
+            this.sharedMemoryBytes = sharedMemoryBytes;
+            return this;
+        }
+
+        /**
+         * Code executed once by each worker when it starts, for example imports
+         */
+        public Builder setupCode(String setupCode) {
+            this.setupCode = setupCode;
+            return this;
+        }
+
+        /**
+         * Directory for the worker script and shared memory files. Use a tmpfs location (such as /dev/shm) to
+         * avoid any disk writeback. Defaults to java.io.tmpdir
+         */
+        public Builder tempDir(@NonNull File tempDir) {
+            this.tempDir = tempDir;
+            return this;
+        }
+
+        public PythonWorkerPool build() {
+            if (numWorkers <= 0)
+                throw new IllegalArgumentException("Number of workers must be positive, got " + numWorkers);
+            if (sharedMemoryBytes <= 0)
+                throw new IllegalArgumentException("Shared memory size must be positive, got " + sharedMemoryBytes);
+            return new PythonWorkerPool(this);
+        }
+    }
+}
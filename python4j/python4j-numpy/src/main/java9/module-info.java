@@ -6,6 +6,9 @@ open module python4j.numpy {
     requires org.bytedeco.numpy;
     requires slf4j.api;
     requires nd4j.api;
+    requires jackson;
+    requires commons.io;
+    requires nd4j.common;
     requires python4j.core;
     exports org.nd4j.python4j.numpy;
     provides org.nd4j.python4j.PythonType with org.nd4j.python4j.numpy.NumpyArray;
@@ -0,0 +1,126 @@
+#  /* ******************************************************************************
+#   *
+#   *
+#   * This program and the accompanying materials are made available under the
+#   * terms of the Apache License, Version 2.0 which is available at
+#   * https://www.apache.org/licenses/LICENSE-2.0.
+#   *
+#   *  See the NOTICE file distributed with this work for additional
+#   *  information regarding copyright ownership.
+#   * Unless required by applicable law or agreed to in writing, software
+#   * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+#   * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+#   * License for the specific language governing permissions and limitations
+#   * under the License.
+#   *
+#   * SPDX-License-Identifier: Apache-2.0
+#   ******************************************************************************/
+
+# Worker process of org.nd4j.python4j.numpy.PythonWorkerPool
+# Messages are 4 bytes big endian length followed by utf-8 json, over stdin/stdout.
+# Arrays are never serialized: they are read from / written to the memory mapped file described in each request.
+
+import sys
+import json
+import mmap
+import struct
+import traceback
+
+import numpy as np
+
+_in = sys.stdin.buffer
+_out = sys.stdout.buffer
+# anything printed by user code goes to stderr, stdout is reserved for the protocol
+sys.stdout = sys.stderr
+
+_ALIGNMENT = 64
+_globals = {'__name__': '__main__'}
+_shm = {'path': None, 'size': 0, 'file': None, 'mm': None}
+
+
+def _read_message():
+    header = _in.read(4)
+    if len(header) < 4:
+        return None
+    length, = struct.unpack('>i', header)
+    return json.loads(_in.read(length).decode('utf-8'))
+
+
+def _to_json(value):
+    if isinstance(value, np.generic):
+        return value.item()
+    if isinstance(value, np.ndarray):
+        return value.tolist()
+    raise TypeError('Object of type ' + type(value).__name__ + ' is not JSON serializable')
+
+
+def _write_message(message):
+    data = json.dumps(message, default=_to_json).encode('utf-8')
+    _out.write(struct.pack('>i', len(data)))
+    _out.write(data)
+    _out.flush()
+
+
+def _map(path, size):
+    if _shm['path'] == path and _shm['size'] >= size:
+        return
+    # previous mapping is not closed explicitly: arrays created by user code may still reference it
+    f = open(path, 'r+b')
+    _shm['path'] = path
+    _shm['size'] = size
+    _shm['file'] = f
+    _shm['mm'] = mmap.mmap(f.fileno(), size)
+
+
+def _read_input(desc):
+    if desc['kind'] == 'array':
+        return np.ndarray(tuple(desc['shape']), dtype=np.dtype(desc['dtype']), buffer=_shm['mm'], offset=desc['offset'])
+    return desc['value']
+
+
+def _write_output(name, kind, offset):
+    if name not in _globals:
+        raise NameError("Output variable '" + name + "' is not defined")
+    value = _globals[name]
+    if kind != 'array':
+        return {'name': name, 'kind': 'value', 'value': value}, offset
+
+    arr = np.ascontiguousarray(value)
+    end = offset + arr.nbytes
+    if end > _shm['size']:
+        size = max(end, _shm['size'] * 2)
+        _shm['file'].truncate(size)
+        _map(_shm['path'], size)
+    target = np.ndarray(arr.shape, dtype=arr.dtype, buffer=_shm['mm'], offset=offset)
+    target[...] = arr
+    desc = {'name': name, 'kind': 'array', 'dtype': arr.dtype.str, 'shape': list(arr.shape), 'offset': offset}
+    return desc, (end + _ALIGNMENT - 1) // _ALIGNMENT * _ALIGNMENT
+
+
+def _exec(request):
+    _map(request['shm'], request['shmSize'])
+    for desc in request['inputs']:
+        _globals[desc['name']] = _read_input(desc)
+    exec(request['code'], _globals)
+    outputs = []
+    offset = request['outputOffset']
+    for desc in request['outputs']:
+        out, offset = _write_output(desc['name'], desc['kind'], offset)
+        outputs.append(out)
+    return {'outputs': outputs, 'shmSize': _shm['size']}
+
+
+def _main():
+    while True:
+        request = _read_message()
+        if request is None or request.get('op') == 'close':
+            break
+        try:
+            response = _exec(request)
+        except BaseException as ex:
+            response = {'error': type(ex).__name__ + ': ' + str(ex), 'traceback': traceback.format_exc()}
+        sys.stderr.flush()
+        _write_message(response)
+
+
+_main()